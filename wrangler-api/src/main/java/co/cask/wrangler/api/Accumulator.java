@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.api;
+
+import co.cask.wrangler.api.annotations.PublicEvolving;
+
+import java.util.List;
+
+/**
+ * A directive that holds rows back until the end of the input, such as an aggregation.
+ *
+ * <p>The directive accumulates the rows passed to {@link Executor#execute(Object, ExecutorContext)}, returning
+ * none of them or only some. Once all the input has been passed to the pipeline, {@link RecipePipeline#flush()}
+ * calls {@link #flush(ExecutorContext)} and passes the rows returned to the directives that follow, after which
+ * the directive starts accumulating anew.</p>
+ */
+@PublicEvolving
+public interface Accumulator {
+  /**
+   * Returns the rows held back, at the end of the input.
+   *
+   * @param context {@link ExecutorContext} passed to each step.
+   * @return the rows held back by the directive.
+   * @throws DirectiveExecutionException thrown when the rows can't be produced.
+   * @throws ErrorRowException thrown with the row held back when it's incomplete, to send it to the error
+   * collector.
+   */
+  List<Row> flush(ExecutorContext context) throws DirectiveExecutionException, ErrorRowException;
+
+  /**
+   * @return false if the directive, as it was initialized, returns every row as it comes without holding any
+   * back, true by default.
+   */
+  default boolean isAccumulating() {
+    return true;
+  }
+}
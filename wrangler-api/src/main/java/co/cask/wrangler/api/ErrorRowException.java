@@ -26,11 +26,19 @@ public class ErrorRowException extends Exception {
   // Code associated with the error message.
   private int code;
 
+  // Row in error, when it's not the row being processed.
+  private Row row;
+
   public ErrorRowException(String message, int code) {
     this.message = message;
     this.code = code;
   }
 
+  public ErrorRowException(String message, int code, Row row) {
+    this(message, code);
+    this.row = row;
+  }
+
   /**
    * @return Message as why the record errored.
    */
@@ -44,4 +52,11 @@ public class ErrorRowException extends Exception {
   public int getCode() {
     return code;
   }
+
+  /**
+   * @return row in error, null if it's the row being processed.
+   */
+  public Row getRow() {
+    return row;
+  }
 }
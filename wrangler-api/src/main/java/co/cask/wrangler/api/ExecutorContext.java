@@ -59,6 +59,13 @@ public interface ExecutorContext extends LookupProvider, Serializable {
    */
   String getContextName();
 
+  /**
+   * @return name of the pipeline being executed, null when not executed by a pipeline.
+   */
+  default String getPipelineName() {
+    return null;
+  }
+
   /**
    * @return Properties associated with run and pipeline.
    */
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.api;
+
+import co.cask.wrangler.api.annotations.PublicEvolving;
+
+/**
+ * A directive that can be combined with the directive following it in a recipe, such as several extractions from
+ * the same document that can share the parsing of the document.
+ *
+ * <p>When the pipeline is initialized, each directive implementing this interface is offered the directive that
+ * follows it, and is replaced by the directive returned if any, which is offered the next directive in turn.</p>
+ */
+@PublicEvolving
+public interface Fusable {
+  /**
+   * Combines this directive with the directive following it, without changing either of them.
+   *
+   * @param next directive that follows this directive in the recipe.
+   * @return a directive that does the work of both directives, null if they can't be combined.
+   */
+  Executor fuse(Executor next);
+}
@@ -20,6 +20,7 @@ import co.cask.cdap.api.data.schema.Schema;
 import co.cask.wrangler.api.annotations.PublicEvolving;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -56,6 +57,16 @@ public interface RecipePipeline<I, O, E> extends Serializable {
    */
   List<I> execute(List<I> input) throws RecipeException;
 
+  /**
+   * Signals the end of the input, returning the rows held back by the {@link Accumulator} directives, after
+   * they went through the directives that follow them.
+   *
+   * @return the rows held back until the end of the input, none by default.
+   */
+  default List<I> flush() throws RecipeException {
+    return Collections.emptyList();
+  }
+
   /**
    * Returns records that are errored out.
    *
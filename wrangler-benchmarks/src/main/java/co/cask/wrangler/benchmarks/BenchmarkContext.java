@@ -0,0 +1,96 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.cdap.etl.api.Lookup;
+import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.directives.aggregates.DefaultTransientStore;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.TransientStore;
+import co.cask.wrangler.proto.Contexts;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Context of the pipelines run by the benchmarks, without metrics, services or lookups.
+ */
+final class BenchmarkContext implements ExecutorContext {
+  private final Map<String, String> properties = new HashMap<>();
+  private final TransientStore store = new DefaultTransientStore();
+
+  @Override
+  public Environment getEnvironment() {
+    return Environment.TESTING;
+  }
+
+  @Override
+  public String getNamespace() {
+    return Contexts.SYSTEM;
+  }
+
+  @Override
+  public StageMetrics getMetrics() {
+    return new StageMetrics() {
+      @Override
+      public void count(String s, int i) {
+
+      }
+
+      @Override
+      public void gauge(String s, long l) {
+
+      }
+
+      @Override
+      public void pipelineCount(String s, int i) {
+
+      }
+
+      @Override
+      public void pipelineGauge(String s, long l) {
+
+      }
+    };
+  }
+
+  @Override
+  public String getContextName() {
+    return "benchmark";
+  }
+
+  @Override
+  public Map<String, String> getProperties() {
+    return properties;
+  }
+
+  @Override
+  public URL getService(String applicationId, String serviceId) {
+    return null;
+  }
+
+  @Override
+  public TransientStore getTransientStore() {
+    return store;
+  }
+
+  @Override
+  public <T> Lookup<T> provide(String s, Map<String, String> map) {
+    return null;
+  }
+}
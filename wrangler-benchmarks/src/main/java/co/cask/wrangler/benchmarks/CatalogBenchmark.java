@@ -0,0 +1,106 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.wrangler.executor.ICDCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lookups in the shared ICD-9 catalog with lookups in a {@link HashMap} of the codes, as
+ * each catalog used to be loaded, for a few repeated codes and for codes spread over the catalog.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogBenchmark {
+
+  @Param({"repeated", "spread"})
+  public String codes;
+
+  private ICDCatalog catalog;
+  private Map<String, String> map;
+  private String[] keys;
+  private int next;
+
+  @Setup
+  public void setup() throws IOException {
+    catalog = new ICDCatalog("icd-9");
+    if (!catalog.configure()) {
+      throw new IllegalStateException("The icd-9 catalog can't be loaded");
+    }
+    map = new HashMap<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+      ICDCatalog.class.getClassLoader().getResourceAsStream("icd-9_cm_codes.txt"), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        int end = line.indexOf(' ');
+        if (end > 0) {
+          map.put(line.substring(0, end), line.substring(end + 1).trim());
+        }
+      }
+    }
+    if ("repeated".equals(codes)) {
+      keys = new String[] { "0010", "0019", "V9129", "ABC" };
+    } else {
+      List<String> all = new ArrayList<>(map.keySet());
+      Collections.shuffle(all, new Random(0));
+      keys = all.toArray(new String[all.size()]);
+    }
+  }
+
+  @Benchmark
+  public Object catalog() {
+    return catalog.lookup(key());
+  }
+
+  @Benchmark
+  public Object hashMap() {
+    return map.get(key());
+  }
+
+  private String key() {
+    String key = keys[next];
+    next = next + 1 == keys.length ? 0 : next + 1;
+    return key;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.directives.parser.CsvTokenizer;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link CsvTokenizer} used by parse-as-csv with parsing each row with commons-csv,
+ * as the directive used to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvTokenizerBenchmark {
+
+  @Param({"10", "100"})
+  public int columns;
+
+  private String line;
+  private CSVFormat format;
+  private CsvTokenizer tokenizer;
+  private List<String> fields;
+
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < columns; ++i) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      if (i % 10 == 0) {
+        sb.append("\"value, ").append(i).append("\"");
+      } else {
+        sb.append("value").append(i);
+      }
+    }
+    line = sb.toString();
+    format = CSVFormat.DEFAULT.withDelimiter(',');
+    tokenizer = new CsvTokenizer(',');
+    fields = new ArrayList<>();
+  }
+
+  @Benchmark
+  public int commonsCsv() throws IOException {
+    int count = 0;
+    for (CSVRecord record : CSVParser.parse(line, format).getRecords()) {
+      count += record.size();
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int tokenizer() throws IOException {
+    int count = 0;
+    tokenizer.reset(line);
+    while (tokenizer.next(fields)) {
+      count += fields.size();
+    }
+    return count;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.expression.EL;
+import co.cask.wrangler.expression.ELException;
+import co.cask.wrangler.expression.RowContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@code jexl} and {@code compiled} expression engines on 1000 rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionEngineBenchmark {
+
+  @Param({"a > 10 && b == 'x'", "(a + 1) * 2 - a / 3", "math:max(a, 5) > 7 ? 'high' : 'low'"})
+  public String expression;
+
+  @Param({"jexl", "compiled"})
+  public String engine;
+
+  private EL el;
+  private ExecutorContext context;
+  private RowContext rowContext;
+  private List<Row> rows;
+
+  @Setup
+  public void setup() throws ELException {
+    el = new EL(new EL.DefaultFunctions());
+    el.compile(expression);
+    context = new BenchmarkContext();
+    context.getProperties().put(EL.ENGINE, engine);
+    rowContext = new RowContext(el.variables());
+    rows = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      rows.add(new Row("id", i).add("a", i % 20).add("b", i % 2 == 0 ? "x" : "y"));
+    }
+  }
+
+  @Benchmark
+  public int evaluate() throws ELException {
+    int count = 0;
+    for (Row row : rows) {
+      count += el.execute(rowContext.set(row, context)).getObject().hashCode();
+    }
+    return count;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.functions.GeoFences;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures geo:inFence on 1000 random points, against collections of random square fences.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeoFenceBenchmark {
+
+  @Param({"10", "5000"})
+  public int fences;
+
+  private String geoJsonFences;
+  private double[] points;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    StringBuilder sb = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+    for (int i = 0; i < fences; ++i) {
+      double lon = random.nextDouble() * 100;
+      double lat = random.nextDouble() * 100;
+      sb.append(i == 0 ? "" : ",")
+        .append("{\"type\":\"Feature\",\"properties\":{},\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[")
+        .append(String.format("[[%s,%s],[%s,%s],[%s,%s],[%s,%s],[%s,%s]]", lon, lat, lon + 1, lat, lon + 1,
+                              lat + 1, lon, lat + 1, lon, lat))
+        .append("]}}");
+    }
+    geoJsonFences = sb.append("]}").toString();
+    points = new double[2000];
+    for (int i = 0; i < points.length; ++i) {
+      points[i] = random.nextDouble() * 100;
+    }
+  }
+
+  @Benchmark
+  public int inFence() {
+    int count = 0;
+    for (int i = 0; i < points.length; i += 2) {
+      count += GeoFences.inFence(points[i], points[i + 1], geoJsonFences) ? 1 : 0;
+    }
+    return count;
+  }
+}
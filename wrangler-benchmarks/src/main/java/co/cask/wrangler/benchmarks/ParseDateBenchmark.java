@@ -0,0 +1,84 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.wrangler.api.RecipePipeline;
+import co.cask.wrangler.api.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parse-as-date on batches of 1000 values, with a format it learns and with values that
+ * are always parsed by natty.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseDateBenchmark {
+
+  private static final int BATCH = 1000;
+
+  @Param({"learnt", "natty"})
+  public String values;
+
+  private List<String> dates;
+  private RecipePipeline pipeline;
+
+  @Setup
+  public void setup() throws Exception {
+    dates = new ArrayList<>();
+    for (int i = 0; i < BATCH; ++i) {
+      if ("learnt".equals(values)) {
+        dates.add(String.format("2016-%02d-%02d %02d:%02d:%02d", i % 12 + 1, i % 28 + 1, i % 24, i % 60, i % 60));
+      } else {
+        dates.add(String.format("%d days ago", i % 100 + 1));
+      }
+    }
+    pipeline = Pipelines.create(new String[] { "parse-as-date date" }, null);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pipeline.destroy();
+  }
+
+  @Benchmark
+  public List<Row> parse() throws Exception {
+    List<Row> rows = new ArrayList<>(BATCH);
+    for (String date : dates) {
+      rows.add(new Row("date", date));
+    }
+    return pipeline.execute(rows);
+  }
+}
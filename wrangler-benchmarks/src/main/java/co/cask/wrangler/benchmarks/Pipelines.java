@@ -0,0 +1,61 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.wrangler.api.DirectiveLoadException;
+import co.cask.wrangler.api.DirectiveParseException;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.RecipeException;
+import co.cask.wrangler.api.RecipeParser;
+import co.cask.wrangler.api.RecipePipeline;
+import co.cask.wrangler.executor.RecipePipelineExecutor;
+import co.cask.wrangler.parser.GrammarBasedParser;
+import co.cask.wrangler.parser.MigrateToV2;
+import co.cask.wrangler.proto.Contexts;
+import co.cask.wrangler.registry.CompositeDirectiveRegistry;
+import co.cask.wrangler.registry.SystemDirectiveRegistry;
+
+/**
+ * Creates the pipelines executed by the benchmarks.
+ */
+final class Pipelines {
+
+  private Pipelines() {
+    // Avoid creation of this object.
+  }
+
+  /**
+   * Creates a pipeline executing the recipe with the system directives.
+   *
+   * @param recipe to be executed.
+   * @param context of the pipeline, or null.
+   * @return pipeline executing the recipe.
+   */
+  static RecipePipeline create(String[] recipe, ExecutorContext context)
+    throws RecipeException, DirectiveParseException, DirectiveLoadException {
+    CompositeDirectiveRegistry registry = new CompositeDirectiveRegistry(
+      new SystemDirectiveRegistry()
+    );
+
+    String migrate = new MigrateToV2(recipe).migrate();
+    RecipeParser parser = new GrammarBasedParser(Contexts.SYSTEM, migrate, registry);
+    parser.initialize(null);
+    RecipePipeline pipeline = new RecipePipelineExecutor();
+    pipeline.initialize(parser, context);
+    return pipeline;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.wrangler.utils.Regex;
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the linear regex engine with java.util.regex, on a simple match, a match with groups
+ * and a pattern that backtracks exponentially with java.util.regex.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegexBenchmark {
+
+  @Param({"email", "groups", "backtracking"})
+  public String input;
+
+  private String value;
+  private Regex java;
+  private Regex linear;
+
+  @Setup
+  public void setup() {
+    String pattern;
+    switch (input) {
+      case "email":
+        pattern = "[a-z]+@[a-z]+\\.com";
+        value = "someone@example.com";
+        break;
+      case "groups":
+        pattern = "(\\d+)-(\\d+)-(\\d+)";
+        value = "call 555-123-4567 now";
+        break;
+      default:
+        pattern = "(a+)+$";
+        value = Strings.repeat("a", 18) + "!";
+        break;
+    }
+    java = Regex.compile(pattern, Regex.Engine.JAVA);
+    linear = Regex.compile(pattern, Regex.Engine.LINEAR);
+  }
+
+  @Benchmark
+  public boolean java() {
+    return java.matcher(value).find();
+  }
+
+  @Benchmark
+  public boolean linear() {
+    return linear.matcher(value).find();
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.api.TransientVariableScope;
+import co.cask.wrangler.expression.EL;
+import co.cask.wrangler.expression.ELContext;
+import co.cask.wrangler.expression.ELException;
+import co.cask.wrangler.expression.RowContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares evaluating an expression on 1000 rows through a {@link RowContext}, which resolves the
+ * variables against the row, with copying the variables of each row into an {@link ELContext}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowContextBenchmark {
+
+  private EL el;
+  private ExecutorContext context;
+  private List<Row> rows;
+  private RowContext rowContext;
+
+  @Setup
+  public void setup() throws ELException {
+    el = new EL(new EL.DefaultFunctions());
+    el.compile("a > 10 && b == 'x'");
+    context = new BenchmarkContext();
+    context.getTransientStore().set(TransientVariableScope.GLOBAL, "count", 1L);
+    rows = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      rows.add(new Row("id", i).add("name", "n" + i).add("a", i % 20).add("b", i % 2 == 0 ? "x" : "y"));
+    }
+    rowContext = new RowContext(el.variables());
+  }
+
+  @Benchmark
+  public int elContext() throws ELException {
+    int count = 0;
+    for (Row row : rows) {
+      ELContext map = new ELContext(context);
+      for (String variable : el.variables()) {
+        map.set(variable, row.getValue(variable));
+      }
+      for (String variable : context.getTransientStore().getVariables()) {
+        map.set(variable, context.getTransientStore().get(variable));
+      }
+      count += el.execute(map).getBoolean() ? 1 : 0;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int rowContext() throws ELException {
+    int count = 0;
+    for (Row row : rows) {
+      count += el.execute(rowContext.set(row, context)).getBoolean() ? 1 : 0;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.wrangler.utils.SedExpression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.unix4j.Unix4j;
+import org.unix4j.builder.Unix4jCommandBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of find-and-replace substitutions, compiled once into a {@link SedExpression}
+ * and run through unix4j for each value as the directive used to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SedBenchmark {
+
+  @Param({"s/\"//g", "s/one/ONE/g", "s/(\\d+)\\/(\\d+)/$2-$1/g"})
+  public String script;
+
+  private String value;
+  private SedExpression expression;
+
+  @Setup
+  public void setup() {
+    value = "07/29/2013,one \"Other (i.e. phone, health club, etc.)\",one,\"NRA Group, LLC\",VA,1";
+    expression = SedExpression.compile(script);
+  }
+
+  @Benchmark
+  public String unix4j() {
+    // As the directive used to run it, once for the exit value and once for the result.
+    Unix4jCommandBuilder builder = Unix4j.echo(value).sed(script);
+    return builder.toExitValue() == 0 ? builder.toStringResult() : null;
+  }
+
+  @Benchmark
+  public String compiled() {
+    return expression.replace(value);
+  }
+}
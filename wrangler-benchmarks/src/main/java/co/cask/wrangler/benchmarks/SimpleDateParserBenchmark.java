@@ -0,0 +1,87 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.wrangler.utils.DateTimes;
+import co.cask.wrangler.utils.SimpleDateParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the shared {@link SimpleDateParser} with a {@link SimpleDateFormat}, on 1000 values of
+ * a pattern translated to a formatter and of a pattern in the ISO-8601 layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimpleDateParserBenchmark {
+
+  @Param({"MM/dd/yyyy HH:mm:ss", "yyyy-MM-dd HH:mm:ss"})
+  public String pattern;
+
+  private String[] values;
+  private SimpleDateFormat format;
+  private SimpleDateParser parser;
+
+  @Setup
+  public void setup() {
+    values = new String[1000];
+    format = new SimpleDateFormat(pattern);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    for (int i = 0; i < values.length; ++i) {
+      long millis = 1451606400000L + i * 86461000L;
+      values[i] = format.format(new Date(millis));
+    }
+    parser = DateTimes.simpleDateParser(pattern, DateTimes.UTC);
+  }
+
+  @Benchmark
+  public long simpleDateFormat() throws ParseException {
+    long sum = 0;
+    for (String value : values) {
+      sum += format.parse(value).getTime();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long simpleDateParser() {
+    long sum = 0;
+    for (String value : values) {
+      sum += parser.parse(value).toInstant().toEpochMilli();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.directives.aggregates.DefaultTransientStore;
+import co.cask.wrangler.api.TransientVariableScope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link DefaultTransientStore} the way directives use it on each row, from one thread
+ * with a store of its own and from four threads incrementing the same global variable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransientStoreBenchmark {
+
+  /**
+   * Store of a single thread.
+   */
+  @State(Scope.Thread)
+  public static class ThreadStore {
+    private DefaultTransientStore store;
+
+    @Setup
+    public void setup() {
+      store = new DefaultTransientStore();
+      store.set(TransientVariableScope.GLOBAL, "threshold", 10);
+    }
+  }
+
+  /**
+   * Store shared by the threads of the benchmark.
+   */
+  @State(Scope.Benchmark)
+  public static class SharedStore {
+    private DefaultTransientStore store;
+
+    @Setup
+    public void setup() {
+      store = new DefaultTransientStore();
+    }
+  }
+
+  @Benchmark
+  public boolean row(ThreadStore state) {
+    DefaultTransientStore store = state.store;
+    store.increment(TransientVariableScope.LOCAL, "dq_total", 1);
+    boolean contains = store.getVariables().contains("dq_total");
+    store.reset(TransientVariableScope.LOCAL);
+    return contains;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void sharedIncrement(SharedStore state) {
+    state.store.increment(TransientVariableScope.GLOBAL, "count", 1);
+  }
+}
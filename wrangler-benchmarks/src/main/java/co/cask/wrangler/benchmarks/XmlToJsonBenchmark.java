@@ -0,0 +1,71 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.wrangler.benchmarks;
+
+import co.cask.directives.xml.XmlJsonConverter;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.json.XML;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the StAX conversion of parse-xml-to-json with the org.json round trip it replaced, on a
+ * document of 200 elements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlToJsonBenchmark {
+
+  private String document;
+  private JsonParser parser;
+
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder("<catalog>");
+    for (int i = 0; i < 200; ++i) {
+      sb.append("<book id=\"").append(i).append("\"><title>Title ").append(i).append("</title>")
+        .append("<price>").append(i).append(".95</price><available>true</available></book>");
+    }
+    document = sb.append("</catalog>").toString();
+    parser = new JsonParser();
+  }
+
+  @Benchmark
+  public JsonElement orgJson() {
+    return parser.parse(XML.toJSONObject(document).toString());
+  }
+
+  @Benchmark
+  public JsonElement stax() {
+    return XmlJsonConverter.toJson(document);
+  }
+}
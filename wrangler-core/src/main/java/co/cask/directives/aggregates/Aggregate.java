@@ -0,0 +1,697 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.aggregates;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.wrangler.api.Accumulator;
+import co.cask.wrangler.api.Arguments;
+import co.cask.wrangler.api.Directive;
+import co.cask.wrangler.api.DirectiveExecutionException;
+import co.cask.wrangler.api.DirectiveParseException;
+import co.cask.wrangler.api.ErrorRowException;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.api.annotations.Categories;
+import co.cask.wrangler.api.parser.ColumnNameList;
+import co.cask.wrangler.api.parser.Text;
+import co.cask.wrangler.api.parser.TokenType;
+import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.ValueCodec;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A directive that groups the rows by the values of columns and returns a row per group, with aggregates of the
+ * rows of the group, at the end of the input.
+ *
+ * <p>The aggregates are {@code count}, {@code sum}, {@code min}, {@code max}, {@code avg} and
+ * {@code distinct-count}. Their state is kept in a {@link GroupTable}, in arrays of primitives. When the
+ * estimated size of the state exceeds the {@link #MEMORY} budget of the pipeline, the groups are sorted and
+ * written to a run file on local disk, and the runs are merged at the end of the input.</p>
+ *
+ * <p>The groups are returned in the order they first appeared when the state stayed within the budget,
+ * otherwise in the order of their encoded values.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name(Aggregate.NAME)
+@Categories(categories = { "row", "aggregate"})
+@Description("Groups rows by columns and computes count, sum, min, max, avg or distinct-count for each group.")
+public class Aggregate implements Directive, Accumulator {
+  public static final String NAME = "aggregate";
+
+  /**
+   * Property of the pipeline with the memory, in megabytes, the state of the directive can take before it's
+   * spilled to disk.
+   */
+  public static final String MEMORY = "aggregate.memory.mb";
+
+  private static final double DEFAULT_MEMORY = 64;
+  private static final Pattern AGGREGATE =
+    Pattern.compile("\\s*([\\w.-]+)\\s*=\\s*([a-z-]+)\\s*\\(\\s*:?([^()]*?)\\s*\\)\\s*");
+  // Estimated bytes taken by a group, besides its key and distinct values.
+  private static final long GROUP_BYTES = 64;
+  // Key of the group when there is a single column and its value is null.
+  private static final Object NULL = new Object();
+  // State of an aggregate : the number of values, the number of values that are not integers and an integer.
+  private static final int LONGS = 3;
+
+  private String[] columns;
+  private Spec[] specs;
+  private GroupTable table;
+  // Estimated size of the state, in bytes.
+  private long bytes;
+  private long budget = -1;
+  private final List<File> runs = new ArrayList<>();
+  // Values of the aggregates of the current row.
+  private Object[] values;
+  private long[] integers;
+  private double[] doubles;
+  private boolean[] integral;
+
+  /**
+   * Functions computing the aggregates.
+   */
+  private enum Function {
+    COUNT("count"),
+    SUM("sum"),
+    MIN("min"),
+    MAX("max"),
+    AVG("avg"),
+    DISTINCT_COUNT("distinct-count");
+
+    private final String name;
+
+    Function(String name) {
+      this.name = name;
+    }
+
+    static Function of(String name) {
+      for (Function function : values()) {
+        if (function.name.equals(name)) {
+          return function;
+        }
+      }
+      return null;
+    }
+
+    boolean isNumeric() {
+      return this != COUNT && this != DISTINCT_COUNT;
+    }
+  }
+
+  /**
+   * An aggregate, its function and the column it applies to, null for a count of the rows.
+   */
+  private static final class Spec {
+    private final String name;
+    private final Function function;
+    private final String column;
+
+    Spec(String name, Function function, String column) {
+      this.name = name;
+      this.function = function;
+      this.column = column;
+    }
+  }
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("columns", TokenType.COLUMN_NAME_LIST);
+    builder.define("aggregates", TokenType.TEXT);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    List<String> names = ((ColumnNameList) args.value("columns")).value();
+    columns = names.toArray(new String[names.size()]);
+    String text = ((Text) args.value("aggregates")).value();
+    List<Spec> specs = new ArrayList<>();
+    for (String aggregate : text.split(",")) {
+      Matcher matcher = AGGREGATE.matcher(aggregate);
+      if (!matcher.matches()) {
+        throw new DirectiveParseException(
+          String.format("Invalid aggregate '%s', expected '<name> = <function>(<column>)'.", aggregate.trim()));
+      }
+      Function function = Function.of(matcher.group(2));
+      if (function == null) {
+        throw new DirectiveParseException(
+          String.format("Invalid function '%s' in aggregate '%s', expected count, sum, min, max, avg or "
+                          + "distinct-count.", matcher.group(2), aggregate.trim()));
+      }
+      String column = matcher.group(3).isEmpty() ? null : matcher.group(3);
+      if (column == null && function != Function.COUNT) {
+        throw new DirectiveParseException(
+          String.format("Function '%s' in aggregate '%s' requires a column.", function.name, aggregate.trim()));
+      }
+      specs.add(new Spec(matcher.group(1), function, column));
+    }
+    this.specs = specs.toArray(new Spec[specs.size()]);
+    this.table = new GroupTable(this.specs.length * LONGS, this.specs.length, this.specs.length);
+    this.values = new Object[this.specs.length];
+    this.integers = new long[this.specs.length];
+    this.doubles = new double[this.specs.length];
+    this.integral = new boolean[this.specs.length];
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    if (budget < 0) {
+      budget = budget(context);
+    }
+    for (Row row : rows) {
+      // The values are all checked before the state is changed, so that a row in error leaves no trace.
+      for (int i = 0; i < specs.length; ++i) {
+        Object value = specs[i].column == null ? null : row.getValue(specs[i].column);
+        values[i] = specs[i].function.isNumeric() ? number(specs[i], value, i) : value;
+      }
+      int before = table.size();
+      int group = table.group(key(row));
+      if (table.size() > before) {
+        bytes += GROUP_BYTES + specs.length * (LONGS * 8 + 16) + keyBytes(table.key(group));
+      }
+      for (int i = 0; i < specs.length; ++i) {
+        bytes += accumulate(specs[i], group * specs.length + i, values[i], integers[i], doubles[i], integral[i]);
+      }
+      if (bytes > budget) {
+        spill();
+      }
+    }
+    return new ArrayList<>();
+  }
+
+  @Override
+  public List<Row> flush(ExecutorContext context) throws DirectiveExecutionException {
+    List<Row> rows = new ArrayList<>();
+    if (runs.isEmpty()) {
+      for (int group = 0; group < table.size(); ++group) {
+        rows.add(row(keyValues(table.key(group)), table.longs(), table.doubles(), table.objects(),
+                     group * specs.length));
+      }
+    } else {
+      spill();
+      try {
+        merge(rows);
+      } catch (IOException e) {
+        throw new DirectiveExecutionException(
+          String.format("%s : Failed to merge the aggregates spilled to disk. %s", NAME, e.getMessage()), e);
+      } finally {
+        deleteRuns();
+      }
+    }
+    table.clear();
+    bytes = 0;
+    return rows;
+  }
+
+  @Override
+  public void destroy() {
+    deleteRuns();
+  }
+
+  private static long budget(ExecutorContext context) throws DirectiveExecutionException {
+    String memory = context == null || context.getProperties() == null ? null
+      : context.getProperties().get(MEMORY);
+    double megabytes = DEFAULT_MEMORY;
+    if (memory != null && !memory.trim().isEmpty()) {
+      try {
+        megabytes = Double.parseDouble(memory.trim());
+      } catch (NumberFormatException e) {
+        throw new DirectiveExecutionException(
+          String.format("Invalid value '%s' for property '%s', expected megabytes.", memory, MEMORY));
+      }
+    }
+    return (long) (megabytes * 1024 * 1024);
+  }
+
+  private Object key(Row row) {
+    if (columns.length == 1) {
+      Object value = row.getValue(columns[0]);
+      return value == null ? NULL : wrap(value);
+    }
+    Object[] key = new Object[columns.length];
+    for (int i = 0; i < columns.length; ++i) {
+      key[i] = wrap(row.getValue(columns[i]));
+    }
+    return Arrays.asList(key);
+  }
+
+  private Object[] keyValues(Object key) {
+    if (columns.length == 1) {
+      return new Object[] { key == NULL ? null : unwrap(key) };
+    }
+    Object[] values = ((List<?>) key).toArray();
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = unwrap(values[i]);
+    }
+    return values;
+  }
+
+  /**
+   * Wraps byte arrays, so that the groups and distinct values are compared by their content in memory, as they
+   * are once encoded.
+   */
+  private static Object wrap(Object value) {
+    return value instanceof byte[] ? new ByteArray((byte[]) value) : value;
+  }
+
+  private static Object unwrap(Object value) {
+    return value instanceof ByteArray ? ((ByteArray) value).bytes : value;
+  }
+
+  private long keyBytes(Object key) {
+    long size = 0;
+    for (Object value : keyValues(key)) {
+      size += ValueCodec.estimate(value);
+    }
+    return size;
+  }
+
+  /**
+   * Parses the value of a numeric aggregate into {@link #integers} or {@link #doubles}.
+   *
+   * @return the value, null if there is none.
+   */
+  private Object number(Spec spec, Object value, int i) throws ErrorRowException {
+    if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      integral[i] = true;
+      integers[i] = ((Number) value).longValue();
+      doubles[i] = integers[i];
+      return value;
+    } else if (value instanceof Number) {
+      integral[i] = false;
+      doubles[i] = ((Number) value).doubleValue();
+      return value;
+    } else if (value instanceof String && !((String) value).trim().isEmpty()) {
+      String text = ((String) value).trim();
+      try {
+        integers[i] = Long.parseLong(text);
+        doubles[i] = integers[i];
+        integral[i] = true;
+        return value;
+      } catch (NumberFormatException e) {
+        try {
+          doubles[i] = Double.parseDouble(text);
+          integral[i] = false;
+          return value;
+        } catch (NumberFormatException f) {
+          // Reported below.
+        }
+      }
+    } else if (value == null || value instanceof String) {
+      return null;
+    }
+    throw new ErrorRowException(
+      String.format("%s : Column '%s' has value '%s' that is not a number, it can't be used with function '%s'.",
+                    NAME, spec.column, value, spec.function.name), 2);
+  }
+
+  /**
+   * Adds a value to the state of an aggregate.
+   *
+   * @return the number of bytes the state grew by.
+   */
+  private long accumulate(Spec spec, int index, Object value, long integer, double number, boolean isIntegral) {
+    long[] longs = table.longs();
+    int base = index * LONGS;
+    switch (spec.function) {
+      case COUNT:
+        if (spec.column == null || value != null) {
+          longs[base]++;
+        }
+        return 0;
+      case DISTINCT_COUNT:
+        if (value == null) {
+          return 0;
+        }
+        Object[] objects = table.objects();
+        @SuppressWarnings("unchecked")
+        Set<Object> distinct = (Set<Object>) objects[index];
+        if (distinct == null) {
+          distinct = new HashSet<>();
+          objects[index] = distinct;
+        }
+        return distinct.add(wrap(value)) ? 48 + ValueCodec.estimate(value) : 0;
+      default:
+        if (value == null) {
+          return 0;
+        }
+        double[] doubles = table.doubles();
+        if (spec.function == Function.SUM || spec.function == Function.AVG) {
+          if (isIntegral) {
+            add(longs, base, integer);
+          } else {
+            longs[base + 1]++;
+          }
+          longs[base]++;
+          doubles[index] += number;
+          return 0;
+        }
+        boolean min = spec.function == Function.MIN;
+        if (longs[base] == 0) {
+          longs[base + 2] = min ? Long.MAX_VALUE : Long.MIN_VALUE;
+          doubles[index] = number;
+        }
+        if (isIntegral) {
+          longs[base + 2] = min ? Math.min(longs[base + 2], integer) : Math.max(longs[base + 2], integer);
+        } else {
+          longs[base + 1]++;
+        }
+        doubles[index] = min ? Math.min(doubles[index], number) : Math.max(doubles[index], number);
+        longs[base]++;
+        return 0;
+    }
+  }
+
+  /**
+   * Adds the state of an aggregate to the state of the same aggregate of another part of the input.
+   */
+  private static void combine(Spec spec, long[] longs, double[] doubles, Object[] objects, int index,
+                              long[] otherLongs, double[] otherDoubles, Object[] otherObjects, int other) {
+    int base = index * LONGS;
+    int otherBase = other * LONGS;
+    switch (spec.function) {
+      case COUNT:
+        longs[base] += otherLongs[otherBase];
+        return;
+      case DISTINCT_COUNT:
+        @SuppressWarnings("unchecked")
+        Set<Object> distinct = (Set<Object>) objects[index];
+        @SuppressWarnings("unchecked")
+        Set<Object> otherDistinct = (Set<Object>) otherObjects[other];
+        if (distinct == null) {
+          objects[index] = otherDistinct;
+        } else if (otherDistinct != null) {
+          distinct.addAll(otherDistinct);
+        }
+        return;
+      case SUM:
+      case AVG:
+        longs[base] += otherLongs[otherBase];
+        longs[base + 1] += otherLongs[otherBase + 1];
+        add(longs, base, otherLongs[otherBase + 2]);
+        doubles[index] += otherDoubles[other];
+        return;
+      default:
+        if (otherLongs[otherBase] == 0) {
+          return;
+        }
+        if (longs[base] == 0) {
+          System.arraycopy(otherLongs, otherBase, longs, base, LONGS);
+          doubles[index] = otherDoubles[other];
+          return;
+        }
+        boolean min = spec.function == Function.MIN;
+        longs[base] += otherLongs[otherBase];
+        longs[base + 1] += otherLongs[otherBase + 1];
+        longs[base + 2] = min ? Math.min(longs[base + 2], otherLongs[otherBase + 2])
+          : Math.max(longs[base + 2], otherLongs[otherBase + 2]);
+        doubles[index] = min ? Math.min(doubles[index], otherDoubles[other])
+          : Math.max(doubles[index], otherDoubles[other]);
+    }
+  }
+
+  /**
+   * Adds an integer to the integer sum of an aggregate. When the sum overflows, the aggregate counts a value that
+   * is not an integer, so that the sum of the doubles is returned instead.
+   */
+  private static void add(long[] longs, int base, long integer) {
+    try {
+      longs[base + 2] = Math.addExact(longs[base + 2], integer);
+    } catch (ArithmeticException e) {
+      longs[base + 1]++;
+    }
+  }
+
+  /**
+   * Returns the value of an aggregate from its state.
+   */
+  private static Object result(Spec spec, long[] longs, double[] doubles, Object[] objects, int index) {
+    int base = index * LONGS;
+    switch (spec.function) {
+      case COUNT:
+        return longs[base];
+      case DISTINCT_COUNT:
+        return objects[index] == null ? 0L : (long) ((Set<?>) objects[index]).size();
+      case AVG:
+        return longs[base] == 0 ? null : doubles[index] / longs[base];
+      default:
+        if (longs[base] == 0) {
+          return null;
+        }
+        // Integers are aggregated as integers, unless some values are not.
+        return longs[base + 1] == 0 ? (Object) longs[base + 2] : (Object) doubles[index];
+    }
+  }
+
+  private Row row(Object[] key, long[] longs, double[] doubles, Object[] objects, int index) {
+    Row row = new Row();
+    for (int i = 0; i < columns.length; ++i) {
+      row.add(columns[i], key[i]);
+    }
+    for (int i = 0; i < specs.length; ++i) {
+      row.add(specs[i].name, result(specs[i], longs, doubles, objects, index + i));
+    }
+    return row;
+  }
+
+  /**
+   * Writes the groups to a run file, sorted by their encoded keys, and clears the state.
+   */
+  private void spill() throws DirectiveExecutionException {
+    if (table.size() == 0) {
+      return;
+    }
+    File file = null;
+    try {
+      byte[][] keys = new byte[table.size()][];
+      Integer[] order = new Integer[keys.length];
+      for (int group = 0; group < keys.length; ++group) {
+        keys[group] = encode(keyValues(table.key(group)));
+        order[group] = group;
+      }
+      Comparator<byte[]> comparator = UnsignedBytes.lexicographicalComparator();
+      Arrays.sort(order, (a, b) -> comparator.compare(keys[a], keys[b]));
+
+      file = File.createTempFile(NAME + "-", ".run");
+      runs.add(file);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        for (int group : order) {
+          out.writeInt(keys[group].length);
+          out.write(keys[group]);
+          writeState(out, table.longs(), table.doubles(), table.objects(), group * specs.length);
+        }
+      }
+    } catch (IOException e) {
+      throw new DirectiveExecutionException(
+        String.format("%s : Failed to spill the aggregates to '%s'. %s", NAME, file, e.getMessage()), e);
+    }
+    table.clear();
+    bytes = 0;
+  }
+
+  private void writeState(DataOutputStream out, long[] longs, double[] doubles, Object[] objects, int index)
+    throws IOException {
+    for (int i = 0; i < specs.length; ++i) {
+      for (int j = 0; j < LONGS; ++j) {
+        out.writeLong(longs[(index + i) * LONGS + j]);
+      }
+      out.writeDouble(doubles[index + i]);
+      if (specs[i].function == Function.DISTINCT_COUNT) {
+        Set<?> distinct = (Set<?>) objects[index + i];
+        out.writeInt(distinct == null ? 0 : distinct.size());
+        if (distinct != null) {
+          for (Object value : distinct) {
+            ValueCodec.write(out, unwrap(value));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Merges the run files, combining the states of the groups with the same key.
+   */
+  private void merge(List<Row> rows) throws IOException {
+    Comparator<byte[]> comparator = UnsignedBytes.lexicographicalComparator();
+    PriorityQueue<Run> queue = new PriorityQueue<>(runs.size(), (a, b) -> comparator.compare(a.key, b.key));
+    List<Run> open = new ArrayList<>();
+    try {
+      for (File file : runs) {
+        Run run = new Run(file);
+        open.add(run);
+        if (run.next()) {
+          queue.add(run);
+        }
+      }
+      long[] longs = new long[specs.length * LONGS];
+      double[] doubles = new double[specs.length];
+      Object[] objects = new Object[specs.length];
+      while (!queue.isEmpty()) {
+        Run run = queue.poll();
+        byte[] key = run.key;
+        System.arraycopy(run.longs, 0, longs, 0, longs.length);
+        System.arraycopy(run.doubles, 0, doubles, 0, doubles.length);
+        System.arraycopy(run.objects, 0, objects, 0, objects.length);
+        if (run.next()) {
+          queue.add(run);
+        }
+        while (!queue.isEmpty() && Arrays.equals(queue.peek().key, key)) {
+          Run other = queue.poll();
+          for (int i = 0; i < specs.length; ++i) {
+            combine(specs[i], longs, doubles, objects, i, other.longs, other.doubles, other.objects, i);
+          }
+          if (other.next()) {
+            queue.add(other);
+          }
+        }
+        rows.add(row(decode(key), longs, doubles, objects, 0));
+      }
+    } finally {
+      for (Run run : open) {
+        run.close();
+      }
+    }
+  }
+
+  private static byte[] encode(Object[] values) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    for (Object value : values) {
+      ValueCodec.write(out, value);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  private Object[] decode(byte[] key) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(key));
+    Object[] values = new Object[columns.length];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = ValueCodec.read(in);
+    }
+    return values;
+  }
+
+  private void deleteRuns() {
+    for (File file : runs) {
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+    runs.clear();
+  }
+
+  /**
+   * A byte array compared by its content.
+   */
+  private static final class ByteArray {
+    private final byte[] bytes;
+
+    ByteArray(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ByteArray && Arrays.equals(bytes, ((ByteArray) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(bytes);
+    }
+  }
+
+  /**
+   * Reads the groups of a run file, one at a time.
+   */
+  private final class Run {
+    private final DataInputStream in;
+    private final long[] longs = new long[specs.length * LONGS];
+    private final double[] doubles = new double[specs.length];
+    private final Object[] objects = new Object[specs.length];
+    private byte[] key;
+
+    Run(File file) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    /**
+     * Reads the next group.
+     *
+     * @return false if there are no more groups.
+     */
+    boolean next() throws IOException {
+      int length;
+      try {
+        length = in.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      key = new byte[length];
+      in.readFully(key);
+      for (int i = 0; i < specs.length; ++i) {
+        for (int j = 0; j < LONGS; ++j) {
+          longs[i * LONGS + j] = in.readLong();
+        }
+        doubles[i] = in.readDouble();
+        if (specs[i].function == Function.DISTINCT_COUNT) {
+          int size = in.readInt();
+          Set<Object> distinct = new HashSet<>();
+          for (int j = 0; j < size; ++j) {
+            distinct.add(wrap(ValueCodec.read(in)));
+          }
+          objects[i] = distinct;
+        }
+      }
+      return true;
+    }
+
+    void close() {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // Nothing to be done, the file is deleted.
+      }
+    }
+  }
+}
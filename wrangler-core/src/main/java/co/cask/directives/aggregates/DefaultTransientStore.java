@@ -18,11 +18,17 @@ package co.cask.directives.aggregates;
 
 import co.cask.wrangler.api.TransientStore;
 import co.cask.wrangler.api.TransientVariableScope;
+import com.google.common.collect.ImmutableSet;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class implements a transient store interface for storing variables
@@ -31,10 +37,123 @@ import java.util.Set;
  *
  * The life-time of variables set in this store is within a boundary of record
  * being processed.
+ *
+ * <p>The store is safe to use from several threads. The variables of a scope are kept with the generation of the
+ * scope they were set in, a reset starts a new generation rather than removing them, so that resetting the scope
+ * of each record takes constant time and the variables set again are not allocated again. Incremented variables
+ * are {@link LongAdder}s, which don't box the values and don't contend when incremented from several threads.
+ * The set of the names of the variables is kept until the variables change, which includes the same variables
+ * being set again after a reset.</p>
  */
 public class DefaultTransientStore implements TransientStore {
-  private final Map<String, Object> global = new HashMap<>();
-  private final Map<String, Object> local = new HashMap<>();
+  // Number of variables, current or not, past which a reset removes them.
+  private static final int MAX_VARIABLES = 1024;
+
+  private final Scope global = new Scope();
+  private final Scope local = new Scope();
+  private transient volatile Names names;
+
+  /**
+   * Variables of a scope, the generation of the scope and the number of variables set in it.
+   */
+  private static final class Scope implements Serializable {
+    private final ConcurrentMap<String, Variable> variables = new ConcurrentHashMap<>();
+    private volatile long generation;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @return the variable if it's set in the current generation, null otherwise.
+     */
+    Variable current(String name) {
+      Variable variable = variables.get(name);
+      return variable != null && variable.generation == generation ? variable : null;
+    }
+
+    Variable variable(String name) {
+      Variable variable = variables.get(name);
+      if (variable == null) {
+        variable = variables.computeIfAbsent(name, k -> new Variable());
+      }
+      return variable;
+    }
+
+    /**
+     * Makes a variable part of a generation, called while holding the lock of the variable, once its value is
+     * set. A reset at the same time can leave the size too large, which only makes the names be collected again.
+     */
+    void add(Variable variable, long generation) {
+      if (this.generation == generation) {
+        variable.generation = generation;
+        size.incrementAndGet();
+      }
+    }
+
+    void reset() {
+      if (size.get() == 0) {
+        return;
+      }
+      size.set(0);
+      generation++;
+      if (variables.size() > MAX_VARIABLES) {
+        variables.clear();
+      }
+    }
+
+    List<String> names() {
+      List<String> names = new ArrayList<>();
+      long generation = this.generation;
+      for (Map.Entry<String, Variable> entry : variables.entrySet()) {
+        if (entry.getValue().generation == generation) {
+          names.add(entry.getKey());
+        }
+      }
+      return names;
+    }
+
+    /**
+     * @return true if the variables of the scope are the given ones.
+     */
+    boolean matches(String[] names) {
+      if (size.get() != names.length) {
+        return false;
+      }
+      for (String name : names) {
+        if (current(name) == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Value of a variable, or its counter when it's incremented.
+   */
+  private static final class Variable implements Serializable {
+    private volatile long generation = -1;
+    private volatile Object value;
+    private volatile LongAdder counter;
+
+    Object value() {
+      LongAdder counter = this.counter;
+      return counter == null ? value : (Object) counter.sum();
+    }
+  }
+
+  /**
+   * Names of the variables of each scope, and of all of them.
+   */
+  private static final class Names {
+    private final String[] global;
+    private final String[] local;
+    private final Set<String> names;
+
+    Names(List<String> global, List<String> local) {
+      this.global = global.toArray(new String[global.size()]);
+      this.local = local.toArray(new String[local.size()]);
+      this.names = ImmutableSet.<String>builder().addAll(global).addAll(local).build();
+    }
+  }
 
   /**
    * Increments a value of the variable.
@@ -44,22 +163,34 @@ public class DefaultTransientStore implements TransientStore {
    */
   @Override
   public void increment(TransientVariableScope scope, String name, long value) {
-    if (scope == TransientVariableScope.GLOBAL) {
-      increment(global, name, value);
-    } else if (scope == TransientVariableScope.LOCAL) {
-      increment(local, name, value);
+    Scope variables = scope(scope);
+    if (variables == null) {
+      return;
     }
-  }
-
-  private void increment(Map<String, Object> variables, String name, long value) {
-    Long count = null;
-    if (variables.containsKey(name)) {
-      count = (Long) variables.get(name);
+    Variable variable = variables.variable(name);
+    long generation = variables.generation;
+    LongAdder counter = variable.counter;
+    if (counter != null && variable.generation == generation) {
+      counter.add(value);
+      return;
     }
-    if (count == null) {
-      count = 0L;
+    synchronized (variable) {
+      boolean stale = variable.generation != generation;
+      if (variable.counter == null) {
+        counter = new LongAdder();
+        if (!stale && variable.value != null) {
+          counter.add(((Number) variable.value).longValue());
+        }
+        variable.counter = counter;
+        variable.value = null;
+      } else if (stale) {
+        variable.counter.reset();
+      }
+      variable.counter.add(value);
+      if (stale) {
+        variables.add(variable, generation);
+      }
     }
-    variables.put(name, count + value);
   }
 
   /**
@@ -69,17 +200,22 @@ public class DefaultTransientStore implements TransientStore {
    */
   @Override
   public Set<String> getVariables() {
-    Set<String> vars = new HashSet<>();
-    if (global == null && local == null) {
-      return new HashSet<>();
-    }
-    if (global != null) {
-      vars.addAll(global.keySet());
-    }
-    if (local != null) {
-      vars.addAll(local.keySet());
+    Names names = this.names;
+    if (names == null || !global.matches(names.global) || !local.matches(names.local)) {
+      names = new Names(global.names(), local.names());
+      this.names = names;
     }
-    return vars;
+    return names.names;
+  }
+
+  /**
+   * Checks if the variable is set in the store, without creating the set of all the variables.
+   *
+   * @param name of the variable.
+   * @return true if the variable is set, even to null, false otherwise.
+   */
+  public boolean has(String name) {
+    return global.current(name) != null || local.current(name) != null;
   }
 
   /**
@@ -87,10 +223,9 @@ public class DefaultTransientStore implements TransientStore {
    */
   @Override
   public void reset(TransientVariableScope scope) {
-    if (scope == TransientVariableScope.GLOBAL) {
-      global.clear();
-    } else if (scope == TransientVariableScope.LOCAL) {
-      local.clear();
+    Scope variables = scope(scope);
+    if (variables != null) {
+      variables.reset();
     }
   }
 
@@ -101,11 +236,13 @@ public class DefaultTransientStore implements TransientStore {
    * @return instance of object of type T.
    */
   @Override
+  @SuppressWarnings("unchecked")
   public <T> T get(String name) {
-    if (global.containsKey(name)) {
-      return (T) global.get(name);
+    Variable variable = global.current(name);
+    if (variable == null) {
+      variable = local.current(name);
     }
-    return (T) local.get(name);
+    return variable == null ? null : (T) variable.value();
   }
 
   /**
@@ -116,10 +253,27 @@ public class DefaultTransientStore implements TransientStore {
    */
   @Override
   public void set(TransientVariableScope scope, String name, Object value) {
+    Scope variables = scope(scope);
+    if (variables == null) {
+      return;
+    }
+    Variable variable = variables.variable(name);
+    synchronized (variable) {
+      long generation = variables.generation;
+      variable.counter = null;
+      variable.value = value;
+      if (variable.generation != generation) {
+        variables.add(variable, generation);
+      }
+    }
+  }
+
+  private Scope scope(TransientVariableScope scope) {
     if (scope == TransientVariableScope.GLOBAL) {
-      global.put(name, value);
+      return global;
     } else if (scope == TransientVariableScope.LOCAL) {
-      local.put(name, value);
+      return local;
     }
+    return null;
   }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.aggregates;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash table numbering groups in the order they are added, with the state of each group
+ * kept in arrays of primitives indexed by the number of the group.
+ *
+ * <p>Each group has a fixed number of {@code long} and {@code double} slots, in the arrays returned by
+ * {@link #longs()} and {@link #doubles()}, and of object slots for the states that can't be primitives. The
+ * table is probed linearly and doesn't box the states, the only objects per group are its key and the states
+ * that are objects. Instances are not thread-safe.</p>
+ */
+final class GroupTable {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int longsPerGroup;
+  private final int doublesPerGroup;
+  private final int objectsPerGroup;
+  // Number of each group plus one, by slot of the hash table, zero for the free slots.
+  private int[] slots;
+  private int[] hashes;
+  private Object[] keys;
+  private long[] longs;
+  private double[] doubles;
+  private Object[] objects;
+  private int size;
+
+  GroupTable(int longsPerGroup, int doublesPerGroup, int objectsPerGroup) {
+    this.longsPerGroup = longsPerGroup;
+    this.doublesPerGroup = doublesPerGroup;
+    this.objectsPerGroup = objectsPerGroup;
+    clear();
+  }
+
+  /**
+   * Returns the number of the group with the key, adding the group if there is none.
+   *
+   * @param key of the group, compared with {@link Object#equals(Object)}.
+   * @return the number of the group, equal to {@link #size()} minus one when it was added.
+   */
+  int group(Object key) {
+    int hash = mix(key.hashCode());
+    int mask = slots.length - 1;
+    int slot = hash & mask;
+    while (true) {
+      int group = slots[slot] - 1;
+      if (group < 0) {
+        group = size++;
+        slots[slot] = size;
+        if (group == keys.length) {
+          grow();
+        }
+        hashes[group] = hash;
+        keys[group] = key;
+        if (size * 4 > slots.length * 3) {
+          rehash();
+        }
+        return group;
+      }
+      if (hashes[group] == hash && keys[group].equals(key)) {
+        return group;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * @return the number of groups.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the key of a group.
+   */
+  Object key(int group) {
+    return keys[group];
+  }
+
+  /**
+   * @return the {@code long} states, those of a group starting at its number times the slots per group.
+   */
+  long[] longs() {
+    return longs;
+  }
+
+  /**
+   * @return the {@code double} states, those of a group starting at its number times the slots per group.
+   */
+  double[] doubles() {
+    return doubles;
+  }
+
+  /**
+   * @return the object states, those of a group starting at its number times the slots per group.
+   */
+  Object[] objects() {
+    return objects;
+  }
+
+  /**
+   * Removes all the groups.
+   */
+  void clear() {
+    slots = new int[INITIAL_CAPACITY * 2];
+    hashes = new int[INITIAL_CAPACITY];
+    keys = new Object[INITIAL_CAPACITY];
+    longs = new long[INITIAL_CAPACITY * longsPerGroup];
+    doubles = new double[INITIAL_CAPACITY * doublesPerGroup];
+    objects = new Object[INITIAL_CAPACITY * objectsPerGroup];
+    size = 0;
+  }
+
+  private void grow() {
+    int capacity = keys.length * 2;
+    hashes = Arrays.copyOf(hashes, capacity);
+    keys = Arrays.copyOf(keys, capacity);
+    longs = Arrays.copyOf(longs, capacity * longsPerGroup);
+    doubles = Arrays.copyOf(doubles, capacity * doublesPerGroup);
+    objects = Arrays.copyOf(objects, capacity * objectsPerGroup);
+  }
+
+  private void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int group = 0; group < size; ++group) {
+      int slot = hashes[group] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = group + 1;
+    }
+  }
+
+  private static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
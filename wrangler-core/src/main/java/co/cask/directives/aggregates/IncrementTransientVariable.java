@@ -33,9 +33,9 @@ import co.cask.wrangler.api.parser.Numeric;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
 import co.cask.wrangler.expression.EL;
-import co.cask.wrangler.expression.ELContext;
 import co.cask.wrangler.expression.ELException;
 import co.cask.wrangler.expression.ELResult;
+import co.cask.wrangler.expression.RowContext;
 
 import java.util.List;
 
@@ -53,6 +53,8 @@ public class IncrementTransientVariable implements Directive {
   private long incrementBy;
   private String expression;
   private final EL el = new EL(new EL.DefaultFunctions());
+  // Context the expression is evaluated in, reused across rows.
+  private RowContext ctx;
 
   @Override
   public UsageDefinition define() {
@@ -70,6 +72,7 @@ public class IncrementTransientVariable implements Directive {
     this.incrementBy = ((Numeric) args.value("value")).value().longValue();
     try {
       el.compile(expression);
+      ctx = new RowContext(el.variables());
     } catch (ELException e) {
       throw new DirectiveParseException(e.getMessage());
     }
@@ -78,19 +81,8 @@ public class IncrementTransientVariable implements Directive {
   @Override
   public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
     for (Row row : rows) {
-      // Move the fields from the row into the context.
-      ELContext ctx = new ELContext();
-      ctx.set("this", row);
-      for (String var : el.variables()) {
-        ctx.set(var, row.getValue(var));
-      }
-
-      // Transient variables are added.
-      if (context != null) {
-        for (String variable : context.getTransientStore().getVariables()) {
-          ctx.set(variable, context.getTransientStore().get(variable));
-        }
-      }
+      // Variables of the expression are resolved against the row.
+      ctx.set(row, context);
 
       // Execution of the script / expression based on the row data
       // mapped into context.
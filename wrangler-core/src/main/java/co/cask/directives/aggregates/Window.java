@@ -0,0 +1,572 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.aggregates;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.wrangler.api.Accumulator;
+import co.cask.wrangler.api.Arguments;
+import co.cask.wrangler.api.Directive;
+import co.cask.wrangler.api.DirectiveExecutionException;
+import co.cask.wrangler.api.DirectiveParseException;
+import co.cask.wrangler.api.ErrorRowException;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Optional;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.api.annotations.Categories;
+import co.cask.wrangler.api.parser.ColumnNameList;
+import co.cask.wrangler.api.parser.Text;
+import co.cask.wrangler.api.parser.TokenType;
+import co.cask.wrangler.api.parser.UsageDefinition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A directive that adds to each row functions of the rows before or after it in its partition, in the order
+ * the rows come in: its number, the values of a column some rows before or after it, and running or rolling
+ * aggregates.
+ *
+ * <p>Each partition keeps the state of the functions in buffers bounded by their window : a ring of the last
+ * values for {@code lag} and rolling aggregates, and a monotonic queue for rolling minimums and maximums, so
+ * that each row takes constant time and the memory grows with the windows and the number of partitions, not
+ * with the rows. Rows are returned as they come, unless there is a {@code lead} function, in which case a
+ * row is held until the rows it leads to have come, or until the end of the input.</p>
+ *
+ * <p>The number of partitions is bounded by the {@link #PARTITIONS} property of the pipeline. Beyond it, the
+ * partition used least recently is dropped, returning the rows it holds, and starts afresh if it comes again.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name(Window.NAME)
+@Categories(categories = { "row", "aggregate"})
+@Description("Adds row numbers, lagging or leading values and running or rolling aggregates over partitions.")
+public class Window implements Directive, Accumulator {
+  public static final String NAME = "window";
+
+  /**
+   * Property of the pipeline with the largest number of partitions whose state is kept.
+   */
+  public static final String PARTITIONS = "window.partitions.max";
+
+  private static final int DEFAULT_PARTITIONS = 100000;
+
+  private static final Pattern FUNCTION =
+    Pattern.compile("\\s*([\\w.-]+)\\s*=\\s*([a-z_]+)\\s*\\(\\s*(?::?([^\\s,()]+))?\\s*(?:,\\s*(\\d+)\\s*)?\\)\\s*");
+  // Key of the partition when there is a single column and its value is null, or no column.
+  private static final Object NULL = new Object();
+
+  private Spec[] specs;
+  private String[] columns = new String[0];
+  // Largest number of rows a lead function looks ahead.
+  private int lead;
+  // Partitions in the order they were last used.
+  private final Map<Object, Partition> partitions = new LinkedHashMap<>(16, 0.75f, true);
+  private int maxPartitions = -1;
+  private long created;
+  // Values of the numeric functions of the current row.
+  private Object[] values;
+  private long[] integers;
+  private double[] numbers;
+  private boolean[] integral;
+
+  /**
+   * Functions of the window.
+   */
+  private enum Function {
+    ROW_NUMBER("row_number"),
+    LAG("lag"),
+    LEAD("lead"),
+    COUNT("count"),
+    SUM("sum"),
+    AVG("avg"),
+    MIN("min"),
+    MAX("max");
+
+    private final String name;
+
+    Function(String name) {
+      this.name = name;
+    }
+
+    static Function of(String name) {
+      for (Function function : values()) {
+        if (function.name.equals(name)) {
+          return function;
+        }
+      }
+      return null;
+    }
+
+    boolean isNumeric() {
+      return this == SUM || this == AVG || this == MIN || this == MAX;
+    }
+  }
+
+  /**
+   * A function, the column it applies to and the size of its window : the number of rows looked behind or
+   * ahead, or the number of rows aggregated, 0 for all the rows of the partition so far.
+   */
+  private static final class Spec {
+    private final String name;
+    private final Function function;
+    private final String column;
+    private final int size;
+
+    Spec(String name, Function function, String column, int size) {
+      this.name = name;
+      this.function = function;
+      this.column = column;
+      this.size = size;
+    }
+  }
+
+  /**
+   * State of the functions over the rows of a partition.
+   */
+  private static final class Partition {
+    // Number of the partition in the order the partitions were created.
+    private final long number;
+    private long rows;
+    private final Object[] states;
+    // Rows waiting for the values of the rows they lead to.
+    private final ArrayDeque<Row> pending = new ArrayDeque<>();
+
+    Partition(long number, Spec[] specs) {
+      this.number = number;
+      states = new Object[specs.length];
+      for (int i = 0; i < specs.length; ++i) {
+        Spec spec = specs[i];
+        if (spec.function == Function.LAG) {
+          states[i] = new Object[spec.size];
+        } else if (spec.function == Function.MIN || spec.function == Function.MAX) {
+          states[i] = new Extreme(spec.size, spec.function == Function.MIN);
+        } else if (spec.function != Function.ROW_NUMBER && spec.function != Function.LEAD) {
+          states[i] = new Frame(spec.size);
+        }
+      }
+    }
+  }
+
+  /**
+   * Count and sum of the values of the rows of a window, the values in a ring when the window is bounded.
+   */
+  private static final class Frame {
+    private final Object[] ring;
+    private final long[] longs;
+    private final double[] numbers;
+    private final boolean[] integral;
+    private long count;
+    private long fractional;
+    private long integers;
+    // Number of times the integer sum overflowed, less the number of times it underflowed. The integer sum is
+    // exact when it's 0, otherwise the sum of the doubles is returned, as the aggregate directive does.
+    private long carries;
+    private double sum;
+
+    Frame(int size) {
+      this.ring = size == 0 ? null : new Object[size];
+      this.longs = size == 0 ? null : new long[size];
+      this.numbers = size == 0 ? null : new double[size];
+      this.integral = size == 0 ? null : new boolean[size];
+    }
+
+    /**
+     * Adds the value of the row at a position, removing the value of the row that leaves the window.
+     */
+    void add(long position, Object value, long integer, double number, boolean isIntegral) {
+      if (ring != null) {
+        int slot = (int) (position % ring.length);
+        if (position >= ring.length && ring[slot] != null) {
+          count--;
+          if (integral[slot]) {
+            subtract(longs[slot]);
+          } else {
+            fractional--;
+          }
+          sum -= numbers[slot];
+        }
+        ring[slot] = value;
+        longs[slot] = integer;
+        numbers[slot] = number;
+        integral[slot] = isIntegral;
+      }
+      if (value != null) {
+        count++;
+        if (isIntegral) {
+          add(integer);
+        } else {
+          fractional++;
+        }
+        sum += number;
+      }
+    }
+
+    private void add(long integer) {
+      try {
+        integers = Math.addExact(integers, integer);
+      } catch (ArithmeticException e) {
+        integers += integer;
+        carries += integer < 0 ? -1 : 1;
+      }
+    }
+
+    private void subtract(long integer) {
+      try {
+        integers = Math.subtractExact(integers, integer);
+      } catch (ArithmeticException e) {
+        integers -= integer;
+        carries += integer < 0 ? 1 : -1;
+      }
+    }
+
+    Object sum() {
+      if (count == 0) {
+        return null;
+      }
+      return fractional == 0 && carries == 0 ? (Object) integers : (Object) sum;
+    }
+
+    Object avg() {
+      return count == 0 ? null : sum / count;
+    }
+  }
+
+  /**
+   * Minimum or maximum of the values of the rows of a window. When the window is bounded, the values that can
+   * still become the extreme are kept in a ring, in the order of the rows, the extreme at the head.
+   */
+  private static final class Extreme {
+    private final boolean min;
+    private final int size;
+    private final long[] positions;
+    private final Object[] values;
+    private final double[] numbers;
+    private int head;
+    private int length;
+
+    Extreme(int size, boolean min) {
+      this.min = min;
+      this.size = size;
+      int capacity = Math.max(size, 1);
+      this.positions = new long[capacity];
+      this.values = new Object[capacity];
+      this.numbers = new double[capacity];
+    }
+
+    void add(long position, Object value, double number) {
+      if (size > 0) {
+        while (length > 0 && positions[head] <= position - size) {
+          values[head] = null;
+          head = (head + 1) % positions.length;
+          length--;
+        }
+      }
+      if (value == null) {
+        return;
+      }
+      if (size == 0) {
+        if (length == 0 || (min ? number < numbers[head] : number > numbers[head])) {
+          values[head] = value;
+          numbers[head] = number;
+          length = 1;
+        }
+        return;
+      }
+      while (length > 0) {
+        int tail = (head + length - 1) % positions.length;
+        if (min ? numbers[tail] < number : numbers[tail] > number) {
+          break;
+        }
+        values[tail] = null;
+        length--;
+      }
+      int slot = (head + length) % positions.length;
+      positions[slot] = position;
+      values[slot] = value;
+      numbers[slot] = number;
+      length++;
+    }
+
+    Object value() {
+      return length == 0 ? null : values[head];
+    }
+  }
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("functions", TokenType.TEXT);
+    builder.define("partition", TokenType.COLUMN_NAME_LIST, Optional.TRUE);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    if (args.contains("partition")) {
+      List<String> names = ((ColumnNameList) args.value("partition")).value();
+      columns = names.toArray(new String[names.size()]);
+    }
+    List<Spec> specs = new ArrayList<>();
+    for (String text : split(((Text) args.value("functions")).value())) {
+      Matcher matcher = FUNCTION.matcher(text);
+      if (!matcher.matches()) {
+        throw new DirectiveParseException(
+          String.format("Invalid function '%s', expected '<name> = <function>(<column>[, <rows>])'.", text.trim()));
+      }
+      Function function = Function.of(matcher.group(2));
+      if (function == null) {
+        throw new DirectiveParseException(
+          String.format("Invalid function '%s' in '%s', expected row_number, lag, lead, count, sum, avg, min or "
+                          + "max.", matcher.group(2), text.trim()));
+      }
+      String column = matcher.group(3);
+      if ((column == null) != (function == Function.ROW_NUMBER)) {
+        throw new DirectiveParseException(
+          String.format("Function '%s' in '%s' %s.", function.name, text.trim(),
+                        column == null ? "requires a column" : "takes no column"));
+      }
+      int size;
+      try {
+        size = matcher.group(4) == null ? 0 : Integer.parseInt(matcher.group(4));
+      } catch (NumberFormatException e) {
+        size = -1;
+      }
+      if (function == Function.LAG || function == Function.LEAD) {
+        size = matcher.group(4) == null ? 1 : size;
+      }
+      if (size < 0 || (matcher.group(4) != null && size == 0)) {
+        throw new DirectiveParseException(
+          String.format("Invalid number of rows '%s' in '%s', expected a positive integer.", matcher.group(4),
+                        text.trim()));
+      }
+      if (function == Function.LEAD) {
+        lead = Math.max(lead, size);
+      }
+      specs.add(new Spec(matcher.group(1), function, column, size));
+    }
+    this.specs = specs.toArray(new Spec[specs.size()]);
+    this.values = new Object[this.specs.length];
+    this.integers = new long[this.specs.length];
+    this.numbers = new double[this.specs.length];
+    this.integral = new boolean[this.specs.length];
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    if (maxPartitions < 0) {
+      maxPartitions = maxPartitions(context);
+    }
+    List<Row> results = new ArrayList<>(rows.size());
+    for (Row row : rows) {
+      // The values are all checked before the state is changed, so that a row in error leaves no trace.
+      for (int i = 0; i < specs.length; ++i) {
+        Object value = specs[i].column == null ? null : row.getValue(specs[i].column);
+        values[i] = specs[i].function.isNumeric() ? number(specs[i], value, i) : value;
+      }
+      Object key = key(row);
+      Partition partition = partitions.get(key);
+      if (partition == null) {
+        if (partitions.size() >= maxPartitions) {
+          // The rows held by the partition used least recently are returned without the values they lead to.
+          Iterator<Partition> eldest = partitions.values().iterator();
+          results.addAll(eldest.next().pending);
+          eldest.remove();
+        }
+        partition = new Partition(created++, specs);
+        partitions.put(key, partition);
+      }
+      long position = partition.rows++;
+      for (int i = 0; i < specs.length; ++i) {
+        row.addOrSet(specs[i].name, apply(specs[i], partition.states[i], position, i));
+      }
+      if (lead == 0) {
+        results.add(row);
+        continue;
+      }
+      // The rows waiting are given the values of this one, the first is complete once this one has come.
+      int distance = partition.pending.size();
+      for (Row waiting : partition.pending) {
+        for (int i = 0; i < specs.length; ++i) {
+          if (specs[i].function == Function.LEAD && specs[i].size == distance) {
+            waiting.addOrSet(specs[i].name, values[i]);
+          }
+        }
+        distance--;
+      }
+      partition.pending.addLast(row);
+      if (partition.pending.size() > lead) {
+        results.add(partition.pending.removeFirst());
+      }
+    }
+    return results;
+  }
+
+  private static int maxPartitions(ExecutorContext context) throws DirectiveExecutionException {
+    String max = context == null || context.getProperties() == null ? null
+      : context.getProperties().get(PARTITIONS);
+    if (max == null || max.trim().isEmpty()) {
+      return DEFAULT_PARTITIONS;
+    }
+    try {
+      int partitions = Integer.parseInt(max.trim());
+      if (partitions > 0) {
+        return partitions;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below.
+    }
+    throw new DirectiveExecutionException(
+      String.format("Invalid value '%s' for property '%s', expected a positive number of partitions.", max,
+                    PARTITIONS));
+  }
+
+  @Override
+  public List<Row> flush(ExecutorContext context) {
+    // The rows held are returned in the order their partitions first came.
+    List<Partition> held = new ArrayList<>(partitions.values());
+    held.sort(Comparator.comparingLong(partition -> partition.number));
+    List<Row> rows = new ArrayList<>();
+    for (Partition partition : held) {
+      rows.addAll(partition.pending);
+    }
+    partitions.clear();
+    return rows;
+  }
+
+  @Override
+  public boolean isAccumulating() {
+    return lead > 0;
+  }
+
+  @Override
+  public void destroy() {
+    partitions.clear();
+  }
+
+  private Object apply(Spec spec, Object state, long position, int i) {
+    switch (spec.function) {
+      case ROW_NUMBER:
+        return position + 1;
+      case LAG:
+        Object[] ring = (Object[]) state;
+        int slot = (int) (position % ring.length);
+        Object lagging = position >= ring.length ? ring[slot] : null;
+        ring[slot] = values[i];
+        return lagging;
+      case LEAD:
+        return null;
+      case MIN:
+      case MAX:
+        Extreme extreme = (Extreme) state;
+        extreme.add(position, values[i], numbers[i]);
+        return extreme.value();
+      default:
+        Frame frame = (Frame) state;
+        if (spec.function == Function.COUNT) {
+          frame.add(position, values[i], 0, 0, true);
+          return frame.count;
+        }
+        frame.add(position, values[i], integers[i], numbers[i], integral[i]);
+        return spec.function == Function.SUM ? frame.sum() : frame.avg();
+    }
+  }
+
+  private Object key(Row row) {
+    if (columns.length == 0) {
+      return NULL;
+    } else if (columns.length == 1) {
+      Object value = row.getValue(columns[0]);
+      return value == null ? NULL : value;
+    }
+    Object[] key = new Object[columns.length];
+    for (int i = 0; i < columns.length; ++i) {
+      key[i] = row.getValue(columns[i]);
+    }
+    return Arrays.asList(key);
+  }
+
+  /**
+   * Splits the functions on the commas that are not between parentheses.
+   */
+  private static List<String> split(String text) {
+    List<String> parts = new ArrayList<>();
+    int depth = 0;
+    int start = 0;
+    for (int i = 0; i < text.length(); ++i) {
+      char c = text.charAt(i);
+      if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        parts.add(text.substring(start, i));
+        start = i + 1;
+      }
+    }
+    parts.add(text.substring(start));
+    return parts;
+  }
+
+  /**
+   * Parses the value of a numeric function into {@link #integers} and {@link #numbers}.
+   *
+   * @return the value, null if there is none.
+   */
+  private Object number(Spec spec, Object value, int i) throws ErrorRowException {
+    if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      integral[i] = true;
+      integers[i] = ((Number) value).longValue();
+      numbers[i] = integers[i];
+      return value;
+    } else if (value instanceof Number) {
+      integral[i] = false;
+      numbers[i] = ((Number) value).doubleValue();
+      return value;
+    } else if (value instanceof String && !((String) value).trim().isEmpty()) {
+      String text = ((String) value).trim();
+      try {
+        integers[i] = Long.parseLong(text);
+        numbers[i] = integers[i];
+        integral[i] = true;
+        return value;
+      } catch (NumberFormatException e) {
+        try {
+          numbers[i] = Double.parseDouble(text);
+          integral[i] = false;
+          return value;
+        } catch (NumberFormatException f) {
+          // Reported below.
+        }
+      }
+    } else if (value == null || value instanceof String) {
+      return null;
+    }
+    throw new ErrorRowException(
+      String.format("%s : Column '%s' has value '%s' that is not a number, it can't be used with function '%s'.",
+                    NAME, spec.column, value, spec.function.name), 2);
+  }
+}
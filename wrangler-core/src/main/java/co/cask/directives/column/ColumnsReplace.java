@@ -29,6 +29,7 @@ import co.cask.wrangler.api.annotations.Categories;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.SedExpression;
 import org.unix4j.Unix4j;
 import org.unix4j.builder.Unix4jCommandBuilder;
 
@@ -46,6 +47,7 @@ import java.util.List;
 public class ColumnsReplace implements Directive {
   public static final String NAME = "columns-replace";
   private String sed;
+  private SedExpression expression;
 
   @Override
   public UsageDefinition define() {
@@ -57,6 +59,14 @@ public class ColumnsReplace implements Directive {
   @Override
   public void initialize(Arguments args) throws DirectiveParseException {
     sed = ((Text) args.value("sed-expression")).value();
+    if (SedExpression.isSubstitute(sed)) {
+      try {
+        expression = SedExpression.compile(sed);
+      } catch (IllegalArgumentException e) {
+        // Not supported by the expression, unix4j reports the error if the script is invalid.
+        expression = null;
+      }
+    }
   }
 
   @Override
@@ -69,6 +79,10 @@ public class ColumnsReplace implements Directive {
     for (Row row : rows) {
       for (int i = 0; i < row.length(); ++i) {
         String name = row.getColumn(i);
+        if (expression != null) {
+          row.setColumn(i, expression.replace(name));
+          continue;
+        }
         try {
           Unix4jCommandBuilder builder = Unix4j.echo(name).sed(sed);
           row.setColumn(i, builder.toStringResult());
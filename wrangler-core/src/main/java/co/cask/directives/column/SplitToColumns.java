@@ -30,12 +30,16 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.Regex;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A directive for splitting the columns into multiple columns.
+ *
+ * <p>The regex is run by the engine selected by the pipeline, see {@link Regex}.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name(SplitToColumns.NAME)
@@ -46,8 +50,8 @@ public class SplitToColumns implements Directive {
   // Column on which to apply mask.
   private String column;
 
-  // Type of mask.
-  private String regex;
+  // Regex to split on.
+  private Regex regex;
 
   @Override
   public UsageDefinition define() {
@@ -60,7 +64,14 @@ public class SplitToColumns implements Directive {
   @Override
   public void initialize(Arguments args) throws DirectiveParseException {
     column = ((ColumnName) args.value("column")).value();
-    regex = ((Text) args.value("regex")).value();
+    String value = ((Text) args.value("regex")).value();
+    try {
+      regex = Regex.compile(value);
+    } catch (PatternSyntaxException e) {
+      throw new DirectiveParseException(
+        String.format("Invalid regular expression '%s'. %s", value, e.getDescription())
+      );
+    }
   }
 
   @Override
@@ -71,13 +82,13 @@ public class SplitToColumns implements Directive {
   @Override
   public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
     List<Row> results = new ArrayList<>();
-
+    regex = regex.forContext(context);
     for (Row row : rows) {
       int idx = row.find(column);
       if (idx != -1) {
         Object object = row.getValue(idx);
         if (object instanceof String) {
-          String[] lines = ((String) object).split(regex);
+          String[] lines = regex.split((String) object, 0);
           int i = 1;
           for (String line : lines) {
             row.add(String.format("%s_%d", column, i), line);
@@ -29,9 +29,8 @@ import co.cask.wrangler.api.annotations.Categories;
 import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.DateTimes;
 
-import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.List;
 
@@ -49,7 +48,7 @@ public class DiffDate implements Directive {
   private String column2;
   private String destCol;
   // Timestamp now UTC
-  private final ZonedDateTime date = ZonedDateTime.now(ZoneId.ofOffset("UTC", ZoneOffset.UTC));
+  private final ZonedDateTime date = ZonedDateTime.now(DateTimes.UTC);
 
   @Override
   public UsageDefinition define() {
@@ -99,10 +98,6 @@ public class DiffDate implements Directive {
       throw new DirectiveExecutionException(toString() + " : '" +
                                               colName + "' column is not defined in the row.");
     }
-    Object o = row.getValue(idx);
-    if (o == null || !(o instanceof ZonedDateTime)) {
-      return null;
-    }
-    return (ZonedDateTime) o;
+    return DateTimes.toZonedDateTime(row.getValue(idx));
   }
 }
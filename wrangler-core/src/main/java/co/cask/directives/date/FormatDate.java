@@ -30,10 +30,8 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.DateTimes;
 
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -64,7 +62,11 @@ public class FormatDate implements Directive {
   public void initialize(Arguments args) throws DirectiveParseException {
     this.column = ((ColumnName) args.value("column")).value();
     this.format = ((Text) args.value("format")).value();
-    this.destinationFmt = DateTimeFormatter.ofPattern(this.format);
+    try {
+      this.destinationFmt = DateTimes.formatter(this.format, null);
+    } catch (IllegalArgumentException e) {
+      throw new DirectiveParseException(String.format("Invalid date format '%s'. %s", format, e.getMessage()));
+    }
   }
 
   @Override
@@ -88,12 +90,8 @@ public class FormatDate implements Directive {
       Object object = row.getValue(idx);
 
       if (object != null) {
-        ZonedDateTime zonedDateTime;
-        if (object instanceof LocalDate) {
-          zonedDateTime = ((LocalDate) object).atStartOfDay(ZoneId.ofOffset("UTC", ZoneOffset.UTC));
-        } else if (object instanceof ZonedDateTime) {
-          zonedDateTime = (ZonedDateTime) object;
-        } else {
+        ZonedDateTime zonedDateTime = DateTimes.toZonedDateTime(object);
+        if (zonedDateTime == null) {
           throw new DirectiveExecutionException(
             String.format("%s : Invalid type '%s' of column '%s'. Apply 'parse-as-date' directive first.", toString(),
                           object.getClass().getName(), column)
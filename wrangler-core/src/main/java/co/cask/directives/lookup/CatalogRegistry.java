@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.lookup;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the {@link CompactCatalog}s shared by all the directives of the JVM.
+ *
+ * <p>A catalog is loaded the first time it's asked for, from the {@code catalogs/<name>.catalog} resource when one
+ * is packaged, or else built from the entries read by its {@link Source}. The catalog file is written to a
+ * temporary file and mapped into memory, so catalogs take no heap, however large they are, and the pages of the
+ * file are shared by all the directives that look them up.</p>
+ */
+public final class CatalogRegistry {
+  private static final ConcurrentMap<String, CompactCatalog> CATALOGS = new ConcurrentHashMap<>();
+  private static final Object LOCK = new Object();
+
+  /**
+   * Reads the entries of a catalog when it isn't packaged as a catalog file.
+   */
+  public interface Source {
+    /**
+     * @return entries of the catalog, null if the catalog is not available.
+     */
+    Map<String, String> read() throws IOException;
+  }
+
+  private CatalogRegistry() {
+  }
+
+  /**
+   * Returns the catalog of the given name, loading it if it's not loaded yet.
+   *
+   * @param name of the catalog.
+   * @param source of the entries of the catalog, used if it's not packaged as a catalog file.
+   * @return the catalog, null if it's not available.
+   */
+  public static CompactCatalog get(String name, Source source) throws IOException {
+    CompactCatalog catalog = CATALOGS.get(name);
+    if (catalog != null) {
+      return catalog;
+    }
+    synchronized (LOCK) {
+      catalog = CATALOGS.get(name);
+      if (catalog == null) {
+        catalog = load(name, source);
+        if (catalog != null) {
+          CATALOGS.put(name, catalog);
+        }
+      }
+      return catalog;
+    }
+  }
+
+  private static CompactCatalog load(String name, Source source) throws IOException {
+    File file = File.createTempFile("catalog-" + name.replaceAll("[^a-zA-Z0-9_.-]", "_") + "-", ".catalog");
+    try {
+      InputStream in = CatalogRegistry.class.getClassLoader().getResourceAsStream("catalogs/" + name + ".catalog");
+      if (in != null) {
+        try (InputStream input = in; OutputStream out = new FileOutputStream(file)) {
+          ByteStreams.copy(input, out);
+        }
+      } else {
+        Map<String, String> entries = source.read();
+        if (entries == null) {
+          return null;
+        }
+        CompactCatalog.write(entries, file);
+      }
+      return CompactCatalog.open(file);
+    } finally {
+      // The mapping stays valid once the file is removed, where the file can't be removed it's removed on exit.
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.lookup;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A read-only catalog of string keys and values, kept in a memory-mapped file rather than on the heap.
+ *
+ * <p>The file holds a minimal perfect hash of the keys, built with hash and displace: the keys are hashed into
+ * buckets of a few keys, and each bucket gets a seed that places its keys into free slots, or the slot of its key
+ * when it has a single key. The slots point into a table of the keys and values, so a lookup hashes the key once,
+ * reads the seed of its bucket and compares the key at its slot. The values of the keys looked up last are kept
+ * in a small table indexed by the hash code of the key, so that the frequent keys are not decoded each time. Reads
+ * don't change the buffer, the catalog can be looked up from several threads.</p>
+ *
+ * <pre>
+ *   magic, version, salt, number of keys, number of buckets
+ *   seed of each bucket
+ *   offset of the entry of each slot
+ *   entries : length of the key, key, length of the value or -1 for null, value
+ * </pre>
+ */
+public final class CompactCatalog {
+  private static final int MAGIC = 0x57434154;
+  private static final int VERSION = 1;
+  private static final int HEADER = 24;
+  // Average number of keys in a bucket.
+  private static final int BUCKET_SIZE = 3;
+  // Seeds tried for a bucket before starting again with another salt.
+  private static final int MAX_SEED = 1 << 20;
+  private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+  // Most keys looked up last that are kept.
+  private static final int MAX_RECENT = 1 << 14;
+
+  private final ByteBuffer buffer;
+  private final long salt;
+  private final int size;
+  private final int buckets;
+  private final int offsets;
+  private final Recent[] recent;
+
+  /**
+   * A key looked up and its value, with final fields so that it can be shared between threads without locks.
+   */
+  private static final class Recent {
+    private final String key;
+    private final String value;
+
+    Recent(String key, String value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  private CompactCatalog(ByteBuffer buffer) throws IOException {
+    if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IOException("Not a catalog file, or a catalog file of another version.");
+    }
+    this.buffer = buffer;
+    this.salt = buffer.getLong(8);
+    this.size = buffer.getInt(16);
+    this.buckets = buffer.getInt(20);
+    this.offsets = HEADER + 4 * buckets;
+    this.recent = new Recent[Math.min(Integer.highestOneBit(Math.max(size, 1)) * 2, MAX_RECENT)];
+  }
+
+  /**
+   * Maps a catalog file into memory. The file is no longer needed once mapped, and can be removed.
+   *
+   * @param file written by {@link #write(Map, File)}.
+   * @return the catalog.
+   */
+  public static CompactCatalog open(File file) throws IOException {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new CompactCatalog(buffer);
+    }
+  }
+
+  /**
+   * Writes a catalog file.
+   *
+   * @param entries of the catalog, values can be null.
+   * @param file to write.
+   */
+  public static void write(Map<String, String> entries, File file) throws IOException {
+    int size = entries.size();
+    byte[][] keys = new byte[size][];
+    byte[][] values = new byte[size][];
+    int i = 0;
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      keys[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+      values[i] = entry.getValue() == null ? null : entry.getValue().getBytes(StandardCharsets.UTF_8);
+      i++;
+    }
+
+    int buckets = size / BUCKET_SIZE + 1;
+    int[] seeds = new int[buckets];
+    int[] slots = new int[size];
+    Random random = new Random(size);
+    long salt;
+    do {
+      salt = random.nextLong();
+    } while (!place(keys, salt, seeds, slots));
+
+    long offset = HEADER + 4L * buckets + 4L * size;
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(salt);
+      out.writeInt(size);
+      out.writeInt(buckets);
+      for (int seed : seeds) {
+        out.writeInt(seed);
+      }
+      for (int slot = 0; slot < size; ++slot) {
+        if (offset > Integer.MAX_VALUE) {
+          throw new IOException("Catalog is too large, it should be less than 2GB.");
+        }
+        out.writeInt((int) offset);
+        offset += 8 + keys[slots[slot]].length + (values[slots[slot]] == null ? 0 : values[slots[slot]].length);
+      }
+      for (int slot = 0; slot < size; ++slot) {
+        byte[] key = keys[slots[slot]];
+        byte[] value = values[slots[slot]];
+        out.writeInt(key.length);
+        out.write(key);
+        out.writeInt(value == null ? -1 : value.length);
+        if (value != null) {
+          out.write(value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the seeds of the buckets that place the keys in distinct slots.
+   *
+   * @param slots filled with the key of each slot.
+   * @return false if a bucket can't be placed with the given salt.
+   */
+  private static boolean place(byte[][] keys, long salt, int[] seeds, int[] slots) {
+    int size = keys.length;
+    int buckets = seeds.length;
+    long[] hashes = new long[size];
+    // Keys sorted by bucket, with the start of each bucket.
+    int[] starts = new int[buckets + 1];
+    for (int i = 0; i < size; ++i) {
+      hashes[i] = hash(keys[i], salt);
+      starts[bucket(hashes[i], buckets) + 1]++;
+    }
+    for (int b = 0; b < buckets; ++b) {
+      starts[b + 1] += starts[b];
+    }
+    int[] sorted = new int[size];
+    int[] next = starts.clone();
+    for (int i = 0; i < size; ++i) {
+      sorted[next[bucket(hashes[i], buckets)]++] = i;
+    }
+
+    // Larger buckets are placed first, while most slots are free.
+    int largest = 0;
+    for (int b = 0; b < buckets; ++b) {
+      largest = Math.max(largest, starts[b + 1] - starts[b]);
+    }
+    boolean[] taken = new boolean[size];
+    int[] candidates = new int[largest];
+    int free = 0;
+    Arrays.fill(seeds, 0);
+    for (int length = largest; length > 0; --length) {
+      for (int b = 0; b < buckets; ++b) {
+        int start = starts[b];
+        if (starts[b + 1] - start != length) {
+          continue;
+        }
+        if (length == 1) {
+          while (taken[free]) {
+            free++;
+          }
+          taken[free] = true;
+          slots[free] = sorted[start];
+          seeds[b] = -free - 1;
+          continue;
+        }
+        int seed = 1;
+        while (!fits(hashes, sorted, start, length, seed, taken, candidates)) {
+          if (++seed == MAX_SEED) {
+            return false;
+          }
+        }
+        for (int k = 0; k < length; ++k) {
+          taken[candidates[k]] = true;
+          slots[candidates[k]] = sorted[start + k];
+        }
+        seeds[b] = seed;
+      }
+    }
+    return true;
+  }
+
+  private static boolean fits(long[] hashes, int[] sorted, int start, int length, int seed, boolean[] taken,
+                              int[] candidates) {
+    for (int k = 0; k < length; ++k) {
+      int slot = slot(hashes[sorted[start + k]], seed, taken.length);
+      if (taken[slot]) {
+        return false;
+      }
+      for (int j = 0; j < k; ++j) {
+        if (candidates[j] == slot) {
+          return false;
+        }
+      }
+      candidates[k] = slot;
+    }
+    return true;
+  }
+
+  /**
+   * Looks up the value of a key.
+   *
+   * @param key to be looked up.
+   * @return the value, null if the key is not in the catalog or its value is null.
+   */
+  public String get(String key) {
+    if (size == 0) {
+      return null;
+    }
+    int hashCode = key.hashCode();
+    int index = (hashCode ^ (hashCode >>> 16)) & (recent.length - 1);
+    Recent cached = recent[index];
+    if (cached != null && cached.key.equals(key)) {
+      return cached.value;
+    }
+    String value = read(key);
+    recent[index] = new Recent(key, value);
+    return value;
+  }
+
+  private String read(String key) {
+    byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+    long hash = hash(bytes, salt);
+    int seed = buffer.getInt(HEADER + 4 * bucket(hash, buckets));
+    if (seed == 0) {
+      return null;
+    }
+    int slot = seed < 0 ? -seed - 1 : slot(hash, seed, size);
+    int offset = buffer.getInt(offsets + 4 * slot);
+    if (buffer.getInt(offset) != bytes.length) {
+      return null;
+    }
+    offset += 4;
+    for (byte b : bytes) {
+      if (buffer.get(offset++) != b) {
+        return null;
+      }
+    }
+    int length = buffer.getInt(offset);
+    if (length < 0) {
+      return null;
+    }
+    offset += 4;
+    byte[] value = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(value);
+    return new String(value, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return number of keys in the catalog.
+   */
+  public int size() {
+    return size;
+  }
+
+  private static int bucket(long hash, int buckets) {
+    return (int) ((hash >>> 33) % buckets);
+  }
+
+  private static int slot(long hash, int seed, int size) {
+    return (int) ((mix(hash ^ (seed * MULTIPLIER)) >>> 33) % size);
+  }
+
+  private static long hash(byte[] key, long salt) {
+    long hash = salt ^ (key.length * MULTIPLIER);
+    for (byte b : key) {
+      hash = (hash ^ (b & 0xff)) * 0x100000001B3L;
+    }
+    return mix(hash);
+  }
+
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB93053E11A85L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -33,13 +33,25 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An directive that performs a lookup into a Table Dataset and adds the row values into the record.
+ *
+ * <p>The looked up values are kept in a least recently used cache of {@link #CACHE_SIZE} keys, including the keys
+ * that are not in the table, for {@link #CACHE_EXPIRY} seconds after they were looked up. The keys of a batch of
+ * records that are not cached are looked up together, and the names of the columns added are built once for each
+ * column of the table.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name(TableLookup.NAME)
@@ -47,11 +59,37 @@ import java.util.Map;
 @Description("Uses the given column as a key to perform a lookup into the specified table.")
 public class TableLookup implements Directive {
   public static final String NAME = "table-lookup";
+  // Property for the number of keys cached, 0 to look up every key.
+  public static final String CACHE_SIZE = "lookup.cache.size";
+  // Property for the seconds the values looked up are cached, so that the changes to the table are seen.
+  public static final String CACHE_EXPIRY = "lookup.cache.expiry.seconds";
+  private static final int DEFAULT_CACHE_SIZE = 10000;
+  private static final double DEFAULT_CACHE_EXPIRY = 600;
+  private static final String[] NONE = new String[0];
   private String column;
   private String table;
 
   private boolean initialized;
   private co.cask.cdap.etl.api.lookup.TableLookup tableLookup;
+  private Cache<String, Values> cache;
+  // Names of the columns added, by the name of the column in the table.
+  private final Map<ByteBuffer, String> names = new HashMap<>();
+  private long hits;
+  private long lookups;
+
+  /**
+   * Columns and values added for a key, none when the key is not in the table.
+   */
+  private static final class Values {
+    private static final Values MISSING = new Values(NONE, NONE);
+    private final String[] columns;
+    private final String[] values;
+
+    Values(String[] columns, String[] values) {
+      this.columns = columns;
+      this.values = values;
+    }
+  }
 
   @Override
   public UsageDefinition define() {
@@ -89,29 +127,152 @@ public class TableLookup implements Directive {
       throw new DirectiveExecutionException(toString() + " : Lookup can be performed only on Tables.");
     }
     tableLookup = (co.cask.cdap.etl.api.lookup.TableLookup) lookup;
+    cache = createCache(context);
     initialized = true;
   }
 
   @Override
   public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
     ensureInitialized(context);
+    Map<String, Values> found = new HashMap<>();
+    Set<String> missed = new LinkedHashSet<>();
+    int keys = 0;
     for (Row row : rows) {
-      int idx = row.find(column);
-      if (idx == -1) {
+      String key = key(row);
+      if (key == null) {
         continue;
       }
-      Object object = row.getValue(idx);
-      if (!(object instanceof String)) {
-        throw new DirectiveExecutionException(
-          String.format("%s : Invalid type '%s' of column '%s'. Should be of type String.", toString(),
-                        object != null ? object.getClass().getName() : "null", column)
-        );
+      keys++;
+      if (!found.containsKey(key) && !missed.contains(key)) {
+        Values values = cache.getIfPresent(key);
+        if (values != null) {
+          found.put(key, values);
+        } else {
+          missed.add(key);
+        }
       }
-      co.cask.cdap.api.dataset.table.Row lookedUpRow = tableLookup.lookup((String) object);
-      for (Map.Entry<byte[], byte[]> entry : lookedUpRow.getColumns().entrySet()) {
-        row.add(column + "_" + Bytes.toString(entry.getKey()), Bytes.toString(entry.getValue()));
+    }
+    if (keys == 0) {
+      return rows;
+    }
+
+    long start = System.nanoTime();
+    if (!missed.isEmpty()) {
+      Map<String, co.cask.cdap.api.dataset.table.Row> lookedUp = missed.size() == 1
+        ? Collections.singletonMap(missed.iterator().next(), tableLookup.lookup(missed.iterator().next()))
+        : tableLookup.lookup(missed);
+      for (String key : missed) {
+        Values values = values(lookedUp.get(key));
+        found.put(key, values);
+        cache.put(key, values);
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+
+    for (Row row : rows) {
+      String key = key(row);
+      if (key == null) {
+        continue;
+      }
+      Values values = found.get(key);
+      for (int i = 0; i < values.columns.length; ++i) {
+        row.add(values.columns[i], values.values[i]);
+      }
+    }
+
+    // Keys repeated within the batch are looked up once, and count as hits.
+    hits += keys - missed.size();
+    lookups += keys;
+    if (context != null && context.getMetrics() != null) {
+      context.getMetrics().count(NAME + ".cache.hits", keys - missed.size());
+      context.getMetrics().count(NAME + ".cache.misses", missed.size());
+      context.getMetrics().gauge(NAME + ".cache.hit.ratio", hits * 100 / lookups);
+      if (!missed.isEmpty()) {
+        context.getMetrics().gauge(NAME + ".lookup.time", elapsed / missed.size());
       }
     }
     return rows;
   }
+
+  /**
+   * @return the key to look up for the row, null if the row doesn't have the column.
+   */
+  private String key(Row row) throws DirectiveExecutionException {
+    int idx = row.find(column);
+    if (idx == -1) {
+      return null;
+    }
+    Object object = row.getValue(idx);
+    if (!(object instanceof String)) {
+      throw new DirectiveExecutionException(
+        String.format("%s : Invalid type '%s' of column '%s'. Should be of type String.", toString(),
+                      object != null ? object.getClass().getName() : "null", column)
+      );
+    }
+    return (String) object;
+  }
+
+  private Values values(co.cask.cdap.api.dataset.table.Row lookedUp) {
+    Map<byte[], byte[]> columns = lookedUp == null ? null : lookedUp.getColumns();
+    if (columns == null || columns.isEmpty()) {
+      return Values.MISSING;
+    }
+    String[] names = new String[columns.size()];
+    String[] values = new String[columns.size()];
+    int i = 0;
+    for (Map.Entry<byte[], byte[]> entry : columns.entrySet()) {
+      names[i] = name(entry.getKey());
+      values[i] = Bytes.toString(entry.getValue());
+      i++;
+    }
+    return new Values(names, values);
+  }
+
+  private String name(byte[] qualifier) {
+    ByteBuffer key = ByteBuffer.wrap(qualifier);
+    String name = names.get(key);
+    if (name == null) {
+      name = column + "_" + Bytes.toString(qualifier);
+      names.put(key, name);
+    }
+    return name;
+  }
+
+  private static Cache<String, Values> createCache(ExecutorContext context) throws DirectiveExecutionException {
+    String value = property(context, CACHE_SIZE);
+    int size = DEFAULT_CACHE_SIZE;
+    if (value != null) {
+      try {
+        size = Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        size = -1;
+      }
+      if (size < 0) {
+        throw new DirectiveExecutionException(
+          String.format("Invalid value '%s' for property '%s', expected a number of keys.", value, CACHE_SIZE));
+      }
+    }
+    String expiry = property(context, CACHE_EXPIRY);
+    double seconds = DEFAULT_CACHE_EXPIRY;
+    if (expiry != null) {
+      try {
+        seconds = Double.parseDouble(expiry);
+      } catch (NumberFormatException e) {
+        seconds = -1;
+      }
+      if (!(seconds >= 0)) {
+        throw new DirectiveExecutionException(
+          String.format("Invalid value '%s' for property '%s', expected seconds.", expiry, CACHE_EXPIRY));
+      }
+    }
+    return CacheBuilder.newBuilder()
+      .maximumSize(size)
+      .expireAfterWrite((long) (seconds * TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS)
+      .build();
+  }
+
+  private static String property(ExecutorContext context, String name) {
+    String value = context == null || context.getProperties() == null ? null : context.getProperties().get(name);
+    return value == null || value.trim().isEmpty() ? null : value.trim();
+  }
 }
@@ -19,6 +19,7 @@ package co.cask.directives.parser;
 import co.cask.cdap.api.annotation.Description;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
+import co.cask.wrangler.api.Accumulator;
 import co.cask.wrangler.api.Arguments;
 import co.cask.wrangler.api.Directive;
 import co.cask.wrangler.api.DirectiveExecutionException;
@@ -35,13 +36,11 @@ import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
 import co.cask.wrangler.dq.DataType;
 import co.cask.wrangler.dq.TypeInference;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang3.StringEscapeUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -53,13 +52,23 @@ import java.util.Set;
 @Name("parse-as-csv")
 @Categories(categories = { "parser", "csv"})
 @Description("Parses a column as CSV (comma-separated values).")
-public class CsvParser implements Directive {
+public class CsvParser implements Directive, Accumulator {
+  /**
+   * Property of the pipeline with the most characters a multiline record can have.
+   */
+  public static final String MAX_RECORD = "csv.multiline.max.chars";
+  private static final int DEFAULT_MAX_RECORD = 1024 * 1024;
+
   private ColumnName columnArg;
   private Text delimiterArg;
   private Bool headerArg;
+  private Bool multilineArg;
+
+  // Tokenizer reused for parsing all the records.
+  private CsvTokenizer tokenizer;
 
-  // CSV format defines the configuration for CSV parser for parsing.
-  private CSVFormat format;
+  // Fields of the record being parsed, reused across records.
+  private final List<String> fields = new ArrayList<>();
 
   //
   private boolean hasHeader;
@@ -70,12 +79,28 @@ public class CsvParser implements Directive {
   // Header names.
   private List<String> headers = new ArrayList<>();
 
+  // Generated column names used when there is no header, they are created once and reused.
+  private final List<String> names = new ArrayList<>();
+
+  // Set to true when a record can span multiple consecutive rows.
+  private boolean multiline;
+
+  // Lines of a record whose quoted field has not yet been closed, carried over to the following rows.
+  private StringBuilder pending;
+
+  // Last of the rows held back with the pending lines.
+  private Row pendingRow;
+
+  // Most characters of a multiline record, read from the context on the first row.
+  private int maxRecord = -1;
+
   @Override
   public UsageDefinition define() {
     UsageDefinition.Builder builder = UsageDefinition.builder("parse-as-csv");
     builder.define("col", TokenType.COLUMN_NAME);
     builder.define("delimiter", TokenType.TEXT, Optional.TRUE);
     builder.define("header", TokenType.BOOLEAN, Optional.TRUE);
+    builder.define("multiline", TokenType.BOOLEAN, Optional.TRUE);
     return builder.build();
   }
 
@@ -96,17 +121,19 @@ public class CsvParser implements Directive {
       }
     }
 
-    this.format = CSVFormat.DEFAULT.withDelimiter(delimiter);
-    this.format.withIgnoreEmptyLines(true)
-      .withAllowMissingColumnNames(true)
-      .withIgnoreSurroundingSpaces(true)
-      .withRecordSeparator('\n');
+    this.tokenizer = new CsvTokenizer(delimiter);
 
     this.hasHeader = false;
     if (args.contains("header")) {
       headerArg = args.value("header");
       this.hasHeader = headerArg.value();
     }
+
+    this.multiline = false;
+    if (args.contains("multiline")) {
+      multilineArg = args.value("multiline");
+      this.multiline = multilineArg.value();
+    }
   }
 
   @Override
@@ -117,6 +144,12 @@ public class CsvParser implements Directive {
   /**
    * Parses a give column in a {@link Row} as a CSV Row.
    *
+   * <p>In multiline mode, a row that ends within a quoted field is held back and the rows following it
+   * are appended, separated by a newline, until the quoted field is closed. The record is then parsed
+   * into the last of these rows, and the rows that were held back are dropped. A record longer than the
+   * {@link #MAX_RECORD} property of the pipeline is sent to the error collector, as is a record still open at
+   * the end of the input.</p>
+   *
    * @param rows Input {@link Row} to be wrangled by this step.
    * @param context Specifies the context of the pipeline.
    * @return New Row containing multiple columns based on CSV parsing.
@@ -124,73 +157,160 @@ public class CsvParser implements Directive {
   @Override
   public List<Row> execute(List<Row> rows, ExecutorContext context)
     throws DirectiveExecutionException, ErrorRowException {
-
+    List<Row> results = new ArrayList<>(rows.size());
     for (Row row : rows) {
       int idx = row.find(columnArg.value());
       if (idx == -1) {
+        results.add(row);
         continue;
       }
       String line = (String) row.getValue(idx);
       if (line == null || line.isEmpty()) {
-        continue;
+        if (pending == null) {
+          results.add(row);
+          continue;
+        }
+        line = "";
       }
-      CSVParser parser = null;
+
+      if (multiline) {
+        boolean open = tokenizer.endsWithinQuotes(line, pending != null);
+        if (pending != null) {
+          pending.append('\n').append(line);
+          if (open) {
+            hold(row, context);
+            continue;
+          }
+          line = pending.toString();
+          pending = null;
+          pendingRow = null;
+          row.setValue(idx, line);
+        } else if (open) {
+          pending = new StringBuilder(line);
+          hold(row, context);
+          continue;
+        }
+      }
+
       try {
-        parser = CSVParser.parse(line, format);
-        List<CSVRecord> csvRecords = parser.getRecords();
-        for (CSVRecord csvRecord : csvRecords) {
-          if (!checkedHeader && hasHeader && isHeader(csvRecord)) {
-            for (int i = 0; i < csvRecord.size(); i++) {
-              headers.add(csvRecord.get(i).trim());
-            }
-            if (rows.size() > 0) {
-              return new ArrayList<>();
+        boolean header = false;
+        tokenizer.reset(line);
+        while (tokenizer.next(fields)) {
+          if (!checkedHeader && hasHeader && isHeader(fields)) {
+            for (String field : fields) {
+              headers.add(field.trim().intern());
             }
+            header = true;
           } else {
-            toRow(csvRecord, row);
+            toRow(fields, row);
           }
         }
+        // Row holding the header is not passed on.
+        if (!header) {
+          results.add(row);
+        }
       } catch (IOException e) {
         // When there is error parsing data, the data is written to error.
         throw new ErrorRowException(e.getMessage(), 1);
       }
     }
-    return rows;
+    return results;
+  }
+
+  /**
+   * Holds a row back with the lines of a record that is not complete yet.
+   */
+  private void hold(Row row, ExecutorContext context) throws DirectiveExecutionException, ErrorRowException {
+    if (maxRecord < 0) {
+      maxRecord = maxRecord(context);
+    }
+    pendingRow = row;
+    if (pending.length() > maxRecord) {
+      pending = null;
+      pendingRow = null;
+      throw new ErrorRowException(
+        String.format("Quoted field of the record is not closed within %d characters.", maxRecord), 1);
+    }
+  }
+
+  private static int maxRecord(ExecutorContext context) throws DirectiveExecutionException {
+    String value = context == null || context.getProperties() == null ? null : context.getProperties().get(MAX_RECORD);
+    if (value == null || value.trim().isEmpty()) {
+      return DEFAULT_MAX_RECORD;
+    }
+    try {
+      int max = Integer.parseInt(value.trim());
+      if (max > 0) {
+        return max;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below.
+    }
+    throw new DirectiveExecutionException(
+      String.format("Invalid value '%s' for property '%s', expected a number of characters.", value, MAX_RECORD));
+  }
+
+  /**
+   * Reports the record still open at the end of the input, rows are otherwise returned as they are parsed.
+   */
+  @Override
+  public List<Row> flush(ExecutorContext context) throws ErrorRowException {
+    if (pending == null) {
+      return Collections.emptyList();
+    }
+    Row row = pendingRow;
+    row.addOrSet(columnArg.value(), pending.toString());
+    pending = null;
+    pendingRow = null;
+    throw new ErrorRowException("Quoted field of the record is not closed at the end of the input.", 1, row);
+  }
+
+  @Override
+  public boolean isAccumulating() {
+    // A multiline record is held back until the rows following it close it, or until the end of the input.
+    return multiline;
   }
 
   /**
-   * Converts a {@link CSVRecord} to {@link Row}.
+   * Adds the fields of a record to the {@link Row}.
    *
-   * @param record
-   * @return
+   * @param record fields of the record.
+   * @param row to which the fields are added.
    */
-  private void toRow(CSVRecord record, Row row) {
+  private void toRow(List<String> record, Row row) {
     int size = headers.size();
     for (int i = 0; i < record.size(); i++) {
       if (size > 0) {
         row.add(headers.get(i), record.get(i));
       } else {
-        row.add(columnArg.value() + "_" + (i + 1), record.get(i));
+        row.add(name(i), record.get(i));
       }
     }
   }
 
-  private boolean isHeader(CSVRecord record) {
+  private String name(int idx) {
+    while (names.size() <= idx) {
+      names.add(columnArg.value() + "_" + (names.size() + 1));
+    }
+    return names.get(idx);
+  }
+
+  private boolean isHeader(List<String> record) {
     checkedHeader = true;
+    // Cheap checks are done on all the fields before running the type inference on any.
     Set<String> columns = new HashSet<>();
-    for (int i = 0; i < record.size(); i++) {
-      String value = record.get(i);
+    for (String value : record) {
       if (value == null || value.trim().isEmpty()) {
         return false;
       }
-      DataType type = TypeInference.getDataType(value);
-      if (type != DataType.STRING) {
+      if (!columns.add(value)) {
         return false;
       }
-      if (columns.contains(value)) {
+    }
+    for (String value : record) {
+      DataType type = TypeInference.getDataType(value);
+      if (type != DataType.STRING) {
         return false;
-      } else {
-        columns.add(value);
       }
     }
     return true;
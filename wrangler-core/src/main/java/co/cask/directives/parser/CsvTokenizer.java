@@ -0,0 +1,215 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.directives.parser;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A reusable CSV tokenizer for single character delimiters and quotes.
+ *
+ * <p>The tokenizer follows the rules of {@link org.apache.commons.csv.CSVFormat#DEFAULT} : records
+ * are separated by '\n', '\r' or "\r\n", empty lines are ignored, a quote starts an encapsulated
+ * field only when it's the first character of the field and a doubled quote within an encapsulated
+ * field is a literal quote. Lines that don't contain a quote are split without any copying
+ * other than the field values themselves.</p>
+ *
+ * <p>An instance is not thread-safe, it's expected to be owned by a single directive.</p>
+ */
+public final class CsvTokenizer {
+  private static final char CR = '\r';
+  private static final char LF = '\n';
+
+  // States used when checking if a line ends within quotes.
+  private static final int FIELD_START = 0;
+  private static final int UNQUOTED = 1;
+  private static final int QUOTED = 2;
+  private static final int CLOSED = 3;
+
+  private final char delimiter;
+  private final char quote;
+
+  // Buffer used for encapsulated fields that contain doubled quotes.
+  private final StringBuilder buffer = new StringBuilder();
+
+  // Line being tokenized and the current position within it.
+  private String line;
+  private int length;
+  private int pos;
+  private boolean quoted;
+
+  public CsvTokenizer(char delimiter) {
+    this(delimiter, '"');
+  }
+
+  public CsvTokenizer(char delimiter, char quote) {
+    this.delimiter = delimiter;
+    this.quote = quote;
+  }
+
+  /**
+   * Resets the tokenizer to start tokenizing the line specified.
+   *
+   * @param line to be tokenized, can contain more than one record.
+   */
+  public void reset(String line) {
+    this.line = line;
+    this.length = line.length();
+    this.pos = 0;
+    this.quoted = line.indexOf(quote) != -1;
+  }
+
+  /**
+   * Tokenizes the next record of the line.
+   *
+   * @param fields list to which the fields of the record are added, it's cleared before adding.
+   * @return true if a record was read, false if there are no more records in the line.
+   * @throws IOException thrown when an encapsulated field is not terminated properly.
+   */
+  public boolean next(List<String> fields) throws IOException {
+    fields.clear();
+    // Empty lines are skipped.
+    while (pos < length && isEndOfLine(line.charAt(pos))) {
+      pos++;
+    }
+    if (pos >= length) {
+      return false;
+    }
+
+    while (true) {
+      if (quoted && pos < length && line.charAt(pos) == quote) {
+        fields.add(encapsulated());
+      } else {
+        int start = pos;
+        while (pos < length) {
+          char ch = line.charAt(pos);
+          if (ch == delimiter || isEndOfLine(ch)) {
+            break;
+          }
+          pos++;
+        }
+        fields.add(line.substring(start, pos));
+      }
+
+      if (pos >= length) {
+        return true;
+      }
+      char ch = line.charAt(pos++);
+      if (ch != delimiter) {
+        // End of record, "\r\n" is consumed as a single separator.
+        if (ch == CR && pos < length && line.charAt(pos) == LF) {
+          pos++;
+        }
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Checks if the line ends within a quoted field, that is the record continues on the next line.
+   *
+   * @param line to be checked.
+   * @param withinQuotes true if the line starts within a quoted field that was opened on a previous line.
+   * @return true if the line ends within a quoted field, false otherwise.
+   */
+  public boolean endsWithinQuotes(String line, boolean withinQuotes) {
+    if (!withinQuotes && line.indexOf(quote) == -1) {
+      return false;
+    }
+    int size = line.length();
+    int state = withinQuotes ? QUOTED : FIELD_START;
+    for (int i = 0; i < size; ++i) {
+      char ch = line.charAt(i);
+      switch (state) {
+        case FIELD_START:
+          if (ch == quote) {
+            state = QUOTED;
+          } else if (ch != delimiter && !isEndOfLine(ch)) {
+            state = UNQUOTED;
+          }
+          break;
+
+        case QUOTED:
+          if (ch == quote) {
+            if (i + 1 < size && line.charAt(i + 1) == quote) {
+              i++;
+            } else {
+              state = CLOSED;
+            }
+          }
+          break;
+
+        default:
+          if (ch == delimiter || isEndOfLine(ch)) {
+            state = FIELD_START;
+          }
+          break;
+      }
+    }
+    return state == QUOTED;
+  }
+
+  /**
+   * Reads an encapsulated field, the current position is at the opening quote. On return the position
+   * is at the delimiter or end of line that follows the closing quote.
+   */
+  private String encapsulated() throws IOException {
+    int start = pos + 1;
+    int segment = start;
+    boolean escaped = false;
+    String value;
+    while (true) {
+      int end = line.indexOf(quote, segment);
+      if (end == -1) {
+        throw new IOException("EOF reached before encapsulated token finished");
+      }
+      if (end + 1 < length && line.charAt(end + 1) == quote) {
+        if (!escaped) {
+          buffer.setLength(0);
+          escaped = true;
+        }
+        buffer.append(line, segment, end + 1);
+        segment = end + 2;
+        continue;
+      }
+      if (escaped) {
+        value = buffer.append(line, segment, end).toString();
+      } else {
+        value = line.substring(start, end);
+      }
+      pos = end + 1;
+      break;
+    }
+
+    // Only whitespaces are allowed between the closing quote and the delimiter.
+    while (pos < length) {
+      char ch = line.charAt(pos);
+      if (ch == delimiter || isEndOfLine(ch)) {
+        break;
+      }
+      if (!Character.isWhitespace(ch)) {
+        throw new IOException("Invalid char between encapsulated token and delimiter");
+      }
+      pos++;
+    }
+    return value;
+  }
+
+  private static boolean isEndOfLine(char ch) {
+    return ch == LF || ch == CR;
+  }
+}
@@ -23,17 +23,24 @@ import co.cask.wrangler.api.Arguments;
 import co.cask.wrangler.api.Directive;
 import co.cask.wrangler.api.DirectiveExecutionException;
 import co.cask.wrangler.api.DirectiveParseException;
+import co.cask.wrangler.api.Executor;
 import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Fusable;
 import co.cask.wrangler.api.Row;
 import co.cask.wrangler.api.annotations.Categories;
 import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.ParseContext;
 import com.jayway.jsonpath.spi.json.GsonJsonProvider;
@@ -41,6 +48,7 @@ import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * A Json Path Extractor Stage for parsing the {@link Row} provided based on configuration.
@@ -49,13 +57,22 @@ import java.util.List;
 @Name("json-path")
 @Categories(categories = { "parser", "json"})
 @Description("Parses JSON elements using a DSL (a JSON path expression).")
-public class JsPath implements Directive {
+public class JsPath implements Directive, Fusable {
   public static final String NAME = "json-path";
+
+  // Compiled JSON paths, shared across all the directive instances.
+  private static final Cache<String, JsonPath> PATHS = CacheBuilder.newBuilder()
+    .maximumSize(1024)
+    .build();
+
   private String src;
-  private String dest;
-  private String path;
   private ParseContext parser;
 
+  // Destination columns and their compiled paths. More than one entry exists only when
+  // consecutive json-path directives on the same source column have been fused.
+  private final List<String> destinations = new ArrayList<>();
+  private final List<JsonPath> paths = new ArrayList<>();
+
   public static final Configuration GSON_CONFIGURATION = Configuration
     .builder()
     .mappingProvider(new GsonMappingProvider())
@@ -74,11 +91,69 @@ public class JsPath implements Directive {
   @Override
   public void initialize(Arguments args) throws DirectiveParseException {
     this.src = ((ColumnName) args.value("source")).value();
-    this.dest = ((ColumnName) args.value("destination")).value();
-    this.path = ((Text) args.value("json-path")).value();
+    this.destinations.add(((ColumnName) args.value("destination")).value());
+    this.paths.add(compile(((Text) args.value("json-path")).value()));
     this.parser = JsonPath.using(GSON_CONFIGURATION);
   }
 
+  /**
+   * Compiles the JSON path expression, reusing the compiled path if the same expression
+   * has already been compiled by any other directive instance.
+   *
+   * @param path JSON path expression to be compiled.
+   * @return compiled {@link JsonPath}.
+   */
+  private static JsonPath compile(String path) throws DirectiveParseException {
+    try {
+      return PATHS.get(path, () -> JsonPath.compile(path));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof InvalidPathException) {
+        throw new DirectiveParseException(
+          String.format("Invalid json path '%s'. %s", path, e.getCause().getMessage())
+        );
+      }
+      throw new DirectiveParseException(e.getMessage());
+    }
+  }
+
+  /**
+   * Fuses a json-path directive that reads the same source column into this one, so that the document is
+   * parsed once per row instead of once per path.
+   *
+   * <p>A directive that writes back into the source column ends the run, as the directives
+   * following it have to see the updated value.</p>
+   *
+   * @param next directive that follows this directive.
+   * @return a json-path directive extracting the paths of both directives, null if they can't be fused.
+   */
+  @Override
+  public Executor fuse(Executor next) {
+    if (!(next instanceof JsPath) || !canFuse((JsPath) next)) {
+      return null;
+    }
+    JsPath other = (JsPath) next;
+    JsPath fused = new JsPath();
+    fused.src = src;
+    fused.parser = parser;
+    fused.destinations.addAll(destinations);
+    fused.destinations.addAll(other.destinations);
+    fused.paths.addAll(paths);
+    fused.paths.addAll(other.paths);
+    return fused;
+  }
+
+  private boolean canFuse(JsPath other) {
+    if (!src.equalsIgnoreCase(other.src)) {
+      return false;
+    }
+    for (String destination : destinations) {
+      if (destination.equalsIgnoreCase(src)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public void destroy() {
     // no-op
@@ -90,7 +165,9 @@ public class JsPath implements Directive {
     for (Row row : rows) {
       Object value = row.getValue(src);
       if (value == null) {
-        row.add(dest, null);
+        for (String dest : destinations) {
+          row.add(dest, null);
+        }
         continue;
       }
 
@@ -103,15 +180,20 @@ public class JsPath implements Directive {
         );
       }
 
-      JsonElement element = parser.parse(value).read(path);
-      Object val = JsParser.getValue(element);
+      // Parse the document once and evaluate all the paths against it.
+      DocumentContext document = value instanceof String ? parser.parse((String) value) : parser.parse(value);
+      for (int i = 0; i < paths.size(); ++i) {
+        JsonElement element = document.read(paths.get(i));
+        Object val = JsParser.getValue(element);
 
-      // If destination is already present add it, else set the value.
-      int pos = row.find(dest);
-      if (pos == -1) {
-        row.add(dest, val);
-      } else {
-        row.setValue(pos, val);
+        // If destination is already present add it, else set the value.
+        String dest = destinations.get(i);
+        int pos = row.find(dest);
+        if (pos == -1) {
+          row.add(dest, val);
+        } else {
+          row.setValue(pos, val);
+        }
       }
       results.add(row);
     }
@@ -34,26 +34,19 @@ import co.cask.wrangler.api.parser.Identifier;
 import co.cask.wrangler.api.parser.Numeric;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
-import co.cask.wrangler.clients.RestClientException;
+import co.cask.wrangler.clients.SchemaCache;
 import co.cask.wrangler.clients.SchemaRegistryClient;
 import co.cask.wrangler.codec.BinaryAvroDecoder;
 import co.cask.wrangler.codec.Decoder;
 import co.cask.wrangler.codec.DecoderException;
 import co.cask.wrangler.codec.JsonAvroDecoder;
 import com.github.rholder.retry.RetryException;
-import com.github.rholder.retry.Retryer;
-import com.github.rholder.retry.RetryerBuilder;
-import com.github.rholder.retry.StopStrategies;
-import com.github.rholder.retry.WaitStrategies;
 import com.google.common.base.Charsets;
 import org.apache.avro.Schema;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A step to parse AVRO json or binary format.
@@ -64,13 +57,18 @@ import java.util.concurrent.TimeUnit;
 @Description("Parses column as AVRO generic record.")
 public class ParseAvro implements Directive {
   public static final String NAME = "parse-as-avro";
+
+  // Schemas retrieved from the schema registry, shared by all the directive instances.
+  private static final SchemaCache<Schema> SCHEMAS =
+    new SchemaCache<>(bytes -> new Schema.Parser().parse(Bytes.toString(bytes)));
+
   private String column;
   private String schemaId;
   private String type;
   private long version;
+  private String url;
+  private Schema schema;
   private Decoder<Row> decoder;
-  private boolean decoderInitialized = false;
-  private SchemaRegistryClient client;
 
   @Override
   public UsageDefinition define() {
@@ -107,53 +105,32 @@ public class ParseAvro implements Directive {
     throws DirectiveExecutionException, ErrorRowException {
     List<Row> results = new ArrayList<>();
 
-    if (!decoderInitialized) {
-      // Retryer callable, that allows this step attempt to connect to schema registry service
-      // before giving up.
-      Callable<Decoder<Row>> decoderCallable = () -> {
-        client = SchemaRegistryClient.getInstance(context);
-        byte[] bytes;
-        if (version != -1) {
-          bytes = client.getSchema(context.getNamespace(), schemaId, version);
-        } else {
-          bytes = client.getSchema(context.getNamespace(), schemaId);
-        }
-        Schema.Parser parser = new Schema.Parser();
-        Schema schema = parser.parse(Bytes.toString(bytes));
-        if ("json".equalsIgnoreCase(type)) {
-          return new JsonAvroDecoder(schema);
-        } else if ("binary".equalsIgnoreCase(type)) {
-          return new BinaryAvroDecoder(schema);
-        }
-        return null;
-      };
-
-      // Retryer that retries when there is connection issue or any request / response
-      // issue. It would exponentially back-off till wait time of 10 seconds is reached
-      // for 5 attempts.
-      Retryer<Decoder<Row>> retryer = RetryerBuilder.<Decoder<Row>>newBuilder()
-        .retryIfExceptionOfType(IOException.class)
-        .retryIfExceptionOfType(RestClientException.class)
-        .withWaitStrategy(WaitStrategies.exponentialWait(10, TimeUnit.SECONDS))
-        .withStopStrategy(StopStrategies.stopAfterAttempt(5))
-        .build();
+    if (url == null) {
+      url = SchemaRegistryClient.getInstance(context).getBaseUrl();
+    }
 
-      try {
-        decoder = retryer.call(decoderCallable);
-        if (decoder != null) {
-          decoderInitialized = true;
-        } else {
-          throw new DirectiveExecutionException("Unsupported decoder types. Supports only 'json' or 'binary'");
-        }
-      } catch (ExecutionException e) {
-        throw new DirectiveExecutionException(
-          String.format("Unable to retrieve schema from schema registry. %s", e.getCause())
-        );
-      } catch (RetryException e) {
+    Schema current;
+    try {
+      current = SCHEMAS.get(url, context.getNamespace(), schemaId, version);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RetryException) {
         throw new DirectiveExecutionException(
           String.format("Issue in retrieving schema from schema registry. %s", e.getCause())
         );
       }
+      throw new DirectiveExecutionException(
+        String.format("Unable to retrieve schema from schema registry. %s", e.getCause())
+      );
+    }
+
+    // Decoder is created again only when the latest version of the schema has changed.
+    if (current != schema) {
+      if ("json".equalsIgnoreCase(type)) {
+        decoder = new JsonAvroDecoder(current);
+      } else {
+        decoder = new BinaryAvroDecoder(current);
+      }
+      schema = current;
     }
 
     try {
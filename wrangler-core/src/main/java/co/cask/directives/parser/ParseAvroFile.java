@@ -24,47 +24,70 @@ import co.cask.wrangler.api.Directive;
 import co.cask.wrangler.api.DirectiveExecutionException;
 import co.cask.wrangler.api.DirectiveParseException;
 import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Optional;
 import co.cask.wrangler.api.Row;
 import co.cask.wrangler.api.annotations.Categories;
 import co.cask.wrangler.api.parser.ColumnName;
+import co.cask.wrangler.api.parser.Numeric;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
-import com.google.gson.Gson;
+import co.cask.wrangler.codec.AvroRowPlan;
 import org.apache.avro.Schema;
-import org.apache.avro.file.DataFileReader;
-import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.file.DataFileStream;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.util.Utf8;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A step to parse AVRO File.
+ *
+ * <p>The data file is read block by block. Records of a block are decoded into a single reused
+ * {@link GenericRecord} and flattened into rows using column names computed once from the schema
+ * of the file. Blocks can optionally be decoded in parallel, rows are always returned in the order
+ * of the file.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name("parse-as-avro-file")
 @Categories(categories = { "parser", "avro"})
-@Description("parse-as-avro-file <column>.")
+@Description("parse-as-avro-file <column> [<threads>].")
 public class ParseAvroFile implements Directive {
   public static final String NAME = "parse-as-avro-file";
   private String column;
-  private Gson gson;
+  private int threads;
 
   @Override
   public UsageDefinition define() {
     UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
     builder.define("column", TokenType.COLUMN_NAME);
+    builder.define("threads", TokenType.NUMERIC, Optional.TRUE);
     return builder.build();
   }
 
   @Override
   public void initialize(Arguments args) throws DirectiveParseException {
     this.column = ((ColumnName) args.value("column")).value();
-    gson = new Gson();
+    if (args.contains("threads")) {
+      this.threads = ((Numeric) args.value("threads")).value().intValue();
+      if (threads < 1) {
+        throw new DirectiveParseException(
+          String.format("Number of threads '%d' should be greater than zero.", threads)
+        );
+      }
+    } else {
+      this.threads = 1;
+    }
   }
 
   @Override
@@ -80,25 +103,15 @@ public class ParseAvroFile implements Directive {
       if (idx != -1) {
         Object object = row.getValue(idx);
         if (object instanceof byte[]) {
-          DataFileReader<GenericRecord> reader = null;
-          try {
-            reader =
-              new DataFileReader<>(new SeekableByteArrayInput((byte[]) object), new GenericDatumReader<>());
-            while (reader.hasNext()) {
-              Row newRow = new Row();
-              add(reader.next(), newRow, null);
-              results.add(newRow);
+          try (DataFileStream<GenericRecord> stream =
+                 new DataFileStream<>(new ByteArrayInputStream((byte[]) object), new GenericDatumReader<>())) {
+            if (threads > 1) {
+              decodeParallel(stream, results);
+            } else {
+              decode(stream, results);
             }
           } catch (IOException e) {
             throw new DirectiveExecutionException(toString() + " : Failed to parse Avro data file." + e.getMessage());
-          } finally {
-            if (reader != null) {
-              try {
-                reader.close();
-              } catch (IOException e) {
-                // Nothing can be done.
-              }
-            }
           }
         } else {
           throw new DirectiveExecutionException(toString() + " : column " + column +
@@ -110,30 +123,81 @@ public class ParseAvroFile implements Directive {
   }
 
   /**
-   * Flattens the {@link GenericRecord}.
-   *
-   * @param genericRecord to be flattened.
-   * @param row to be flattened into
-   * @param name of the field to be flattened.
+   * Decodes the blocks of the data file one after the other, reusing the decoder and the record.
    */
-  private void add(GenericRecord genericRecord, Row row, String name) {
-    List<Schema.Field> fields = genericRecord.getSchema().getFields();
-    String colname;
-    for (Schema.Field field : fields) {
-      Object v = genericRecord.get(field.name());
-      if (name != null) {
-        colname = String.format("%s_%s", name, field.name());
-      } else {
-        colname = field.name();
+  private void decode(DataFileStream<GenericRecord> stream, List<Row> results) throws IOException {
+    BlockDecoder decoder = new BlockDecoder(stream.getSchema());
+    while (stream.hasNext()) {
+      long count = stream.getBlockCount();
+      ByteBuffer block = stream.nextBlock();
+      decoder.decode(block.array(), block.arrayOffset() + block.position(), block.remaining(), count, results);
+    }
+  }
+
+  /**
+   * Decodes the blocks of the data file in parallel. Block data is copied as the stream reuses it's buffer
+   * for the next block.
+   */
+  private void decodeParallel(DataFileStream<GenericRecord> stream, List<Row> results)
+    throws IOException, DirectiveExecutionException {
+    Schema schema = stream.getSchema();
+    AvroRowPlan plan = new AvroRowPlan(schema, true);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<Row>>> futures = new ArrayList<>();
+      while (stream.hasNext()) {
+        long count = stream.getBlockCount();
+        ByteBuffer block = stream.nextBlock();
+        int offset = block.arrayOffset() + block.position();
+        byte[] data = Arrays.copyOfRange(block.array(), offset, offset + block.remaining());
+        futures.add(executor.submit(() -> {
+          List<Row> rows = new ArrayList<>((int) count);
+          new BlockDecoder(schema, plan).decode(data, 0, data.length, count, rows);
+          return rows;
+        }));
+      }
+      for (Future<List<Row>> future : futures) {
+        results.addAll(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DirectiveExecutionException(toString() + " : Interrupted while parsing Avro data file.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
       }
-      if (v instanceof GenericRecord) {
-        add((GenericRecord) v, row, colname);
-      } else if (v instanceof Map || v instanceof List) {
-        row.add(colname, gson.toJson(v));
-      } else if (v instanceof Utf8) {
-        row.add(colname, v.toString());
-      } else {
-        row.add(colname, genericRecord.get(field.name()));
+      throw new DirectiveExecutionException(toString() + " : Failed to parse Avro data file." + cause.getMessage());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Decodes the records of a block into rows.
+   */
+  private static final class BlockDecoder {
+    private final GenericDatumReader<GenericRecord> reader;
+    private final AvroRowPlan plan;
+    private BinaryDecoder decoder;
+    private GenericRecord record;
+
+    BlockDecoder(Schema schema) {
+      this(schema, new AvroRowPlan(schema, true));
+    }
+
+    BlockDecoder(Schema schema, AvroRowPlan plan) {
+      this.reader = new GenericDatumReader<>(schema);
+      this.plan = plan;
+    }
+
+    void decode(byte[] data, int offset, int length, long count, List<Row> rows) throws IOException {
+      decoder = DecoderFactory.get().binaryDecoder(data, offset, length, decoder);
+      for (long i = 0; i < count; ++i) {
+        record = reader.read(record, decoder);
+        Row row = new Row();
+        plan.add(record, row);
+        rows.add(row);
       }
     }
   }
@@ -32,16 +32,36 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.dq.DateTimePattern;
 import com.joestelmach.natty.DateGroup;
 import com.joestelmach.natty.Parser;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.regex.Pattern;
 
 /**
  * A Executor to parse date.
+ *
+ * <p>Values are parsed with natty, a natural language date parser, which is expensive. As a column usually
+ * has only one or two formats, the formats of the values natty parses are learnt: the formats from the
+ * {@link DateTimePattern} catalog matching the value are checked against the date natty returned, and the
+ * ones that agree are used to parse the values that follow with a compiled {@link DateTimeFormatter}.
+ * Natty is still used when no learnt format matches a value, or when learnt formats that match a value
+ * disagree on the date, in which case the formats that disagree with natty are discarded.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name("parse-as-date")
@@ -50,8 +70,18 @@ import java.util.TimeZone;
   "automatically identifying the format (expensive in terms of time consumed).")
 public class ParseDate implements Directive {
   public static final String NAME = "parse-as-date";
+  // Number of values parsed by natty from which formats are learnt.
+  private static final int LEARNING_SAMPLES = 16;
+
   private String column;
   private TimeZone timezone;
+  private ZoneId zone;
+  private Parser parser;
+  private int samples;
+  // Formats checked so far, keyed by the format from the catalog.
+  private final Map<String, LearntFormat> formats = new LinkedHashMap<>();
+  // Formats that agreed with natty and never disagreed, in the order they were learnt.
+  private final List<LearntFormat> learnt = new ArrayList<>();
 
   @Override
   public UsageDefinition define() {
@@ -69,6 +99,7 @@ public class ParseDate implements Directive {
     } else {
       this.timezone = TimeZone.getTimeZone("UTC");
     }
+    this.zone = timezone.toZoneId();
   }
 
   @Override
@@ -89,13 +120,37 @@ public class ParseDate implements Directive {
           continue;
         }
         if (object instanceof String) {
-          Parser parser = new Parser(timezone);
-          List<DateGroup> groups = parser.parse((String) object);
+          String value = (String) object;
+          LearntFormat format = match(value);
+          if (format != null && format.parsed != null) {
+            row.add(String.format("%s_%d", column, 1), format.parsed);
+            count(context, "learnt");
+            count(context, format.metric);
+            continue;
+          }
+
+          // Parsing with natty is needed, either no learnt format matches or the learnt formats disagree.
+          count(context, "natty");
+          if (parser == null) {
+            parser = new Parser(timezone);
+          }
+          List<DateGroup> groups = parser.parse(value);
+          if (groups.size() == 1 && groups.get(0).getDates().size() == 1
+            && (samples < LEARNING_SAMPLES || format != null)) {
+            samples++;
+            ZonedDateTime date = learn(value, groups.get(0).getDates().get(0).toInstant().atZone(zone));
+            if (date != null) {
+              // Natty fills in the current time of day for date only values, the date of the format that agreed
+              // is used instead, so that the values parsed while learning are the same as the ones parsed later.
+              row.add(String.format("%s_%d", column, 1), date);
+              continue;
+            }
+          }
           int i = 1;
           for (DateGroup group : groups) {
             List<Date> dates = group.getDates();
             for (Date date : dates) {
-              row.add(String.format("%s_%d", column, i), date.toInstant().atZone(timezone.toZoneId()));
+              row.add(String.format("%s_%d", column, i), date.toInstant().atZone(zone));
             }
             i++;
           }
@@ -108,4 +163,143 @@ public class ParseDate implements Directive {
     }
     return rows;
   }
+
+  /**
+   * Counts a value parsed, either by a learnt format or by natty, and by which learnt format.
+   */
+  private void count(ExecutorContext context, String metric) {
+    if (context != null && context.getMetrics() != null) {
+      context.getMetrics().count(String.format("%s.%s", NAME, metric), 1);
+    }
+  }
+
+  /**
+   * Parses the value with the learnt formats matching it.
+   *
+   * @return null if no learnt format matches the value, otherwise a matching format. The date parsed is
+   * null if the formats matching the value disagree on the date.
+   */
+  private LearntFormat match(String value) {
+    LearntFormat first = null;
+    ZonedDateTime date = null;
+    for (LearntFormat format : learnt) {
+      if (!format.regex.matcher(value).matches()) {
+        continue;
+      }
+      ZonedDateTime parsed = format.parse(value, zone);
+      if (parsed == null) {
+        continue;
+      }
+      if (first == null) {
+        first = format;
+        date = parsed;
+      } else if (!parsed.equals(date)) {
+        first.parsed = null;
+        return first;
+      }
+    }
+    if (first != null) {
+      first.parsed = date;
+    }
+    return first;
+  }
+
+  /**
+   * Checks the formats of the catalog matching the value against the date natty parsed.
+   *
+   * @return the date parsed by the first format that agrees with natty, null if none agrees.
+   */
+  private ZonedDateTime learn(String value, ZonedDateTime expected) {
+    ZonedDateTime agreed = null;
+    for (Map.Entry<String, Pattern> entry : DateTimePattern.dateFormats(value).entrySet()) {
+      LearntFormat format = formats.get(entry.getKey());
+      if (format == null) {
+        format = LearntFormat.create(entry.getKey(), entry.getValue());
+        formats.put(entry.getKey(), format);
+      }
+      if (format.formatter == null || format.discarded) {
+        continue;
+      }
+      ZonedDateTime parsed = format.parse(value, zone);
+      if (parsed != null && format.agrees(parsed, expected)) {
+        if (agreed == null) {
+          agreed = parsed;
+        }
+        if (!format.confirmed) {
+          format.confirmed = true;
+          learnt.add(format);
+        }
+      } else {
+        format.discarded = true;
+        learnt.remove(format);
+      }
+    }
+    return agreed;
+  }
+
+  /**
+   * A date format of the catalog along with it's compiled formatter.
+   */
+  private static final class LearntFormat {
+    private final String pattern;
+    private final Pattern regex;
+    private final DateTimeFormatter formatter;
+    // Metric of the values parsed by the format, named after it's position in the catalog.
+    private final String metric;
+    private boolean confirmed;
+    private boolean discarded;
+    // Date parsed by the last match.
+    private ZonedDateTime parsed;
+
+    private LearntFormat(String pattern, Pattern regex, DateTimeFormatter formatter) {
+      this.pattern = pattern;
+      this.regex = regex;
+      this.formatter = formatter;
+      this.metric = String.format("format.%d", DateTimePattern.dateFormatIndex(pattern));
+    }
+
+    static LearntFormat create(String pattern, Pattern regex) {
+      DateTimeFormatter formatter;
+      try {
+        formatter = new DateTimeFormatterBuilder()
+          .parseCaseInsensitive()
+          .appendPattern(pattern)
+          .toFormatter(Locale.ENGLISH);
+      } catch (IllegalArgumentException e) {
+        // Pattern of the catalog not supported by the formatter, it's never used.
+        formatter = null;
+      }
+      return new LearntFormat(pattern, regex, formatter);
+    }
+
+    /**
+     * Parses the value, date only formats are parsed as the start of the day.
+     *
+     * @return the date parsed in the zone provided, null if the value can't be parsed.
+     */
+    ZonedDateTime parse(String value, ZoneId zone) {
+      try {
+        TemporalAccessor parsed = formatter.withZone(zone).parseBest(value, ZonedDateTime::from, LocalDate::from);
+        if (parsed instanceof ZonedDateTime) {
+          return ((ZonedDateTime) parsed).withZoneSameInstant(zone);
+        }
+        return ((LocalDate) parsed).atStartOfDay(zone);
+      } catch (DateTimeParseException e) {
+        return null;
+      }
+    }
+
+    /**
+     * Checks if the date parsed agrees with the date natty parsed. Natty fills in the current time for
+     * the fields that are not in the value, so only the date and the hours and minutes are compared.
+     */
+    boolean agrees(ZonedDateTime parsed, ZonedDateTime expected) {
+      if (!parsed.toLocalDate().equals(expected.toLocalDate())) {
+        return false;
+      }
+      ZonedDateTime minutes = parsed.truncatedTo(ChronoUnit.MINUTES);
+      return minutes.equals(parsed.truncatedTo(ChronoUnit.DAYS))
+        || minutes.toLocalTime().equals(expected.truncatedTo(ChronoUnit.MINUTES).toLocalTime());
+    }
+  }
 }
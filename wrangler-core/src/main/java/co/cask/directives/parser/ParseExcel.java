@@ -33,26 +33,40 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
-import com.google.common.io.Closeables;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.hssf.usermodel.HSSFDateUtil;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.SAXHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A step to parse Excel files.
+ *
+ * <p>The workbook is read with the XSSF event model : the sheet XML is streamed through a SAX parser and
+ * rows are emitted as they are read, instead of building the full workbook in memory.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name("parse-as-excel")
@@ -61,6 +75,10 @@ import java.util.TreeMap;
 public class ParseExcel implements Directive {
   public static final String NAME = "parse-as-excel";
   private static final Logger LOG = LoggerFactory.getLogger(ParseExcel.class);
+
+  // Sheet specification to parse all the sheets of the workbook in parallel.
+  private static final String ALL_SHEETS = "*";
+
   private String column;
   private String sheet;
   private boolean firstRowAsHeader = false;
@@ -96,7 +114,6 @@ public class ParseExcel implements Directive {
   public List<Row> execute(List<Row> records, final ExecutorContext context)
     throws DirectiveExecutionException, ErrorRowException {
     List<Row> results = new ArrayList<>();
-    ByteArrayInputStream input = null;
     try {
       for (Row record : records) {
         int idx = record.find(column);
@@ -115,116 +132,125 @@ public class ParseExcel implements Directive {
           }
 
           if (bytes != null) {
-            input = new ByteArrayInputStream(bytes);
-            XSSFWorkbook book = new XSSFWorkbook(input);
-            XSSFSheet excelsheet;
-            if (Types.isInteger(sheet)) {
-              excelsheet = book.getSheetAt(Integer.parseInt(sheet));
-            } else {
-              excelsheet = book.getSheet(sheet);
-            }
-
-            if (excelsheet == null) {
-              throw new DirectiveExecutionException(
-                String.format("Failed to extract sheet '%s' from the excel. Sheet '%s' does not exist.", sheet, sheet)
-              );
-            }
-
-            Map<Integer, String> columnNames = new TreeMap<>();
-            Iterator<org.apache.poi.ss.usermodel.Row> it = excelsheet.iterator();
-            int rows = 0;
-            while (it.hasNext()) {
-              org.apache.poi.ss.usermodel.Row row = it.next();
-              Iterator<Cell> cellIterator = row.cellIterator();
-              if (checkIfRowIsEmpty(row)) {
-                continue;
-              }
-
-              Row newRow = new Row();
-              newRow.add("fwd", rows);
-
-              while (cellIterator.hasNext()) {
-                Cell cell = cellIterator.next();
-                String name = columnName(cell.getAddress().getColumn());
-                if (firstRowAsHeader && rows > 0) {
-                  String value = columnNames.get(cell.getAddress().getColumn());
-                  if (value != null) {
-                    name = value;
-                  }
-                }
-                String value = "";
-                switch (cell.getCellTypeEnum()) {
-                  case STRING:
-                    newRow.add(name, cell.getStringCellValue());
-                    value = cell.getStringCellValue();
-                    break;
-
-                  case NUMERIC:
-                    if (HSSFDateUtil.isCellDateFormatted(cell)) {
-                      newRow.add(name, cell.getDateCellValue());
-                      value = cell.getDateCellValue().toString();
-                    } else {
-                      newRow.add(name, cell.getNumericCellValue());
-                      value = String.valueOf(cell.getNumericCellValue());
-                    }
-                    break;
-
-                  case BOOLEAN:
-                    newRow.add(name, cell.getBooleanCellValue());
-                    value = String.valueOf(cell.getBooleanCellValue());
-                    break;
-                }
-
-                if (rows == 0 && firstRowAsHeader) {
-                  columnNames.put(cell.getAddress().getColumn(), value);
-                }
-              }
-
-              if (firstRowAsHeader && rows == 0) {
-                rows++;
-                continue;
-              }
-              results.add(newRow);
-              rows++;
-            }
-
-            if (firstRowAsHeader) {
-              rows = rows - 1;
-            }
-
-            for (int i = rows - 1; i >= 0; --i) {
-              results.get(rows - i - 1).addOrSetAtIndex(1, "bkd", i); // fwd - 0, bkd - 1.
-            }
+            results.addAll(parse(bytes));
           }
         }
       }
     } catch (Exception e) {
       throw new ErrorRowException(e.getMessage(), 1);
-    } finally {
-      if (input != null) {
-        Closeables.closeQuietly(input);
-      }
     }
     return results;
   }
 
-  private boolean checkIfRowIsEmpty(org.apache.poi.ss.usermodel.Row row) {
-    if (row == null) {
-      return true;
+  /**
+   * Parses the sheets of the workbook selected by the sheet specification. When all the sheets are
+   * selected, each sheet is parsed on a separate thread and rows are returned in the order of sheets.
+   */
+  private List<Row> parse(byte[] bytes) throws Exception {
+    OPCPackage pkg = OPCPackage.open(new ByteArrayInputStream(bytes));
+    try {
+      XSSFReader reader = new XSSFReader(pkg);
+      ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+      boolean[] dateStyles = dateStyles(reader.getStylesTable());
+      boolean date1904 = isDate1904(reader);
+
+      boolean all = ALL_SHEETS.equals(sheet);
+      List<String> names = new ArrayList<>();
+      List<PackagePart> parts = new ArrayList<>();
+      XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+      int index = 0;
+      while (it.hasNext()) {
+        it.next().close();
+        String name = it.getSheetName();
+        if (all || (Types.isInteger(sheet) ? Integer.parseInt(sheet) == index : sheet.equals(name))) {
+          names.add(name);
+          parts.add(it.getSheetPart());
+        }
+        index++;
+      }
+
+      if (!all && parts.isEmpty()) {
+        throw new DirectiveExecutionException(
+          String.format("Failed to extract sheet '%s' from the excel. Sheet '%s' does not exist.", sheet, sheet)
+        );
+      }
+
+      if (parts.size() == 1) {
+        return parseSheet(parts.get(0), all ? names.get(0) : null, strings, dateStyles, date1904);
+      }
+
+      List<Row> results = new ArrayList<>();
+      ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parts.size(), Runtime.getRuntime().availableProcessors()))
+      );
+      try {
+        List<Future<List<Row>>> futures = new ArrayList<>();
+        for (int i = 0; i < parts.size(); ++i) {
+          PackagePart part = parts.get(i);
+          String name = names.get(i);
+          futures.add(executor.submit(() -> parseSheet(part, name, strings, dateStyles, date1904)));
+        }
+        for (Future<List<Row>> future : futures) {
+          results.addAll(future.get());
+        }
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      } finally {
+        executor.shutdownNow();
+      }
+      return results;
+    } finally {
+      // Package is only read, so it's closed without saving.
+      pkg.revert();
+    }
+  }
+
+  private List<Row> parseSheet(PackagePart part, String name, ReadOnlySharedStringsTable strings,
+                               boolean[] dateStyles, boolean date1904) throws Exception {
+    SheetHandler handler = new SheetHandler(name, strings, dateStyles, date1904, firstRowAsHeader);
+    XMLReader parser = SAXHelper.newXMLReader();
+    parser.setContentHandler(handler);
+    try (InputStream input = part.getInputStream()) {
+      parser.parse(new InputSource(input));
     }
-    if (row.getLastCellNum() <= 0) {
-      return true;
+    return handler.getRows();
+  }
+
+  /**
+   * Determines for each of the cell styles in the workbook whether it's a date format, so that the
+   * {@link StylesTable} is not accessed while sheets are being parsed.
+   */
+  private static boolean[] dateStyles(StylesTable styles) {
+    if (styles == null) {
+      return new boolean[0];
     }
-    for (int cellNum = row.getFirstCellNum(); cellNum < row.getLastCellNum(); cellNum++) {
-      Cell cell = row.getCell(cellNum);
-      if (cell != null && cell.getCellTypeEnum() != CellType.BLANK && StringUtils.isNotBlank(cell.toString())) {
-        return false;
+    boolean[] dates = new boolean[styles.getNumCellStyles()];
+    for (int i = 0; i < dates.length; ++i) {
+      XSSFCellStyle style = styles.getStyleAt(i);
+      dates[i] = style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+    }
+    return dates;
+  }
+
+  private static boolean isDate1904(XSSFReader reader) throws Exception {
+    final boolean[] date1904 = new boolean[1];
+    XMLReader parser = SAXHelper.newXMLReader();
+    parser.setContentHandler(new DefaultHandler() {
+      @Override
+      public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        if ("workbookPr".equals(localName)) {
+          String value = attributes.getValue("date1904");
+          date1904[0] = "1".equals(value) || "true".equalsIgnoreCase(value);
+        }
       }
+    });
+    try (InputStream input = reader.getWorkbookData()) {
+      parser.parse(new InputSource(input));
     }
-    return true;
+    return date1904[0];
   }
 
-  private String columnName(int number) {
+  private static String columnName(int number) {
     final StringBuilder sb = new StringBuilder();
 
     int num = number;
@@ -235,4 +261,192 @@ public class ParseExcel implements Directive {
     }
     return sb.reverse().toString();
   }
+
+  /**
+   * SAX handler for a single sheet. Cells of a row are buffered until the end of the row, as empty rows
+   * are skipped, and a {@link Row} is emitted for every row with a non-blank cell.
+   *
+   * <p>Each row is created with the 'fwd' and 'bkd' columns as its first two columns, 'bkd' is filled
+   * in once the number of rows in the sheet is known so that no columns have to be shifted.</p>
+   */
+  private static final class SheetHandler extends DefaultHandler {
+    private final String sheet;
+    private final ReadOnlySharedStringsTable strings;
+    private final boolean[] dateStyles;
+    private final boolean date1904;
+    private final boolean firstRowAsHeader;
+
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<Integer, String> columnNames = new HashMap<>();
+
+    // Number of non-empty rows seen so far, including the header.
+    private int count;
+
+    // Cells of the current row.
+    private final List<Integer> cellColumns = new ArrayList<>();
+    private final List<Object> cellValues = new ArrayList<>();
+    private final List<String> cellTexts = new ArrayList<>();
+    private boolean empty;
+
+    // State of the current cell.
+    private final StringBuilder content = new StringBuilder();
+    private boolean collecting;
+    private int column;
+    private String type;
+    private int style;
+    private boolean formula;
+
+    SheetHandler(String sheet, ReadOnlySharedStringsTable strings, boolean[] dateStyles, boolean date1904,
+                 boolean firstRowAsHeader) {
+      this.sheet = sheet;
+      this.strings = strings;
+      this.dateStyles = dateStyles;
+      this.date1904 = date1904;
+      this.firstRowAsHeader = firstRowAsHeader;
+    }
+
+    List<Row> getRows() {
+      int size = rows.size();
+      for (int i = 0; i < size; ++i) {
+        rows.get(i).setValue(1, size - i - 1); // fwd - 0, bkd - 1.
+      }
+      return rows;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+      switch (localName) {
+        case "row":
+          cellColumns.clear();
+          cellValues.clear();
+          cellTexts.clear();
+          empty = true;
+          column = -1;
+          break;
+
+        case "c":
+          String reference = attributes.getValue("r");
+          column = reference == null ? column + 1 : new CellReference(reference).getCol();
+          type = attributes.getValue("t");
+          String styleIndex = attributes.getValue("s");
+          style = styleIndex == null ? 0 : Integer.parseInt(styleIndex);
+          formula = false;
+          content.setLength(0);
+          break;
+
+        case "v":
+        case "t":
+          collecting = true;
+          break;
+
+        case "f":
+          formula = true;
+          break;
+
+        default:
+          break;
+      }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      if (collecting) {
+        content.append(ch, start, length);
+      }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+      switch (localName) {
+        case "v":
+        case "t":
+          collecting = false;
+          break;
+
+        case "c":
+          endCell();
+          break;
+
+        case "row":
+          endRow();
+          break;
+
+        default:
+          break;
+      }
+    }
+
+    private void endCell() {
+      String raw = content.toString();
+      Object value = null;
+      String text = "";
+      if (formula) {
+        // Formula cells are not extracted.
+        empty = false;
+      } else if ("s".equals(type)) {
+        value = strings.getEntryAt(Integer.parseInt(raw.trim()));
+        text = (String) value;
+      } else if ("inlineStr".equals(type) || "str".equals(type)) {
+        value = raw;
+        text = raw;
+      } else if ("b".equals(type)) {
+        value = "1".equals(raw) || "true".equalsIgnoreCase(raw);
+        text = String.valueOf(value);
+      } else if ("e".equals(type)) {
+        // Error cells are not extracted.
+        empty = empty && raw.isEmpty();
+      } else if (!raw.isEmpty()) {
+        double number = Double.parseDouble(raw);
+        if (style < dateStyles.length && dateStyles[style] && DateUtil.isValidExcelDate(number)) {
+          value = DateUtil.getJavaDate(number, date1904);
+        } else {
+          value = number;
+        }
+        text = value.toString();
+      }
+      if (value != null && StringUtils.isNotBlank(text)) {
+        empty = false;
+      }
+      cellColumns.add(column);
+      cellValues.add(value);
+      cellTexts.add(text);
+    }
+
+    private void endRow() {
+      if (empty) {
+        return;
+      }
+
+      if (firstRowAsHeader && count == 0) {
+        for (int i = 0; i < cellColumns.size(); ++i) {
+          columnNames.put(cellColumns.get(i), cellTexts.get(i));
+        }
+        count++;
+        return;
+      }
+
+      Row row = new Row();
+      row.add("fwd", count);
+      row.add("bkd", null);
+      if (sheet != null) {
+        row.add("sheet", sheet);
+      }
+      for (int i = 0; i < cellColumns.size(); ++i) {
+        Object value = cellValues.get(i);
+        if (value == null) {
+          continue;
+        }
+        String name = columnName(cellColumns.get(i));
+        if (firstRowAsHeader) {
+          String header = columnNames.get(cellColumns.get(i));
+          if (header != null) {
+            name = header;
+          }
+        }
+        row.add(name, value);
+      }
+      rows.add(row);
+      count++;
+    }
+  }
 }
@@ -34,25 +34,19 @@ import co.cask.wrangler.api.parser.Numeric;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
-import co.cask.wrangler.clients.RestClientException;
+import co.cask.wrangler.clients.SchemaCache;
 import co.cask.wrangler.clients.SchemaRegistryClient;
 import co.cask.wrangler.codec.Decoder;
 import co.cask.wrangler.codec.DecoderException;
 import co.cask.wrangler.codec.ProtobufDecoderUsingDescriptor;
 import com.github.rholder.retry.RetryException;
-import com.github.rholder.retry.Retryer;
-import com.github.rholder.retry.RetryerBuilder;
-import com.github.rholder.retry.StopStrategies;
-import com.github.rholder.retry.WaitStrategies;
+import com.google.protobuf.Descriptors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 /**
  * A step to parse Protobuf encoded memory representations.
@@ -64,13 +58,18 @@ import java.util.concurrent.TimeUnit;
 public class ParseProtobuf implements Directive {
   public static final String NAME = "parse-as-protobuf";
   private static final Logger LOG = LoggerFactory.getLogger(ParseProtobuf.class);
+
+  // Descriptors retrieved from the schema registry, shared by all the directive instances.
+  private static final SchemaCache<Descriptors.FileDescriptor> DESCRIPTORS =
+    new SchemaCache<>(ProtobufDecoderUsingDescriptor::fileDescriptor);
+
   private String column;
   private String schemaId;
   private String recordName;
   private long version;
+  private String url;
+  private Descriptors.FileDescriptor fileDescriptor;
   private Decoder<Row> decoder;
-  private boolean decoderInitialized = false;
-  private SchemaRegistryClient client;
 
   @Override
   public UsageDefinition define() {
@@ -104,50 +103,34 @@ public class ParseProtobuf implements Directive {
     throws DirectiveExecutionException, ErrorRowException {
     List<Row> results = new ArrayList<>();
 
-    if (!decoderInitialized) {
-      // Retryer callable, that allows this step attempt to connect to schema registry service
-      // before giving up.
-      Callable<Decoder<Row>> decoderCallable = new Callable<Decoder<Row>>() {
-        @Override
-        public Decoder<Row> call() throws Exception {
-          client = SchemaRegistryClient.getInstance(context);
-          byte[] bytes;
-          if (version != -1) {
-            bytes = client.getSchema(context.getNamespace(), schemaId, version);
-          } else {
-            bytes = client.getSchema(context.getNamespace(), schemaId);
-          }
-
-          return new ProtobufDecoderUsingDescriptor(bytes, recordName);
-        }
-      };
-
-      // Retryer that retries when there is connection issue or any request / response
-      // issue. It would exponentially back-off till wait time of 10 seconds is reached
-      // for 5 attempts.
-      Retryer<Decoder<Row>> retryer = RetryerBuilder.<Decoder<Row>>newBuilder()
-        .retryIfExceptionOfType(IOException.class)
-        .retryIfExceptionOfType(RestClientException.class)
-        .withWaitStrategy(WaitStrategies.exponentialWait(10, TimeUnit.SECONDS))
-        .withStopStrategy(StopStrategies.stopAfterAttempt(5))
-        .build();
+    if (url == null) {
+      url = SchemaRegistryClient.getInstance(context).getBaseUrl();
+    }
 
-      try {
-        decoder = retryer.call(decoderCallable);
-        if (decoder != null) {
-          decoderInitialized = true;
-        } else {
-          throw new DirectiveExecutionException("Unsupported protobuf decoder type");
-        }
-      } catch (ExecutionException e) {
+    Descriptors.FileDescriptor current;
+    try {
+      current = DESCRIPTORS.get(url, context.getNamespace(), schemaId, version);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RetryException) {
         throw new DirectiveExecutionException(
-          String.format("Unable to retrieve protobuf descriptor from schema registry. %s", e.getCause())
+          String.format("Issue in retrieving protobuf descriptor from schema registry. %s", e.getCause())
         );
-      } catch (RetryException e) {
+      }
+      throw new DirectiveExecutionException(
+        String.format("Unable to retrieve protobuf descriptor from schema registry. %s", e.getCause())
+      );
+    }
+
+    // Decoder is created again only when the latest version of the descriptor has changed.
+    if (current != fileDescriptor) {
+      Descriptors.Descriptor descriptor = current.findMessageTypeByName(recordName);
+      if (descriptor == null) {
         throw new DirectiveExecutionException(
-          String.format("Issue in retrieving protobuf descriptor from schema registry. %s", e.getCause())
+          String.format("Record '%s' is not defined in protobuf descriptor '%s'.", recordName, schemaId)
         );
       }
+      decoder = new ProtobufDecoderUsingDescriptor(descriptor);
+      fileDescriptor = current;
     }
 
     try {
@@ -31,15 +31,12 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.DateTimes;
+import co.cask.wrangler.utils.SimpleDateParser;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.Date;
+import java.time.format.DateTimeParseException;
 import java.util.List;
-import java.util.TimeZone;
 
 /**
  * A Executor to parse date into {@link ZonedDateTime} object.
@@ -51,7 +48,7 @@ import java.util.TimeZone;
 public class ParseSimpleDate implements Directive {
   public static final String NAME = "parse-as-simple-date";
   private String column;
-  private SimpleDateFormat formatter;
+  private SimpleDateParser parser;
 
   @Override
   public UsageDefinition define() {
@@ -65,8 +62,11 @@ public class ParseSimpleDate implements Directive {
   public void initialize(Arguments args) throws DirectiveParseException {
     this.column = ((ColumnName) args.value("column")).value();
     String format = ((Text) args.value("format")).value();
-    this.formatter = new SimpleDateFormat(format);
-    formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+    try {
+      this.parser = DateTimes.simpleDateParser(format, DateTimes.UTC);
+    } catch (IllegalArgumentException e) {
+      throw new DirectiveParseException(String.format("Invalid date format '%s'. %s", format, e.getMessage()));
+    }
   }
 
   @Override
@@ -88,17 +88,10 @@ public class ParseSimpleDate implements Directive {
         }
         if (object instanceof String) {
           try {
-            // This implementation first creates Date object and then converts it into ZonedDateTime. This is because
-            // ZonedDateTime requires presence of Zone and Time components in the pattern and object to be parsed.
-            // For example if the pattern is yyyy-mm-dd, ZonedDateTime object can not be created and the call to
-            // ZonedDateTime.parse("2018-12-21", formatter) will throw DateTimeParseException
-            Date date = formatter.parse(object.toString());
-            ZonedDateTime zonedDateTime = ZonedDateTime.from(date.toInstant()
-                                                               .atZone(ZoneId.ofOffset("UTC", ZoneOffset.UTC)));
-            row.setValue(idx, zonedDateTime);
-          } catch (ParseException e) {
+            row.setValue(idx, parser.parse(object.toString()));
+          } catch (DateTimeParseException e) {
             throw new ErrorRowException(String.format("Failed to parse '%s' with pattern '%s'",
-                                                      object, formatter.toPattern()), 1);
+                                                      object, parser.getPattern()), 1);
           }
         } else {
           throw new ErrorRowException(
@@ -32,10 +32,8 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.DateTimes;
 
-import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.EnumSet;
 import java.util.List;
@@ -93,9 +91,7 @@ public class ParseTimestamp implements Directive {
           continue;
         }
 
-        long longValue = getLongValue(object);
-        ZonedDateTime zonedDateTime = getZonedDateTime(longValue, timeUnit, ZoneId.ofOffset("UTC", ZoneOffset.UTC));
-        row.setValue(idx, zonedDateTime);
+        row.setValue(idx, getZonedDateTime(object));
       }
     }
     return rows;
@@ -119,30 +115,21 @@ public class ParseTimestamp implements Directive {
     return unit;
   }
 
-  private long getLongValue(Object object) throws ErrorRowException {
+  private ZonedDateTime getZonedDateTime(Object object) throws ErrorRowException {
     String errorMsg = String.format("%s : Invalid type '%s' of column '%s'. Must be of type Long or String.",
                                     toString(), object.getClass().getName(), column);
     try {
       if (object instanceof Long) {
-        return  (long) object;
+        return DateTimes.ofEpoch((long) object, timeUnit, DateTimes.UTC);
       } else if (object instanceof String) {
-        return Long.parseLong((String) object);
+        return DateTimes.parseEpoch((String) object, timeUnit, DateTimes.UTC);
       }
     } catch (Exception e) {
-      // Exception while casting the object, do not handle it here, so that ErrorRowException is thrown.
+      // Exception while parsing the object, do not handle it here, so that ErrorRowException is thrown.
       errorMsg = String.format("%s : Invalid value for column '%s'. Must be of type Long or String representing long.",
                                toString(), column);
     }
 
     throw new ErrorRowException(errorMsg, 2);
   }
-
-  private ZonedDateTime getZonedDateTime(long ts, TimeUnit unit, ZoneId zoneId) {
-    long mod = unit.convert(1, TimeUnit.SECONDS);
-    int fraction = (int) (ts % mod);
-    long tsInSeconds = unit.toSeconds(ts);
-    // create an Instant with time in seconds and fraction which will be stored as nano seconds.
-    Instant instant = Instant.ofEpochSecond(tsInSeconds, unit.toNanos(fraction));
-    return ZonedDateTime.ofInstant(instant, zoneId);
-  }
 }
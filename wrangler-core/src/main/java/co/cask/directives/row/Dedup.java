@@ -0,0 +1,308 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.row;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.wrangler.api.Arguments;
+import co.cask.wrangler.api.Directive;
+import co.cask.wrangler.api.DirectiveExecutionException;
+import co.cask.wrangler.api.DirectiveParseException;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Optional;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.api.annotations.Categories;
+import co.cask.wrangler.api.parser.ColumnNameList;
+import co.cask.wrangler.api.parser.Identifier;
+import co.cask.wrangler.api.parser.Numeric;
+import co.cask.wrangler.api.parser.TokenType;
+import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.ValueCodec;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A directive that drops the rows with the same values of columns as a row seen before.
+ *
+ * <p>The values of the columns of a row are hashed to 128 bits. In the exact mode the hashes are kept in a
+ * {@link KeyHashSet}, off the heap, in the approximate mode they are added to a {@link ScalableBloomFilter},
+ * which takes a fraction of the memory but drops a unique row with the given probability. Both fail the
+ * pipeline rather than exceed the {@link #MEMORY} budget.</p>
+ *
+ * <p>The hashes are kept by the directive, for as long as the pipeline executes it. With the {@link #SCOPE}
+ * property set to {@code process}, they are kept by the process instead and shared by the directives at the
+ * same position of the recipe of the same stage of the same pipeline, so that a streaming pipeline that
+ * initializes its stages for each batch drops the rows seen in the previous batches. The directives sharing the
+ * hashes are counted, and the hashes are released once no directive has used them for the {@link #RETENTION}
+ * minutes.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name(Dedup.NAME)
+@Categories(categories = { "row", "data-quality"})
+@Description("Drops the rows with the same values of columns as a previous row, exactly or approximately.")
+public class Dedup implements Directive {
+  public static final String NAME = "dedup";
+
+  /**
+   * Property of the pipeline with the memory, in megabytes, the hashes of the rows seen can take.
+   */
+  public static final String MEMORY = "dedup.memory.mb";
+
+  /**
+   * Property of the pipeline with the scope of the hashes of the rows seen, {@code directive} or {@code process}.
+   */
+  public static final String SCOPE = "dedup.scope";
+
+  /**
+   * Property of the pipeline with the minutes the hashes of the process scope are kept once no directive uses them.
+   */
+  public static final String RETENTION = "dedup.scope.retention.minutes";
+
+  private static final double DEFAULT_MEMORY = 64;
+  private static final double DEFAULT_RETENTION = 60;
+  private static final double DEFAULT_FPP = 0.01;
+  private static final HashFunction HASH = Hashing.murmur3_128();
+  // Hashes shared by the directives of the stages with the process scope, guarded by the map.
+  private static final Map<String, Shared> SHARED = new HashMap<>();
+
+  private String[] columns;
+  private boolean approximate;
+  private double fpp = DEFAULT_FPP;
+  // Line and column of the directive in the recipe, which tell apart the directives of the same stage.
+  private String position;
+  private Seen seen;
+  // Key of the shared hashes the directive holds, null if it holds none.
+  private String key;
+  private final Buffer buffer = new Buffer();
+  private final DataOutputStream out = new DataOutputStream(buffer);
+
+  /**
+   * Hashes of the rows seen.
+   */
+  interface Seen {
+    /**
+     * Adds the hash of a row.
+     *
+     * @return true if the hash was not seen before.
+     * @throws IllegalStateException when there is no memory left for the hash.
+     */
+    boolean add(long high, long low);
+
+    /**
+     * @return the number of hashes added.
+     */
+    int size();
+
+    /**
+     * @return the memory taken, in bytes.
+     */
+    long bytes();
+  }
+
+  /**
+   * Hashes shared by the directives of the process scope, with the number of directives that use them.
+   */
+  private static final class Shared {
+    private final Seen seen;
+    private int references;
+    // When the last directive released them, and how long they are kept after, in nanoseconds.
+    private long released;
+    private long retention;
+
+    Shared(Seen seen) {
+      this.seen = seen;
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} whose bytes can be hashed without copying them.
+   */
+  private static final class Buffer extends ByteArrayOutputStream {
+    HashCode hash() {
+      return HASH.hashBytes(buf, 0, count);
+    }
+  }
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("columns", TokenType.COLUMN_NAME_LIST);
+    builder.define("mode", TokenType.IDENTIFIER, Optional.TRUE);
+    builder.define("fpp", TokenType.NUMERIC, Optional.TRUE);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    List<String> names = ((ColumnNameList) args.value("columns")).value();
+    columns = names.toArray(new String[names.size()]);
+    position = String.format("%d.%d", args.line(), args.column());
+    if (args.contains("mode")) {
+      String mode = ((Identifier) args.value("mode")).value();
+      if ("approximate".equalsIgnoreCase(mode)) {
+        approximate = true;
+      } else if (!"exact".equalsIgnoreCase(mode)) {
+        throw new DirectiveParseException(
+          String.format("Invalid mode '%s', expected 'exact' or 'approximate'.", mode));
+      }
+    }
+    if (args.contains("fpp")) {
+      if (!approximate) {
+        throw new DirectiveParseException("A rate of false positives can only be given in the approximate mode.");
+      }
+      fpp = ((Numeric) args.value("fpp")).value().doubleValue();
+      if (!(fpp > 0 && fpp < 1)) {
+        throw new DirectiveParseException(
+          String.format("Invalid rate of false positives '%s', expected a number between 0 and 1.", fpp));
+      }
+    }
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
+    if (seen == null) {
+      seen = seen(context);
+    }
+    List<Row> results = new ArrayList<>(rows.size());
+    synchronized (seen) {
+      for (Row row : rows) {
+        HashCode hash = hash(row);
+        byte[] bytes = hash.asBytes();
+        long high = Longs.fromBytes(bytes[15], bytes[14], bytes[13], bytes[12],
+                                    bytes[11], bytes[10], bytes[9], bytes[8]);
+        try {
+          if (seen.add(high, hash.asLong())) {
+            results.add(row);
+          }
+        } catch (IllegalStateException e) {
+          throw new DirectiveExecutionException(String.format("%s : %s", NAME, e.getMessage()));
+        }
+      }
+    }
+    return results;
+  }
+
+  @Override
+  public void destroy() {
+    if (key != null) {
+      synchronized (SHARED) {
+        Shared shared = SHARED.get(key);
+        if (shared != null && shared.seen == seen && --shared.references == 0) {
+          shared.released = System.nanoTime();
+        }
+        evict();
+      }
+      key = null;
+    }
+    seen = null;
+  }
+
+  private HashCode hash(Row row) throws DirectiveExecutionException {
+    buffer.reset();
+    try {
+      for (String column : columns) {
+        ValueCodec.write(out, row.getValue(column));
+      }
+    } catch (IOException e) {
+      throw new DirectiveExecutionException(
+        String.format("%s : Failed to encode the values of the row. %s", NAME, e.getMessage()), e);
+    }
+    return buffer.hash();
+  }
+
+  private Seen seen(ExecutorContext context) throws DirectiveExecutionException {
+    String memory = property(context, MEMORY);
+    double megabytes = DEFAULT_MEMORY;
+    if (memory != null) {
+      try {
+        megabytes = Double.parseDouble(memory);
+      } catch (NumberFormatException e) {
+        throw new DirectiveExecutionException(
+          String.format("Invalid value '%s' for property '%s', expected megabytes.", memory, MEMORY));
+      }
+    }
+    long budget = (long) (megabytes * 1024 * 1024);
+    String scope = property(context, SCOPE);
+    if (scope == null || "directive".equalsIgnoreCase(scope)) {
+      return create(budget);
+    } else if (!"process".equalsIgnoreCase(scope)) {
+      throw new DirectiveExecutionException(
+        String.format("Invalid value '%s' for property '%s', expected 'directive' or 'process'.", scope, SCOPE));
+    }
+    String retention = property(context, RETENTION);
+    double minutes = DEFAULT_RETENTION;
+    if (retention != null) {
+      try {
+        minutes = Double.parseDouble(retention);
+      } catch (NumberFormatException e) {
+        throw new DirectiveExecutionException(
+          String.format("Invalid value '%s' for property '%s', expected minutes.", retention, RETENTION));
+      }
+    }
+    String key = String.format("%s:%s:%s:%s:%s:%s:%s", context.getNamespace(), context.getPipelineName(),
+                               context.getContextName(), position, String.join(",", columns),
+                               approximate ? "approximate" : "exact", fpp);
+    synchronized (SHARED) {
+      evict();
+      Shared shared = SHARED.get(key);
+      if (shared == null) {
+        shared = new Shared(create(budget));
+        SHARED.put(key, shared);
+      }
+      shared.references++;
+      shared.retention = (long) (minutes * TimeUnit.MINUTES.toNanos(1));
+      this.key = key;
+      return shared.seen;
+    }
+  }
+
+  /**
+   * Removes the shared hashes that no directive used for their retention, called with the lock of the map held.
+   */
+  private static void evict() {
+    long now = System.nanoTime();
+    Iterator<Shared> iterator = SHARED.values().iterator();
+    while (iterator.hasNext()) {
+      Shared shared = iterator.next();
+      if (shared.references == 0 && now - shared.released >= shared.retention) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private Seen create(long budget) {
+    return approximate ? new ScalableBloomFilter(fpp, budget) : new KeyHashSet(budget);
+  }
+
+  private static String property(ExecutorContext context, String name) {
+    String value = context == null || context.getProperties() == null ? null : context.getProperties().get(name);
+    return value == null || value.trim().isEmpty() ? null : value.trim();
+  }
+}
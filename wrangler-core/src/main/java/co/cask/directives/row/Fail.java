@@ -30,9 +30,9 @@ import co.cask.wrangler.api.parser.Expression;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
 import co.cask.wrangler.expression.EL;
-import co.cask.wrangler.expression.ELContext;
 import co.cask.wrangler.expression.ELException;
 import co.cask.wrangler.expression.ELResult;
+import co.cask.wrangler.expression.RowContext;
 
 import java.util.List;
 
@@ -47,6 +47,8 @@ public class Fail implements Directive {
   public static final String NAME = "fail";
   private String condition;
   private final EL el = new EL(new EL.DefaultFunctions());
+  // Context the expression is evaluated in, reused across rows.
+  private RowContext ctx;
 
   @Override
   public UsageDefinition define() {
@@ -64,6 +66,7 @@ public class Fail implements Directive {
     condition = expression.value();
     try {
       el.compile(condition);
+      ctx = new RowContext(el.variables());
     } catch (ELException e) {
       throw new DirectiveParseException(e.getMessage());
     }
@@ -78,12 +81,8 @@ public class Fail implements Directive {
   public List<Row> execute(List<Row> rows, ExecutorContext context)
     throws DirectiveExecutionException {
     for (Row row : rows) {
-      // Move the fields from the row into the context.
-      ELContext ctx = new ELContext(context);
-      ctx.set("this", row);
-      for (String var : el.variables()) {
-        ctx.set(var, row.getValue(var));
-      }
+      // Variables of the expression are resolved against the row.
+      ctx.set(row, context);
 
       // Execution of the script / expression based on the row data
       // mapped into context.
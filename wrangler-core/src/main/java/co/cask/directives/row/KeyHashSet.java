@@ -0,0 +1,117 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.row;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A set of 128 bit hashes, kept off the heap in a direct buffer.
+ *
+ * <p>The hashes are stored in an open addressing table with linear probing, a pair of longs per slot, the pair
+ * of zeros marking an empty slot. The table doubles when it's three quarters full, as long as it stays within
+ * the budget. It is not thread-safe.</p>
+ */
+final class KeyHashSet implements Dedup.Seen {
+  private static final int SLOT_BYTES = 16;
+  private static final int MIN_CAPACITY = 1024;
+  // Largest table a direct buffer can hold.
+  private static final int MAX_CAPACITY = 1 << 26;
+
+  private final long budget;
+  private ByteBuffer slots;
+  private int mask;
+  private int size;
+
+  /**
+   * @param budget the table can take, in bytes.
+   */
+  KeyHashSet(long budget) {
+    this.budget = budget;
+    allocate(MIN_CAPACITY);
+  }
+
+  @Override
+  public boolean add(long high, long low) {
+    if (high == 0 && low == 0) {
+      low = 1;
+    }
+    if (size + 1 > (mask + 1) / 4 * 3) {
+      grow();
+    }
+    if (!insert(slots, mask, high, low)) {
+      return false;
+    }
+    size++;
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long bytes() {
+    return slots.capacity();
+  }
+
+  private void grow() {
+    int capacity = (mask + 1) * 2;
+    if (capacity > MAX_CAPACITY || (long) capacity * SLOT_BYTES > budget) {
+      throw new IllegalStateException(
+        String.format("The %d keys seen take all the %d MB of memory available, increase property '%s' or use " +
+                        "the approximate mode.", size, budget / (1024 * 1024), Dedup.MEMORY));
+    }
+    ByteBuffer previous = slots;
+    int previousMask = mask;
+    allocate(capacity);
+    for (int slot = 0; slot <= previousMask; ++slot) {
+      long high = previous.getLong(slot * SLOT_BYTES);
+      long low = previous.getLong(slot * SLOT_BYTES + 8);
+      if (high != 0 || low != 0) {
+        insert(slots, mask, high, low);
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(ByteOrder.nativeOrder());
+    mask = capacity - 1;
+  }
+
+  /**
+   * @return false if the table already has the hash.
+   */
+  private static boolean insert(ByteBuffer slots, int mask, long high, long low) {
+    int slot = (int) (low ^ (low >>> 32)) & mask;
+    while (true) {
+      int offset = slot * SLOT_BYTES;
+      long h = slots.getLong(offset);
+      long l = slots.getLong(offset + 8);
+      if (h == 0 && l == 0) {
+        slots.putLong(offset, high);
+        slots.putLong(offset + 8, low);
+        return true;
+      }
+      if (h == high && l == low) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+}
@@ -32,8 +32,8 @@ import co.cask.wrangler.api.parser.Expression;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
 import co.cask.wrangler.expression.EL;
-import co.cask.wrangler.expression.ELContext;
 import co.cask.wrangler.expression.ELException;
+import co.cask.wrangler.expression.RowContext;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -55,6 +55,8 @@ public class RecordConditionFilter implements Directive {
   public static final String NAME = "filter-row";
   private String condition;
   private final EL el = new EL(new EL.DefaultFunctions());
+  // Context the expression is evaluated in, reused across rows.
+  private RowContext ctx;
   private boolean isTrue;
 
   @Override
@@ -74,6 +76,7 @@ public class RecordConditionFilter implements Directive {
     condition = ((Expression) args.value("condition")).value();
     try {
       el.compile(condition);
+      ctx = new RowContext(el.variables(), true);
     } catch (ELException e) {
       throw new DirectiveParseException(e.getMessage());
     }
@@ -88,25 +91,8 @@ public class RecordConditionFilter implements Directive {
   public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
     List<Row> results = new ArrayList<>();
     for (Row row : rows) {
-      // Move the fields from the row into the context.
-      ELContext ctx = new ELContext(context);
-      for (String var : el.variables()) {
-        Object value = row.getValue(var);
-        String strValue;
-        // support numeric values by converting them to string
-        if (value instanceof Number) {
-          Number number = (Number) value;
-          strValue = number.toString();
-          ctx.set(var, strValue);
-        } else {
-          ctx.set(var, row.getValue(var));
-        }
-      }
-      if (context != null) {
-        for (String variable : context.getTransientStore().getVariables()) {
-          ctx.set(variable, context.getTransientStore().get(variable));
-        }
-      }
+      // Variables of the expression are resolved against the row.
+      ctx.set(row, context);
       try {
         Boolean result = el.execute(ctx).getBoolean();
         if (!isTrue) {
@@ -31,14 +31,17 @@ import co.cask.wrangler.api.parser.Identifier;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.Regex;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A Wrangle step for filtering rows that match the pattern specified on the column.
+ *
+ * <p>The regex is run by the engine selected by the pipeline, see {@link Regex}.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name(RecordRegexFilter.NAME)
@@ -47,7 +50,7 @@ import java.util.regex.Pattern;
 public class RecordRegexFilter implements Directive {
   public static final String NAME = "filter-by-regex";
   private String column;
-  private Pattern pattern;
+  private Regex pattern;
   private boolean matched = false;
 
   // filter-by-regex if-matched :column 'expression'
@@ -74,7 +77,13 @@ public class RecordRegexFilter implements Directive {
     column = ((ColumnName) args.value("column")).value();
     String regex = ((Text) args.value("regex")).value();
     if (!regex.equalsIgnoreCase("null") && !regex.isEmpty()) {
-      pattern = Pattern.compile(regex);
+      try {
+        pattern = Regex.compile(regex);
+      } catch (PatternSyntaxException e) {
+        throw new DirectiveParseException(
+          String.format("Invalid regular expression '%s'. %s", regex, e.getDescription())
+        );
+      }
     } else {
       pattern = null;
     }
@@ -91,6 +100,7 @@ public class RecordRegexFilter implements Directive {
     if (pattern == null) {
       return rows;
     }
+    pattern = pattern.forContext(context);
     for (Row row : rows) {
       int idx = row.find(column);
       if (idx != -1) {
@@ -122,7 +132,7 @@ public class RecordRegexFilter implements Directive {
   }
 
   private boolean matchPattern(String value) {
-    boolean matches = pattern.matcher(value).matches(); // pattern.matcher(value).matches();
+    boolean matches = pattern.matches(value);
     if (!matched) {
       matches = !matches;
     }
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.row;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Bloom filter of 128 bit hashes that grows with the number of hashes added, keeping the rate of false
+ * positives under a bound.
+ *
+ * <p>The filter is a series of Bloom filters, a new one is added when the last one holds as many hashes as it
+ * was sized for. Each holds twice as many hashes as the previous one, with half its rate of false positives,
+ * so that the rates of all of them add up to less than the bound. The bits of a hash are derived from its two
+ * halves. It is not thread-safe.</p>
+ */
+final class ScalableBloomFilter implements Dedup.Seen {
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final int MAX_CAPACITY = 1 << 30;
+  private static final double TIGHTENING = 0.5;
+
+  private final double fpp;
+  private final long budget;
+  private final List<Stage> stages = new ArrayList<>();
+  private long bytes;
+  private int size;
+
+  /**
+   * @param fpp bound of the rate of false positives, between 0 and 1.
+   * @param budget the filters can take, in bytes.
+   */
+  ScalableBloomFilter(double fpp, long budget) {
+    this.fpp = fpp;
+    this.budget = budget;
+  }
+
+  @Override
+  public boolean add(long high, long low) {
+    for (int i = stages.size() - 1; i >= 0; --i) {
+      if (stages.get(i).contains(high, low)) {
+        return false;
+      }
+    }
+    Stage last = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+    if (last == null || last.count >= last.capacity) {
+      int capacity = last == null ? INITIAL_CAPACITY : (int) Math.min(last.capacity * 2L, MAX_CAPACITY);
+      double rate = fpp * (1 - TIGHTENING) * Math.pow(TIGHTENING, stages.size());
+      // The size of the filter is checked before it's allocated, as it can be larger than the memory left.
+      if (!stages.isEmpty() && bytes + Stage.words(capacity, rate) * 8L > budget) {
+        throw new IllegalStateException(
+          String.format("The filter of the %d keys seen takes all the %d MB of memory available, increase " +
+                          "property '%s' or the rate of false positives.", size, budget / (1024 * 1024),
+                        Dedup.MEMORY));
+      }
+      last = new Stage(capacity, rate);
+      stages.add(last);
+      bytes += last.bytes();
+    }
+    last.add(high, low);
+    size++;
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public long bytes() {
+    return bytes;
+  }
+
+  /**
+   * A Bloom filter sized for a number of hashes and a rate of false positives.
+   */
+  private static final class Stage {
+    private final long[] bits;
+    private final long length;
+    private final int hashes;
+    private final int capacity;
+    private int count;
+
+    Stage(int capacity, double fpp) {
+      this.bits = new long[words(capacity, fpp)];
+      this.length = bits.length * 64L;
+      this.hashes = Math.max(1, (int) Math.round((double) this.length / capacity * Math.log(2)));
+      this.capacity = capacity;
+    }
+
+    /**
+     * @return the number of longs of the bits of a filter sized for a number of hashes and a rate.
+     */
+    static int words(int capacity, double fpp) {
+      long length = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+      return (int) ((length + 63) / 64);
+    }
+
+    long bytes() {
+      return bits.length * 8L;
+    }
+
+    void add(long high, long low) {
+      long combined = high;
+      for (int i = 0; i < hashes; ++i) {
+        long bit = (combined & Long.MAX_VALUE) % length;
+        bits[(int) (bit >>> 6)] |= 1L << bit;
+        combined += low;
+      }
+      count++;
+    }
+
+    boolean contains(long high, long low) {
+      long combined = high;
+      for (int i = 0; i < hashes; ++i) {
+        long bit = (combined & Long.MAX_VALUE) % length;
+        if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+          return false;
+        }
+        combined += low;
+      }
+      return true;
+    }
+  }
+}
@@ -34,9 +34,9 @@ import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
 import co.cask.wrangler.expression.EL;
-import co.cask.wrangler.expression.ELContext;
 import co.cask.wrangler.expression.ELException;
 import co.cask.wrangler.expression.ELResult;
+import co.cask.wrangler.expression.RowContext;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -57,6 +57,8 @@ import java.util.List;
 public class SendToError implements Directive {
   public static final String NAME = "send-to-error";
   private final EL el = new EL(new EL.DefaultFunctions());
+  // Context the expression is evaluated in, reused across rows.
+  private RowContext ctx;
   private String condition;
   private String metric = null;
   private String message = null;
@@ -75,6 +77,7 @@ public class SendToError implements Directive {
     condition = ((Expression) args.value("condition")).value();
     try {
       el.compile(condition);
+      ctx = new RowContext(el.variables());
     } catch (ELException e) {
       throw new DirectiveParseException(
         String.format("Invalid condition '%s'.", condition)
@@ -98,19 +101,8 @@ public class SendToError implements Directive {
     throws DirectiveExecutionException, ErrorRowException {
     List<Row> results = new ArrayList<>();
     for (Row row : rows) {
-      // Move the fields from the row into the context.
-      ELContext ctx = new ELContext(context);
-      ctx.set("this", row);
-      for (String var : el.variables()) {
-        ctx.set(var, row.getValue(var));
-      }
-
-      // Transient variables are added.
-      if (context != null) {
-        for (String variable : context.getTransientStore().getVariables()) {
-          ctx.set(variable, context.getTransientStore().get(variable));
-        }
-      }
+      // Variables of the expression are resolved against the row.
+      ctx.set(row, context);
 
       // Execution of the script / expression based on the row data
       // mapped into context.
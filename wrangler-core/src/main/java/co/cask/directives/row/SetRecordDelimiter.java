@@ -33,12 +33,16 @@ import co.cask.wrangler.api.parser.Numeric;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.Regex;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A directive for parsing a string into record using the record delimiter.
+ *
+ * <p>The delimiter is a regex run by the engine selected by the pipeline, see {@link Regex}.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name(SetRecordDelimiter.NAME)
@@ -47,7 +51,7 @@ import java.util.List;
 public class SetRecordDelimiter implements Directive {
   public static final String NAME = "set-record-delim";
   private String column;
-  private String delimiter;
+  private Regex delimiter;
   private int limit;
 
   @Override
@@ -62,7 +66,14 @@ public class SetRecordDelimiter implements Directive {
   @Override
   public void initialize(Arguments args) throws DirectiveParseException {
     column = ((ColumnName) args.value("column")).value();
-    delimiter = ((Text) args.value("delimiter")).value();
+    String value = ((Text) args.value("delimiter")).value();
+    try {
+      delimiter = Regex.compile(value);
+    } catch (PatternSyntaxException e) {
+      throw new DirectiveParseException(
+        String.format("Invalid regular expression '%s'. %s", value, e.getDescription())
+      );
+    }
     if (args.contains("limit")) {
       Numeric numeric = args.value("limit");
       limit = numeric.value().intValue();
@@ -80,6 +91,7 @@ public class SetRecordDelimiter implements Directive {
   public List<Row> execute(List<Row> rows, ExecutorContext context)
     throws DirectiveExecutionException, ErrorRowException {
     List<Row> results = new ArrayList<>();
+    delimiter = delimiter.forContext(context);
     for (Row row : rows) {
       int idx = row.find(column);
       if (idx == -1) {
@@ -89,7 +101,7 @@ public class SetRecordDelimiter implements Directive {
       Object object = row.getValue(idx);
       if (object instanceof String) {
         String body = (String) object;
-        String[] lines = body.split(delimiter);
+        String[] lines = delimiter.split(body, 0);
         int i = 0;
         for (String line : lines) {
           if (i > limit) {
@@ -0,0 +1,451 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.row;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.wrangler.api.Accumulator;
+import co.cask.wrangler.api.Arguments;
+import co.cask.wrangler.api.Directive;
+import co.cask.wrangler.api.DirectiveExecutionException;
+import co.cask.wrangler.api.DirectiveParseException;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Optional;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.api.annotations.Categories;
+import co.cask.wrangler.api.parser.ColumnNameList;
+import co.cask.wrangler.api.parser.Identifier;
+import co.cask.wrangler.api.parser.Numeric;
+import co.cask.wrangler.api.parser.TokenType;
+import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.ValueCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A directive that sorts the rows by the values of columns, and returns them at the end of the input.
+ *
+ * <p>The rows are sorted in memory while their estimated size stays within the {@link #MEMORY} budget of the
+ * pipeline. Past it, the rows held are sorted and written to a run file on local disk with {@link ValueCodec},
+ * and the runs are merged at the end of the input. With a limit, only the first rows in the order are kept, in
+ * a heap bounded by the limit, and nothing is written to disk.</p>
+ *
+ * <p>The sort is stable, rows with the same values keep the order they came in.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name(SortBy.NAME)
+@Categories(categories = { "row"})
+@Description("Sorts the rows by columns in ascending or descending order, optionally keeping the first rows.")
+public class SortBy implements Directive, Accumulator {
+  public static final String NAME = "sort-by";
+
+  /**
+   * Property of the pipeline with the memory, in megabytes, the rows held by the directive can take before they
+   * are spilled to disk.
+   */
+  public static final String MEMORY = "sort.memory.mb";
+
+  private static final double DEFAULT_MEMORY = 64;
+  // Number of runs merged at once.
+  private static final int FAN_IN = 64;
+
+  private String[] columns;
+  private boolean descending;
+  private int limit = -1;
+  private long budget = -1;
+  // Rows held, with their sort keys and the order they came in.
+  private final List<Entry> entries = new ArrayList<>();
+  private PriorityQueue<Entry> top;
+  private long bytes;
+  private long sequence;
+  private final List<File> runs = new ArrayList<>();
+
+  /**
+   * A row, the values of the columns it's sorted by and its position in the input.
+   */
+  private static final class Entry {
+    private final Object[] key;
+    private final Row row;
+    private final long sequence;
+
+    Entry(Object[] key, Row row, long sequence) {
+      this.key = key;
+      this.row = row;
+      this.sequence = sequence;
+    }
+  }
+
+  /**
+   * A sorted source of rows being merged, a run or the rows in memory.
+   */
+  private final class Source implements Closeable {
+    private final Iterator<Entry> entries;
+    private final DataInputStream in;
+    private final int index;
+    private Entry current;
+
+    Source(Iterator<Entry> entries, int index) {
+      this.entries = entries;
+      this.in = null;
+      this.index = index;
+    }
+
+    Source(File run, int index) throws IOException {
+      this.entries = null;
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+      this.index = index;
+    }
+
+    boolean next() throws IOException {
+      if (entries != null) {
+        current = entries.hasNext() ? entries.next() : null;
+      } else if (in.readBoolean()) {
+        Row row = ValueCodec.readRow(in);
+        current = new Entry(key(row), row, 0);
+      } else {
+        current = null;
+      }
+      return current != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("columns", TokenType.COLUMN_NAME_LIST);
+    builder.define("order", TokenType.IDENTIFIER, Optional.TRUE);
+    builder.define("limit", TokenType.NUMERIC, Optional.TRUE);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    List<String> names = ((ColumnNameList) args.value("columns")).value();
+    columns = names.toArray(new String[names.size()]);
+    if (args.contains("order")) {
+      String order = ((Identifier) args.value("order")).value();
+      if ("desc".equalsIgnoreCase(order)) {
+        descending = true;
+      } else if (!"asc".equalsIgnoreCase(order)) {
+        throw new DirectiveParseException(
+          String.format("Invalid order '%s', expected 'asc' or 'desc'.", order));
+      }
+    }
+    if (args.contains("limit")) {
+      double value = ((Numeric) args.value("limit")).value().doubleValue();
+      if (value < 1 || value > Integer.MAX_VALUE || value != Math.floor(value)) {
+        throw new DirectiveParseException(
+          String.format("Invalid limit '%s', expected a positive integer.", value));
+      }
+      limit = (int) value;
+      // The heap has the last of the first rows at its head, to be replaced by a row that comes before it.
+      top = new PriorityQueue<>(Math.min(limit, 1024), Collections.reverseOrder(this::compare));
+    }
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
+    if (budget < 0) {
+      budget = budget(context);
+    }
+    for (Row row : rows) {
+      Entry entry = new Entry(key(row), row, sequence++);
+      if (top != null) {
+        if (top.size() < limit) {
+          top.add(entry);
+        } else if (compare(entry, top.peek()) < 0) {
+          top.poll();
+          top.add(entry);
+        }
+        continue;
+      }
+      entries.add(entry);
+      bytes += ValueCodec.estimate(row) + 32;
+      if (bytes > budget) {
+        spill();
+      }
+    }
+    return new ArrayList<>();
+  }
+
+  @Override
+  public List<Row> flush(ExecutorContext context) throws DirectiveExecutionException {
+    List<Row> rows = new ArrayList<>();
+    if (top != null) {
+      List<Entry> first = new ArrayList<>(top);
+      first.sort(this::compare);
+      for (Entry entry : first) {
+        rows.add(entry.row);
+      }
+      top.clear();
+    } else if (runs.isEmpty()) {
+      entries.sort(this::compare);
+      for (Entry entry : entries) {
+        rows.add(entry.row);
+      }
+    } else {
+      entries.sort(this::compare);
+      try {
+        // The first runs are merged into one until there are few enough to be merged at once.
+        while (runs.size() > FAN_IN) {
+          List<File> merged = new ArrayList<>(runs.subList(0, FAN_IN));
+          File run = File.createTempFile("sort-by-", ".run");
+          runs.subList(0, FAN_IN).clear();
+          runs.add(0, run);
+          try {
+            merge(merged, null, new RunWriter(run));
+          } finally {
+            delete(merged);
+          }
+        }
+        merge(runs, entries.iterator(), rows::add);
+      } catch (IOException e) {
+        throw new DirectiveExecutionException(
+          String.format("%s : Failed to merge the rows spilled to disk. %s", NAME, e.getMessage()), e);
+      } finally {
+        delete(runs);
+        runs.clear();
+      }
+    }
+    entries.clear();
+    bytes = 0;
+    sequence = 0;
+    return rows;
+  }
+
+  @Override
+  public void destroy() {
+    delete(runs);
+    runs.clear();
+  }
+
+  private Object[] key(Row row) {
+    Object[] key = new Object[columns.length];
+    for (int i = 0; i < columns.length; ++i) {
+      key[i] = row.getValue(columns[i]);
+    }
+    return key;
+  }
+
+  private int compare(Entry first, Entry second) {
+    for (int i = 0; i < columns.length; ++i) {
+      int result = compareValues(first.key[i], second.key[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Long.compare(first.sequence, second.sequence);
+  }
+
+  /**
+   * Compares values of a column in the order of the directive, null values last.
+   */
+  private int compareValues(Object first, Object second) {
+    if (first == null || second == null) {
+      return first == null ? (second == null ? 0 : 1) : -1;
+    }
+    int result = compareNonNull(first, second);
+    return descending ? -result : result;
+  }
+
+  /**
+   * Compares numbers by value, values of the same type by their natural order, and other values by type, numbers
+   * first, then booleans, strings and the rest.
+   */
+  @SuppressWarnings("unchecked")
+  private static int compareNonNull(Object first, Object second) {
+    int rank = Integer.compare(rank(first), rank(second));
+    if (rank != 0) {
+      return rank;
+    }
+    if (first instanceof Number) {
+      if (isIntegral(first) && isIntegral(second)) {
+        return Long.compare(((Number) first).longValue(), ((Number) second).longValue());
+      } else if ((first instanceof BigDecimal || second instanceof BigDecimal) && isFinite(first)
+        && isFinite(second)) {
+        return new BigDecimal(first.toString()).compareTo(new BigDecimal(second.toString()));
+      }
+      return Double.compare(((Number) first).doubleValue(), ((Number) second).doubleValue());
+    }
+    if (first.getClass() == second.getClass() && first instanceof Comparable) {
+      return ((Comparable<Object>) first).compareTo(second);
+    }
+    int type = first.getClass().getName().compareTo(second.getClass().getName());
+    return type != 0 ? type : first.toString().compareTo(second.toString());
+  }
+
+  private static int rank(Object value) {
+    if (value instanceof Number) {
+      return 0;
+    } else if (value instanceof Boolean) {
+      return 1;
+    } else if (value instanceof String) {
+      return 2;
+    }
+    return 3;
+  }
+
+  private static boolean isIntegral(Object value) {
+    return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+  }
+
+  /**
+   * Checks that a number has a decimal representation, NaN and infinite doubles are compared as doubles.
+   */
+  private static boolean isFinite(Object value) {
+    return !(value instanceof Double || value instanceof Float) || Double.isFinite(((Number) value).doubleValue());
+  }
+
+  private static long budget(ExecutorContext context) throws DirectiveExecutionException {
+    String memory = context == null || context.getProperties() == null ? null
+      : context.getProperties().get(MEMORY);
+    double megabytes = DEFAULT_MEMORY;
+    if (memory != null && !memory.trim().isEmpty()) {
+      try {
+        megabytes = Double.parseDouble(memory.trim());
+      } catch (NumberFormatException e) {
+        throw new DirectiveExecutionException(
+          String.format("Invalid value '%s' for property '%s', expected megabytes.", memory, MEMORY));
+      }
+    }
+    return (long) (megabytes * 1024 * 1024);
+  }
+
+  /**
+   * Sorts the rows held and writes them to a new run.
+   */
+  private void spill() throws DirectiveExecutionException {
+    entries.sort(this::compare);
+    try {
+      File run = File.createTempFile("sort-by-", ".run");
+      runs.add(run);
+      try (RunWriter writer = new RunWriter(run)) {
+        for (Entry entry : entries) {
+          writer.accept(entry.row);
+        }
+      }
+    } catch (IOException e) {
+      throw new DirectiveExecutionException(
+        String.format("%s : Failed to spill the rows to disk. %s", NAME, e.getMessage()), e);
+    }
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Merges sorted runs, then the rows in memory if any, into a sink. Rows with the same values are taken from
+   * the earlier source first, so that the merge is stable.
+   */
+  private void merge(List<File> files, Iterator<Entry> memory, RowSink sink) throws IOException {
+    List<Source> sources = new ArrayList<>();
+    PriorityQueue<Source> queue = new PriorityQueue<>(files.size() + 1, new Comparator<Source>() {
+      @Override
+      public int compare(Source first, Source second) {
+        int result = SortBy.this.compare(first.current, second.current);
+        return result != 0 ? result : Integer.compare(first.index, second.index);
+      }
+    });
+    try {
+      for (File file : files) {
+        sources.add(new Source(file, sources.size()));
+      }
+      if (memory != null) {
+        sources.add(new Source(memory, sources.size()));
+      }
+      for (Source source : sources) {
+        if (source.next()) {
+          queue.add(source);
+        }
+      }
+      while (!queue.isEmpty()) {
+        Source source = queue.poll();
+        sink.accept(source.current.row);
+        if (source.next()) {
+          queue.add(source);
+        }
+      }
+    } finally {
+      for (Source source : sources) {
+        source.close();
+      }
+      if (sink instanceof Closeable) {
+        ((Closeable) sink).close();
+      }
+    }
+  }
+
+  private static void delete(List<File> files) {
+    for (File file : files) {
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+    }
+  }
+
+  /**
+   * Receives the merged rows.
+   */
+  private interface RowSink {
+    void accept(Row row) throws IOException;
+  }
+
+  /**
+   * Writes rows to a run, each preceded by a marker, the run ends with a marker of its own.
+   */
+  private static final class RunWriter implements RowSink, Closeable {
+    private final DataOutputStream out;
+
+    RunWriter(File file) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    }
+
+    @Override
+    public void accept(Row row) throws IOException {
+      out.writeBoolean(true);
+      ValueCodec.writeRow(out, row);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.writeBoolean(false);
+      out.close();
+    }
+  }
+}
@@ -30,13 +30,15 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.Regex;
 
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A directive extracts regex groups into separate columns.
+ *
+ * <p>The regex is run by the engine selected by the pipeline, see {@link Regex}.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name(ExtractRegexGroups.NAME)
@@ -46,7 +48,7 @@ public class ExtractRegexGroups implements Directive {
   public static final String NAME = "extract-regex-groups";
   private String column;
   private String regex;
-  private Pattern pattern;
+  private Regex pattern;
 
   @Override
   public UsageDefinition define() {
@@ -60,7 +62,13 @@ public class ExtractRegexGroups implements Directive {
   public void initialize(Arguments args) throws DirectiveParseException {
     this.column = ((ColumnName) args.value("column")).value();
     this.regex = ((Text) args.value("regex")).value();
-    pattern = Pattern.compile(regex);
+    try {
+      pattern = Regex.compile(regex);
+    } catch (PatternSyntaxException e) {
+      throw new DirectiveParseException(
+        String.format("Invalid regular expression '%s'. %s", regex, e.getDescription())
+      );
+    }
   }
 
   @Override
@@ -71,15 +79,17 @@ public class ExtractRegexGroups implements Directive {
   @Override
   public List<Row> execute(List<Row> rows, ExecutorContext context)
     throws DirectiveExecutionException {
+    pattern = pattern.forContext(context);
+    int groups = pattern.groupCount();
     for (Row row : rows) {
       int idx = row.find(column);
       if (idx != -1) {
         Object value = row.getValue(idx);
         if (value != null && value instanceof String) {
-          Matcher matcher = pattern.matcher((String) value);
+          Regex.Match matcher = pattern.matcher((String) value);
           int count = 1;
           while (matcher.find()) {
-            for (int i = 1; i <= matcher.groupCount(); i++) {
+            for (int i = 1; i <= groups; i++) {
               row.add(String.format("%s_%d_%d", column, count, i), matcher.group(i));
             }
             count++;
@@ -30,6 +30,7 @@ import co.cask.wrangler.api.parser.ColumnNameList;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.SedExpression;
 import org.unix4j.Unix4j;
 import org.unix4j.builder.Unix4jCommandBuilder;
 
@@ -38,6 +39,9 @@ import java.util.List;
 
 /**
  * A directive for 'find-and-replace' transformations on the column.
+ *
+ * <p>Substitute commands are compiled once into a {@link SedExpression}. Other sed commands, and substitute
+ * commands the expression doesn't support such as the ones using named groups, are run with unix4j.</p>
  */
 @Plugin(type = Directive.TYPE)
 @Name(FindAndReplace.NAME)
@@ -47,6 +51,7 @@ public class FindAndReplace implements Directive {
   public static final String NAME = "find-and-replace";
   private String pattern;
   private List<String> columns;
+  private SedExpression expression;
 
 
   @Override
@@ -61,6 +66,14 @@ public class FindAndReplace implements Directive {
   public void initialize(Arguments args) throws DirectiveParseException {
     this.columns = ((ColumnNameList) args.value("column")).value();
     this.pattern = ((Text) args.value("pattern")).value();
+    if (SedExpression.isSubstitute(pattern)) {
+      try {
+        this.expression = SedExpression.compile(pattern);
+      } catch (IllegalArgumentException e) {
+        // Not supported by the expression, left to unix4j that doesn't transform values when it fails.
+        this.expression = null;
+      }
+    }
   }
 
   @Override
@@ -80,17 +93,21 @@ public class FindAndReplace implements Directive {
           try {
             if (v instanceof String) {
               String value = (String) v; // Safely converts to String.
-              Unix4jCommandBuilder builder = Unix4j.echo(value).sed(pattern);
-              if (builder.toExitValue() == 0) {
-                row.setValue(idx, builder.toStringResult());
+              if (expression != null) {
+                row.setValue(idx, expression.replace(value));
+              } else {
+                Unix4jCommandBuilder builder = Unix4j.echo(value).sed(pattern);
+                if (builder.toExitValue() == 0) {
+                  row.setValue(idx, builder.toStringResult());
+                }
               }
             }
           } catch (Exception e) {
             // If there is any issue, we pass it on without any transformation.
           }
         }
-        results.add(row);
       }
+      results.add(row);
     }
     return results;
   }
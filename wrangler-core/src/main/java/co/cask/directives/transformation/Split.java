@@ -30,10 +30,12 @@ import co.cask.wrangler.api.parser.ColumnName;
 import co.cask.wrangler.api.parser.Text;
 import co.cask.wrangler.api.parser.TokenType;
 import co.cask.wrangler.api.parser.UsageDefinition;
+import co.cask.wrangler.utils.Regex;
 import com.google.common.base.Strings;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * A directive for splitting a col into two additional columns based on a delimiter.
@@ -48,7 +50,7 @@ public class Split implements Directive {
   // Name of the column to be split
   private String col;
 
-  private String delimiter;
+  private Regex delimiter;
 
   // Destination column names
   private String firstColumnName, secondColumnName;
@@ -66,7 +68,14 @@ public class Split implements Directive {
   @Override
   public void initialize(Arguments args) throws DirectiveParseException {
     this.col = ((ColumnName) args.value("source")).value();
-    this.delimiter = ((Text) args.value("delimiter")).value();
+    String value = ((Text) args.value("delimiter")).value();
+    try {
+      this.delimiter = Regex.compile(value);
+    } catch (PatternSyntaxException e) {
+      throw new DirectiveParseException(
+        String.format("Invalid regular expression '%s'. %s", value, e.getDescription())
+      );
+    }
     this.firstColumnName = ((ColumnName) args.value("column1")).value();
     this.secondColumnName = ((ColumnName) args.value("column2")).value();
   }
@@ -79,12 +88,13 @@ public class Split implements Directive {
   @Override
   public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
     List<Row> results = new ArrayList<>();
+    delimiter = delimiter.forContext(context);
     for (Row row : rows) {
       int idx = row.find(col);
       if (idx != -1) {
         String val = (String) row.getValue(idx);
         if (val != null) {
-          String[] parts = val.split(delimiter, 2);
+          String[] parts = delimiter.split(val, 2);
           if (Strings.isNullOrEmpty(parts[0])) {
             row.add(firstColumnName, parts[1]);
             row.add(secondColumnName, null);
@@ -0,0 +1,117 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.directives.xml;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.wrangler.api.Arguments;
+import co.cask.wrangler.api.Directive;
+import co.cask.wrangler.api.DirectiveExecutionException;
+import co.cask.wrangler.api.DirectiveParseException;
+import co.cask.wrangler.api.ErrorRowException;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.api.annotations.Categories;
+import co.cask.wrangler.api.parser.ColumnName;
+import co.cask.wrangler.api.parser.Text;
+import co.cask.wrangler.api.parser.TokenType;
+import co.cask.wrangler.api.parser.UsageDefinition;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.List;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+/**
+ * A directive for extracting the text of a single XML element or attribute using XPath.
+ *
+ * <p>The XPath expression is compiled once when the directive is initialized, the XML document is
+ * parsed without converting it to JSON. When the expression selects multiple nodes, the first one is used.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name("xpath")
+@Categories(categories = { "xml"})
+@Description("Extract a single XML element or attribute using XPath.")
+public class XPathElement implements Directive {
+  public static final String NAME = "xpath";
+  private String column;
+  private String destination;
+  private String path;
+  private XPathExpression expression;
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("column", TokenType.COLUMN_NAME);
+    builder.define("destination", TokenType.COLUMN_NAME);
+    builder.define("xpath", TokenType.TEXT);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    this.column = ((ColumnName) args.value("column")).value();
+    this.destination = ((ColumnName) args.value("destination")).value();
+    this.path = ((Text) args.value("xpath")).value();
+    this.expression = XmlDocuments.compile(path);
+  }
+
+  @Override
+  public void destroy() {
+    // no-op
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    for (Row row : rows) {
+      int idx = row.find(column);
+      if (idx == -1) {
+        continue;
+      }
+
+      Object object = row.getValue(idx);
+      if (object == null) {
+        row.addOrSet(destination, null);
+        continue;
+      }
+      if (!(object instanceof String)) {
+        throw new DirectiveExecutionException(
+          String.format("%s : Invalid type '%s' of column '%s'. Should be of type String.", toString(),
+                        object.getClass().getName(), column)
+        );
+      }
+
+      try {
+        Document document = XmlDocuments.parse((String) object);
+        row.addOrSet(destination, XmlDocuments.first(expression, document));
+      } catch (SAXException | IOException e) {
+        throw new ErrorRowException(
+          String.format("%s : Failed to parse XML in column '%s'. %s", toString(), column, e.getMessage()), 1
+        );
+      } catch (XPathExpressionException e) {
+        throw new ErrorRowException(
+          String.format("%s : Failed to evaluate XPath '%s'. %s", toString(), path, e.getMessage()), 1
+        );
+      }
+    }
+    return rows;
+  }
+}
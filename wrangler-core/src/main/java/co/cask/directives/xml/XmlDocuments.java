@@ -0,0 +1,183 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.directives.xml;
+
+import co.cask.wrangler.api.DirectiveParseException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * Parsing of XML documents and evaluation of compiled XPath expressions shared by the XPath directives.
+ *
+ * <p>{@link XPathExpression} and {@link DocumentBuilder} are not thread-safe, so expressions are compiled
+ * once per directive instance and builders are kept per thread. The last document parsed on a thread
+ * is kept along with it's source, so a recipe with multiple XPath directives on the same column parses
+ * each record only once. The source is weakly referenced and the document softly, so that a thread of a pool
+ * doesn't keep a large document once it's done with the record.</p>
+ */
+final class XmlDocuments {
+  private static final DocumentBuilderFactory BUILDERS = createFactory();
+  private static final XPathFactory XPATHS = XPathFactory.newInstance();
+  // Fails on errors instead of the default handler that also prints them to the console.
+  private static final ErrorHandler ERRORS = new ErrorHandler() {
+    @Override
+    public void warning(SAXParseException e) {
+      // no-op
+    }
+
+    @Override
+    public void error(SAXParseException e) throws SAXException {
+      throw e;
+    }
+
+    @Override
+    public void fatalError(SAXParseException e) throws SAXException {
+      throw e;
+    }
+  };
+  private static final ThreadLocal<Parsed> PARSED = new ThreadLocal<Parsed>() {
+    @Override
+    protected Parsed initialValue() {
+      return new Parsed();
+    }
+  };
+
+  private XmlDocuments() {
+  }
+
+  /**
+   * Compiles the XPath expression.
+   *
+   * @param path the XPath expression.
+   * @return a compiled {@link XPathExpression}, to be used by a single thread.
+   * @throws DirectiveParseException thrown when the expression is invalid.
+   */
+  static XPathExpression compile(String path) throws DirectiveParseException {
+    try {
+      synchronized (XPATHS) {
+        return XPATHS.newXPath().compile(path);
+      }
+    } catch (XPathExpressionException e) {
+      throw new DirectiveParseException(
+        String.format("Invalid XPath expression '%s'. %s", path, e.getMessage())
+      );
+    }
+  }
+
+  /**
+   * Parses the XML document, reusing the document parsed last on this thread if the source is the same.
+   *
+   * @param xml document to be parsed.
+   * @return the parsed {@link Document}, it should not be modified.
+   */
+  static Document parse(String xml) throws SAXException, IOException {
+    Parsed parsed = PARSED.get();
+    Document document = parsed.source.get() == xml ? parsed.document.get() : null;
+    if (document == null) {
+      // Cleared first so that a parse failure does not leave a stale document behind.
+      parsed.source = Parsed.NONE;
+      parsed.document = Parsed.NO_DOCUMENT;
+      DocumentBuilder builder = parsed.builder();
+      builder.reset();
+      builder.setErrorHandler(ERRORS);
+      document = builder.parse(new InputSource(new StringReader(xml)));
+      parsed.document = new SoftReference<>(document);
+      parsed.source = new WeakReference<>(xml);
+    }
+    return document;
+  }
+
+  /**
+   * Evaluates the expression and returns the text of all the nodes selected.
+   */
+  static List<String> select(XPathExpression expression, Document document) throws XPathExpressionException {
+    NodeList nodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
+    List<String> values = new ArrayList<>(nodes.getLength());
+    for (int i = 0; i < nodes.getLength(); ++i) {
+      values.add(nodes.item(i).getTextContent());
+    }
+    return values;
+  }
+
+  /**
+   * Evaluates the expression and returns the text of the first node selected, null if nothing is selected.
+   */
+  static String first(XPathExpression expression, Document document) throws XPathExpressionException {
+    NodeList nodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
+    if (nodes.getLength() == 0) {
+      return null;
+    }
+    return nodes.item(0).getTextContent();
+  }
+
+  private static DocumentBuilderFactory createFactory() {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(false);
+    try {
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+      factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+      factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+    } catch (ParserConfigurationException e) {
+      // Features are not supported by the parser available, use it's defaults.
+    }
+    return factory;
+  }
+
+  /**
+   * Document builder and last document parsed by a thread.
+   */
+  private static final class Parsed {
+    private static final WeakReference<String> NONE = new WeakReference<>(null);
+    private static final SoftReference<Document> NO_DOCUMENT = new SoftReference<>(null);
+    private DocumentBuilder builder;
+    private WeakReference<String> source = NONE;
+    private SoftReference<Document> document = NO_DOCUMENT;
+
+    DocumentBuilder builder() throws IOException {
+      if (builder == null) {
+        try {
+          synchronized (BUILDERS) {
+            builder = BUILDERS.newDocumentBuilder();
+          }
+        } catch (ParserConfigurationException e) {
+          throw new IOException(e);
+        }
+      }
+      return builder;
+    }
+  }
+}
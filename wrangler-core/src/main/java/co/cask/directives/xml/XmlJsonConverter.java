@@ -0,0 +1,245 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.directives.xml;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.XML;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Converts a XML document into a {@link JsonObject} with a single pass of a StAX reader.
+ *
+ * <p>The structure produced follows the conventions of {@code org.json.XML#toJSONObject} : attributes
+ * and child elements become keys of the element object, repeated keys are turned into arrays, text
+ * is stored under the {@code content} key, an element that only has text is replaced by the text
+ * and an empty element becomes an empty string. Text and attribute values are converted to
+ * booleans, nulls or numbers by {@code org.json.XML#stringToValue}, so that numbers such as
+ * {@code 3.0} are integers as with org.json; CDATA sections are kept as strings.</p>
+ *
+ * <p>Comments, processing instructions and DTDs are ignored, external entities are never resolved.
+ * The StAX reader only accepts well formed documents, the ones it rejects, such as fragments with
+ * several root elements, text after the root element or entities that are not declared, are
+ * converted by org.json, which is lenient.</p>
+ */
+public final class XmlJsonConverter {
+  private static final String CONTENT = "content";
+  private static final JsonParser JSON_PARSER = new JsonParser();
+  private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private XmlJsonConverter() {
+  }
+
+  /**
+   * Converts the XML document to it's JSON representation.
+   *
+   * @param xml document to be converted.
+   * @return a {@link JsonObject} with the root elements of the document as keys.
+   * @throws JSONException thrown when the document can't be read by org.json either.
+   */
+  public static JsonObject toJson(String xml) {
+    try {
+      XMLStreamReader reader = FACTORY.createXMLStreamReader(new StringReader(xml));
+      try {
+        return convert(reader);
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      // Not well formed, org.json is lenient about fragments, trailing text and entities.
+      return JSON_PARSER.parse(XML.toJSONObject(xml).toString()).getAsJsonObject();
+    }
+  }
+
+  private static JsonObject convert(XMLStreamReader reader) throws XMLStreamException {
+    JsonObject root = new JsonObject();
+    Deque<Element> stack = new ArrayDeque<>();
+    StringBuilder text = new StringBuilder();
+    // Set when the text collected so far is only made of CDATA sections and whitespaces.
+    boolean cdata = false;
+
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          if (!stack.isEmpty()) {
+            content(stack.peek(), text, cdata);
+          }
+          text.setLength(0);
+          cdata = false;
+          Element element = new Element(name(reader.getPrefix(), reader.getLocalName()));
+          int count = reader.getAttributeCount();
+          for (int i = 0; i < count; ++i) {
+            accumulate(element.object, name(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                       coerce(reader.getAttributeValue(i)));
+          }
+          stack.push(element);
+          break;
+
+        case XMLStreamConstants.END_ELEMENT:
+          Element closed = stack.pop();
+          content(closed, text, cdata);
+          text.setLength(0);
+          cdata = false;
+          JsonObject object = closed.object;
+          int size = object.entrySet().size();
+          JsonElement value;
+          if (size == 0) {
+            value = new JsonPrimitive("");
+          } else if (size == 1 && object.has(CONTENT)) {
+            value = object.get(CONTENT);
+          } else {
+            value = object;
+          }
+          accumulate(stack.isEmpty() ? root : stack.peek().object, closed.name, value);
+          break;
+
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.SPACE:
+          if (!stack.isEmpty()) {
+            if (cdata && !reader.isWhiteSpace()) {
+              cdata = false;
+            }
+            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+          }
+          break;
+
+        case XMLStreamConstants.CDATA:
+          if (!stack.isEmpty()) {
+            cdata = text.length() == 0 || cdata || isBlank(text);
+            text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+          }
+          break;
+
+        default:
+          // Comments, processing instructions, DTDs and the document events are ignored.
+          break;
+      }
+    }
+    return root;
+  }
+
+  /**
+   * Adds the text collected to the element as content, whitespaces around the text are removed.
+   */
+  private static void content(Element element, StringBuilder text, boolean cdata) {
+    if (text.length() == 0) {
+      return;
+    }
+    String value = text.toString().trim();
+    if (!value.isEmpty()) {
+      accumulate(element.object, CONTENT, cdata ? new JsonPrimitive(value) : coerce(value));
+    }
+  }
+
+  /**
+   * Adds the value under the key, turning the key into an array when the key is already present.
+   */
+  private static void accumulate(JsonObject object, String key, JsonElement value) {
+    JsonElement current = object.get(key);
+    if (current == null) {
+      if (value.isJsonArray()) {
+        JsonArray array = new JsonArray();
+        array.add(value);
+        value = array;
+      }
+      object.add(key, value);
+    } else if (current.isJsonArray()) {
+      current.getAsJsonArray().add(value);
+    } else {
+      JsonArray array = new JsonArray();
+      array.add(current);
+      array.add(value);
+      object.add(key, array);
+    }
+  }
+
+  /**
+   * Converts the value as org.json does. Numbers are kept as the text org.json writes them with, which
+   * is what parsing the JSON written by org.json gave.
+   */
+  private static JsonElement coerce(String value) {
+    Object coerced = XML.stringToValue(value);
+    if (coerced instanceof Number) {
+      String number = JSONObject.numberToString((Number) coerced);
+      // Gson reads integers as longs, so -0 was read as 0.
+      return new JsonPrimitive(new LazilyParsedNumber("-0".equals(number) ? "0" : number));
+    }
+    if (coerced instanceof Boolean) {
+      return new JsonPrimitive((Boolean) coerced);
+    }
+    if (JSONObject.NULL.equals(coerced)) {
+      return JsonNull.INSTANCE;
+    }
+    return new JsonPrimitive(value);
+  }
+
+  private static String name(String prefix, String localName) {
+    if (prefix == null || prefix.isEmpty()) {
+      return localName;
+    }
+    return prefix + ":" + localName;
+  }
+
+  private static boolean isBlank(CharSequence text) {
+    for (int i = 0; i < text.length(); ++i) {
+      if (!Character.isWhitespace(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    // The JDK parser reports CDATA sections as characters unless asked otherwise.
+    if (factory.isPropertySupported(REPORT_CDATA)) {
+      factory.setProperty(REPORT_CDATA, true);
+    }
+    return factory;
+  }
+
+  /**
+   * An element being converted along with the object holding it's attributes and children.
+   */
+  private static final class Element {
+    private final String name;
+    private final JsonObject object = new JsonObject();
+
+    Element(String name) {
+      this.name = name;
+    }
+  }
+}
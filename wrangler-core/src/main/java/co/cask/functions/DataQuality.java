@@ -64,6 +64,7 @@ public class DataQuality extends Types {
    * @param upper end of the defined range inclusive.
    * @return true if in range, false otherwise.
    */
+  @Pure
   public static boolean inrange(double value, double lower, double upper) {
     Range<Double> range = Range.range(lower, BoundType.CLOSED, upper, BoundType.CLOSED);
     if (range.contains(value)) {
@@ -78,6 +79,7 @@ public class DataQuality extends Types {
    * @param str for which we need to determine the length.
    * @return length of string if not null, 0 otherwise.
    */
+  @Pure
   public static int strlen(String str) {
     if (str != null) {
       return str.length();
@@ -91,6 +93,7 @@ public class DataQuality extends Types {
    * @param object to be checked for null.
    * @return true if
    */
+  @Pure
   public static boolean isnull(Object object) {
     return object == null ? true : false;
   }
@@ -101,6 +104,7 @@ public class DataQuality extends Types {
    * @param str to be checked for empty.
    * @return true if not null and empty, else false.
    */
+  @Pure
   public static boolean isempty(String str) {
     if (str != null && str.isEmpty()) {
       return true;
@@ -114,6 +118,7 @@ public class DataQuality extends Types {
    * @param date The value validation is being performed on.
    * @return <code>true</code> if the value is valid.
    */
+  @Pure
   public static boolean isDate(String date) {
     return DateValidator.getInstance().isValid(date);
   }
@@ -125,6 +130,7 @@ public class DataQuality extends Types {
    * @param pattern The pattern used to validate the value against.
    * @return <code>true</code> if the value is valid.
    */
+  @Pure
   public static boolean isDate(String date, String pattern) {
     return DateValidator.getInstance().isValid(date, pattern);
   }
@@ -136,6 +142,7 @@ public class DataQuality extends Types {
    * @param ip to be validated.
    * @return true if valid IPv4 or IPv6.
    */
+  @Pure
   public static boolean isIP(String ip) {
     return InetAddressValidator.getInstance().isValid(ip);
   }
@@ -147,6 +154,7 @@ public class DataQuality extends Types {
    * @param ip to be validated.
    * @return true if valid IPv4.
    */
+  @Pure
   public static boolean isIPv4(String ip) {
     return InetAddressValidator.getInstance().isValidInet4Address(ip);
   }
@@ -158,6 +166,7 @@ public class DataQuality extends Types {
    * @param ip to be validated.
    * @return true if valid IPv6.
    */
+  @Pure
   public static boolean isIPv6(String ip) {
     return InetAddressValidator.getInstance().isValidInet6Address(ip);
   }
@@ -169,6 +178,7 @@ public class DataQuality extends Types {
    * @param email to be validated.
    * @return true if valid email.
    */
+  @Pure
   public static boolean isEmail(String email) {
     return EmailValidator.getInstance().isValid(email);
   }
@@ -180,6 +190,7 @@ public class DataQuality extends Types {
    * @param url to be validated.
    * @return true if valid url.
    */
+  @Pure
   public static boolean isUrl(String url) {
     return UrlValidator.getInstance().isValid(url);
   }
@@ -191,6 +202,7 @@ public class DataQuality extends Types {
    * @param domain to be validated.
    * @return true if valid url.
    */
+  @Pure
   public static boolean isDomainName(String domain) {
     return DomainValidator.getInstance().isValid(domain);
   }
@@ -202,6 +214,7 @@ public class DataQuality extends Types {
    * @param domain to be validated.
    * @return true if valid top-level domain.
    */
+  @Pure
   public static boolean isDomainTld(String domain) {
     return DomainValidator.getInstance().isValidTld(domain);
   }
@@ -213,6 +226,7 @@ public class DataQuality extends Types {
    * @param domain to be validated.
    * @return true if valid generic top-level domain.
    */
+  @Pure
   public static boolean isGenericTld(String domain) {
     return DomainValidator.getInstance().isValidGenericTld(domain);
   }
@@ -224,6 +238,7 @@ public class DataQuality extends Types {
    * @param domain to be validated.
    * @return true if valid country top-level domain.
    */
+  @Pure
   public static boolean isCountryTld(String domain) {
     return DomainValidator.getInstance().isValidCountryCodeTld(domain);
   }
@@ -235,6 +250,7 @@ public class DataQuality extends Types {
    * @param isbn to be validated.
    * @return true if valid ISBN-10 or ISBN-13.
    */
+  @Pure
   public static boolean isISBN(String isbn) {
     return ISBNValidator.getInstance().isValid(isbn);
   }
@@ -246,6 +262,7 @@ public class DataQuality extends Types {
    * @param isbn to be validated.
    * @return true if valid ISBN-10.
    */
+  @Pure
   public static boolean isISBN10(String isbn) {
     return ISBNValidator.getInstance().isValidISBN10(isbn);
   }
@@ -257,6 +274,7 @@ public class DataQuality extends Types {
    * @param isbn to be validated.
    * @return true if valid ISBN-13.
    */
+  @Pure
   public static boolean isISBN13(String isbn) {
     return ISBNValidator.getInstance().isValidISBN13(isbn);
   }
@@ -268,6 +286,7 @@ public class DataQuality extends Types {
    * @param cc to be validated.
    * @return true if valid credit card number.
    */
+  @Pure
   public static boolean isCreditCard(String cc) {
     return CreditCardValidator.genericCreditCardValidator().isValid(cc);
   }
@@ -279,6 +298,7 @@ public class DataQuality extends Types {
    * @param cc to be validated.
    * @return true if valid amex credit card number.
    */
+  @Pure
   public static boolean isAmex(String cc) {
     return CreditCardValidator.AMEX_VALIDATOR.isValid(cc);
   }
@@ -290,6 +310,7 @@ public class DataQuality extends Types {
    * @param cc to be validated.
    * @return true if valid visa credit card number.
    */
+  @Pure
   public static boolean isVisa(String cc) {
     return CreditCardValidator.VISA_VALIDATOR.isValid(cc);
   }
@@ -301,6 +322,7 @@ public class DataQuality extends Types {
    * @param cc to be validated.
    * @return true if valid master credit card number.
    */
+  @Pure
   public static boolean isMaster(String cc) {
     return CreditCardValidator.MASTERCARD_VALIDATOR.isValid(cc);
   }
@@ -312,6 +334,7 @@ public class DataQuality extends Types {
    * @param cc to be validated.
    * @return true if valid diner credit card number.
    */
+  @Pure
   public static boolean isDiner(String cc) {
     return CreditCardValidator.DINERS_VALIDATOR.isValid(cc);
   }
@@ -323,6 +346,7 @@ public class DataQuality extends Types {
    * @param cc to be validated.
    * @return true if valid discover credit card number.
    */
+  @Pure
   public static boolean isDiscover(String cc) {
     return CreditCardValidator.DISCOVER_VALIDATOR.isValid(cc);
   }
@@ -334,6 +358,7 @@ public class DataQuality extends Types {
    * @param cc to be validated.
    * @return true if valid VPay credit card number.
    */
+  @Pure
   public static boolean isVPay(String cc) {
     return CreditCardValidator.VPAY_VALIDATOR.isValid(cc);
   }
@@ -17,15 +17,11 @@
 package co.cask.functions;
 
 import co.cask.wrangler.dq.TypeInference;
-import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
-import org.joda.time.Period;
-import org.joda.time.Seconds;
+import co.cask.wrangler.utils.DateTimes;
 
-import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.TimeZone;
+import java.time.format.TextStyle;
+import java.util.Locale;
 
 import static java.time.temporal.ChronoField.ERA;
 import static java.time.temporal.ChronoUnit.DAYS;
@@ -43,6 +39,7 @@ public final class Dates {
    * @param date to be converted to unix timestamp.
    * @return unixtimestamp of the date.
    */
+  @Pure
   public static long UNIXTIMESTAMP_MILLIS(ZonedDateTime date) {
     validate(date, "UNIXTIMESTAMP_MILLIS");
     return date.toInstant().toEpochMilli();
@@ -54,6 +51,7 @@ public final class Dates {
    * @param date to be converted to unix timestamp.
    * @return unixtimestamp of the date.
    */
+  @Pure
   public static long UNIXTIMESTAMP_SECONDS(ZonedDateTime date) {
     validate(date, "UNIXTIMESTAMP_SECONDS");
     return date.toEpochSecond();
@@ -67,6 +65,7 @@ public final class Dates {
    * @param date to extract month.
    * @return month.
    */
+  @Pure
   public static int MONTH(ZonedDateTime date) {
     validate(date, "MONTH");
     return date.getMonthValue();
@@ -78,11 +77,10 @@ public final class Dates {
    * @param date to extract short month description.
    * @return short month description.
    */
+  @Pure
   public static String MONTH_SHORT(ZonedDateTime date) {
     validate(date, "MONTH_SHORT");
-    DateTime dt = getDateTime(date);
-    DateTime.Property pMoY = dt.monthOfYear();
-    return pMoY.getAsShortText();
+    return date.getMonth().getDisplayName(TextStyle.SHORT, Locale.getDefault());
   }
 
   /**
@@ -91,11 +89,10 @@ public final class Dates {
    * @param date to extract long month description.
    * @return long month description.
    */
+  @Pure
   public static String MONTH_LONG(ZonedDateTime date) {
     validate(date, "MONTH_LONG");
-    DateTime dt = getDateTime(date);
-    DateTime.Property pMoY = dt.monthOfYear();
-    return pMoY.getAsText();
+    return date.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault());
   }
 
   /**
@@ -104,6 +101,7 @@ public final class Dates {
    * @param date to extract year from.
    * @return year as integer.
    */
+  @Pure
   public static int YEAR(ZonedDateTime date) {
     validate(date, "YEAR");
     return date.getYear();
@@ -115,6 +113,7 @@ public final class Dates {
    * @param date to extract date of the week.
    * @return day of the week.
    */
+  @Pure
   public static int DAY_OF_WEEK(ZonedDateTime date) {
     validate(date, "DAY_OF_WEEK");
     return date.getDayOfWeek().getValue();
@@ -126,11 +125,10 @@ public final class Dates {
    * @param date to extract date of the week.
    * @return day of the week.
    */
+  @Pure
   public static String DAY_OF_WEEK_SHORT(ZonedDateTime date) {
     validate(date, "DAY_OF_WEEK_SHORT");
-    DateTime dt = getDateTime(date);
-    DateTime.Property value = dt.dayOfWeek();
-    return value.getAsShortText();
+    return date.getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.getDefault());
   }
 
   /**
@@ -139,11 +137,10 @@ public final class Dates {
    * @param date to extract date of the week.
    * @return day of the week.
    */
+  @Pure
   public static String DAY_OF_WEEK_LONG(ZonedDateTime date) {
     validate(date, "DAY_OF_WEEK_LONG");
-    DateTime dt = getDateTime(date);
-    DateTime.Property value = dt.dayOfWeek();
-    return value.getAsText();
+    return date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.getDefault());
   }
 
   /**
@@ -152,6 +149,7 @@ public final class Dates {
    * @param date to extract date of the year.
    * @return date of the year.
    */
+  @Pure
   public static int DAY_OF_YEAR(ZonedDateTime date) {
     validate(date, "DAY_OF_YEAR");
     return date.getDayOfYear();
@@ -163,6 +161,7 @@ public final class Dates {
    * @param date to extract era.
    * @return era.
    */
+  @Pure
   public static int ERA(ZonedDateTime date) {
     validate(date, "ERA");
     return date.get(ERA);
@@ -174,11 +173,10 @@ public final class Dates {
    * @param date to extract era.
    * @return era.
    */
+  @Pure
   public static String ERA_SHORT(ZonedDateTime date) {
     validate(date, "ERA_SHORT");
-    DateTime dt = getDateTime(date);
-    DateTime.Property value = dt.era();
-    return value.getAsShortText();
+    return date.toLocalDate().getEra().getDisplayName(TextStyle.SHORT, Locale.getDefault());
   }
 
   /**
@@ -187,11 +185,11 @@ public final class Dates {
    * @param date to extract era.
    * @return era.
    */
+  @Pure
   public static String ERA_LONG(ZonedDateTime date) {
     validate(date, "ERA_LONG");
-    DateTime dt = getDateTime(date);
-    DateTime.Property value = dt.era();
-    return value.getAsText();
+    // Same as the short name, recipes expect 'AD' rather than 'Anno Domini'.
+    return date.toLocalDate().getEra().getDisplayName(TextStyle.SHORT, Locale.getDefault());
   }
 
   /**
@@ -201,6 +199,7 @@ public final class Dates {
    * @param date2 Second date.
    * @return Number of days.
    */
+  @Pure
   public static int DAYS_BETWEEN(ZonedDateTime date1, ZonedDateTime date2) {
     validate(date1, "ERA_LONG");
     validate(date2, "ERA_LONG");
@@ -215,7 +214,7 @@ public final class Dates {
    */
   public static int DAYS_BETWEEN_NOW(ZonedDateTime date) {
     validate(date, "DAYS_BETWEEN_NOW");
-    ZonedDateTime now = ZonedDateTime.now(ZoneId.ofOffset("UTC", ZoneOffset.UTC));
+    ZonedDateTime now = ZonedDateTime.now(DateTimes.UTC);
     // returns number of days between date and now, date being lower.
     return (int) DAYS.between(date, now);
   }
@@ -226,9 +225,9 @@ public final class Dates {
    * @param seconds to be converted.
    * @return days equivalent of seconds
    */
+  @Pure
   public static int SECONDS_TO_DAYS(int seconds) {
-    Period period = new Period(Seconds.seconds(seconds));
-    return period.toStandardDays().getDays();
+    return seconds / 86400;
   }
 
   /**
@@ -237,9 +236,9 @@ public final class Dates {
    * @param seconds to be converted.
    * @return hours equivalent of seconds
    */
+  @Pure
   public static int SECONDS_TO_HOURS(int seconds) {
-    Period period = new Period(Seconds.seconds(seconds));
-    return period.toStandardHours().getHours();
+    return seconds / 3600;
   }
 
   /**
@@ -248,9 +247,9 @@ public final class Dates {
    * @param seconds to be converted.
    * @return mins equivalent of seconds
    */
+  @Pure
   public static int SECONDS_TO_MINUTES(int seconds) {
-    Period period = new Period(Seconds.seconds(seconds));
-    return period.toStandardMinutes().getMinutes();
+    return seconds / 60;
   }
 
   /**
@@ -259,9 +258,9 @@ public final class Dates {
    * @param seconds to be converted.
    * @return weeks equivalent of seconds
    */
+  @Pure
   public static int SECONDS_TO_WEEKS(int seconds) {
-    Period period = new Period(Seconds.seconds(seconds));
-    return period.toStandardWeeks().getWeeks();
+    return seconds / 604800;
   }
 
   /**
@@ -270,6 +269,7 @@ public final class Dates {
    * @param value representing a date.
    * @return true if it's date, false if not.
    */
+  @Pure
   public static boolean isDate(String value) {
     return TypeInference.isDate(value);
   }
@@ -280,16 +280,11 @@ public final class Dates {
    * @param value representing date time.
    * @return true if it's datetime, false if not.
    */
+  @Pure
   public static boolean isTime(String value) {
     return TypeInference.isTime(value);
   }
 
-  private static DateTime getDateTime(ZonedDateTime zonedDateTime) {
-    return new DateTime(
-      zonedDateTime.toInstant().toEpochMilli(),
-      DateTimeZone.forTimeZone(TimeZone.getTimeZone(zonedDateTime.getZone())));
-  }
-
   private static void validate(ZonedDateTime date, String method) {
     if (date == null) {
       throw new IllegalArgumentException(String.format("Date can not be null for %s", method));
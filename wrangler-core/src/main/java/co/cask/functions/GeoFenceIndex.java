@@ -0,0 +1,250 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.functions;
+
+import com.github.filosganga.geogson.model.Feature;
+import com.github.filosganga.geogson.model.FeatureCollection;
+import com.github.filosganga.geogson.model.Geometry;
+import com.github.filosganga.geogson.model.LinearRing;
+import com.github.filosganga.geogson.model.MultiPolygon;
+import com.github.filosganga.geogson.model.Polygon;
+import com.github.filosganga.geogson.model.positions.SinglePosition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Polygons of a collection of geofences, with their bounding boxes and a grid over them, to find the fences a
+ * point is in without testing each of them.
+ *
+ * <p>The bounding box of all the polygons is divided into cells, each cell lists the polygons whose bounding box
+ * overlaps it. A point is tested against the polygons of its cell only, first against their bounding boxes and
+ * then with the winding number algorithm, a point being in a polygon when it's inside its perimeter and outside
+ * of its holes. Instances are immutable and thread-safe.</p>
+ */
+final class GeoFenceIndex {
+  // Cells along each axis are at most twice the square root of the number of polygons, up to this limit.
+  private static final int MAX_CELLS = 256;
+  private static final int[] NONE = new int[0];
+
+  private final Area[] areas;
+  private final double minLon;
+  private final double minLat;
+  private final double maxLon;
+  private final double maxLat;
+  private final int columns;
+  private final int rows;
+  private final double cellWidth;
+  private final double cellHeight;
+  // Indexes in areas of the polygons overlapping each cell, by row then column.
+  private final int[][] cells;
+
+  private GeoFenceIndex(List<Area> areas) {
+    this.areas = areas.toArray(new Area[areas.size()]);
+    double minLon = Double.POSITIVE_INFINITY;
+    double minLat = Double.POSITIVE_INFINITY;
+    double maxLon = Double.NEGATIVE_INFINITY;
+    double maxLat = Double.NEGATIVE_INFINITY;
+    for (Area area : areas) {
+      minLon = Math.min(minLon, area.perimeter.minLon);
+      minLat = Math.min(minLat, area.perimeter.minLat);
+      maxLon = Math.max(maxLon, area.perimeter.maxLon);
+      maxLat = Math.max(maxLat, area.perimeter.maxLat);
+    }
+    this.minLon = minLon;
+    this.minLat = minLat;
+    this.maxLon = maxLon;
+    this.maxLat = maxLat;
+
+    int size = areas.isEmpty() ? 1 : (int) Math.min(MAX_CELLS, Math.ceil(2 * Math.sqrt(areas.size())));
+    this.columns = size;
+    this.rows = size;
+    this.cellWidth = areas.isEmpty() ? 1 : Math.max((maxLon - minLon) / columns, Double.MIN_VALUE);
+    this.cellHeight = areas.isEmpty() ? 1 : Math.max((maxLat - minLat) / rows, Double.MIN_VALUE);
+
+    List<List<Integer>> overlapping = new ArrayList<>(rows * columns);
+    for (int i = 0; i < rows * columns; ++i) {
+      overlapping.add(new ArrayList<>());
+    }
+    for (int i = 0; i < this.areas.length; ++i) {
+      Ring perimeter = this.areas[i].perimeter;
+      for (int row = row(perimeter.minLat); row <= row(perimeter.maxLat); ++row) {
+        for (int column = column(perimeter.minLon); column <= column(perimeter.maxLon); ++column) {
+          overlapping.get(row * columns + column).add(i);
+        }
+      }
+    }
+    this.cells = new int[rows * columns][];
+    for (int i = 0; i < cells.length; ++i) {
+      List<Integer> indexes = overlapping.get(i);
+      cells[i] = indexes.isEmpty() ? NONE : new int[indexes.size()];
+      for (int j = 0; j < indexes.size(); ++j) {
+        cells[i][j] = indexes.get(j);
+      }
+    }
+  }
+
+  /**
+   * Builds the index of the polygons and multi-polygons of the collection.
+   *
+   * @param collection of fences.
+   * @return the index of the fences.
+   * @throws IllegalArgumentException thrown when a fence is not a polygon or a multi-polygon.
+   */
+  static GeoFenceIndex of(FeatureCollection collection) {
+    List<Area> areas = new ArrayList<>();
+    for (Feature feature : collection.features()) {
+      Geometry<?> geometry = feature.geometry();
+      if (geometry instanceof Polygon) {
+        areas.add(new Area((Polygon) geometry));
+      } else if (geometry instanceof MultiPolygon) {
+        for (Polygon polygon : ((MultiPolygon) geometry).polygons()) {
+          areas.add(new Area(polygon));
+        }
+      } else {
+        throw new IllegalArgumentException(
+          String.format("Fence of type '%s' is not supported, fences are polygons or multi-polygons.",
+                        geometry == null ? null : geometry.type()));
+      }
+    }
+    return new GeoFenceIndex(areas);
+  }
+
+  /**
+   * Checks if a point is inside any of the fences.
+   *
+   * @param lon longitude of the point.
+   * @param lat latitude of the point.
+   * @return true if the point is inside a fence, else false.
+   */
+  boolean contains(double lon, double lat) {
+    if (!(lon >= minLon && lon <= maxLon && lat >= minLat && lat <= maxLat)) {
+      return false;
+    }
+    for (int index : cells[row(lat) * columns + column(lon)]) {
+      if (areas[index].contains(lon, lat)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of polygons indexed.
+   */
+  int size() {
+    return areas.length;
+  }
+
+  private int column(double lon) {
+    return Math.max(0, Math.min(columns - 1, (int) ((lon - minLon) / cellWidth)));
+  }
+
+  private int row(double lat) {
+    return Math.max(0, Math.min(rows - 1, (int) ((lat - minLat) / cellHeight)));
+  }
+
+  /**
+   * A polygon, the area inside its perimeter and outside of its holes.
+   */
+  private static final class Area {
+    private final Ring perimeter;
+    private final Ring[] holes;
+
+    Area(Polygon polygon) {
+      this.perimeter = new Ring(polygon.perimeter());
+      List<Ring> holes = new ArrayList<>();
+      for (LinearRing hole : polygon.holes()) {
+        holes.add(new Ring(hole));
+      }
+      this.holes = holes.toArray(new Ring[holes.size()]);
+    }
+
+    boolean contains(double lon, double lat) {
+      if (!perimeter.contains(lon, lat)) {
+        return false;
+      }
+      for (Ring hole : holes) {
+        if (hole.contains(lon, lat)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * A closed ring of coordinates and its bounding box.
+   */
+  private static final class Ring {
+    private final double[] lons;
+    private final double[] lats;
+    private final double minLon;
+    private final double minLat;
+    private final double maxLon;
+    private final double maxLat;
+
+    Ring(LinearRing ring) {
+      List<SinglePosition> positions = new ArrayList<>();
+      for (SinglePosition position : ring.positions().children()) {
+        positions.add(position);
+      }
+      lons = new double[positions.size()];
+      lats = new double[positions.size()];
+      double minLon = Double.POSITIVE_INFINITY;
+      double minLat = Double.POSITIVE_INFINITY;
+      double maxLon = Double.NEGATIVE_INFINITY;
+      double maxLat = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < lons.length; ++i) {
+        lons[i] = positions.get(i).coordinates().getLon();
+        lats[i] = positions.get(i).coordinates().getLat();
+        minLon = Math.min(minLon, lons[i]);
+        minLat = Math.min(minLat, lats[i]);
+        maxLon = Math.max(maxLon, lons[i]);
+        maxLat = Math.max(maxLat, lats[i]);
+      }
+      this.minLon = minLon;
+      this.minLat = minLat;
+      this.maxLon = maxLon;
+      this.maxLat = maxLat;
+    }
+
+    /**
+     * Checks if the point is inside the ring with the winding number algorithm.
+     */
+    boolean contains(double lon, double lat) {
+      if (lon < minLon || lon > maxLon || lat < minLat || lat > maxLat) {
+        return false;
+      }
+      int wn = 0;
+      for (int i = 0; i < lons.length - 1; i++) {
+        if (lats[i] <= lat) {
+          if (lats[i + 1] > lat && isLeft(i, lon, lat) > 0.0) {
+            ++wn;
+          }
+        } else if (lats[i + 1] <= lat && isLeft(i, lon, lat) < 0.0) {
+          --wn;
+        }
+      }
+      return wn != 0;
+    }
+
+    private double isLeft(int i, double lon, double lat) {
+      return (lons[i + 1] - lons[i]) * (lat - lats[i]) - (lon - lons[i]) * (lats[i + 1] - lats[i]);
+    }
+  }
+}
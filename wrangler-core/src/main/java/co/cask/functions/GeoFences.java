@@ -17,20 +17,20 @@
 package co.cask.functions;
 
 import com.github.filosganga.geogson.gson.GeometryAdapterFactory;
-import com.github.filosganga.geogson.model.Coordinates;
-import com.github.filosganga.geogson.model.Feature;
 import com.github.filosganga.geogson.model.FeatureCollection;
-import com.github.filosganga.geogson.model.Polygon;
-import com.github.filosganga.geogson.model.positions.SinglePosition;
-import com.google.common.collect.Lists;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 
-import java.util.List;
-
 /**
  * GeoFencing check based on location and polygon
+ *
+ * <p>The fences are parsed once and indexed, in a process-wide cache keyed by their GeoJson representation,
+ * which is usually a literal of the expression and so the same string on every row.</p>
  */
 public final class GeoFences {
 
@@ -38,62 +38,53 @@ public final class GeoFences {
       .registerTypeAdapterFactory(new GeometryAdapterFactory())
       .create();
 
+  private static final LoadingCache<String, GeoFenceIndex> FENCES = CacheBuilder.newBuilder()
+    .maximumSize(100)
+    .build(new CacheLoader<String, GeoFenceIndex>() {
+      @Override
+      public GeoFenceIndex load(String geofences) {
+        return GeoFenceIndex.of(parse(geofences));
+      }
+    });
+
   /**
    * Static method to be used with jexl
    * Checks if Point is inside any of the given polygonal geofences based on the winding number algorithm.
+   * A point inside a hole of a polygon is outside of the polygon.
    *
    * @param latitude  latitude of the location to verify
    * @param longitude longitude of the location to verify
-   * @param geofences GeoJson representation of the fence area
+   * @param geofences GeoJson representation of the fence area, polygons or multi-polygons
    * @return true if location is inside any of the given geofences, else false
    */
+  @Pure
   public static Boolean inFence(double latitude, double longitude, String geofences) {
-    Coordinates location = Coordinates.of(longitude, latitude);
-    Boolean inzone = false;
-    FeatureCollection featureCollection;
+    GeoFenceIndex index;
+    try {
+      index = FENCES.getUnchecked(geofences);
+    } catch (UncheckedExecutionException e) {
+      if (e.getCause() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getCause();
+      }
+      throw e;
+    }
+    return index.contains(longitude, latitude);
+  }
+
+  private static FeatureCollection parse(String geofences) {
+    FeatureCollection collection;
     try {
-      featureCollection = GSON.fromJson(geofences, FeatureCollection.class);
+      collection = GSON.fromJson(geofences, FeatureCollection.class);
     } catch (IllegalArgumentException e) {
       throw new IllegalArgumentException(String.format("String %s is not a valid geoJson representation of fence",
           geofences), e);
     } catch (JsonSyntaxException e) {
       throw new IllegalArgumentException(String.format("String %s is not a valid Json string", geofences), e);
     }
-    for (Feature feature : featureCollection.features()) {
-      inzone = inzone || isPointInside(feature, location);
-    }
-    return inzone;
-  }
-
-  private static Boolean isPointInside(Feature feature, Coordinates location) {
-    Polygon polygon = (Polygon) feature.geometry();
-    List<SinglePosition> positions = Lists.newArrayList(polygon.perimeter().positions().children());
-
-    if ((positions == null) || (location == null)) {
-      return false;
-    }
-
-    int wn = 0;
-    for (int i = 0; i < positions.size() - 1; i++) {
-      if (positions.get(i).coordinates().getLat() <= location.getLat()) {
-        if (positions.get(i + 1).coordinates().getLat() > location.getLat()) {
-          if (isLeft(positions.get(i).coordinates(), positions.get(i + 1).coordinates(), location) > 0.0) {
-            ++wn;
-          }
-        }
-      } else {
-        if (positions.get(i + 1).coordinates().getLat() <= location.getLat()) {
-          if (isLeft(positions.get(i).coordinates(), positions.get(i + 1).coordinates(), location) < 0.0) {
-            --wn;
-          }
-        }
-      }
+    if (collection == null) {
+      throw new IllegalArgumentException(String.format("String %s is not a valid geoJson representation of fence",
+          geofences));
     }
-    return (wn != 0);
-  }
-
-  private static double isLeft(Coordinates vertex0, Coordinates vertex1, Coordinates gpC) {
-    return (vertex1.getLon() - vertex0.getLon()) * (gpC.getLat() - vertex0.getLat()) -
-        (gpC.getLon() - vertex0.getLon()) * (vertex1.getLat() - vertex0.getLat());
+    return collection;
   }
 }
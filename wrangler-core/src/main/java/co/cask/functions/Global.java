@@ -31,6 +31,7 @@ public final class Global {
    * @param value of type String to be converted to double.
    * @return double value of the string passed.
    */
+  @Pure
   public static double toDouble(String value) {
     return Double.parseDouble(value);
   }
@@ -41,6 +42,7 @@ public final class Global {
    * @param value of type string to be converted to float.
    * @return float value of the string passed.
    */
+  @Pure
   public static float toFloat(String value) {
     return Float.parseFloat(value);
   }
@@ -51,6 +53,7 @@ public final class Global {
    * @param value  of type string to be converted to float.
    * @return  float value of the string passed.
    */
+  @Pure
   public static long toLong(String value) {
     return Long.parseLong(value);
   }
@@ -61,6 +64,7 @@ public final class Global {
    * @param value  of type string to be converted to integer.
    * @return  integer value of the string passed.
    */
+  @Pure
   public static int toInteger(String value) {
     return Integer.parseInt(value);
   }
@@ -82,6 +86,7 @@ public final class Global {
    * @param b Second String
    * @return concated Strings
    */
+  @Pure
   public static String concat(String a, String b) {
     if (a == null) {
       return b;
@@ -100,6 +105,7 @@ public final class Global {
    * @param b second string.
    * @return concated string.
    */
+  @Pure
   public static String concat(String a, String delim, String b) {
     if (a == null && b != null) {
       return delim.concat(b);
@@ -162,6 +168,7 @@ public final class Global {
    * </ul>
    * @return the padded string.
    */
+  @Pure
   public static String padAtStart(String string, int minLength, char padChar) {
     return Strings.padStart(string, minLength, padChar);
   }
@@ -177,6 +184,7 @@ public final class Global {
    *
    * @return the padded string
    */
+  @Pure
   public static String padAtEnd(String string, int minLength, char padChar) {
     return Strings.padEnd(string, minLength, padChar);
   }
@@ -191,6 +199,7 @@ public final class Global {
    *     {@code count} is zero)
    * @throws IllegalArgumentException if {@code count} is negative
    */
+  @Pure
   public static String repeat(String string, int count) {
     return Strings.repeat(string, count);
   }
@@ -205,6 +214,7 @@ public final class Global {
    * @return value unquoted, null if input is null.
    *
    */
+  @Pure
   public static String unquote(String string) {
 
     if (string != null && ((string.startsWith("\"") && string.endsWith("\""))
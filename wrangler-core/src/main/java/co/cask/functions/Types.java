@@ -28,6 +28,7 @@ public class Types {
    * @param value representing date.
    * @return true if date, else false.
    */
+  @Pure
   public static boolean isDate(String value) {
     return TypeInference.isDate(value);
   }
@@ -38,6 +39,7 @@ public class Types {
    * @param value representing date time.
    * @return true if datetime, else false.
    */
+  @Pure
   public static boolean isTime(String value) {
     return TypeInference.isTime(value);
   }
@@ -48,6 +50,7 @@ public class Types {
    * @param value representing a number.
    * @return true if number, else false.
    */
+  @Pure
   public static boolean isNumber(String value) {
     return TypeInference.isNumber(value);
   }
@@ -59,6 +62,7 @@ public class Types {
    * @param value representing a boolean.
    * @return true if boolean, else false.
    */
+  @Pure
   public static boolean isBoolean(String value) {
     return TypeInference.isBoolean(value);
   }
@@ -69,6 +73,7 @@ public class Types {
    * @param value representing a empty.
    * @return true if empty, else false.
    */
+  @Pure
   public static boolean isEmpty(String value) {
     return TypeInference.isEmpty(value);
   }
@@ -79,6 +84,7 @@ public class Types {
    * @param value representing a double.
    * @return true if double, else false.
    */
+  @Pure
   public static boolean isDouble(String value) {
     return TypeInference.isDouble(value);
   }
@@ -89,6 +95,7 @@ public class Types {
    * @param value representing a integer.
    * @return true if integer, else false.
    */
+  @Pure
   public static boolean isInteger(String value) {
     return TypeInference.isInteger(value);
   }
@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.clients;
+
+import com.github.rholder.retry.Retryer;
+import com.github.rholder.retry.RetryerBuilder;
+import com.github.rholder.retry.StopStrategies;
+import com.github.rholder.retry.WaitStrategies;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class {@link SchemaCache} is a process-wide cache of schemas retrieved from the schema registry
+ * service and compiled into the form used by the decoders, such as AVRO schemas or protobuf descriptors.
+ *
+ * <p>Schemas are keyed by the service url, namespace, schema id and version. A specific version of a schema
+ * never changes, so it's kept until evicted by size. The latest version of a schema is refreshed in the
+ * background when it's accessed after the refresh interval, callers get the previous version meanwhile. When
+ * the refresh fails the previous version is kept for another interval, so that the service is not asked again
+ * for every record while it's unavailable. Concurrent callers asking for a schema that's not yet loaded wait on
+ * a single fetch from the service.</p>
+ *
+ * @param <T> type of the compiled schema, it's shared by all the callers and must be thread-safe.
+ */
+public final class SchemaCache<T> {
+  // Version used in the key for the latest version of a schema.
+  private static final long LATEST = -1;
+  private static final long MAXIMUM_SIZE = 1000;
+  private static final long REFRESH_MINUTES = 5;
+  private static final Logger LOG = LoggerFactory.getLogger(SchemaCache.class);
+  // Refreshes of the latest versions of the schemas, shared by all the caches.
+  private static final Executor REFRESHES = Executors.newCachedThreadPool(
+    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("schema-cache-refresh-%d").build());
+
+  private final Compiler<T> compiler;
+  private final LoadingCache<Key, T> versions;
+  private final LoadingCache<Key, T> latest;
+
+  /**
+   * Compiles the specification of a schema as stored in the schema registry.
+   *
+   * @param <T> type of the compiled schema.
+   */
+  public interface Compiler<T> {
+    T compile(byte[] specification) throws Exception;
+  }
+
+  public SchemaCache(Compiler<T> compiler) {
+    this(compiler, REFRESH_MINUTES, TimeUnit.MINUTES, Ticker.systemTicker(), REFRESHES);
+  }
+
+  @VisibleForTesting
+  SchemaCache(Compiler<T> compiler, long refresh, TimeUnit unit, Ticker ticker, Executor refreshes) {
+    this.compiler = compiler;
+    CacheLoader<Key, T> loader = new CacheLoader<Key, T>() {
+      @Override
+      public T load(Key key) throws Exception {
+        return fetch(key);
+      }
+
+      @Override
+      public ListenableFuture<T> reload(Key key, T previous) {
+        ListenableFutureTask<T> task = ListenableFutureTask.create(() -> {
+          try {
+            return fetch(key);
+          } catch (Exception e) {
+            // Keeping the previous version starts a new refresh interval.
+            LOG.warn(String.format("Failed to refresh schema '%s' in namespace '%s', using the previous version. %s",
+                                   key.id, key.namespace, e.getMessage()));
+            return previous;
+          }
+        });
+        refreshes.execute(task);
+        return task;
+      }
+    };
+    this.versions = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_SIZE)
+      .build(loader);
+    this.latest = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_SIZE)
+      .refreshAfterWrite(refresh, unit)
+      .ticker(ticker)
+      .build(loader);
+  }
+
+  /**
+   * Returns the compiled schema, fetching it from the schema registry service if it's not cached.
+   *
+   * @param url of the schema registry service.
+   * @param namespace of the schema.
+   * @param id of the schema.
+   * @param version of the schema, -1 for the latest version.
+   * @return the compiled schema.
+   * @throws ExecutionException thrown when the schema can't be retrieved or compiled, the cause
+   * is the exception thrown by the client or the compiler.
+   */
+  public T get(String url, String namespace, String id, long version) throws ExecutionException {
+    Key key = new Key(url, namespace, id, version);
+    try {
+      return version == LATEST ? latest.get(key) : versions.get(key);
+    } catch (UncheckedExecutionException e) {
+      throw new ExecutionException(e.getCause());
+    }
+  }
+
+  /**
+   * Removes all the schemas from the cache.
+   */
+  public void invalidateAll() {
+    versions.invalidateAll();
+    latest.invalidateAll();
+  }
+
+  private T fetch(final Key key) throws Exception {
+    // Retries when there is connection issue or any request / response issue. It would exponentially
+    // back-off till wait time of 10 seconds is reached for 5 attempts.
+    Retryer<byte[]> retryer = RetryerBuilder.<byte[]>newBuilder()
+      .retryIfExceptionOfType(IOException.class)
+      .retryIfExceptionOfType(RestClientException.class)
+      .withWaitStrategy(WaitStrategies.exponentialWait(10, TimeUnit.SECONDS))
+      .withStopStrategy(StopStrategies.stopAfterAttempt(5))
+      .build();
+
+    byte[] bytes;
+    try {
+      bytes = retryer.call(() -> {
+        SchemaRegistryClient client = new SchemaRegistryClient(key.url);
+        if (key.version == LATEST) {
+          return client.getSchema(key.namespace, key.id);
+        }
+        return client.getSchema(key.namespace, key.id, key.version);
+      });
+    } catch (ExecutionException e) {
+      // Failures that are not retried are reported with the exception thrown by the client.
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+
+    if (bytes == null) {
+      throw new IOException(
+        String.format("Schema '%s' version '%s' not found in namespace '%s'.", key.id,
+                      key.version == LATEST ? "latest" : key.version, key.namespace)
+      );
+    }
+    return compiler.compile(bytes);
+  }
+
+  /**
+   * Identifies a version of a schema in a schema registry service.
+   */
+  private static final class Key {
+    private final String url;
+    private final String namespace;
+    private final String id;
+    private final long version;
+
+    Key(String url, String namespace, String id, long version) {
+      this.url = url;
+      this.namespace = namespace;
+      this.id = id;
+      this.version = version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return version == that.version && Objects.equal(url, that.url)
+        && Objects.equal(namespace, that.namespace) && Objects.equal(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(url, namespace, id, version);
+    }
+  }
+}
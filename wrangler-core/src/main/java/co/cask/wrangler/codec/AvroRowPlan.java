@@ -0,0 +1,186 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.codec;
+
+import co.cask.wrangler.api.Row;
+import com.google.gson.stream.JsonWriter;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class {@link AvroRowPlan} copies the fields of AVRO {@link GenericRecord} into a {@link Row}
+ * using column names computed once from the schema.
+ *
+ * <p>When flattening, fields of nested records become columns named {@code <field>_<nested field>},
+ * otherwise nested records are added as is. {@link Utf8} values are converted to strings and maps
+ * or arrays are converted to their JSON representation.</p>
+ *
+ * <p>Values that a {@link org.apache.avro.generic.GenericDatumReader} would overwrite when reading
+ * into the same record again (nested records, bytes and fixed) are removed from the record once
+ * they are added to the row, so the record can be safely reused for the next read. A plan can be
+ * shared across threads.</p>
+ */
+public final class AvroRowPlan {
+  private final Schema schema;
+  private final boolean flatten;
+  private final Column[] columns;
+
+  public AvroRowPlan(Schema schema, boolean flatten) {
+    this(schema, null, flatten);
+  }
+
+  private AvroRowPlan(Schema schema, String prefix, boolean flatten) {
+    this.schema = schema;
+    this.flatten = flatten;
+    List<Schema.Field> fields = schema.getFields();
+    this.columns = new Column[fields.size()];
+    for (int i = 0; i < columns.length; ++i) {
+      Schema.Field field = fields.get(i);
+      columns[i] = new Column(prefix == null ? field.name() : prefix + "_" + field.name(), field.pos());
+    }
+  }
+
+  /**
+   * Adds the fields of the record to the row.
+   *
+   * @param record to be added, it's schema must be the schema of the plan.
+   * @param row to which the columns are added.
+   */
+  public void add(GenericRecord record, Row row) {
+    for (Column column : columns) {
+      Object value = record.get(column.pos);
+      if (value instanceof GenericRecord) {
+        if (flatten) {
+          GenericRecord nested = (GenericRecord) value;
+          column.plan(nested.getSchema()).add(nested, row);
+          continue;
+        }
+        record.put(column.pos, null);
+      } else if (value instanceof ByteBuffer || value instanceof GenericFixed) {
+        record.put(column.pos, null);
+      } else if (value instanceof Utf8) {
+        value = value.toString();
+      } else if (value instanceof Map || value instanceof Collection) {
+        value = toJson(value);
+      }
+      row.add(column.name, value);
+    }
+  }
+
+  /**
+   * Converts the AVRO value to it's JSON representation. Bytes are written as a string of
+   * ISO-8859-1 characters as in the AVRO JSON encoding.
+   */
+  public static String toJson(Object value) {
+    StringWriter out = new StringWriter();
+    JsonWriter writer = new JsonWriter(out);
+    writer.setHtmlSafe(true);
+    writer.setLenient(true);
+    try {
+      write(value, writer);
+      writer.flush();
+    } catch (IOException e) {
+      // Can't happen when writing to a string.
+      throw new IllegalStateException(e);
+    }
+    return out.toString();
+  }
+
+  private static void write(Object value, JsonWriter writer) throws IOException {
+    if (value == null) {
+      writer.nullValue();
+    } else if (value instanceof CharSequence) {
+      writer.value(value.toString());
+    } else if (value instanceof Boolean) {
+      writer.value((Boolean) value);
+    } else if (value instanceof Number) {
+      writer.value((Number) value);
+    } else if (value instanceof Map) {
+      writer.beginObject();
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        writer.name(String.valueOf(entry.getKey()));
+        write(entry.getValue(), writer);
+      }
+      writer.endObject();
+    } else if (value instanceof Collection) {
+      writer.beginArray();
+      for (Object element : (Collection<?>) value) {
+        write(element, writer);
+      }
+      writer.endArray();
+    } else if (value instanceof GenericRecord) {
+      GenericRecord record = (GenericRecord) value;
+      writer.beginObject();
+      for (Schema.Field field : record.getSchema().getFields()) {
+        writer.name(field.name());
+        write(record.get(field.pos()), writer);
+      }
+      writer.endObject();
+    } else if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      writer.value(latin1(bytes));
+    } else if (value instanceof GenericFixed) {
+      writer.value(latin1(((GenericFixed) value).bytes()));
+    } else {
+      writer.value(value.toString());
+    }
+  }
+
+  private static String latin1(byte[] bytes) {
+    char[] chars = new char[bytes.length];
+    for (int i = 0; i < bytes.length; ++i) {
+      chars[i] = (char) (bytes[i] & 0xff);
+    }
+    return new String(chars);
+  }
+
+  /**
+   * A field of the record along with the column name it's added as.
+   */
+  private final class Column {
+    private final String name;
+    private final int pos;
+    // Plan for the nested record, created on first use as schemas can be recursive.
+    private volatile AvroRowPlan nested;
+
+    Column(String name, int pos) {
+      this.name = name;
+      this.pos = pos;
+    }
+
+    AvroRowPlan plan(Schema recordSchema) {
+      AvroRowPlan plan = nested;
+      if (plan == null || plan.schema != recordSchema) {
+        // A union can have more than one record type, only the last one used is kept.
+        plan = new AvroRowPlan(recordSchema, name, flatten);
+        nested = plan;
+      }
+      return plan;
+    }
+  }
+}
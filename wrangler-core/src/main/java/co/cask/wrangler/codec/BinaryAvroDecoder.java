@@ -17,15 +17,12 @@
 package co.cask.wrangler.codec;
 
 import co.cask.wrangler.api.Row;
-import com.google.gson.Gson;
 import org.apache.avro.AvroTypeException;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.util.Utf8;
 
-import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -34,13 +31,18 @@ import java.util.Map;
 
 /**
  * This class {@link BinaryAvroDecoder} decodes a byte array of AVRO Json Records into the {@link Row} structure.
+ *
+ * <p>The {@link BinaryDecoder} and the {@link GenericRecord} read into are reused across calls, so an instance
+ * must not be used by multiple threads concurrently.</p>
  */
 public class BinaryAvroDecoder extends AbstractAvroDecoder {
-  private final Gson gson;
+  private final AvroRowPlan plan;
+  private BinaryDecoder decoder;
+  private GenericRecord record;
 
   public BinaryAvroDecoder(Schema schema) {
     super(schema);
-    this.gson = new Gson();
+    this.plan = new AvroRowPlan(schema, false);
   }
 
   /**
@@ -58,40 +60,22 @@ public class BinaryAvroDecoder extends AbstractAvroDecoder {
   @Override
   public List<Row> decode(byte[] bytes) throws DecoderException {
     List<Row> rows = new ArrayList<>();
-    BinaryDecoder decoder = null;
-    ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+    decoder = DecoderFactory.get().binaryDecoder(bytes, decoder);
     try {
-      decoder = DecoderFactory.get().binaryDecoder(in, null);
-      while (true) {
+      while (!decoder.isEnd()) {
         try {
-          GenericRecord gRecord = getReader().read(null, decoder);
-          List<Schema.Field> fields = getSchema().getFields();
-          Row r = new Row();
-          for (Schema.Field field : fields) {
-            Object object = gRecord.get(field.name());
-            if (object instanceof Utf8) {
-              Utf8 o = (Utf8) object;
-              object = o.toString();
-            } else if (object instanceof Map || object instanceof List) {
-              object = gson.toJson(object);
-            }
-            r.add(field.name(), object);
-          }
-          rows.add(r);
+          record = getReader().read(record, decoder);
         } catch (EOFException e) {
           break; // Reached end of buffer.
         }
+        Row r = new Row();
+        plan.add(record, r);
+        rows.add(r);
       }
     } catch (AvroTypeException e) {
       throw new DecoderException(e.getMessage());
     } catch (IOException e) {
       throw new DecoderException("Issue creating AVRO binary decoder. Verify the schema.");
-    } finally {
-      try {
-        in.close();
-      } catch (IOException e) {
-        // Can't do anything.
-      }
     }
     return rows;
   }
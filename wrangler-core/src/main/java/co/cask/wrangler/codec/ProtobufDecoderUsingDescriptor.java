@@ -14,77 +14,320 @@
  * the License.
  */
 
+
 package co.cask.wrangler.codec;
 
 import co.cask.wrangler.api.Row;
-import com.google.gson.Gson;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
-import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.InvalidProtocolBufferException;
-import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * This class {@link ProtobufDecoderUsingDescriptor} decodes a byte array of Protobuf
  * Records into the {@link Row} structure.
+ *
+ * <p>The message is read directly from a {@link CodedInputStream} using a plan of the fields computed
+ * once from the descriptor, without building a {@link com.google.protobuf.DynamicMessage}. Singular
+ * primitive fields are written to the row as they are read. Nested messages are only located while reading
+ * and are decoded into columns prefixed with the field name once the enclosing message is read, the occurrences
+ * of a singular nested message being merged as protobuf does. Repeated primitive fields, packed or not, are
+ * added as a list.</p>
+ *
+ * <p>Groups are not supported and are skipped along with unknown fields.</p>
  */
 public class ProtobufDecoderUsingDescriptor implements Decoder<Row> {
-  private final Gson gson;
-  private final Descriptors.Descriptor descriptor;
+  // Highest field number for which fields are looked up by index instead of through a map.
+  private static final int MAX_INDEXED_FIELD = 256;
 
+  private final MessagePlan plan;
 
   public ProtobufDecoderUsingDescriptor(byte[] bytes, String name)
     throws InvalidProtocolBufferException, Descriptors.DescriptorValidationException {
-    this.gson = new Gson();
+    this(fileDescriptor(bytes).findMessageTypeByName(name));
+  }
+
+  public ProtobufDecoderUsingDescriptor(Descriptors.Descriptor descriptor) {
+    this.plan = new MessagePlan(descriptor, null);
+  }
+
+  /**
+   * Builds the file descriptor from the first file of a serialized {@link DescriptorProtos.FileDescriptorSet}.
+   *
+   * @param bytes serialized descriptor set.
+   * @return the file descriptor, it's immutable and can be shared.
+   */
+  public static Descriptors.FileDescriptor fileDescriptor(byte[] bytes)
+    throws InvalidProtocolBufferException, Descriptors.DescriptorValidationException {
     DescriptorProtos.FileDescriptorSet fileDescriptorSet = DescriptorProtos.FileDescriptorSet.parseFrom(bytes);
     DescriptorProtos.FileDescriptorProto fileProto = fileDescriptorSet.getFile(0);
-    Descriptors.FileDescriptor fileDescriptor =
-      Descriptors.FileDescriptor.buildFrom(fileProto, new Descriptors.FileDescriptor[0]);
-    descriptor = fileDescriptor.findMessageTypeByName(name);
+    return Descriptors.FileDescriptor.buildFrom(fileProto, new Descriptors.FileDescriptor[0]);
   }
 
   @Override
   public List<Row> decode(byte[] bytes) throws DecoderException {
-    List<Row> rows = new ArrayList<>();
+    List<Row> rows = new ArrayList<>(1);
     try {
-      DynamicMessage message = DynamicMessage.parseFrom(descriptor, bytes);
       Row row = new Row();
-      decodeMessage(message, row, null);
+      plan.decode(bytes, Collections.singletonList(new Slice(0, bytes.length)), row);
       rows.add(row);
-    } catch (InvalidProtocolBufferException e) {
+    } catch (IOException e) {
       throw new DecoderException(e.getMessage());
     }
     return rows;
   }
 
-  private void decodeMessage(Message message, Row row, String root) {
-    for (Map.Entry<Descriptors.FieldDescriptor, Object> field : message.getAllFields().entrySet()) {
-      String name = field.getKey().getName();
-      String fullName = String.format("%s", name);
-      if (root != null) {
-        fullName = String.format("%s_%s", root, name);
+  /**
+   * Fields of a message type, ordered by field number, along with the names of the columns they are added as.
+   */
+  private static final class MessagePlan {
+    private final Descriptors.Descriptor descriptor;
+    private final FieldPlan[] fields;
+    private final FieldPlan[] indexed;
+    private final Map<Integer, FieldPlan> numbered;
+
+    MessagePlan(Descriptors.Descriptor descriptor, String prefix) {
+      this.descriptor = descriptor;
+      List<Descriptors.FieldDescriptor> descriptors = new ArrayList<>(descriptor.getFields());
+      descriptors.sort(Comparator.comparingInt(Descriptors.FieldDescriptor::getNumber));
+      boolean proto3 = descriptor.getFile().getSyntax() == Descriptors.FileDescriptor.Syntax.PROTO3;
+
+      this.fields = new FieldPlan[descriptors.size()];
+      this.indexed = new FieldPlan[MAX_INDEXED_FIELD + 1];
+      this.numbered = new HashMap<>();
+      for (int i = 0; i < fields.length; ++i) {
+        Descriptors.FieldDescriptor field = descriptors.get(i);
+        String name = prefix == null ? field.getName() : prefix + "_" + field.getName();
+        fields[i] = new FieldPlan(field, name, i, proto3);
+        if (field.getNumber() <= MAX_INDEXED_FIELD) {
+          indexed[field.getNumber()] = fields[i];
+        } else {
+          numbered.put(field.getNumber(), fields[i]);
+        }
       }
-      Descriptors.FieldDescriptor.Type type = field.getKey().getType();
-      Object value = field.getValue();
-      switch(type) {
-        case MESSAGE:
-          for (Message msg : (List<Message>) value) {
-            decodeMessage(msg, row, fullName);
+    }
+
+    /**
+     * Decodes the occurrences of a message, merged into one: a later value of a singular field replaces an
+     * earlier one, the values of repeated fields are concatenated and singular nested messages are merged.
+     */
+    @SuppressWarnings("unchecked")
+    void decode(byte[] bytes, List<Slice> slices, Row row) throws IOException {
+      // Values read for each of the fields.
+      Object[] values = new Object[fields.length];
+      for (Slice slice : slices) {
+        CodedInputStream input = CodedInputStream.newInstance(bytes, slice.offset, slice.length);
+        while (true) {
+          int tag = input.readTag();
+          if (tag == 0) {
+            break;
+          }
+          int number = WireFormat.getTagFieldNumber(tag);
+          FieldPlan field = number <= MAX_INDEXED_FIELD ? indexed[number] : numbered.get(number);
+          if (field == null || !field.read(input, tag, slice.offset, values)) {
+            input.skipField(tag);
           }
-          break;
+        }
+      }
 
-        case ENUM:
-          row.add(fullName, ((Descriptors.EnumValueDescriptor) value).getName());
-          break;
+      for (FieldPlan field : fields) {
+        Object value = values[field.index];
+        if (value == null) {
+          if (field.required) {
+            throw new InvalidProtocolBufferException(
+              String.format("Message '%s' is missing required field '%s'.", descriptor.getFullName(), field.name)
+            );
+          }
+          continue;
+        }
+        if (field.message) {
+          MessagePlan nested = field.nested();
+          List<Slice> occurrences = (List<Slice>) value;
+          if (field.repeated) {
+            for (Slice slice : occurrences) {
+              nested.decode(bytes, Collections.singletonList(slice), row);
+            }
+          } else {
+            nested.decode(bytes, occurrences, row);
+          }
+        } else if (!(value instanceof List) || !((List<Object>) value).isEmpty()) {
+          row.add(field.name, value);
+        }
+      }
+    }
+  }
+
+  /**
+   * A field of a message and how it's read.
+   */
+  private static final class FieldPlan {
+    private final Descriptors.FieldDescriptor descriptor;
+    private final Descriptors.FieldDescriptor.Type type;
+    private final String name;
+    private final int index;
+    private final int wireType;
+    private final boolean repeated;
+    private final boolean message;
+    private final boolean required;
+    // Default value of a proto3 singular field, such values are not added to the row.
+    private final Object skipped;
+    // Plan of the nested message, created on first use as messages can be recursive.
+    private volatile MessagePlan nested;
 
+    FieldPlan(Descriptors.FieldDescriptor descriptor, String name, int index, boolean proto3) {
+      this.descriptor = descriptor;
+      this.type = descriptor.getType();
+      this.name = name;
+      this.index = index;
+      this.wireType = descriptor.getLiteType().getWireType();
+      this.repeated = descriptor.isRepeated();
+      this.message = type == Descriptors.FieldDescriptor.Type.MESSAGE;
+      this.required = descriptor.isRequired();
+      Object skip = null;
+      if (proto3 && !repeated && !message && descriptor.getContainingOneof() == null) {
+        Object defaultValue = descriptor.getDefaultValue();
+        skip = defaultValue instanceof Descriptors.EnumValueDescriptor
+          ? ((Descriptors.EnumValueDescriptor) defaultValue).getName() : defaultValue;
+      }
+      this.skipped = skip;
+    }
+
+    MessagePlan nested() {
+      MessagePlan plan = nested;
+      if (plan == null) {
+        plan = new MessagePlan(descriptor.getMessageType(), name);
+        nested = plan;
+      }
+      return plan;
+    }
+
+    /**
+     * Reads the field into it's value slot.
+     *
+     * @return false if the field was not read as the wire type isn't the one expected.
+     */
+    @SuppressWarnings("unchecked")
+    boolean read(CodedInputStream input, int tag, int offset, Object[] values) throws IOException {
+      int actual = WireFormat.getTagWireType(tag);
+      if (message) {
+        if (actual != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+          return false;
+        }
+        int length = input.readRawVarint32();
+        Slice slice = new Slice(offset + input.getTotalBytesRead(), length);
+        input.skipRawBytes(length);
+        List<Slice> slices = (List<Slice>) values[index];
+        if (slices == null) {
+          slices = new ArrayList<>(repeated ? 4 : 1);
+          values[index] = slices;
+        }
+        slices.add(slice);
+        return true;
+      }
+
+      if (repeated) {
+        List<Object> list = (List<Object>) values[index];
+        if (list == null) {
+          list = new ArrayList<>();
+          values[index] = list;
+        }
+        if (actual == WireFormat.WIRETYPE_LENGTH_DELIMITED && wireType != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+          // Packed values are decoded right away, so that corrupt values fail the decoding of the message.
+          int limit = input.pushLimit(input.readRawVarint32());
+          while (input.getBytesUntilLimit() > 0) {
+            Object value = readValue(input);
+            if (value != null) {
+              list.add(value);
+            }
+          }
+          input.popLimit(limit);
+          return true;
+        }
+        if (actual != wireType) {
+          return false;
+        }
+        Object value = readValue(input);
+        if (value != null) {
+          list.add(value);
+        }
+        return true;
+      }
+
+      if (actual != wireType) {
+        return false;
+      }
+      Object value = readValue(input);
+      if (value != null && !value.equals(skipped)) {
+        values[index] = value;
+      }
+      return true;
+    }
+
+    /**
+     * Reads a single value of the field type, null for enum numbers that are not defined.
+     */
+    Object readValue(CodedInputStream input) throws IOException {
+      switch (type) {
+        case DOUBLE:
+          return input.readDouble();
+        case FLOAT:
+          return input.readFloat();
+        case INT64:
+          return input.readInt64();
+        case UINT64:
+          return input.readUInt64();
+        case INT32:
+          return input.readInt32();
+        case FIXED64:
+          return input.readFixed64();
+        case FIXED32:
+          return input.readFixed32();
+        case BOOL:
+          return input.readBool();
+        case STRING:
+          return input.readString();
+        case BYTES:
+          return input.readBytes();
+        case UINT32:
+          return input.readUInt32();
+        case ENUM:
+          Descriptors.EnumValueDescriptor value = descriptor.getEnumType().findValueByNumber(input.readEnum());
+          return value == null ? null : value.getName();
+        case SFIXED32:
+          return input.readSFixed32();
+        case SFIXED64:
+          return input.readSFixed64();
+        case SINT32:
+          return input.readSInt32();
+        case SINT64:
+          return input.readSInt64();
         default:
-          row.add(fullName, value);
-          break;
+          throw new InvalidProtocolBufferException(
+            String.format("Field '%s' of type '%s' is not supported.", name, type)
+          );
       }
     }
   }
+
+  /**
+   * Location of a message within the bytes being decoded.
+   */
+  private static final class Slice {
+    private final int offset;
+    private final int length;
+
+    Slice(int offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
 }
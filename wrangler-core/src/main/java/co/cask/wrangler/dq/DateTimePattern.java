@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -36,9 +37,18 @@ import java.util.regex.Pattern;
 public class DateTimePattern {
   private static final List<Map<Pattern, String>> DATE_PATTERN_GROUP_LIST = new ArrayList<>();
   private static final List<Map<Pattern, String>> TIME_PATTERN_GROUP_LIST = new ArrayList<>();
+  // Position of each distinct date format in the catalog.
+  private static final Map<String, Integer> DATE_FORMAT_INDEX = new HashMap<>();
 
   static {
     loadPatterns("DateRegexesGrouped.txt", DATE_PATTERN_GROUP_LIST);
+    for (Map<Pattern, String> patternMap : DATE_PATTERN_GROUP_LIST) {
+      for (String format : patternMap.values()) {
+        if (!DATE_FORMAT_INDEX.containsKey(format)) {
+          DATE_FORMAT_INDEX.put(format, DATE_FORMAT_INDEX.size() + 1);
+        }
+      }
+    }
     // Load time patterns
     loadPatterns("TimeRegexes.txt", TIME_PATTERN_GROUP_LIST);
   }
@@ -147,6 +157,42 @@ public class DateTimePattern {
     return dateTimePatternReplace(DATE_PATTERN_GROUP_LIST, value);
   }
 
+  /**
+   * Finds the date formats matching the value.
+   *
+   * @param value to be matched.
+   * @return formats and their patterns from the first group that has patterns matching the value.
+   */
+  public static Map<String, Pattern> dateFormats(String value) {
+    Map<String, Pattern> formats = new LinkedHashMap<>();
+    if (StringUtils.isEmpty(value)) {
+      return formats;
+    }
+    for (Map<Pattern, String> patternMap : DATE_PATTERN_GROUP_LIST) {
+      for (Map.Entry<Pattern, String> entry : patternMap.entrySet()) {
+        if (entry.getKey().matcher(value).find()) {
+          formats.put(entry.getValue(), entry.getKey());
+        }
+      }
+      if (!formats.isEmpty()) {
+        return formats;
+      }
+    }
+    return formats;
+  }
+
+  /**
+   * Returns the position of a date format in the catalog, among the distinct formats in the order they
+   * are listed.
+   *
+   * @param format returned by {@link #dateFormats(String)}.
+   * @return the position of the format starting at 1, -1 if the format isn't in the catalog.
+   */
+  public static int dateFormatIndex(String format) {
+    Integer index = DATE_FORMAT_INDEX.get(format);
+    return index == null ? -1 : index;
+  }
+
   /**
    * Replace the value with time pattern string.
    *
@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.executor;
+
+import co.cask.cdap.api.annotation.Name;
+import co.cask.wrangler.api.DirectiveExecutionException;
+import co.cask.wrangler.api.ErrorRowException;
+import co.cask.wrangler.api.Executor;
+import co.cask.wrangler.api.Row;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the directives of a row on a worker thread and gives up on the row when a directive takes longer than
+ * the time budget.
+ *
+ * <p>The worker records in the {@link Progress} of the row the directive it starts executing, the calling thread
+ * waits until that directive is past its budget. The row that timed out is cancelled and its worker interrupted,
+ * the worker checks both before each directive, so the directives that follow aren't executed on the row. The
+ * next row isn't executed until the worker stopped: a directive that doesn't check for interruption is given
+ * another budget to complete, after which the pipeline fails rather than executing the rows that follow
+ * concurrently with it.</p>
+ */
+final class DirectiveWatchdog {
+  /**
+   * Code of the error records of the rows that timed out.
+   */
+  static final int TIMEOUT = 408;
+
+  private final long budget;
+  private ExecutorService worker;
+
+  /**
+   * @param budget time in milliseconds a directive can spend on a row.
+   */
+  DirectiveWatchdog(long budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Executes the directives of a row on the worker.
+   *
+   * @param progress of the row, updated by the directives.
+   * @param directives executing the directives of the row.
+   * @return the rows returned by the directives.
+   * @throws Timeout thrown when a directive took longer than the budget.
+   */
+  List<Row> execute(Progress progress, Callable<List<Row>> directives)
+    throws DirectiveExecutionException, ErrorRowException {
+    if (worker == null) {
+      worker = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("directive-watchdog-%d").build());
+    }
+    Future<List<Row>> future = worker.submit(directives);
+    long nanos = TimeUnit.MILLISECONDS.toNanos(budget);
+    while (true) {
+      Running current = progress.running;
+      long wait = current == null ? nanos : current.started + nanos - System.nanoTime();
+      try {
+        return future.get(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        if (current != null && current == progress.running) {
+          progress.cancelled = true;
+          future.cancel(true);
+          stop(current);
+          throw new Timeout(current.directive, current.rows.get(0), budget);
+        }
+        // Another directive started in the meantime, it gets a budget of its own.
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        progress.cancelled = true;
+        future.cancel(true);
+        throw new DirectiveExecutionException("Interrupted while executing the directives.");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof DirectiveExecutionException) {
+          throw (DirectiveExecutionException) cause;
+        } else if (cause instanceof ErrorRowException) {
+          throw (ErrorRowException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new DirectiveExecutionException(cause.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Waits for the worker of a row that timed out to stop.
+   *
+   * @throws DirectiveExecutionException thrown when the directive still runs after another budget.
+   */
+  private void stop(Running current) throws DirectiveExecutionException {
+    ExecutorService stopped = worker;
+    worker = null;
+    stopped.shutdownNow();
+    try {
+      if (stopped.awaitTermination(budget, TimeUnit.MILLISECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new DirectiveExecutionException(
+      String.format("Directive '%s' took longer than the time budget of %d ms on a row and didn't stop when " +
+                      "interrupted.", name(current.directive), budget));
+  }
+
+  /**
+   * Stops the worker.
+   */
+  void destroy() {
+    if (worker != null) {
+      worker.shutdownNow();
+      worker = null;
+    }
+  }
+
+  /**
+   * Returns the name of the directive as used in recipes.
+   */
+  static String name(Executor directive) {
+    Name name = directive.getClass().getAnnotation(Name.class);
+    return name == null ? directive.getClass().getSimpleName() : name.value();
+  }
+
+  /**
+   * Directive being executed on a row. Each row has its own, so that a worker that was given up on can't
+   * affect the following rows.
+   */
+  static final class Progress {
+    private volatile Running running;
+    private volatile boolean cancelled;
+
+    /**
+     * Records that the directive starts executing, called by the worker.
+     *
+     * @param directive being executed.
+     * @param rows passed to the directive.
+     * @throws DirectiveExecutionException thrown when the row was given up on, the directive isn't executed.
+     */
+    void started(Executor directive, List<Row> rows) throws DirectiveExecutionException {
+      if (cancelled || Thread.interrupted()) {
+        throw new DirectiveExecutionException(
+          String.format("Directive '%s' is not executed, the row was cancelled.", name(directive)));
+      }
+      running = new Running(directive, rows, System.nanoTime());
+    }
+
+    /**
+     * @return the rows passed to the last directive that started, null if none has.
+     */
+    List<Row> rows() {
+      Running current = running;
+      return current == null ? null : current.rows;
+    }
+  }
+
+  /**
+   * Directive being executed and when it started.
+   */
+  private static final class Running {
+    private final Executor directive;
+    private final List<Row> rows;
+    private final long started;
+
+    Running(Executor directive, List<Row> rows, long started) {
+      this.directive = directive;
+      this.rows = rows;
+      this.started = started;
+    }
+  }
+
+  /**
+   * Thrown when a directive takes longer than the budget on a row.
+   */
+  static final class Timeout extends ErrorRowException {
+    Timeout(Executor directive, Row row, long budget) {
+      super(String.format("Directive '%s' took longer than the time budget of %d ms on the row.",
+                          name(directive), budget), TIMEOUT, row);
+    }
+  }
+}
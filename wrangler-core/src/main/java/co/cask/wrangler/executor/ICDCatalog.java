@@ -17,6 +17,8 @@
 package co.cask.wrangler.executor;
 
 
+import co.cask.directives.lookup.CatalogRegistry;
+import co.cask.directives.lookup.CompactCatalog;
 import co.cask.directives.lookup.StaticCatalog;
 
 import java.io.BufferedReader;
@@ -33,14 +35,17 @@ import java.util.Map;
  *   icd10cm_code_2016.txt contains all ICD-10-CM (diagnosis) codes valid for FY2016.
  *   icd9cm_code_2015.txt contains ICD-9-CM (diagnosis) codes valid till FY2015
  * </p>
+ *
+ * <p>The codes are loaded once for the JVM into a {@link CompactCatalog} of the {@link CatalogRegistry}, that all
+ * the instances of a catalog look up.</p>
  */
 public final class ICDCatalog implements StaticCatalog {
 
   // Type of ICD code 9 or 10 {2016,2017}.
   private final String name;
 
-  // Map to store mapping from code to description.
-  private Map<String, ICDCode> lookupTable = new HashMap<>();
+  // Shared catalog of the descriptions of the codes.
+  private transient CompactCatalog lookupTable;
 
   /**
    * Single ICD entry
@@ -73,23 +78,37 @@ public final class ICDCatalog implements StaticCatalog {
    */
   @Override
   public boolean configure() {
+    try {
+      lookupTable = CatalogRegistry.get(name, this::read);
+    } catch (IOException e) {
+      return false;
+    }
+    return lookupTable != null;
+  }
+
+  /**
+   * Reads the codes and their descriptions from the ICD file of the catalog.
+   */
+  private Map<String, String> read() throws IOException {
     String filename = String.format("%s_cm_codes.txt", name);
     InputStream in = ICDCatalog.class.getClassLoader().getResourceAsStream(filename);
     if (in == null) {
-      return false;
+      return null;
     }
+    Map<String, String> codes = new HashMap<>();
     InputStreamReader isr = new InputStreamReader(in);
     try (BufferedReader reader = new BufferedReader(isr)) {
       String line;
       while ((line = reader.readLine()) != null) {
-        String code = line.substring(0, 7).trim();
-        String description = line.substring(8).trim();
-        lookupTable.put(code, new ICDCode(description));
+        // Codes are followed by spaces, up to the 8th character in the ICD-10 files and by two in the ICD-9 file.
+        line = line.trim();
+        int end = line.indexOf(' ');
+        if (end > 0) {
+          codes.put(line.substring(0, end), line.substring(end + 1).trim());
+        }
       }
-    } catch (IOException e) {
-      return false;
     }
-    return true;
+    return codes;
   }
 
   /**
@@ -100,7 +119,11 @@ public final class ICDCatalog implements StaticCatalog {
    */
   @Override
   public StaticCatalog.Entry lookup(String code)  {
-    return lookupTable.get(code);
+    if (lookupTable == null && !configure()) {
+      return null;
+    }
+    String description = lookupTable.get(code);
+    return description == null ? null : new ICDCode(description);
   }
 
   /**
@@ -18,6 +18,7 @@ package co.cask.wrangler.executor;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.wrangler.api.Accumulator;
 import co.cask.wrangler.api.DirectiveExecutionException;
 import co.cask.wrangler.api.DirectiveLoadException;
 import co.cask.wrangler.api.DirectiveNotFoundException;
@@ -26,6 +27,7 @@ import co.cask.wrangler.api.ErrorRecord;
 import co.cask.wrangler.api.ErrorRowException;
 import co.cask.wrangler.api.Executor;
 import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Fusable;
 import co.cask.wrangler.api.RecipeException;
 import co.cask.wrangler.api.RecipeParser;
 import co.cask.wrangler.api.RecipePipeline;
@@ -44,11 +46,26 @@ import java.util.List;
 /**
  * The class <code>RecipePipelineExecutor</code> compiles the recipe and executes
  * the directives.
+ *
+ * <p>When the {@link #DIRECTIVE_TIMEOUT} property of the pipeline is set, a row on which a directive takes
+ * longer than the budget is sent to the error collector, with a message naming the directive.</p>
+ *
+ * <p>The rows held back by {@link Accumulator} directives are returned by {@link #flush()}, which is to be
+ * called once all the input has been executed.</p>
  */
 public final class RecipePipelineExecutor implements RecipePipeline<Row, StructuredRecord, ErrorRecord> {
+  /**
+   * Property of the pipeline with the time in milliseconds a directive can spend on a row.
+   */
+  public static final String DIRECTIVE_TIMEOUT = "directive.timeout.ms";
+
   private static final Logger LOG = LoggerFactory.getLogger(RecipePipelineExecutor.class);
   private ExecutorContext context;
   private List<Executor> directives;
+  // Null when the time spent by the directives is not limited.
+  private DirectiveWatchdog watchdog;
+  // Rows passed to the directive being executed, when the row is not watched.
+  private List<Row> current;
   private final ErrorRecordCollector collector = new ErrorRecordCollector();
   private RecordConvertor convertor = new RecordConvertor();
 
@@ -62,12 +79,45 @@ public final class RecipePipelineExecutor implements RecipePipeline<Row, Structu
   public void initialize(RecipeParser parser, ExecutorContext context) throws RecipeException {
     this.context = context;
     try {
-      this.directives = parser.parse();
+      this.directives = fuse(parser.parse());
     } catch (DirectiveParseException e) {
       throw new RecipeException(e.getMessage());
     } catch (DirectiveNotFoundException | DirectiveLoadException e) {
       throw new RecipeException(e.getMessage(), e);
     }
+    String timeout = context == null || context.getProperties() == null ? null
+      : context.getProperties().get(DIRECTIVE_TIMEOUT);
+    if (timeout != null && !timeout.trim().isEmpty()) {
+      try {
+        long budget = Long.parseLong(timeout.trim());
+        this.watchdog = budget > 0 ? new DirectiveWatchdog(budget) : null;
+      } catch (NumberFormatException e) {
+        throw new RecipeException(String.format("Invalid value '%s' for property '%s', expected milliseconds.",
+                                                timeout, DIRECTIVE_TIMEOUT));
+      }
+    }
+  }
+
+  /**
+   * Replaces the directives that can be combined with the directives following them by the combined directives.
+   *
+   * @param directives list of directives in the order of execution.
+   * @return list of directives with the {@link Fusable} directives fused.
+   */
+  public static List<Executor> fuse(List<Executor> directives) {
+    List<Executor> fused = new ArrayList<>();
+    for (Executor directive : directives) {
+      int last = fused.size() - 1;
+      if (last >= 0 && fused.get(last) instanceof Fusable) {
+        Executor combined = ((Fusable) fused.get(last)).fuse(directive);
+        if (combined != null) {
+          fused.set(last, combined);
+          continue;
+        }
+      }
+      fused.add(directive);
+    }
+    return fused;
   }
 
   /**
@@ -76,6 +126,9 @@ public final class RecipePipelineExecutor implements RecipePipeline<Row, Structu
    */
   @Override
   public void destroy() {
+    if (watchdog != null) {
+      watchdog.destroy();
+    }
     for (Executor directive : directives) {
       try {
         directive.destroy();
@@ -112,42 +165,118 @@ public final class RecipePipelineExecutor implements RecipePipeline<Row, Structu
    */
   @Override
   public List<Row> execute(List<Row> rows) throws RecipeException {
-    List<String> messages = new ArrayList<>();
     List<Row> results = Lists.newArrayList();
+    collector.reset();
+    execute(rows, 0, results);
+    return results;
+  }
+
+  /**
+   * Flushes the {@link Accumulator} directives in the order of the recipe, the rows returned by each going
+   * through the directives that follow it, which can be accumulators themselves.
+   *
+   * @return the rows held back by the directives until the end of the input.
+   */
+  @Override
+  public List<Row> flush() throws RecipeException {
+    List<Row> results = Lists.newArrayList();
+    collector.reset();
+    for (int i = 0; i < directives.size(); ++i) {
+      if (directives.get(i) instanceof Accumulator) {
+        try {
+          execute(((Accumulator) directives.get(i)).flush(context), i + 1, results);
+        } catch (DirectiveExecutionException e) {
+          throw new RecipeException(e.getMessage(), e);
+        } catch (ErrorRowException e) {
+          collector.add(new ErrorRecord(e.getRow(), e.getMessage(), e.getCode()));
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * @return true if some of the directives hold rows back until {@link #flush()} is called.
+   */
+  public boolean isAccumulating() {
+    for (Executor directive : directives) {
+      if (directive instanceof Accumulator && ((Accumulator) directive).isAccumulating()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Executes the directives from the one at an index of the recipe on each row.
+   *
+   * @param rows to be processed.
+   * @param from index of the first directive to be executed.
+   * @param results to which the rows returned by the last directive are added.
+   */
+  private void execute(List<Row> rows, int from, List<Row> results) throws RecipeException {
+    List<String> messages = new ArrayList<>();
     try {
       int i = 0;
-      collector.reset();
       while (i < rows.size()) {
         messages.clear();
         // Resets the scope of local variable.
         if (context != null) {
           context.getTransientStore().reset(TransientVariableScope.LOCAL);
         }
-        List<Row> newRows = rows.subList(i, i + 1);
+        List<Row> row = rows.subList(i, i + 1);
+        // A worker that timed out may still be adding messages, each row gets its own list when it's watched.
+        List<String> errors = watchdog == null ? messages : new ArrayList<>();
+        DirectiveWatchdog.Progress progress = watchdog == null ? null : new DirectiveWatchdog.Progress();
         try {
-          for (Executor<List<Row>, List<Row>> directive : directives) {
-            try {
-              newRows = directive.execute(newRows, context);
-              if (newRows.size() < 1) {
-                break;
-              }
-            } catch (ReportErrorAndProceed e) {
-              messages.add(String.format("%d:%s", e.getCode(), e.getMessage()));
-            }
-          }
+          List<Row> newRows = watchdog == null ? execute(row, from, errors, null)
+            : watchdog.execute(progress, () -> execute(row, from, errors, progress));
           if (newRows.size() > 0) {
             results.addAll(newRows);
           }
+        } catch (DirectiveWatchdog.Timeout e) {
+          LOG.warn("{} Row {} is sent to the error collector.", e.getMessage(), i);
+          collector.add(new ErrorRecord(e.getRow(), e.getMessage(), e.getCode()));
         } catch (ErrorRowException e) {
-          messages.add(String.format("%s", e.getMessage()));
-          collector.add(new ErrorRecord(newRows.get(0), String.join(",", messages), e.getCode()));
+          errors.add(String.format("%s", e.getMessage()));
+          List<Row> errored = progress == null ? current : progress.rows();
+          collector.add(new ErrorRecord(errored.get(0), String.join(",", errors), e.getCode()));
         }
         i++;
       }
     } catch (DirectiveExecutionException e) {
       throw new RecipeException(e.getMessage(), e);
     }
-    return results;
+  }
+
+  /**
+   * Executes the directives on a row.
+   *
+   * @param rows with the row to be processed.
+   * @param from index of the first directive to be executed.
+   * @param messages to which the errors the directives proceeded with are added.
+   * @param progress of the row when it's watched, null otherwise.
+   * @return the rows returned by the last directive.
+   */
+  private List<Row> execute(List<Row> rows, int from, List<String> messages, DirectiveWatchdog.Progress progress)
+    throws DirectiveExecutionException, ErrorRowException {
+    List<Row> newRows = rows;
+    for (Executor<List<Row>, List<Row>> directive : directives.subList(from, directives.size())) {
+      if (progress == null) {
+        current = newRows;
+      } else {
+        progress.started(directive, newRows);
+      }
+      try {
+        newRows = directive.execute(newRows, context);
+        if (newRows.size() < 1) {
+          break;
+        }
+      } catch (ReportErrorAndProceed e) {
+        messages.add(String.format("%d:%s", e.getCode(), e.getMessage()));
+      }
+    }
+    return newRows;
   }
 
   /**
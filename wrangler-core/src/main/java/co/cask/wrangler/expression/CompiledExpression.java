@@ -0,0 +1,568 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.expression;
+
+import co.cask.functions.Pure;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Primitives;
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.parser.ASTAddNode;
+import org.apache.commons.jexl3.parser.ASTAndNode;
+import org.apache.commons.jexl3.parser.ASTArguments;
+import org.apache.commons.jexl3.parser.ASTDivNode;
+import org.apache.commons.jexl3.parser.ASTEQNode;
+import org.apache.commons.jexl3.parser.ASTFalseNode;
+import org.apache.commons.jexl3.parser.ASTFunctionNode;
+import org.apache.commons.jexl3.parser.ASTGENode;
+import org.apache.commons.jexl3.parser.ASTGTNode;
+import org.apache.commons.jexl3.parser.ASTIdentifier;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.ASTLENode;
+import org.apache.commons.jexl3.parser.ASTLTNode;
+import org.apache.commons.jexl3.parser.ASTModNode;
+import org.apache.commons.jexl3.parser.ASTMulNode;
+import org.apache.commons.jexl3.parser.ASTNENode;
+import org.apache.commons.jexl3.parser.ASTNotNode;
+import org.apache.commons.jexl3.parser.ASTNullLiteral;
+import org.apache.commons.jexl3.parser.ASTNumberLiteral;
+import org.apache.commons.jexl3.parser.ASTOrNode;
+import org.apache.commons.jexl3.parser.ASTReference;
+import org.apache.commons.jexl3.parser.ASTReferenceExpression;
+import org.apache.commons.jexl3.parser.ASTStringLiteral;
+import org.apache.commons.jexl3.parser.ASTSubNode;
+import org.apache.commons.jexl3.parser.ASTTernaryNode;
+import org.apache.commons.jexl3.parser.ASTTrueNode;
+import org.apache.commons.jexl3.parser.ASTUnaryMinusNode;
+import org.apache.commons.jexl3.parser.JexlNode;
+import org.apache.commons.jexl3.parser.Parser;
+
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An expression compiled into a tree of Java closures, one per node of the JEXL syntax tree, that evaluates
+ * the expression without the JEXL interpreter.
+ *
+ * <p>The subset supported is the one of most row expressions : literals, variables, arithmetic, comparisons,
+ * boolean logic, ternaries and calls to static functions of the registered namespaces. Operators use the
+ * {@link JexlArithmetic} of the engine, so that they behave as with JEXL, and the function called is resolved
+ * when the expression is compiled, leaving only a check of the types of the arguments at runtime.</p>
+ *
+ * <p>Sub-expressions made only of constants, including calls to functions annotated with {@link Pure}, are
+ * evaluated once when the expression is compiled. Calls to pure functions whose arguments vary remember the
+ * results for the first {@link Memo#SIZE} distinct arguments, as long as most calls are for these arguments. The
+ * results are kept in {@link Memos} of the owner of the expression, as the expression itself is shared.</p>
+ *
+ * <p>Whenever the result could differ from JEXL, such as an undefined variable, arguments that would need to be
+ * converted or any error, evaluation throws a {@link RuntimeException} and the caller evaluates the expression
+ * with JEXL instead, which reports the error as usual. Instances are immutable and thread-safe.</p>
+ */
+final class CompiledExpression {
+  /**
+   * Node of the compiled expression.
+   */
+  private interface Node {
+    Object evaluate(JexlContext context, Memo[] memos);
+  }
+
+  /**
+   * Node whose value is known when the expression is compiled.
+   */
+  private static final class Constant implements Node {
+    private final Object value;
+
+    Constant(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public Object evaluate(JexlContext context, Memo[] memos) {
+      return value;
+    }
+  }
+
+  /**
+   * Thrown when the expression is to be evaluated by JEXL.
+   */
+  private static final class Fallback extends RuntimeException {
+    Fallback(String message) {
+      super(message, null, false, false);
+    }
+  }
+
+  private static final Fallback UNDEFINED = new Fallback("Undefined variable");
+  private static final Fallback NO_METHOD = new Fallback("No method for the arguments");
+
+  private final String expression;
+  private final Node root;
+  // Pure functions called with arguments that vary, by the index of their memo.
+  private final Invoker[] pure;
+
+  private CompiledExpression(String expression, Node root, Invoker[] pure) {
+    this.expression = expression;
+    this.root = root;
+    this.pure = pure;
+  }
+
+  /**
+   * Compiles the expression.
+   *
+   * @param expression to be compiled.
+   * @param arithmetic of the JEXL engine the expression would be evaluated with.
+   * @param functions registered with the engine, by namespace.
+   * @return the compiled expression, null if the expression is outside of the supported subset.
+   */
+  static CompiledExpression compile(String expression, JexlArithmetic arithmetic, Map<String, Object> functions) {
+    ASTJexlScript script;
+    try {
+      script = new Parser(new StringReader(";")).parse(null, expression, null, false, false);
+    } catch (RuntimeException e) {
+      return null;
+    }
+    if (script.jjtGetNumChildren() != 1) {
+      return null;
+    }
+    Compiler compiler = new Compiler(arithmetic, functions);
+    Node root = compiler.compile(script.jjtGetChild(0));
+    return root == null ? null
+      : new CompiledExpression(expression, root, compiler.pure.toArray(new Invoker[compiler.pure.size()]));
+  }
+
+  /**
+   * Creates the results remembered for the calls to pure functions, kept by the owner of the expression rather
+   * than by the expression, which is shared.
+   */
+  Memos memos() {
+    Memo[] memos = new Memo[pure.length];
+    for (int i = 0; i < pure.length; ++i) {
+      memos[i] = new Memo(pure[i]);
+    }
+    return new Memos(memos);
+  }
+
+  /**
+   * Evaluates the expression.
+   *
+   * @param context with the variables.
+   * @param memos in which the results of pure functions are remembered, null if they are not.
+   * @return the value of the expression.
+   * @throws RuntimeException thrown when the expression is to be evaluated by JEXL.
+   */
+  Object evaluate(JexlContext context, Memos memos) {
+    return root.evaluate(context, memos == null ? null : memos.memos);
+  }
+
+  /**
+   * @return true if the value of the expression was computed when it was compiled.
+   */
+  boolean isConstant() {
+    return root instanceof Constant;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  /**
+   * Translates the syntax tree into nodes, returning null for the constructs not supported.
+   */
+  private static final class Compiler {
+    private final JexlArithmetic arithmetic;
+    private final Map<String, Object> functions;
+    private final List<Invoker> pure = new ArrayList<>();
+
+    Compiler(JexlArithmetic arithmetic, Map<String, Object> functions) {
+      this.arithmetic = arithmetic;
+      this.functions = functions;
+    }
+
+    Node compile(JexlNode node) {
+      JexlArithmetic arithmetic = this.arithmetic;
+      if (node instanceof ASTReferenceExpression || node instanceof ASTReference) {
+        return node.jjtGetNumChildren() == 1 ? compile(node.jjtGetChild(0)) : null;
+      } else if (node instanceof ASTNumberLiteral) {
+        return new Constant(((ASTNumberLiteral) node).getLiteral());
+      } else if (node instanceof ASTStringLiteral) {
+        return new Constant(((ASTStringLiteral) node).getLiteral());
+      } else if (node instanceof ASTTrueNode) {
+        return new Constant(Boolean.TRUE);
+      } else if (node instanceof ASTFalseNode) {
+        return new Constant(Boolean.FALSE);
+      } else if (node instanceof ASTNullLiteral) {
+        return new Constant(null);
+      } else if (node instanceof ASTIdentifier) {
+        return variable((ASTIdentifier) node);
+      } else if (node instanceof ASTFunctionNode) {
+        return function(node);
+      } else if (node instanceof ASTUnaryMinusNode) {
+        return negate(node);
+      } else if (node instanceof ASTNotNode) {
+        Node operand = compile(node.jjtGetChild(0));
+        if (operand == null) {
+          return null;
+        }
+        return fold((context, memos) -> arithmetic.not(operand.evaluate(context, memos)), operand);
+      } else if (node instanceof ASTTernaryNode) {
+        return ternary(node);
+      }
+
+      if (node.jjtGetNumChildren() != 2) {
+        return null;
+      }
+      Node left = compile(node.jjtGetChild(0));
+      Node right = compile(node.jjtGetChild(1));
+      if (left == null || right == null) {
+        return null;
+      }
+      Node operator = operator(node, left, right);
+      return operator == null ? null : fold(operator, left, right);
+    }
+
+    private Node operator(JexlNode node, Node left, Node right) {
+      JexlArithmetic arithmetic = this.arithmetic;
+      if (node instanceof ASTAddNode) {
+        return (context, memos) -> arithmetic.add(left.evaluate(context, memos), right.evaluate(context, memos));
+      } else if (node instanceof ASTSubNode) {
+        return (context, memos) -> arithmetic.subtract(left.evaluate(context, memos), right.evaluate(context, memos));
+      } else if (node instanceof ASTMulNode) {
+        return (context, memos) -> arithmetic.multiply(left.evaluate(context, memos), right.evaluate(context, memos));
+      } else if (node instanceof ASTDivNode) {
+        return (context, memos) -> arithmetic.divide(left.evaluate(context, memos), right.evaluate(context, memos));
+      } else if (node instanceof ASTModNode) {
+        return (context, memos) -> arithmetic.mod(left.evaluate(context, memos), right.evaluate(context, memos));
+      } else if (node instanceof ASTEQNode) {
+        return (context, memos) -> arithmetic.equals(left.evaluate(context, memos), right.evaluate(context, memos));
+      } else if (node instanceof ASTNENode) {
+        return (context, memos) -> !arithmetic.equals(left.evaluate(context, memos), right.evaluate(context, memos));
+      } else if (node instanceof ASTLTNode) {
+        return (context, memos) -> arithmetic.lessThan(left.evaluate(context, memos), right.evaluate(context, memos));
+      } else if (node instanceof ASTLENode) {
+        return (context, memos) -> arithmetic.lessThanOrEqual(left.evaluate(context, memos),
+                                                              right.evaluate(context, memos));
+      } else if (node instanceof ASTGTNode) {
+        return (context, memos) -> arithmetic.greaterThan(left.evaluate(context, memos),
+                                                          right.evaluate(context, memos));
+      } else if (node instanceof ASTGENode) {
+        return (context, memos) -> arithmetic.greaterThanOrEqual(left.evaluate(context, memos),
+                                                                 right.evaluate(context, memos));
+      } else if (node instanceof ASTAndNode) {
+        return (context, memos) -> arithmetic.toBoolean(left.evaluate(context, memos))
+          && arithmetic.toBoolean(right.evaluate(context, memos));
+      } else if (node instanceof ASTOrNode) {
+        return (context, memos) -> arithmetic.toBoolean(left.evaluate(context, memos))
+          || arithmetic.toBoolean(right.evaluate(context, memos));
+      }
+      return null;
+    }
+
+    private Node variable(ASTIdentifier identifier) {
+      if (identifier.getSymbol() >= 0) {
+        // A local variable of the script.
+        return null;
+      }
+      String name = identifier.getName();
+      return (context, memos) -> {
+        Object value = context.get(name);
+        if (value == null && !context.has(name)) {
+          throw UNDEFINED;
+        }
+        return value;
+      };
+    }
+
+    private Node negate(JexlNode node) {
+      JexlNode child = node.jjtGetChild(0);
+      Node operand = compile(child);
+      if (operand == null) {
+        return null;
+      }
+      if (child instanceof ASTNumberLiteral) {
+        // A negative literal keeps the type of the literal, as in JEXL.
+        Object value = arithmetic.negate(((ASTNumberLiteral) child).getLiteral());
+        return new Constant(value instanceof Number
+          ? arithmetic.narrowNumber((Number) value, ((ASTNumberLiteral) child).getLiteralClass()) : value);
+      }
+      return fold((context, memos) -> arithmetic.negate(operand.evaluate(context, memos)), operand);
+    }
+
+    private Node ternary(JexlNode node) {
+      Node condition = compile(node.jjtGetChild(0));
+      Node first = compile(node.jjtGetChild(1));
+      if (condition == null || first == null) {
+        return null;
+      }
+      if (condition instanceof Constant) {
+        Object value = ((Constant) condition).value;
+        boolean chosen = value != null && arithmetic.toBoolean(value);
+        if (node.jjtGetNumChildren() == 2) {
+          return chosen ? condition : first;
+        }
+        return chosen ? first : compile(node.jjtGetChild(2));
+      }
+      if (node.jjtGetNumChildren() == 2) {
+        // The elvis operator, 'a ?: b'.
+        return (context, memos) -> {
+          Object value = condition.evaluate(context, memos);
+          return value != null && arithmetic.toBoolean(value) ? value : first.evaluate(context, memos);
+        };
+      }
+      Node second = compile(node.jjtGetChild(2));
+      if (second == null) {
+        return null;
+      }
+      return (context, memos) -> {
+        Object value = condition.evaluate(context, memos);
+        return value != null && arithmetic.toBoolean(value) ? first.evaluate(context, memos)
+          : second.evaluate(context, memos);
+      };
+    }
+
+    private Node function(JexlNode node) {
+      int count = node.jjtGetNumChildren();
+      String namespace = count == 3 ? ((ASTIdentifier) node.jjtGetChild(0)).getName() : null;
+      JexlNode name = node.jjtGetChild(count - 2);
+      JexlNode arguments = node.jjtGetChild(count - 1);
+      if (!(name instanceof ASTIdentifier) || !(arguments instanceof ASTArguments)) {
+        return null;
+      }
+      Object target = functions.get(namespace);
+      if (!(target instanceof Class) || !Modifier.isPublic(((Class<?>) target).getModifiers())) {
+        return null;
+      }
+      Method[] methods = methods((Class<?>) target, ((ASTIdentifier) name).getName(),
+                                 arguments.jjtGetNumChildren());
+      if (methods.length == 0) {
+        return null;
+      }
+      Node[] args = new Node[arguments.jjtGetNumChildren()];
+      for (int i = 0; i < args.length; ++i) {
+        args[i] = compile(arguments.jjtGetChild(i));
+        if (args[i] == null) {
+          return null;
+        }
+      }
+      Invoker invoker = new Invoker(methods);
+      if (!isPure(methods)) {
+        return (context, memos) -> invoker.invoke(evaluate(args, context, memos));
+      }
+      int index = pure.size();
+      pure.add(invoker);
+      return fold((context, memos) -> memos == null ? invoker.invoke(evaluate(args, context, memos))
+        : memos[index].invoke(evaluate(args, context, memos)), args);
+    }
+
+    private static Object[] evaluate(Node[] args, JexlContext context, Memo[] memos) {
+      Object[] values = new Object[args.length];
+      for (int i = 0; i < args.length; ++i) {
+        values[i] = args[i].evaluate(context, memos);
+      }
+      return values;
+    }
+
+    /**
+     * Replaces the node by its value when all its operands are constants, unless evaluating it fails, in which
+     * case the error is left for JEXL to report when the expression is evaluated.
+     */
+    private static Node fold(Node node, Node... operands) {
+      for (Node operand : operands) {
+        if (!(operand instanceof Constant)) {
+          return node;
+        }
+      }
+      try {
+        return new Constant(node.evaluate(null, null));
+      } catch (RuntimeException e) {
+        return node;
+      }
+    }
+
+    /**
+     * Checks if the methods are pure, those of {@link Math} are except for {@link Math#random()}.
+     */
+    private static boolean isPure(Method[] methods) {
+      for (Method method : methods) {
+        boolean math = method.getDeclaringClass() == Math.class && !"random".equals(method.getName());
+        if (!math && !method.isAnnotationPresent(Pure.class)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the public static methods with the name and number of parameters, none if the class has other
+     * methods with the name, as JEXL could then pick one of those.
+     */
+    private static Method[] methods(Class<?> type, String name, int parameters) {
+      List<Method> methods = new ArrayList<>();
+      for (Method method : type.getMethods()) {
+        if (!method.getName().equals(name)) {
+          continue;
+        }
+        if (!Modifier.isStatic(method.getModifiers()) || method.isVarArgs()
+          || method.getParameterTypes().length != parameters) {
+          return new Method[0];
+        }
+        methods.add(method);
+      }
+      return methods.toArray(new Method[methods.size()]);
+    }
+  }
+
+  /**
+   * Calls the method whose parameters match the arguments without conversion.
+   */
+  private static final class Invoker {
+    private final Method[] methods;
+    private final Class<?>[][] types;
+
+    Invoker(Method[] methods) {
+      this.methods = methods;
+      this.types = new Class<?>[methods.length][];
+      for (int i = 0; i < methods.length; ++i) {
+        Class<?>[] parameters = methods[i].getParameterTypes();
+        types[i] = new Class<?>[parameters.length];
+        for (int j = 0; j < parameters.length; ++j) {
+          types[i][j] = Primitives.wrap(parameters[j]);
+        }
+      }
+    }
+
+    Object invoke(Object[] values) {
+      Method method = null;
+      for (int i = 0; i < methods.length; ++i) {
+        if (matches(methods[i], types[i], values)) {
+          if (method != null) {
+            // Ambiguous, JEXL decides.
+            throw NO_METHOD;
+          }
+          method = methods[i];
+        }
+      }
+      if (method == null) {
+        throw NO_METHOD;
+      }
+      try {
+        return method.invoke(null, values);
+      } catch (IllegalAccessException e) {
+        throw NO_METHOD;
+      } catch (InvocationTargetException e) {
+        throw new Fallback(String.valueOf(e.getCause()));
+      }
+    }
+
+    private boolean matches(Method method, Class<?>[] types, Object[] values) {
+      Class<?>[] parameters = method.getParameterTypes();
+      for (int i = 0; i < values.length; ++i) {
+        Object value = values[i];
+        if (value == null) {
+          if (parameters[i].isPrimitive()) {
+            return false;
+          }
+        } else if (methods.length == 1 ? !types[i].isInstance(value) : types[i] != value.getClass()) {
+          // With overloads only an exact match is certain to be the method JEXL would choose.
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Results remembered for the calls to the pure functions of an expression.
+   */
+  static final class Memos {
+    private final Memo[] memos;
+
+    private Memos(Memo[] memos) {
+      this.memos = memos;
+    }
+  }
+
+  /**
+   * Results of a pure function by arguments, kept for arguments of immutable types only. Once full, the results
+   * are kept as long as at least half the calls are for the arguments already in it, otherwise the function is
+   * called without remembering its results from then on.
+   */
+  private static final class Memo {
+    private static final int SIZE = 256;
+    private static final Object NULL = new Object();
+    private static final ImmutableSet<Class<?>> IMMUTABLE = ImmutableSet.of(
+      String.class, Integer.class, Long.class, Double.class, Float.class, Short.class, Byte.class, Boolean.class,
+      Character.class, BigDecimal.class, BigInteger.class, ZonedDateTime.class);
+
+    private final Invoker invoker;
+    private final Map<List<Object>, Object> results = new ConcurrentHashMap<>();
+    // Calls and misses since the results were last checked, approximate when called concurrently.
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private volatile boolean enabled = true;
+
+    Memo(Invoker invoker) {
+      this.invoker = invoker;
+    }
+
+    Object invoke(Object[] values) {
+      if (!enabled || !isImmutable(values)) {
+        return invoker.invoke(values);
+      }
+      List<Object> key = Arrays.asList(values);
+      Object result = results.get(key);
+      if (result == null) {
+        result = invoker.invoke(values);
+        if (results.size() < SIZE) {
+          results.put(key, result == null ? NULL : result);
+          return result;
+        }
+        misses.incrementAndGet();
+      } else if (result == NULL) {
+        result = null;
+      }
+      if (results.size() >= SIZE && calls.incrementAndGet() >= SIZE * 4) {
+        if (misses.get() * 2 > calls.get()) {
+          enabled = false;
+          results.clear();
+        }
+        calls.set(0);
+        misses.set(0);
+      }
+      return result;
+    }
+
+    private static boolean isImmutable(Object[] values) {
+      for (Object value : values) {
+        if (value != null && !IMMUTABLE.contains(value.getClass())) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
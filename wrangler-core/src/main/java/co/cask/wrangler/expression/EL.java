@@ -17,15 +17,23 @@
 package co.cask.wrangler.expression;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.functions.DDL;
 import co.cask.functions.DataQuality;
 import co.cask.functions.Dates;
 import co.cask.functions.GeoFences;
 import co.cask.functions.Global;
 import co.cask.functions.JSON;
+import co.cask.wrangler.api.ExecutorContext;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
 import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.JexlException;
 import org.apache.commons.jexl3.JexlScript;
@@ -34,62 +42,189 @@ import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.logging.Log;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class <code>EL</code> is a Expression Language Handler.
+ *
+ * <p>Instances with the same registered functions share a thread-safe {@link JexlEngine}, and expressions are
+ * compiled once per engine in a process-wide cache, whose statistics are returned by {@link #stats()}. Each
+ * instance also reports whether it found its expression in the cache as the {@code expression.cache.hits} and
+ * {@code expression.cache.misses} counts, along with the {@code expression.cache.hit.ratio} percentage of the
+ * cache and the {@code expression.compile.time} in nanoseconds, as metrics of the first pipeline context it
+ * evaluates a {@link RowContext} in.</p>
+ *
+ * <p>When the {@link #ENGINE} property of the pipeline is {@code compiled}, expressions evaluated on a
+ * {@link RowContext} that are within the subset supported by {@link CompiledExpression} are evaluated without the
+ * JEXL interpreter, the others are still evaluated by JEXL.</p>
  */
 public final class EL {
-  private Set<String> variables = new HashSet<>();
+  /**
+   * Property of the pipeline that selects how expressions are evaluated, {@code jexl} or {@code compiled}.
+   */
+  public static final String ENGINE = "expression.engine";
+
+  private static final String METRICS = "expression";
+
+  private static final long MAXIMUM_SIZE = 1000;
+  // Engines by registered functions.
+  private static final LoadingCache<Map<String, Object>, JexlEngine> ENGINES = CacheBuilder.newBuilder()
+    .maximumSize(MAXIMUM_SIZE)
+    .build(new CacheLoader<Map<String, Object>, JexlEngine>() {
+      @Override
+      public JexlEngine load(Map<String, Object> functions) {
+        return new JexlBuilder()
+          .namespaces(functions)
+          .silent(false)
+          .strict(true)
+          .logger(new NullLogger())
+          .create();
+      }
+    });
+  private static final LoadingCache<Key, Compiled> SCRIPTS = CacheBuilder.newBuilder()
+    .maximumSize(MAXIMUM_SIZE)
+    .recordStats()
+    .build(new CacheLoader<Key, Compiled>() {
+      @Override
+      public Compiled load(Key key) {
+        long start = System.nanoTime();
+        JexlScript script = key.engine.createScript(key.expression);
+        CompiledExpression compiled = CompiledExpression.compile(key.expression, key.engine.getArithmetic(),
+                                                                 key.functions);
+        return new Compiled(script, compiled, System.nanoTime() - start);
+      }
+    });
+
+  private Set<String> variables = Collections.emptySet();
+  private final Map<String, Object> functions;
   private final JexlEngine engine;
   private JexlScript script = null;
+  // Null when the expression can only be evaluated by JEXL.
+  private CompiledExpression compiled = null;
+  // Results of the pure functions of the compiled expression, for this instance only.
+  private CompiledExpression.Memos memos = null;
+  // Whether the last expression compiled was found in the cache, and the time it took to compile it.
+  private boolean cached;
+  private long compileTime;
+  // Whether the compilation of the last expression was reported as metrics.
+  private boolean reported = true;
 
   public EL(ELRegistration registration) {
-    engine = new JexlBuilder()
-      .namespaces(registration.functions())
-      .silent(false)
-      .cache(1024)
-      .strict(true)
-      .logger(new NullLogger())
-      .create();
+    functions = registration.functions();
+    engine = ENGINES.getUnchecked(functions);
+  }
+
+  /**
+   * Checks if the {@link #ENGINE} property of the pipeline selects compiled expressions.
+   *
+   * @param context of the pipeline, can be null.
+   * @return true if expressions are to be compiled, false if they are evaluated by JEXL.
+   */
+  public static boolean isCompiled(ExecutorContext context) {
+    String engine = context == null || context.getProperties() == null ? null
+      : context.getProperties().get(ENGINE);
+    return "compiled".equalsIgnoreCase(engine);
+  }
+
+  /**
+   * Returns the statistics of the cache of compiled expressions, shared by all the instances : the number of
+   * hits and misses, and the time spent compiling expressions as the load time.
+   */
+  public static CacheStats stats() {
+    return SCRIPTS.stats();
   }
 
   public void compile(String expression) throws ELException {
-    variables.clear();
+    variables = Collections.emptySet();
+    compiled = null;
+    memos = null;
     try {
-      script = engine.createScript(expression);
-      Set<List<String>> varSet = script.getVariables();
-      for (List<String> vars : varSet) {
-        variables.add(Joiner.on(".").join(vars));
-      }
-    } catch (JexlException e) {
-      if (e.getCause() != null) {
-        throw new ELException(e.getCause().getMessage());
-      } else {
-        throw new ELException(e.getMessage());
-      }
+      Compiled result = SCRIPTS.getUnchecked(new Key(engine, functions, expression));
+      script = result.script;
+      compiled = result.compiled;
+      memos = compiled == null ? null : compiled.memos();
+      variables = result.variables;
+      // The first instance that gets the expression is the one that compiled it.
+      cached = !result.claimed.compareAndSet(false, true);
+      compileTime = result.time;
+      reported = false;
+    } catch (UncheckedExecutionException e) {
+      Throwable cause = e.getCause() instanceof JexlException && e.getCause().getCause() != null
+        ? e.getCause().getCause() : e.getCause();
+      throw new ELException(cause.getMessage());
     } catch (Exception e) {
       throw new ELException(e.getMessage());
     }
   }
 
+  /**
+   * @return the variables of the expression, shared by the instances that compiled the same expression.
+   */
   public Set<String> variables() {
     return variables;
   }
 
   public ELResult execute(ELContext context, boolean nullMissingFields) throws ELException {
-    try {
-      if (nullMissingFields) {
-        for (String variable : variables) {
-          if (!context.has(variable)) {
-            context.add(variable, null);
-          }
+    if (nullMissingFields) {
+      for (String variable : variables) {
+        if (!context.has(variable)) {
+          context.add(variable, null);
         }
       }
+    }
+    return evaluate(context);
+  }
+
+  /**
+   * Executes the expression with the variables resolved against a row, the variables of the expression that
+   * the row doesn't have are null.
+   *
+   * @param context with the row the expression is evaluated on.
+   * @return the result of the expression.
+   */
+  public ELResult execute(RowContext context) throws ELException {
+    if (!reported) {
+      report(context.getExecutorContext());
+    }
+    if (compiled != null && context.isCompiled()) {
+      try {
+        return new ELResult(compiled.evaluate(context, memos));
+      } catch (RuntimeException e) {
+        // JEXL evaluates the expression again and reports the error, if any.
+      }
+    }
+    return evaluate(context);
+  }
+
+  /**
+   * @return true if the expression is within the subset that can be evaluated without JEXL.
+   */
+  public boolean isCompilable() {
+    return compiled != null;
+  }
+
+  private void report(ExecutorContext context) {
+    if (context == null || context.getMetrics() == null) {
+      return;
+    }
+    StageMetrics metrics = context.getMetrics();
+    metrics.count(METRICS + ".cache.hits", cached ? 1 : 0);
+    metrics.count(METRICS + ".cache.misses", cached ? 0 : 1);
+    metrics.gauge(METRICS + ".cache.hit.ratio", Math.round(SCRIPTS.stats().hitRate() * 100));
+    if (!cached) {
+      metrics.gauge(METRICS + ".compile.time", compileTime);
+    }
+    reported = true;
+  }
+
+  private ELResult evaluate(JexlContext context) throws ELException {
+    try {
       Object value = script.execute(context);
       ELResult variable = new ELResult(value);
       return variable;
@@ -143,7 +278,63 @@ public final class EL {
 
   }
 
-  private final class NullLogger implements Log {
+  /**
+   * Engine and expression compiled by it.
+   */
+  private static final class Key {
+    private final JexlEngine engine;
+    // Functions the engine was created with, not part of the key as there is an engine per set of functions.
+    private final Map<String, Object> functions;
+    private final String expression;
+
+    Key(JexlEngine engine, Map<String, Object> functions, String expression) {
+      this.engine = engine;
+      this.functions = functions;
+      this.expression = expression;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return engine == that.engine && expression.equals(that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(engine) + expression.hashCode();
+    }
+  }
+
+  /**
+   * Compiled expression, its variables and the time it took to compile it.
+   */
+  private static final class Compiled {
+    private final JexlScript script;
+    private final CompiledExpression compiled;
+    private final Set<String> variables;
+    private final long time;
+    // Set by the first instance that gets the compiled expression.
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    Compiled(JexlScript script, CompiledExpression compiled, long time) {
+      Set<String> variables = new HashSet<>();
+      for (List<String> vars : script.getVariables()) {
+        variables.add(Joiner.on(".").join(vars));
+      }
+      this.script = script;
+      this.compiled = compiled;
+      this.variables = Collections.unmodifiableSet(variables);
+      this.time = time;
+    }
+  }
+
+  private static final class NullLogger implements Log {
     @Override
     public void debug(Object o) {
 
@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.expression;
+
+import co.cask.directives.aggregates.DefaultTransientStore;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.api.TransientStore;
+import org.apache.commons.jexl3.JexlContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link JexlContext} that resolves the variables of an expression against a {@link Row}, without copying
+ * them.
+ *
+ * <p>The variables resolve as they would in an {@link ELContext} built from the {@link ExecutorContext} and
+ * the row : transient variables first, then the columns referred to by the expression, which are null when
+ * the row doesn't have them, then {@code this} for the row and {@code runtime}, {@code environment} and
+ * {@code context}. Variables assigned by the expression hide all of them until the next row.</p>
+ *
+ * <p>The variables of the expression are given a slot when the context is created, each slot remembers the
+ * index of the column it was found at, so that rows with the same layout resolve it without searching. An
+ * instance is reused across rows with {@link #set(Row, ExecutorContext)} and is not thread-safe.</p>
+ */
+public final class RowContext implements JexlContext {
+  private final Map<String, Integer> slots = new HashMap<>();
+  // Index of the column each slot was last found at.
+  private final int[] columns;
+  private final boolean numbersAsStrings;
+  private Row row;
+  private ExecutorContext context;
+  // Context the engine was last selected for, and whether it selects compiled expressions.
+  private ExecutorContext selected;
+  private boolean compiled;
+  // Variables assigned by the expression, created when the first one is.
+  private Map<String, Object> assigned;
+
+  /**
+   * @param variables referred to by the expression, as returned by {@link EL#variables()}.
+   */
+  public RowContext(Set<String> variables) {
+    this(variables, false);
+  }
+
+  /**
+   * @param variables referred to by the expression, as returned by {@link EL#variables()}.
+   * @param numbersAsStrings true if the numeric values of columns are passed as strings.
+   */
+  public RowContext(Set<String> variables, boolean numbersAsStrings) {
+    for (String variable : variables) {
+      slots.put(variable, slots.size());
+    }
+    this.columns = new int[slots.size()];
+    this.numbersAsStrings = numbersAsStrings;
+  }
+
+  /**
+   * Sets the row and the context the variables are resolved against.
+   *
+   * @param row the expression is evaluated on.
+   * @param context of the pipeline, can be null.
+   * @return 'this' context.
+   */
+  public RowContext set(Row row, ExecutorContext context) {
+    this.row = row;
+    this.context = context;
+    if (assigned != null) {
+      assigned.clear();
+    }
+    return this;
+  }
+
+  /**
+   * @return the context of the pipeline, null if there isn't one.
+   */
+  ExecutorContext getExecutorContext() {
+    return context;
+  }
+
+  /**
+   * @return true if the pipeline evaluates the expressions compiled, see {@link EL#ENGINE}.
+   */
+  public boolean isCompiled() {
+    if (context != selected) {
+      selected = context;
+      compiled = EL.isCompiled(context);
+    }
+    return compiled;
+  }
+
+  @Override
+  public Object get(String name) {
+    if (assigned != null && assigned.containsKey(name)) {
+      return assigned.get(name);
+    }
+    TransientStore store = context == null ? null : context.getTransientStore();
+    if (store != null) {
+      Object value = store.get(name);
+      if (value != null || isTransient(store, name)) {
+        return value;
+      }
+    }
+    Integer slot = slots.get(name);
+    if (slot != null) {
+      return column(slot, name);
+    }
+    if ("this".equals(name)) {
+      return row;
+    }
+    if (context != null) {
+      if ("runtime".equals(name)) {
+        return context.getProperties();
+      } else if ("environment".equals(name)) {
+        return context.getEnvironment().name();
+      } else if ("context".equals(name)) {
+        return context.getContextName();
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void set(String name, Object value) {
+    if (assigned == null) {
+      assigned = new HashMap<>();
+    }
+    assigned.put(name, value);
+  }
+
+  @Override
+  public boolean has(String name) {
+    if (slots.containsKey(name) || "this".equals(name) || (assigned != null && assigned.containsKey(name))) {
+      return true;
+    }
+    if (context == null) {
+      return false;
+    }
+    return "runtime".equals(name) || "environment".equals(name) || "context".equals(name)
+      || isTransient(context.getTransientStore(), name);
+  }
+
+  private Object column(int slot, String name) {
+    int index = columns[slot];
+    if (index >= row.length() || !name.equalsIgnoreCase(row.getColumn(index))) {
+      index = row.find(name);
+      if (index < 0) {
+        return null;
+      }
+      columns[slot] = index;
+    }
+    Object value = row.getValue(index);
+    return numbersAsStrings && value instanceof Number ? value.toString() : value;
+  }
+
+  private static boolean isTransient(TransientStore store, String name) {
+    if (store instanceof DefaultTransientStore) {
+      return ((DefaultTransientStore) store).has(name);
+    }
+    return store != null && store.getVariables().contains(name);
+  }
+}
@@ -114,6 +114,11 @@ public class MapArguments implements Arguments {
           if (specification.type().equals(token.type())) {
             tokens.put(specification.name(), token);
             break;
+          } else if (specification.type() == TokenType.COLUMN_NAME_LIST && token.type() == TokenType.COLUMN_NAME) {
+            List<String> values = new ArrayList<>();
+            values.add(((ColumnName) token).value());
+            tokens.put(specification.name(), new ColumnNameList(values));
+            break;
           }
         }
       }
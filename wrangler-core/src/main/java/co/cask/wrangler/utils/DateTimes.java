@@ -0,0 +1,331 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Date and time utilities shared by the date directives and functions.
+ *
+ * <p>{@link DateTimeFormatter} and {@link SimpleDateParser} instances are compiled once per pattern and
+ * zone and shared across the process, they are immutable and thread-safe. ISO-8601 and epoch values are
+ * parsed by hand, without going through a formatter.</p>
+ */
+public final class DateTimes {
+  /**
+   * Zone used for dates that are not in a specific zone.
+   */
+  public static final ZoneId UTC = ZoneId.ofOffset("UTC", ZoneOffset.UTC);
+
+  private static final long MAXIMUM_SIZE = 1000;
+  private static final LoadingCache<Key, DateTimeFormatter> FORMATTERS = CacheBuilder.newBuilder()
+    .maximumSize(MAXIMUM_SIZE)
+    .build(new CacheLoader<Key, DateTimeFormatter>() {
+      @Override
+      public DateTimeFormatter load(Key key) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(key.pattern);
+        return key.zone == null ? formatter : formatter.withZone(key.zone);
+      }
+    });
+  private static final LoadingCache<Key, SimpleDateParser> PARSERS = CacheBuilder.newBuilder()
+    .maximumSize(MAXIMUM_SIZE)
+    .build(new CacheLoader<Key, SimpleDateParser>() {
+      @Override
+      public SimpleDateParser load(Key key) {
+        return new SimpleDateParser(key.pattern, key.zone);
+      }
+    });
+
+  private DateTimes() {
+  }
+
+  /**
+   * Returns the formatter for the pattern.
+   *
+   * @param pattern as defined by {@link DateTimeFormatter}.
+   * @param zone of the formatter, null if the zone of the values formatted is used.
+   * @return a shared {@link DateTimeFormatter}.
+   * @throws IllegalArgumentException thrown when the pattern is invalid.
+   */
+  public static DateTimeFormatter formatter(String pattern, ZoneId zone) {
+    return get(FORMATTERS, new Key(pattern, zone));
+  }
+
+  /**
+   * Returns a parser for the pattern, that parses values the same way as {@link java.text.SimpleDateFormat}.
+   *
+   * @param pattern as defined by {@link java.text.SimpleDateFormat}.
+   * @param zone of the values that don't have a zone, and of the dates returned.
+   * @return a shared {@link SimpleDateParser}.
+   * @throws IllegalArgumentException thrown when the pattern is invalid.
+   */
+  public static SimpleDateParser simpleDateParser(String pattern, ZoneId zone) {
+    return get(PARSERS, new Key(pattern, zone));
+  }
+
+  /**
+   * Parses an ISO-8601 date, or date and time, such as {@code 2016-12-10}, {@code 2016-12-10T06:45:11.111Z}
+   * or {@code 2016-12-10 06:45+01:00}.
+   *
+   * <p>The date and time can be separated by a 'T' or a space, seconds and fraction of seconds are optional.
+   * The offset can be 'Z', or hours with optional minutes.</p>
+   *
+   * @param text to be parsed.
+   * @param zone of the values that don't have an offset, and of the date returned.
+   * @return the date, null if the text is not an ISO-8601 date or is not a valid date.
+   */
+  public static ZonedDateTime parseIso(CharSequence text, ZoneId zone) {
+    int length = text.length();
+    if (length < 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+      return null;
+    }
+    int year = digits(text, 0, 4);
+    int month = digits(text, 5, 2);
+    int day = digits(text, 8, 2);
+    if (year < 0 || month < 0 || day < 0) {
+      return null;
+    }
+
+    int hour = 0;
+    int minute = 0;
+    int second = 0;
+    int nano = 0;
+    int pos = 10;
+    if (pos < length && (text.charAt(pos) == 'T' || text.charAt(pos) == ' ')) {
+      if (pos + 6 > length || text.charAt(pos + 3) != ':') {
+        return null;
+      }
+      hour = digits(text, pos + 1, 2);
+      minute = digits(text, pos + 4, 2);
+      if (hour < 0 || minute < 0) {
+        return null;
+      }
+      pos += 6;
+      if (pos < length && text.charAt(pos) == ':') {
+        second = digits(text, pos + 1, 2);
+        if (second < 0) {
+          return null;
+        }
+        pos += 3;
+        if (pos < length && (text.charAt(pos) == '.' || text.charAt(pos) == ',')) {
+          int start = ++pos;
+          while (pos < length && pos - start < 9 && isDigit(text.charAt(pos))) {
+            nano = nano * 10 + (text.charAt(pos++) - '0');
+          }
+          if (pos == start) {
+            return null;
+          }
+          for (int i = pos - start; i < 9; ++i) {
+            nano *= 10;
+          }
+        }
+      }
+    }
+
+    ZoneId valueZone = zone;
+    if (pos < length) {
+      char sign = text.charAt(pos);
+      if (sign == 'Z' && pos + 1 == length) {
+        valueZone = ZoneOffset.UTC;
+      } else if ((sign == '+' || sign == '-') && (length - pos == 3 || length - pos == 5 || length - pos == 6)) {
+        int hours = digits(text, pos + 1, 2);
+        int minutes = 0;
+        if (length - pos == 5) {
+          minutes = digits(text, pos + 3, 2);
+        } else if (length - pos == 6) {
+          minutes = text.charAt(pos + 3) == ':' ? digits(text, pos + 4, 2) : -1;
+        }
+        if (hours < 0 || minutes < 0) {
+          return null;
+        }
+        try {
+          valueZone = sign == '+' ? ZoneOffset.ofHoursMinutes(hours, minutes)
+            : ZoneOffset.ofHoursMinutes(-hours, -minutes);
+        } catch (DateTimeException e) {
+          return null;
+        }
+      } else {
+        return null;
+      }
+    }
+
+    try {
+      ZonedDateTime date = ZonedDateTime.of(year, month, day, hour, minute, second, nano, valueZone);
+      return valueZone == zone ? date : date.withZoneSameInstant(zone);
+    } catch (DateTimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses the text as a number of seconds, milliseconds or microseconds since the epoch.
+   *
+   * @param text to be parsed, a signed decimal number.
+   * @param unit of the number.
+   * @param zone of the date returned.
+   * @return the date.
+   * @throws NumberFormatException thrown when the text is not a valid long.
+   */
+  public static ZonedDateTime parseEpoch(CharSequence text, TimeUnit unit, ZoneId zone) {
+    return ofEpoch(parseLong(text), unit, zone);
+  }
+
+  /**
+   * Converts the number of seconds, milliseconds or microseconds since the epoch to a date.
+   *
+   * @param value number of units since the epoch.
+   * @param unit of the value.
+   * @param zone of the date returned.
+   * @return the date.
+   */
+  public static ZonedDateTime ofEpoch(long value, TimeUnit unit, ZoneId zone) {
+    long mod = unit.convert(1, TimeUnit.SECONDS);
+    long seconds = unit.toSeconds(value);
+    // Fraction is negative for dates before the epoch, Instant adjusts the seconds.
+    long fraction = mod == 0 ? 0 : value % mod;
+    return ZonedDateTime.ofInstant(Instant.ofEpochSecond(seconds, unit.toNanos(fraction)), zone);
+  }
+
+  /**
+   * Converts the supported date types to a {@link ZonedDateTime}. Dates without zone are in UTC,
+   * {@link LocalDate} is converted to the start of the day.
+   *
+   * @param object to be converted.
+   * @return the date, null if the object is null or is not a date.
+   */
+  public static ZonedDateTime toZonedDateTime(Object object) {
+    if (object instanceof ZonedDateTime) {
+      return (ZonedDateTime) object;
+    } else if (object instanceof LocalDate) {
+      return ((LocalDate) object).atStartOfDay(UTC);
+    } else if (object instanceof LocalDateTime) {
+      return ((LocalDateTime) object).atZone(UTC);
+    } else if (object instanceof OffsetDateTime) {
+      return ((OffsetDateTime) object).toZonedDateTime();
+    } else if (object instanceof Instant) {
+      return ((Instant) object).atZone(UTC);
+    } else if (object instanceof Date) {
+      return Instant.ofEpochMilli(((Date) object).getTime()).atZone(UTC);
+    }
+    return null;
+  }
+
+  private static long parseLong(CharSequence text) {
+    int length = text.length();
+    int pos = 0;
+    boolean negative = false;
+    if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+      negative = text.charAt(0) == '-';
+      pos++;
+    }
+    if (pos == length) {
+      throw new NumberFormatException(String.format("For input string: \"%s\"", text));
+    }
+    // Accumulates negatively, as Long.MIN_VALUE has no positive counterpart.
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    long value = 0;
+    for (; pos < length; ++pos) {
+      char c = text.charAt(pos);
+      if (!isDigit(c) || value < limit / 10 || value * 10 < limit + (c - '0')) {
+        throw new NumberFormatException(String.format("For input string: \"%s\"", text));
+      }
+      value = value * 10 - (c - '0');
+    }
+    return negative ? value : -value;
+  }
+
+  /**
+   * Parses a fixed number of digits.
+   *
+   * @return the value, -1 if the text has not enough digits.
+   */
+  private static int digits(CharSequence text, int start, int count) {
+    if (start + count > text.length()) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = start; i < start + count; ++i) {
+      char c = text.charAt(i);
+      if (!isDigit(c)) {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static <T> T get(LoadingCache<Key, T> cache, Key key) {
+    try {
+      return cache.getUnchecked(key);
+    } catch (UncheckedExecutionException e) {
+      if (e.getCause() instanceof IllegalArgumentException) {
+        throw (IllegalArgumentException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Pattern and zone a formatter or parser is compiled for.
+   */
+  private static final class Key {
+    private final String pattern;
+    private final ZoneId zone;
+
+    Key(String pattern, ZoneId zone) {
+      this.pattern = pattern;
+      this.zone = zone;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return pattern.equals(that.pattern) && Objects.equal(zone, that.zone);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(pattern, zone);
+    }
+  }
+}
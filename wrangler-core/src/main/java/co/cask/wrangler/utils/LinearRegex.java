@@ -0,0 +1,1139 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A regular expression matcher that runs in time linear in the length of the input.
+ *
+ * <p>The regex is compiled into a program for a non-deterministic automaton, which is simulated with all the
+ * threads advancing in lockstep (Pike VM), so each character of the input is looked at once per instruction.
+ * Threads are kept in priority order, so the match found is the same as the one {@link java.util.regex}
+ * finds. Whole-input matches that don't need groups or assertions use a deterministic automaton built lazily
+ * from the program, one state per set of threads.</p>
+ *
+ * <p>Only the subset of the {@link java.util.regex.Pattern} syntax that can be matched without backtracking is
+ * supported : back-references, lookarounds, atomic groups, possessive quantifiers, nested classes, unicode
+ * properties and the flags other than 'i', 's' and 'm' are not. The regex is expected to be valid, as checked by
+ * {@link java.util.regex.Pattern#compile(String)}. Neither is a sub-expression that can match empty text repeated
+ * more than once, such as {@code ((ab)*|ba)*}, since {@link java.util.regex} stops repeating on the first empty
+ * iteration, which can give a shorter match or different groups than an automaton.</p>
+ */
+final class LinearRegex {
+  private static final int MAX_PROGRAM = 10000;
+  private static final int MAX_STATES = 4096;
+
+  // Instructions.
+  private static final int CHAR = 0;
+  private static final int CLASS = 1;
+  private static final int SPLIT = 2;
+  private static final int JMP = 3;
+  private static final int SAVE = 4;
+  private static final int ASSERT = 5;
+  private static final int MATCH = 6;
+
+  // Assertions.
+  private static final int BEGIN_TEXT = 0;
+  private static final int END_TEXT = 1;
+  private static final int END_TEXT_OR_TERMINATOR = 2;
+  private static final int BEGIN_LINE = 3;
+  private static final int END_LINE = 4;
+  private static final int WORD_BOUNDARY = 5;
+  private static final int NOT_WORD_BOUNDARY = 6;
+
+  // Flags.
+  private static final int CASE_INSENSITIVE = 1;
+  private static final int DOTALL = 2;
+  private static final int MULTILINE = 4;
+
+  private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+  private static final int[] DIGITS = { '0', '9' };
+  private static final int[] WORDS = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+  private static final int[] SPACES = { '\t', '\r', ' ', ' ' };
+  private static final int[] DOTS = { 0, '\n' - 1, '\n' + 1, '\r' - 1, '\r' + 1, 0x84, 0x86, 0x2027,
+    0x202A, MAX_CODE_POINT };
+  private static final int[] ALL = { 0, MAX_CODE_POINT };
+
+  private final int[] ops;
+  // Code point, class, first target, group slot or assertion.
+  private final int[] args;
+  // Second target of a split.
+  private final int[] targets;
+  private final int[][] classes;
+  private final int groups;
+  // Literal the matches start with, -1 if there isn't one.
+  private final int first;
+  // The deterministic automaton can't check assertions.
+  private final boolean deterministic;
+  private final ThreadLocal<Machine> machines;
+
+  private LinearRegex(int[] ops, int[] args, int[] targets, int[][] classes, int groups) {
+    this.ops = ops;
+    this.args = args;
+    this.targets = targets;
+    this.classes = classes;
+    this.groups = groups;
+    this.first = ops[1] == CHAR ? args[1] : -1;
+    boolean assertions = false;
+    for (int op : ops) {
+      assertions |= op == ASSERT;
+    }
+    this.deterministic = !assertions;
+    this.machines = ThreadLocal.withInitial(Machine::new);
+  }
+
+  /**
+   * Compiles the regex.
+   *
+   * @param regex a valid regular expression.
+   * @return the compiled regex, null if it uses a construct that is not supported.
+   */
+  static LinearRegex compile(String regex) {
+    Parser parser = new Parser(regex);
+    Node node = parser.parse();
+    if (node == null) {
+      return null;
+    }
+    Compiler compiler = new Compiler();
+    // Group 0 is the whole match.
+    compiler.emit(SAVE, 0, 0);
+    if (!compiler.compile(node)) {
+      return null;
+    }
+    compiler.emit(SAVE, 1, 0);
+    compiler.emit(MATCH, 0, 0);
+    if (compiler.size > MAX_PROGRAM) {
+      return null;
+    }
+    return new LinearRegex(Arrays.copyOf(compiler.ops, compiler.size), Arrays.copyOf(compiler.args, compiler.size),
+                           Arrays.copyOf(compiler.targets, compiler.size),
+                           compiler.classes.toArray(new int[compiler.classes.size()][]), parser.groups);
+  }
+
+  /**
+   * @return number of capturing groups.
+   */
+  int groupCount() {
+    return groups;
+  }
+
+  /**
+   * Checks if the whole input matches.
+   */
+  boolean matches(String input) {
+    Machine machine = machines.get();
+    return deterministic ? machine.matches(input) : machine.run(input, 0, true, null);
+  }
+
+  /**
+   * Finds the first match at or after the index.
+   *
+   * @param input to be searched.
+   * @param from index to start from.
+   * @param offsets start and end of each group, -1 for the groups that didn't match.
+   * @return true if a match was found.
+   */
+  boolean find(String input, int from, int[] offsets) {
+    return machines.get().run(input, from, false, offsets);
+  }
+
+  private boolean accepts(int pc, int c) {
+    return ops[pc] == CHAR ? args[pc] == c : contains(classes[args[pc]], c);
+  }
+
+  private static boolean contains(int[] ranges, int c) {
+    int low = 0;
+    int high = ranges.length / 2 - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (c < ranges[2 * middle]) {
+        high = middle - 1;
+      } else if (c > ranges[2 * middle + 1]) {
+        low = middle + 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean check(int assertion, String input, int pos) {
+    int length = input.length();
+    switch (assertion) {
+      case BEGIN_TEXT:
+        return pos == 0;
+      case END_TEXT:
+        return pos == length;
+      case END_TEXT_OR_TERMINATOR:
+        if (pos == length) {
+          return true;
+        } else if (pos == length - 2) {
+          return input.charAt(pos) == '\r' && input.charAt(pos + 1) == '\n';
+        } else if (pos == length - 1) {
+          char c = input.charAt(pos);
+          return c == '\n' ? pos == 0 || input.charAt(pos - 1) != '\r' : isTerminator(c);
+        }
+        return false;
+      case BEGIN_LINE:
+        if (pos == 0) {
+          return true;
+        } else if (pos == length) {
+          return false;
+        }
+        char previous = input.charAt(pos - 1);
+        return previous == '\r' ? input.charAt(pos) != '\n' : isTerminator(previous);
+      case END_LINE:
+        if (pos == length) {
+          return true;
+        }
+        char c = input.charAt(pos);
+        return c == '\n' ? pos == 0 || input.charAt(pos - 1) != '\r' : isTerminator(c);
+      case WORD_BOUNDARY:
+      case NOT_WORD_BOUNDARY:
+        boolean before = pos > 0 && isWord(input.charAt(pos - 1));
+        boolean after = pos < length && isWord(input.charAt(pos));
+        return (before != after) == (assertion == WORD_BOUNDARY);
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static boolean isWord(char c) {
+    return c == '_' || Character.isLetterOrDigit(c);
+  }
+
+  /**
+   * State of the simulation, one per thread as the regex is shared.
+   */
+  private final class Machine {
+    private final Threads current = new Threads();
+    private final Threads next = new Threads();
+    // Pending work when adding a thread, an instruction to follow or a group slot to restore.
+    private final int[] stack = new int[3 * ops.length + 3];
+    private final int[] initial = new int[2 * groups + 2];
+    private final Map<StateKey, State> states = new HashMap<>();
+    private State start;
+
+    /**
+     * Runs the program from the index, returns true if it matches.
+     */
+    boolean run(String input, int from, boolean anchored, int[] offsets) {
+      int length = input.length();
+      if (from > length) {
+        return false;
+      }
+      Threads clist = current;
+      Threads nlist = next;
+      clist.clear();
+      nlist.clear();
+      boolean matched = false;
+      int pos = from;
+      while (true) {
+        if (!matched && (!anchored || pos == from)) {
+          if (clist.size == 0 && first >= 0 && !anchored) {
+            // No thread is running, skips to the next occurrence of the literal every match starts with.
+            pos = input.indexOf(first, pos);
+            if (pos < 0) {
+              break;
+            }
+          }
+          Arrays.fill(initial, -1);
+          add(clist, 0, input, pos, initial);
+        }
+        if (clist.size == 0) {
+          break;
+        }
+        int c = pos < length ? input.codePointAt(pos) : -1;
+        int width = c < 0 ? 0 : Character.charCount(c);
+        for (int i = 0; i < clist.size; ++i) {
+          int pc = clist.dense[i];
+          int op = ops[pc];
+          int[] caps = clist.caps[pc];
+          if (op != CHAR && op != CLASS && op != MATCH) {
+            // Instructions that don't consume input were followed when the thread was added.
+            continue;
+          } else if (op == MATCH) {
+            if (anchored && pos != length) {
+              continue;
+            }
+            matched = true;
+            if (offsets != null) {
+              System.arraycopy(caps, 0, offsets, 0, offsets.length);
+            }
+            // Threads of lower priority are dropped.
+            break;
+          } else if (c >= 0 && accepts(pc, c)) {
+            add(nlist, pc + 1, input, pos + width, caps);
+          }
+        }
+        if (c < 0) {
+          break;
+        }
+        Threads swap = clist;
+        clist = nlist;
+        nlist = swap;
+        nlist.clear();
+        pos += width;
+      }
+      return matched;
+    }
+
+    /**
+     * Adds the thread and the threads it leads to without consuming input, in priority order.
+     */
+    private void add(Threads list, int pc0, String input, int pos, int[] caps) {
+      int top = 0;
+      stack[top++] = pc0;
+      while (top > 0) {
+        int pc = stack[--top];
+        if (pc < 0) {
+          // Restores a group slot once the threads that saw it have been added.
+          caps[-pc - 1] = stack[--top];
+          continue;
+        }
+        while (!list.contains(pc)) {
+          list.add(pc);
+          int op = ops[pc];
+          if (op == JMP) {
+            pc = args[pc];
+          } else if (op == SPLIT) {
+            stack[top++] = targets[pc];
+            pc = args[pc];
+          } else if (op == SAVE) {
+            stack[top++] = caps[args[pc]];
+            stack[top++] = -args[pc] - 1;
+            caps[args[pc]] = pos;
+            pc++;
+          } else if (op == ASSERT) {
+            if (!check(args[pc], input, pos)) {
+              break;
+            }
+            pc++;
+          } else {
+            System.arraycopy(caps, 0, list.caps[pc], 0, caps.length);
+            break;
+          }
+        }
+      }
+    }
+
+    /**
+     * Matches the whole input with the deterministic automaton.
+     */
+    boolean matches(String input) {
+      if (start == null) {
+        start = state(closure(new int[] { 0 }, 1));
+      }
+      State state = start;
+      for (int pos = 0; pos < input.length(); ) {
+        int c = input.codePointAt(pos);
+        pos += Character.charCount(c);
+        State target = c < State.ASCII ? state.ascii[c] : state.others.get(c);
+        if (target == null) {
+          target = step(state, c);
+        }
+        if (target.pcs.length == 0) {
+          return false;
+        }
+        state = target;
+      }
+      return state.accepting;
+    }
+
+    private State step(State state, int c) {
+      int[] pcs = new int[state.pcs.length];
+      int count = 0;
+      for (int pc : state.pcs) {
+        if (ops[pc] != MATCH && accepts(pc, c)) {
+          pcs[count++] = pc + 1;
+        }
+      }
+      if (states.size() > MAX_STATES) {
+        // Starts over rather than growing without bound, the states are rebuilt as needed.
+        states.clear();
+        start = null;
+      }
+      State target = state(closure(pcs, count));
+      if (c < State.ASCII) {
+        state.ascii[c] = target;
+      } else {
+        state.others.put(c, target);
+      }
+      return target;
+    }
+
+    /**
+     * Returns the instructions that consume input or match, reachable from the instructions.
+     */
+    private int[] closure(int[] pcs, int count) {
+      Threads list = current;
+      list.clear();
+      for (int i = 0; i < count; ++i) {
+        int top = 0;
+        stack[top++] = pcs[i];
+        while (top > 0) {
+          int pc = stack[--top];
+          while (!list.contains(pc)) {
+            list.add(pc);
+            int op = ops[pc];
+            if (op == JMP) {
+              pc = args[pc];
+            } else if (op == SPLIT) {
+              stack[top++] = targets[pc];
+              pc = args[pc];
+            } else if (op == SAVE) {
+              pc++;
+            } else {
+              break;
+            }
+          }
+        }
+      }
+      int[] result = new int[list.size];
+      int size = 0;
+      for (int i = 0; i < list.size; ++i) {
+        int op = ops[list.dense[i]];
+        if (op == CHAR || op == CLASS || op == MATCH) {
+          result[size++] = list.dense[i];
+        }
+      }
+      result = Arrays.copyOf(result, size);
+      Arrays.sort(result);
+      return result;
+    }
+
+    private State state(int[] pcs) {
+      StateKey key = new StateKey(pcs);
+      State state = states.get(key);
+      if (state == null) {
+        boolean accepting = false;
+        for (int pc : pcs) {
+          accepting |= ops[pc] == MATCH;
+        }
+        state = new State(pcs, accepting);
+        states.put(key, state);
+      }
+      return state;
+    }
+  }
+
+  /**
+   * List of threads, a sparse set of instructions in the order they were added, with the groups of each thread.
+   */
+  private final class Threads {
+    private final int[] dense = new int[ops.length];
+    private final int[] sparse = new int[ops.length];
+    private final int[][] caps = new int[ops.length][2 * groups + 2];
+    private int size;
+
+    boolean contains(int pc) {
+      int index = sparse[pc];
+      return index < size && dense[index] == pc;
+    }
+
+    void add(int pc) {
+      sparse[pc] = size;
+      dense[size++] = pc;
+    }
+
+    void clear() {
+      size = 0;
+    }
+  }
+
+  /**
+   * State of the deterministic automaton.
+   */
+  private static final class State {
+    private static final int ASCII = 128;
+    private final int[] pcs;
+    private final boolean accepting;
+    private final State[] ascii = new State[ASCII];
+    private final Map<Integer, State> others = new HashMap<>();
+
+    State(int[] pcs, boolean accepting) {
+      this.pcs = pcs;
+      this.accepting = accepting;
+    }
+  }
+
+  private static final class StateKey {
+    private final int[] pcs;
+    private final int hash;
+
+    StateKey(int[] pcs) {
+      this.pcs = pcs;
+      this.hash = Arrays.hashCode(pcs);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof StateKey && Arrays.equals(pcs, ((StateKey) o).pcs);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Syntax tree of the regex.
+   */
+  private abstract static class Node {
+  }
+
+  private static final class Literal extends Node {
+    private final int c;
+
+    Literal(int c) {
+      this.c = c;
+    }
+  }
+
+  private static final class CharClass extends Node {
+    private final int[] ranges;
+
+    CharClass(int[] ranges) {
+      this.ranges = ranges;
+    }
+  }
+
+  private static final class Concat extends Node {
+    private final List<Node> nodes;
+
+    Concat(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+  }
+
+  private static final class Alternation extends Node {
+    private final List<Node> nodes;
+
+    Alternation(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+  }
+
+  private static final class Repeat extends Node {
+    private final Node node;
+    private final int min;
+    // -1 if unbounded.
+    private final int max;
+    private final boolean greedy;
+
+    Repeat(Node node, int min, int max, boolean greedy) {
+      this.node = node;
+      this.min = min;
+      this.max = max;
+      this.greedy = greedy;
+    }
+  }
+
+  private static final class Group extends Node {
+    private final Node node;
+    private final int index;
+
+    Group(Node node, int index) {
+      this.node = node;
+      this.index = index;
+    }
+  }
+
+  private static final class Assertion extends Node {
+    private final int kind;
+
+    Assertion(int kind) {
+      this.kind = kind;
+    }
+  }
+
+  /**
+   * Parses the regex into a syntax tree.
+   */
+  private static final class Parser {
+    private final String regex;
+    private int pos;
+    private int flags;
+    private int groups;
+    private boolean supported = true;
+
+    Parser(String regex) {
+      this.regex = regex;
+    }
+
+    /**
+     * @return the syntax tree, null if the regex is not supported.
+     */
+    Node parse() {
+      Node node = alternation();
+      return supported && pos == regex.length() ? node : null;
+    }
+
+    private Node unsupported() {
+      supported = false;
+      pos = regex.length();
+      return new Concat(new ArrayList<>());
+    }
+
+    private boolean more() {
+      return supported && pos < regex.length();
+    }
+
+    private char peek() {
+      return regex.charAt(pos);
+    }
+
+    private Node alternation() {
+      List<Node> nodes = new ArrayList<>();
+      nodes.add(concat());
+      while (more() && peek() == '|') {
+        pos++;
+        nodes.add(concat());
+      }
+      return nodes.size() == 1 ? nodes.get(0) : new Alternation(nodes);
+    }
+
+    private Node concat() {
+      List<Node> nodes = new ArrayList<>();
+      while (more() && peek() != '|' && peek() != ')') {
+        Node node = atom();
+        if (node != null) {
+          nodes.add(quantified(node));
+        }
+      }
+      return nodes.size() == 1 ? nodes.get(0) : new Concat(nodes);
+    }
+
+    private Node quantified(Node atom) {
+      Node node = atom;
+      while (more()) {
+        int min;
+        int max;
+        char c = peek();
+        if (c == '*') {
+          min = 0;
+          max = -1;
+          pos++;
+        } else if (c == '+') {
+          min = 1;
+          max = -1;
+          pos++;
+        } else if (c == '?') {
+          min = 0;
+          max = 1;
+          pos++;
+        } else if (c == '{') {
+          int end = regex.indexOf('}', pos);
+          if (end < 0) {
+            return unsupported();
+          }
+          String[] bounds = regex.substring(pos + 1, end).split(",", -1);
+          try {
+            min = Integer.parseInt(bounds[0].trim());
+            max = bounds.length == 1 ? min : bounds[1].trim().isEmpty() ? -1 : Integer.parseInt(bounds[1].trim());
+          } catch (NumberFormatException e) {
+            return unsupported();
+          }
+          if (bounds.length > 2 || min > MAX_PROGRAM || max > MAX_PROGRAM) {
+            return unsupported();
+          }
+          pos = end + 1;
+        } else {
+          break;
+        }
+        boolean greedy = true;
+        if (more() && peek() == '?') {
+          greedy = false;
+          pos++;
+        } else if (more() && peek() == '+') {
+          // Possessive quantifiers need backtracking control.
+          return unsupported();
+        }
+        if ((max < 0 || max > 1) && nullable(node)) {
+          // java.util.regex stops repeating on an empty iteration.
+          return unsupported();
+        }
+        node = new Repeat(node, min, max, greedy);
+      }
+      return node;
+    }
+
+    /**
+     * Checks if the node can match empty text.
+     */
+    private static boolean nullable(Node node) {
+      if (node instanceof Literal || node instanceof CharClass) {
+        return false;
+      } else if (node instanceof Group) {
+        return nullable(((Group) node).node);
+      } else if (node instanceof Repeat) {
+        return ((Repeat) node).min == 0 || nullable(((Repeat) node).node);
+      } else if (node instanceof Concat) {
+        for (Node child : ((Concat) node).nodes) {
+          if (!nullable(child)) {
+            return false;
+          }
+        }
+        return true;
+      } else if (node instanceof Alternation) {
+        for (Node child : ((Alternation) node).nodes) {
+          if (nullable(child)) {
+            return true;
+          }
+        }
+        return false;
+      }
+      return true;
+    }
+
+    /**
+     * Parses an atom, returns null if it only changed the flags.
+     */
+    private Node atom() {
+      char c = regex.charAt(pos++);
+      switch (c) {
+        case '(':
+          return group();
+        case '[':
+          return new CharClass(characterClass());
+        case '.':
+          return new CharClass((flags & DOTALL) != 0 ? ALL : DOTS);
+        case '^':
+          return new Assertion((flags & MULTILINE) != 0 ? BEGIN_LINE : BEGIN_TEXT);
+        case '$':
+          return new Assertion((flags & MULTILINE) != 0 ? END_LINE : END_TEXT_OR_TERMINATOR);
+        case '\\':
+          return escape();
+        default:
+          pos--;
+          return literal(regex.codePointAt(pos), true);
+      }
+    }
+
+    private Node literal(int c, boolean advance) {
+      if (advance) {
+        pos += Character.charCount(c);
+      }
+      if ((flags & CASE_INSENSITIVE) != 0 && isAsciiLetter(c)) {
+        return new CharClass(normalize(new int[] { c, c }, false));
+      }
+      return new Literal(c);
+    }
+
+    private Node group() {
+      int saved = flags;
+      Node node;
+      if (more() && peek() == '?') {
+        pos++;
+        char c = more() ? peek() : ')';
+        if (c == ':') {
+          pos++;
+          node = alternation();
+        } else if (c == '<' && pos + 1 < regex.length() && Character.isLetter(regex.charAt(pos + 1))) {
+          int end = regex.indexOf('>', pos);
+          if (end < 0) {
+            return unsupported();
+          }
+          pos = end + 1;
+          int index = ++groups;
+          node = new Group(alternation(), index);
+        } else {
+          // Inline flags, for the rest of the enclosing group or for the group they start.
+          boolean on = true;
+          int changed = flags;
+          while (more() && peek() != ')' && peek() != ':') {
+            char flag = regex.charAt(pos++);
+            int bit = flag == 'i' ? CASE_INSENSITIVE : flag == 's' ? DOTALL : flag == 'm' ? MULTILINE : 0;
+            if (flag == '-') {
+              on = false;
+            } else if (bit == 0) {
+              // Lookarounds, atomic groups and the other flags.
+              return unsupported();
+            } else {
+              changed = on ? changed | bit : changed & ~bit;
+            }
+          }
+          if (!more()) {
+            return unsupported();
+          }
+          if (regex.charAt(pos++) == ')') {
+            flags = changed;
+            return null;
+          }
+          flags = changed;
+          node = alternation();
+        }
+      } else {
+        int index = ++groups;
+        node = new Group(alternation(), index);
+      }
+      if (!more() || peek() != ')') {
+        return unsupported();
+      }
+      pos++;
+      flags = saved;
+      return node;
+    }
+
+    private Node escape() {
+      if (!more()) {
+        return unsupported();
+      }
+      char c = regex.charAt(pos++);
+      switch (c) {
+        case 'b':
+          return new Assertion(WORD_BOUNDARY);
+        case 'B':
+          return new Assertion(NOT_WORD_BOUNDARY);
+        case 'A':
+          return new Assertion(BEGIN_TEXT);
+        case 'z':
+          return new Assertion(END_TEXT);
+        case 'Z':
+          return new Assertion(END_TEXT_OR_TERMINATOR);
+        case 'Q':
+          int end = regex.indexOf("\\E", pos);
+          String quoted = regex.substring(pos, end < 0 ? regex.length() : end);
+          pos = end < 0 ? regex.length() : end + 2;
+          List<Node> nodes = new ArrayList<>();
+          for (int i = 0; i < quoted.length(); i += Character.charCount(quoted.codePointAt(i))) {
+            nodes.add(literal(quoted.codePointAt(i), false));
+          }
+          return new Concat(nodes);
+        default:
+          pos--;
+          int[] ranges = predefined();
+          if (ranges != null) {
+            return new CharClass(ranges);
+          }
+          int literal = escapedCharacter();
+          return literal < 0 ? unsupported() : literal(literal, false);
+      }
+    }
+
+    /**
+     * Parses the predefined class following a backslash, returns null if it's not a predefined class.
+     */
+    private int[] predefined() {
+      char c = regex.charAt(pos);
+      int[] ranges = c == 'd' || c == 'D' ? DIGITS : c == 'w' || c == 'W' ? WORDS : c == 's' || c == 'S' ? SPACES
+        : null;
+      if (ranges == null) {
+        return null;
+      }
+      pos++;
+      return normalize(ranges.clone(), Character.isUpperCase(c));
+    }
+
+    /**
+     * Parses the character following a backslash, returns -1 if it's not supported.
+     */
+    private int escapedCharacter() {
+      char c = regex.charAt(pos++);
+      switch (c) {
+        case 't':
+          return '\t';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 'f':
+          return '\f';
+        case 'a':
+          return '\u0007';
+        case 'e':
+          return '\u001B';
+        case 'x':
+          if (more() && peek() == '{') {
+            int end = regex.indexOf('}', pos);
+            if (end < 0) {
+              return -1;
+            }
+            int start = pos + 1;
+            pos = end + 1;
+            return hex(start, end);
+          }
+          pos += 2;
+          return hex(pos - 2, pos);
+        case 'u':
+          pos += 4;
+          return hex(pos - 4, pos);
+        default:
+          // Back-references, octal and control characters, unicode properties and the other classes.
+          return Character.isLetterOrDigit(c) ? -1 : c;
+      }
+    }
+
+    private int hex(int start, int end) {
+      try {
+        return end <= regex.length() ? Integer.parseInt(regex.substring(start, end), 16) : -1;
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+
+    private int[] characterClass() {
+      boolean negated = more() && peek() == '^';
+      if (negated) {
+        pos++;
+      }
+      List<int[]> ranges = new ArrayList<>();
+      boolean first = true;
+      while (more() && (peek() != ']' || first)) {
+        char c = peek();
+        if (c == '[' || c == ']' || regex.startsWith("&&", pos)) {
+          // Nested classes and intersections.
+          unsupported();
+          break;
+        }
+        first = false;
+        int low;
+        if (c == '\\') {
+          pos++;
+          if (!more()) {
+            unsupported();
+            break;
+          }
+          int[] predefined = predefined();
+          if (predefined != null) {
+            ranges.add(predefined);
+            continue;
+          }
+          low = escapedCharacter();
+        } else {
+          low = regex.codePointAt(pos);
+          pos += Character.charCount(low);
+        }
+        int high = low;
+        if (more() && peek() == '-' && pos + 1 < regex.length() && regex.charAt(pos + 1) != ']') {
+          pos++;
+          if (peek() == '\\') {
+            pos++;
+            high = more() ? escapedCharacter() : -1;
+          } else if (peek() == '[') {
+            high = -1;
+          } else {
+            high = regex.codePointAt(pos);
+            pos += Character.charCount(high);
+          }
+        }
+        if (low < 0 || high < 0) {
+          unsupported();
+          break;
+        }
+        ranges.add(new int[] { low, high });
+      }
+      if (!more()) {
+        unsupported();
+        return ALL;
+      }
+      pos++;
+      int size = 0;
+      for (int[] range : ranges) {
+        size += range.length;
+      }
+      int[] all = new int[size];
+      size = 0;
+      for (int[] range : ranges) {
+        System.arraycopy(range, 0, all, size, range.length);
+        size += range.length;
+      }
+      if ((flags & CASE_INSENSITIVE) != 0) {
+        all = normalize(all, false);
+      }
+      return normalize(all, negated);
+    }
+
+    /**
+     * Sorts and merges the ranges, adds the other case of ASCII letters when ignoring case and complements them
+     * if negated.
+     */
+    private int[] normalize(int[] ranges, boolean negated) {
+      List<int[]> list = new ArrayList<>();
+      for (int i = 0; i < ranges.length; i += 2) {
+        list.add(new int[] { ranges[i], ranges[i + 1] });
+        if ((flags & CASE_INSENSITIVE) != 0) {
+          addOtherCase(list, ranges[i], ranges[i + 1], 'a', 'z', 'A' - 'a');
+          addOtherCase(list, ranges[i], ranges[i + 1], 'A', 'Z', 'a' - 'A');
+        }
+      }
+      list.sort((a, b) -> Integer.compare(a[0], b[0]));
+      List<int[]> merged = new ArrayList<>();
+      for (int[] range : list) {
+        int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+        if (last != null && range[0] <= last[1] + 1) {
+          last[1] = Math.max(last[1], range[1]);
+        } else {
+          merged.add(range);
+        }
+      }
+      if (negated) {
+        List<int[]> complement = new ArrayList<>();
+        int next = 0;
+        for (int[] range : merged) {
+          if (range[0] > next) {
+            complement.add(new int[] { next, range[0] - 1 });
+          }
+          next = range[1] + 1;
+        }
+        if (next <= MAX_CODE_POINT) {
+          complement.add(new int[] { next, MAX_CODE_POINT });
+        }
+        merged = complement;
+      }
+      int[] result = new int[2 * merged.size()];
+      for (int i = 0; i < merged.size(); ++i) {
+        result[2 * i] = merged.get(i)[0];
+        result[2 * i + 1] = merged.get(i)[1];
+      }
+      return result;
+    }
+
+    private static void addOtherCase(List<int[]> list, int low, int high, int from, int to, int shift) {
+      int start = Math.max(low, from);
+      int end = Math.min(high, to);
+      if (start <= end) {
+        list.add(new int[] { start + shift, end + shift });
+      }
+    }
+
+    private static boolean isAsciiLetter(int c) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+  }
+
+  /**
+   * Compiles the syntax tree into a program.
+   */
+  private static final class Compiler {
+    private int[] ops = new int[64];
+    private int[] args = new int[64];
+    private int[] targets = new int[64];
+    private final List<int[]> classes = new ArrayList<>();
+    private int size;
+
+    int emit(int op, int arg, int target) {
+      if (size == ops.length) {
+        ops = Arrays.copyOf(ops, 2 * size);
+        args = Arrays.copyOf(args, 2 * size);
+        targets = Arrays.copyOf(targets, 2 * size);
+      }
+      ops[size] = op;
+      args[size] = arg;
+      targets[size] = target;
+      return size++;
+    }
+
+    /**
+     * Compiles the node, returns false if the program is too large.
+     */
+    boolean compile(Node node) {
+      if (size > MAX_PROGRAM) {
+        return false;
+      }
+      if (node instanceof Literal) {
+        emit(CHAR, ((Literal) node).c, 0);
+      } else if (node instanceof CharClass) {
+        classes.add(((CharClass) node).ranges);
+        emit(CLASS, classes.size() - 1, 0);
+      } else if (node instanceof Assertion) {
+        emit(ASSERT, ((Assertion) node).kind, 0);
+      } else if (node instanceof Group) {
+        Group group = (Group) node;
+        emit(SAVE, 2 * group.index, 0);
+        if (!compile(group.node)) {
+          return false;
+        }
+        emit(SAVE, 2 * group.index + 1, 0);
+      } else if (node instanceof Concat) {
+        for (Node child : ((Concat) node).nodes) {
+          if (!compile(child)) {
+            return false;
+          }
+        }
+      } else if (node instanceof Alternation) {
+        List<Node> nodes = ((Alternation) node).nodes;
+        List<Integer> jumps = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); ++i) {
+          int split = i < nodes.size() - 1 ? emit(SPLIT, 0, 0) : -1;
+          if (split >= 0) {
+            args[split] = size;
+          }
+          if (!compile(nodes.get(i))) {
+            return false;
+          }
+          if (split >= 0) {
+            jumps.add(emit(JMP, 0, 0));
+            targets[split] = size;
+          }
+        }
+        for (int jump : jumps) {
+          args[jump] = size;
+        }
+      } else if (node instanceof Repeat) {
+        return repeat((Repeat) node);
+      }
+      return true;
+    }
+
+    private boolean repeat(Repeat repeat) {
+      for (int i = 0; i < repeat.min; ++i) {
+        if (!compile(repeat.node)) {
+          return false;
+        }
+      }
+      if (repeat.max < 0) {
+        // Compiled as (node+)?
+        // L0: split L1, L3; L1: node; L2: split L1, L3; L3:
+        int split = emit(SPLIT, 0, 0);
+        int body = size;
+        if (!compile(repeat.node)) {
+          return false;
+        }
+        int loop = emit(SPLIT, 0, 0);
+        branch(split, body, size, repeat.greedy);
+        branch(loop, body, size, repeat.greedy);
+        return true;
+      }
+      for (int i = repeat.min; i < repeat.max; ++i) {
+        // split L1, L2; L1: node; L2:
+        int split = emit(SPLIT, 0, 0);
+        int body = size;
+        if (!compile(repeat.node)) {
+          return false;
+        }
+        branch(split, body, size, repeat.greedy);
+      }
+      return true;
+    }
+
+    private void branch(int split, int body, int exit, boolean greedy) {
+      args[split] = greedy ? body : exit;
+      targets[split] = greedy ? exit : body;
+    }
+  }
+}
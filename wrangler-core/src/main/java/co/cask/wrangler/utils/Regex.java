@@ -0,0 +1,504 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import co.cask.wrangler.api.ExecutorContext;
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled regular expression used by the directives that filter, extract or split on a regex.
+ *
+ * <p>Regexes are compiled once and shared across the process. A regex that is plain text, possibly with escaped
+ * characters such as {@code \|}, is searched for with {@link String#indexOf(String, int)}. Other regexes are run
+ * by the engine selected with the {@link #ENGINE} property of the pipeline : {@code java}, the default, uses
+ * {@link java.util.regex}, {@code linear} uses an automaton that runs in time linear in the length of the value,
+ * and falls back to {@link java.util.regex} for the regexes it doesn't support, such as back-references.</p>
+ *
+ * <p>Instances are immutable and thread-safe.</p>
+ */
+public abstract class Regex {
+  /**
+   * Property of the pipeline that selects the regex engine.
+   */
+  public static final String ENGINE = "regex.engine";
+
+  /**
+   * Regex engines.
+   */
+  public enum Engine {
+    JAVA,
+    LINEAR
+  }
+
+  private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+  private static final long MAXIMUM_SIZE = 1000;
+  private static final LoadingCache<Key, Regex> CACHE = CacheBuilder.newBuilder()
+    .maximumSize(MAXIMUM_SIZE)
+    .build(new CacheLoader<Key, Regex>() {
+      @Override
+      public Regex load(Key key) {
+        return create(key.regex, key.engine);
+      }
+    });
+
+  private final String regex;
+  private final Engine engine;
+
+  private Regex(String regex, Engine engine) {
+    this.regex = regex;
+    this.engine = engine;
+  }
+
+  /**
+   * Compiles the regex for the default engine.
+   *
+   * @param regex to be compiled.
+   * @return the compiled regex.
+   * @throws PatternSyntaxException thrown when the regex is invalid.
+   */
+  public static Regex compile(String regex) {
+    return compile(regex, Engine.JAVA);
+  }
+
+  /**
+   * Compiles the regex for the engine.
+   *
+   * @param regex to be compiled.
+   * @param engine to run the regex with.
+   * @return the compiled regex.
+   * @throws PatternSyntaxException thrown when the regex is invalid.
+   */
+  public static Regex compile(String regex, Engine engine) {
+    try {
+      return CACHE.getUnchecked(new Key(regex, engine));
+    } catch (UncheckedExecutionException e) {
+      if (e.getCause() instanceof PatternSyntaxException) {
+        throw (PatternSyntaxException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the engine selected by the {@link #ENGINE} property of the pipeline.
+   *
+   * @param context of the pipeline, can be null.
+   * @return the engine, {@link Engine#JAVA} if the property is not set or unknown.
+   */
+  public static Engine engine(ExecutorContext context) {
+    String engine = context == null || context.getProperties() == null ? null
+      : context.getProperties().get(ENGINE);
+    return Engine.LINEAR.name().equalsIgnoreCase(engine) ? Engine.LINEAR : Engine.JAVA;
+  }
+
+  /**
+   * Returns this regex compiled for the engine selected by the pipeline, this instance if it's the same engine.
+   *
+   * @param context of the pipeline, can be null.
+   * @return the compiled regex.
+   */
+  public Regex forContext(ExecutorContext context) {
+    Engine selected = engine(context);
+    return selected == engine ? this : compile(regex, selected);
+  }
+
+  /**
+   * @return the regex as specified.
+   */
+  public String pattern() {
+    return regex;
+  }
+
+  /**
+   * @return the engine the regex was compiled for.
+   */
+  public Engine engine() {
+    return engine;
+  }
+
+  /**
+   * @return true if the time taken to match is linear in the length of the value.
+   */
+  public abstract boolean isLinear();
+
+  /**
+   * @return number of capturing groups.
+   */
+  public abstract int groupCount();
+
+  /**
+   * Checks if the whole value matches the regex.
+   */
+  public abstract boolean matches(String value);
+
+  /**
+   * Returns a matcher to find the matches of the regex in the value.
+   */
+  public abstract Match matcher(String value);
+
+  /**
+   * Splits the value around the matches of the regex, as {@link String#split(String, int)} does.
+   *
+   * @param value to be split.
+   * @param limit maximum number of parts if positive, all the parts if negative and all the parts without the
+   * trailing empty ones if zero.
+   * @return the parts.
+   */
+  public String[] split(String value, int limit) {
+    int index = 0;
+    boolean limited = limit > 0;
+    List<String> parts = new ArrayList<>();
+    Match match = matcher(value);
+    while (match.find()) {
+      if (!limited || parts.size() < limit - 1) {
+        if (index == 0 && match.start() == 0 && match.start() == match.end()) {
+          // A zero-width match at the beginning never produces an empty leading part.
+          continue;
+        }
+        parts.add(value.substring(index, match.start()));
+        index = match.end();
+      } else if (parts.size() == limit - 1) {
+        parts.add(value.substring(index));
+        index = match.end();
+      }
+    }
+    if (index == 0) {
+      return new String[] { value };
+    }
+    if (!limited || parts.size() < limit) {
+      parts.add(value.substring(index));
+    }
+    int size = parts.size();
+    if (limit == 0) {
+      while (size > 0 && parts.get(size - 1).isEmpty()) {
+        size--;
+      }
+    }
+    return parts.subList(0, size).toArray(new String[size]);
+  }
+
+  @Override
+  public String toString() {
+    return regex;
+  }
+
+  /**
+   * Successive matches of a regex in a value.
+   */
+  public abstract static class Match {
+    /**
+     * Finds the next match.
+     *
+     * @return true if there is a match.
+     */
+    public abstract boolean find();
+
+    /**
+     * @return start of the match.
+     */
+    public abstract int start();
+
+    /**
+     * @return end of the match.
+     */
+    public abstract int end();
+
+    /**
+     * @return text matched by the group, null if the group didn't match.
+     */
+    public abstract String group(int group);
+  }
+
+  private static Regex create(String regex, Engine engine) {
+    String literal = literal(regex);
+    if (literal != null) {
+      return new Literal(regex, engine, literal);
+    }
+    Pattern pattern = Pattern.compile(regex);
+    LinearRegex linear = engine == Engine.LINEAR ? LinearRegex.compile(regex) : null;
+    return linear == null ? new Java(regex, engine, pattern) : new Linear(regex, engine, linear);
+  }
+
+  /**
+   * Returns the text matched by the regex if it has no metacharacter, null otherwise.
+   */
+  private static String literal(String regex) {
+    StringBuilder literal = new StringBuilder(regex.length());
+    for (int i = 0; i < regex.length(); ++i) {
+      char c = regex.charAt(i);
+      if (c == '\\' && i + 1 < regex.length()) {
+        char escaped = regex.charAt(++i);
+        if (escaped == 't') {
+          literal.append('\t');
+        } else if (escaped == 'n') {
+          literal.append('\n');
+        } else if (escaped == 'r') {
+          literal.append('\r');
+        } else if (escaped == 'f') {
+          literal.append('\f');
+        } else if (Character.isLetterOrDigit(escaped)) {
+          return null;
+        } else {
+          literal.append(escaped);
+        }
+      } else if (METACHARACTERS.indexOf(c) != -1) {
+        return null;
+      } else {
+        literal.append(c);
+      }
+    }
+    return literal.length() == 0 ? null : literal.toString();
+  }
+
+  /**
+   * A regex without metacharacter, searched for with {@link String#indexOf(String, int)}.
+   */
+  private static final class Literal extends Regex {
+    private final String literal;
+
+    Literal(String regex, Engine engine, String literal) {
+      super(regex, engine);
+      this.literal = literal;
+    }
+
+    @Override
+    public boolean isLinear() {
+      return true;
+    }
+
+    @Override
+    public int groupCount() {
+      return 0;
+    }
+
+    @Override
+    public boolean matches(String value) {
+      return literal.equals(value);
+    }
+
+    @Override
+    public Match matcher(String value) {
+      return new Match() {
+        private int start = -1;
+        private int end;
+
+        @Override
+        public boolean find() {
+          int index = value.indexOf(literal, end);
+          if (index < 0) {
+            return false;
+          }
+          start = index;
+          end = index + literal.length();
+          return true;
+        }
+
+        @Override
+        public int start() {
+          return start;
+        }
+
+        @Override
+        public int end() {
+          return end;
+        }
+
+        @Override
+        public String group(int group) {
+          if (group != 0) {
+            throw new IndexOutOfBoundsException("No group " + group);
+          }
+          return literal;
+        }
+      };
+    }
+  }
+
+  /**
+   * A regex run by {@link java.util.regex}.
+   */
+  private static final class Java extends Regex {
+    private final Pattern pattern;
+    private final int groups;
+
+    Java(String regex, Engine engine, Pattern pattern) {
+      super(regex, engine);
+      this.pattern = pattern;
+      this.groups = pattern.matcher("").groupCount();
+    }
+
+    @Override
+    public boolean isLinear() {
+      return false;
+    }
+
+    @Override
+    public int groupCount() {
+      return groups;
+    }
+
+    @Override
+    public boolean matches(String value) {
+      return pattern.matcher(value).matches();
+    }
+
+    @Override
+    public Match matcher(String value) {
+      Matcher matcher = pattern.matcher(value);
+      return new Match() {
+        @Override
+        public boolean find() {
+          return matcher.find();
+        }
+
+        @Override
+        public int start() {
+          return matcher.start();
+        }
+
+        @Override
+        public int end() {
+          return matcher.end();
+        }
+
+        @Override
+        public String group(int group) {
+          return matcher.group(group);
+        }
+      };
+    }
+
+    @Override
+    public String[] split(String value, int limit) {
+      return pattern.split(value, limit);
+    }
+  }
+
+  /**
+   * A regex run by {@link LinearRegex}.
+   */
+  private static final class Linear extends Regex {
+    private final LinearRegex linear;
+
+    Linear(String regex, Engine engine, LinearRegex linear) {
+      super(regex, engine);
+      this.linear = linear;
+    }
+
+    @Override
+    public boolean isLinear() {
+      return true;
+    }
+
+    @Override
+    public int groupCount() {
+      return linear.groupCount();
+    }
+
+    @Override
+    public boolean matches(String value) {
+      return linear.matches(value);
+    }
+
+    @Override
+    public Match matcher(String value) {
+      int[] offsets = new int[2 * linear.groupCount() + 2];
+      return new Match() {
+        private int from;
+        private boolean found;
+
+        @Override
+        public boolean find() {
+          if (found && offsets[0] == offsets[1]) {
+            // Moves past an empty match, as java.util.regex does.
+            from = offsets[1] + 1;
+          } else if (found) {
+            from = offsets[1];
+          }
+          found = linear.find(value, from, offsets);
+          return found;
+        }
+
+        @Override
+        public int start() {
+          return check(0);
+        }
+
+        @Override
+        public int end() {
+          return check(1);
+        }
+
+        @Override
+        public String group(int group) {
+          if (group < 0 || group > linear.groupCount()) {
+            throw new IndexOutOfBoundsException("No group " + group);
+          }
+          int start = check(2 * group);
+          return start < 0 ? null : value.substring(start, offsets[2 * group + 1]);
+        }
+
+        private int check(int index) {
+          if (!found) {
+            throw new IllegalStateException("No match available");
+          }
+          return offsets[index];
+        }
+      };
+    }
+  }
+
+  /**
+   * Regex and engine it's compiled for.
+   */
+  private static final class Key {
+    private final String regex;
+    private final Engine engine;
+
+    Key(String regex, Engine engine) {
+      this.regex = regex;
+      this.engine = engine;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key that = (Key) o;
+      return regex.equals(that.regex) && engine == that.engine;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(regex, engine);
+    }
+  }
+}
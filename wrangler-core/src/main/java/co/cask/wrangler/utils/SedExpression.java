@@ -0,0 +1,290 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A sed substitute command, {@code s/regex/replacement/flags}, compiled once and applied to many values.
+ *
+ * <p>The script is interpreted the same way as the unix4j sed command : any character other than a backslash
+ * can be the delimiter and is escaped with a backslash, the regex is a Java regular expression, the
+ * replacement uses the syntax of {@link Matcher#appendReplacement(StringBuffer, String)} and the flags are
+ * an optional occurrence number followed by any of 'g' (global), 'I' (ignore case) and 'p' (print, which has
+ * no effect on a single value).</p>
+ *
+ * <p>When the regex has no metacharacter it's searched for with {@link String#indexOf(String, int)} instead of
+ * a regular expression. The replacement is parsed into literal text and group references once, rather than
+ * for every match. Instances are immutable and thread-safe.</p>
+ */
+public final class SedExpression {
+  private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+  private final String script;
+  private final Pattern pattern;
+  // Regex when it has no metacharacter, null otherwise.
+  private final String literal;
+  // Replacement parts, a string for literal text or an integer for a group reference.
+  private final Object[] replacement;
+  private final int occurrence;
+  private final boolean global;
+
+  private SedExpression(String script, Pattern pattern, String literal, Object[] replacement,
+                        int occurrence, boolean global) {
+    this.script = script;
+    this.pattern = pattern;
+    this.literal = literal;
+    this.replacement = replacement;
+    this.occurrence = occurrence;
+    this.global = global;
+  }
+
+  /**
+   * Checks if the script is a substitute command, the only sed command this class supports.
+   */
+  public static boolean isSubstitute(String script) {
+    int start = skipWhitespaces(script, 0);
+    return start < script.length() && script.charAt(start) == 's';
+  }
+
+  /**
+   * Compiles the substitute command.
+   *
+   * @param script the sed script, {@code s/regex/replacement/flags}.
+   * @return the compiled expression.
+   * @throws IllegalArgumentException thrown when the script is not a valid substitute command, when the regex
+   * is invalid or when the replacement refers to a group that doesn't exist.
+   */
+  public static SedExpression compile(String script) {
+    if (!isSubstitute(script)) {
+      throw new IllegalArgumentException(String.format("'%s' is not a sed substitute command.", script));
+    }
+    int delimiter = skipWhitespaces(script, 0) + 1;
+    if (delimiter >= script.length() || script.charAt(delimiter) == '\\') {
+      throw new IllegalArgumentException(String.format("Invalid delimiter in sed script '%s'.", script));
+    }
+    int middle = nextDelimiter(script, delimiter);
+    int end = middle < 0 ? -1 : nextDelimiter(script, middle);
+    if (end < 0) {
+      throw new IllegalArgumentException(String.format("Sed script '%s' is not terminated.", script));
+    }
+    String regex = script.substring(delimiter + 1, middle);
+    String template = script.substring(middle + 1, end);
+
+    // Flags end at the first whitespace, only whitespaces can follow.
+    int flagsStart = end + 1;
+    int flagsEnd = flagsStart;
+    while (flagsEnd < script.length() && !Character.isWhitespace(script.charAt(flagsEnd))) {
+      flagsEnd++;
+    }
+    if (skipWhitespaces(script, flagsEnd) != script.length()) {
+      throw new IllegalArgumentException(String.format("Extra characters after sed script '%s'.", script));
+    }
+    boolean global = false;
+    boolean ignoreCase = false;
+    int i = flagsEnd - 1;
+    for (; i >= flagsStart; --i) {
+      char flag = script.charAt(i);
+      if (flag == 'g') {
+        global = true;
+      } else if (flag == 'I') {
+        ignoreCase = true;
+      } else if (flag != 'p') {
+        break;
+      }
+    }
+    int occurrence = 0;
+    if (i >= flagsStart) {
+      try {
+        occurrence = Integer.parseInt(script.substring(flagsStart, i + 1));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format("Invalid flags in sed script '%s'.", script), e);
+      }
+      if (occurrence <= 0) {
+        throw new IllegalArgumentException(String.format("Invalid occurrence %d in sed script '%s'.",
+                                                         occurrence, script));
+      }
+    }
+
+    Pattern pattern = Pattern.compile(regex, ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+    String literal = ignoreCase || !isLiteral(regex) ? null : regex;
+    return new SedExpression(script, pattern, literal, parseReplacement(template, pattern, literal),
+                             occurrence, global);
+  }
+
+  /**
+   * @return the script the expression was compiled from.
+   */
+  public String getScript() {
+    return script;
+  }
+
+  /**
+   * Applies the substitution to the value.
+   *
+   * @param value to be transformed.
+   * @return the transformed value, the value itself if the regex doesn't match.
+   */
+  public String replace(String value) {
+    return literal == null ? replaceRegex(value) : replaceLiteral(value);
+  }
+
+  private String replaceLiteral(String value) {
+    int from = 0;
+    int index = value.indexOf(literal);
+    // An empty literal matches at every position, the regex handles it as it's a rare case.
+    if (index < 0 || literal.isEmpty()) {
+      return index < 0 ? value : replaceRegex(value);
+    }
+    for (int count = 1; count < occurrence; ++count) {
+      index = value.indexOf(literal, index + literal.length());
+      if (index < 0) {
+        return value;
+      }
+    }
+    StringBuilder result = new StringBuilder(value.length() + 16);
+    do {
+      result.append(value, from, index);
+      for (Object part : replacement) {
+        // Only the whole match can be referred to.
+        result.append(part instanceof String ? (String) part : literal);
+      }
+      from = index + literal.length();
+      index = global ? value.indexOf(literal, from) : -1;
+    } while (index >= 0);
+    result.append(value, from, value.length());
+    return result.toString();
+  }
+
+  private String replaceRegex(String value) {
+    Matcher matcher = pattern.matcher(value);
+    boolean found = matcher.find();
+    for (int count = 1; found && count < occurrence; ++count) {
+      found = matcher.find();
+    }
+    if (!found) {
+      return value;
+    }
+    StringBuilder result = new StringBuilder(value.length() + 16);
+    int from = 0;
+    do {
+      result.append(value, from, matcher.start());
+      for (Object part : replacement) {
+        if (part instanceof String) {
+          result.append((String) part);
+        } else {
+          int group = (Integer) part;
+          if (matcher.start(group) != -1) {
+            result.append(value, matcher.start(group), matcher.end(group));
+          }
+        }
+      }
+      from = matcher.end();
+    } while (global && matcher.find());
+    result.append(value, from, value.length());
+    return result.toString();
+  }
+
+  /**
+   * Parses the replacement as {@link Matcher#appendReplacement(StringBuffer, String)} does.
+   */
+  private static Object[] parseReplacement(String template, Pattern pattern, String literal) {
+    int groups = pattern.matcher("").groupCount();
+    List<Object> parts = new ArrayList<>();
+    StringBuilder text = new StringBuilder();
+    int cursor = 0;
+    while (cursor < template.length()) {
+      char c = template.charAt(cursor++);
+      if (c == '\\') {
+        if (cursor == template.length()) {
+          throw new IllegalArgumentException("Character to be escaped is missing in the replacement.");
+        }
+        text.append(template.charAt(cursor++));
+      } else if (c == '$') {
+        if (cursor == template.length()) {
+          throw new IllegalArgumentException("Group index is missing in the replacement.");
+        }
+        int group = template.charAt(cursor++) - '0';
+        if (group < 0 || group > 9) {
+          // Named groups are not supported.
+          throw new IllegalArgumentException("Illegal group reference in the replacement.");
+        }
+        // Takes as many digits as possible while the group exists.
+        while (cursor < template.length()) {
+          int digit = template.charAt(cursor) - '0';
+          if (digit < 0 || digit > 9 || group * 10 + digit > groups) {
+            break;
+          }
+          group = group * 10 + digit;
+          cursor++;
+        }
+        if (group > groups) {
+          throw new IllegalArgumentException(String.format("No group %d in the regex.", group));
+        }
+        if (text.length() > 0) {
+          parts.add(text.toString());
+          text.setLength(0);
+        }
+        parts.add(group);
+      } else {
+        text.append(c);
+      }
+    }
+    if (text.length() > 0) {
+      parts.add(text.toString());
+    }
+    return parts.toArray();
+  }
+
+  private static boolean isLiteral(String regex) {
+    for (int i = 0; i < regex.length(); ++i) {
+      if (METACHARACTERS.indexOf(regex.charAt(i)) != -1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the next delimiter not escaped by a backslash, -1 if there is none.
+   */
+  private static int nextDelimiter(String script, int from) {
+    char delimiter = script.charAt(from);
+    int index = from;
+    while ((index = script.indexOf(delimiter, index + 1)) >= 0) {
+      int backslashes = 0;
+      for (int i = index - 1; i >= 0 && script.charAt(i) == '\\'; --i) {
+        backslashes++;
+      }
+      if (backslashes % 2 == 0) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  private static int skipWhitespaces(String script, int from) {
+    int index = from;
+    while (index < script.length() && Character.isWhitespace(script.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.format.SignStyle;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Parses dates with a {@link SimpleDateFormat} pattern, the same way as a lenient {@link SimpleDateFormat}
+ * does, but without it's cost and while being thread-safe.
+ *
+ * <p>The pattern is translated into a {@link DateTimeFormatter} : numeric fields accept any number of
+ * digits unless they are adjacent to another numeric field, two digit years are relative to the current
+ * century, fields missing from the pattern default to the epoch, out of range values roll over and text
+ * after the pattern is ignored. Values in the common ISO-8601 layouts are parsed without the formatter.
+ * Patterns with week based fields or zone names, which the translation doesn't support, are parsed with a
+ * {@link SimpleDateFormat} per thread. So are values the formatter can't read, such as whitespaces before a
+ * field or a GMT offset, which {@link SimpleDateFormat} accepts.</p>
+ *
+ * <p>Instances are obtained through {@link DateTimes#simpleDateParser(String, ZoneId)}.</p>
+ */
+public final class SimpleDateParser {
+  private static final String LETTERS = "GyYMLwWDdFEuaHkKhmsSzZX";
+  private static final Set<Character> NUMERIC = ImmutableSet.of('y', 'M', 'L', 'D', 'd', 'u', 'H', 'k', 'K', 'h',
+                                                                'm', 's', 'S');
+  // Zone names are resolved by SimpleDateFormat to the offset they name, standard or daylight saving.
+  private static final Set<Character> UNSUPPORTED = ImmutableSet.of('Y', 'w', 'W', 'F', 'z');
+  // Patterns for which a value in the ISO-8601 layout of the same length gives the same date.
+  private static final Set<String> ISO_PATTERNS = ImmutableSet.of(
+    "yyyy-MM-dd", "yyyy-MM-dd HH:mm", "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm:ss.SSS",
+    "yyyy-MM-dd'T'HH:mm", "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss.SSS"
+  );
+
+  private final String pattern;
+  private final ZoneId zone;
+  private final DateTimeFormatter formatter;
+  private final ThreadLocal<SimpleDateFormat> fallback;
+  // Pattern without quotes if it's an ISO-8601 layout, null otherwise.
+  private final String isoLayout;
+
+  SimpleDateParser(String pattern, ZoneId zone) {
+    this.pattern = pattern;
+    this.zone = zone;
+    this.isoLayout = ISO_PATTERNS.contains(pattern) ? pattern.replace("'", "") : null;
+
+    if (supported(pattern)) {
+      this.formatter = translate(pattern);
+    } else {
+      // Validates the pattern.
+      new SimpleDateFormat(pattern);
+      this.formatter = null;
+    }
+    this.fallback = new ThreadLocal<SimpleDateFormat>() {
+      @Override
+      protected SimpleDateFormat initialValue() {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(TimeZone.getTimeZone(zone));
+        return format;
+      }
+    };
+  }
+
+  /**
+   * @return the pattern of the parser.
+   */
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Parses the beginning of the value.
+   *
+   * @param value to be parsed.
+   * @return the date, in the zone of the parser.
+   * @throws DateTimeParseException thrown when the value doesn't match the pattern.
+   */
+  public ZonedDateTime parse(String value) {
+    if (isoLayout != null && isIsoLayout(value)) {
+      ZonedDateTime date = DateTimes.parseIso(value, zone);
+      if (date != null) {
+        return date;
+      }
+    }
+
+    if (formatter == null) {
+      try {
+        return fallback.get().parse(value).toInstant().atZone(zone);
+      } catch (ParseException e) {
+        throw new DateTimeParseException(e.getMessage(), value, e.getErrorOffset(), e);
+      }
+    }
+
+    TemporalAccessor parsed;
+    try {
+      parsed = formatter.parse(value, new ParsePosition(0));
+    } catch (DateTimeParseException e) {
+      if (e.getCause() != null) {
+        // The value was read but it's fields don't agree, such as a day of week that isn't the one of the date.
+        throw e;
+      }
+      try {
+        return fallback.get().parse(value).toInstant().atZone(zone);
+      } catch (ParseException pe) {
+        throw e;
+      }
+    }
+    LocalDate date = parsed.query(TemporalQueries.localDate());
+    LocalTime time = parsed.query(TemporalQueries.localTime());
+    if (date == null || time == null) {
+      throw new DateTimeParseException(String.format("Unable to obtain a date from '%s'", value), value, 0);
+    }
+    ZoneId valueZone = parsed.query(TemporalQueries.zone());
+    if (valueZone == null) {
+      return ZonedDateTime.of(LocalDateTime.of(date, time), zone);
+    }
+    return ZonedDateTime.of(LocalDateTime.of(date, time), valueZone).withZoneSameInstant(zone);
+  }
+
+  /**
+   * Checks that the value has the length and the separators of the ISO-8601 layout of the pattern.
+   */
+  private boolean isIsoLayout(String value) {
+    if (value.length() != isoLayout.length()) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); ++i) {
+      char c = isoLayout.charAt(i);
+      if (!isLetter(c) && c != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean supported(String pattern) {
+    boolean quoted = false;
+    for (int i = 0; i < pattern.length(); ++i) {
+      char c = pattern.charAt(i);
+      if (c == '\'') {
+        quoted = !quoted;
+      } else if (!quoted && UNSUPPORTED.contains(c)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static DateTimeFormatter translate(String pattern) {
+    DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().parseCaseInsensitive();
+    StringBuilder letters = new StringBuilder();
+    int length = pattern.length();
+    int i = 0;
+    while (i < length) {
+      char c = pattern.charAt(i);
+      if (c == '\'') {
+        // Quoted text, where two single quotes are a single quote.
+        StringBuilder literal = new StringBuilder();
+        int j = i + 1;
+        if (j < length && pattern.charAt(j) == '\'') {
+          literal.append('\'');
+          j++;
+        } else {
+          while (true) {
+            if (j == length) {
+              throw new IllegalArgumentException(String.format("Unterminated quote in pattern '%s'", pattern));
+            }
+            if (pattern.charAt(j) == '\'') {
+              if (j + 1 < length && pattern.charAt(j + 1) == '\'') {
+                literal.append('\'');
+                j += 2;
+                continue;
+              }
+              j++;
+              break;
+            }
+            literal.append(pattern.charAt(j++));
+          }
+        }
+        builder.appendLiteral(literal.toString());
+        i = j;
+        continue;
+      }
+
+      if (!isLetter(c)) {
+        builder.appendLiteral(c);
+        i++;
+        continue;
+      }
+      if (LETTERS.indexOf(c) == -1) {
+        throw new IllegalArgumentException(String.format("Illegal pattern character '%s' in '%s'", c, pattern));
+      }
+      int count = 1;
+      while (i + count < length && pattern.charAt(i + count) == c) {
+        count++;
+      }
+      i += count;
+      // A numeric field directly followed by another one is parsed with the number of digits of the pattern.
+      boolean adjacent = i < length && NUMERIC.contains(pattern.charAt(i));
+      append(builder, c, count, adjacent);
+      letters.append(c);
+    }
+
+    if (!contains(letters, "yG")) {
+      builder.parseDefaulting(ChronoField.YEAR_OF_ERA, 1970);
+    }
+    if (!contains(letters, "MLD")) {
+      builder.parseDefaulting(ChronoField.MONTH_OF_YEAR, 1);
+    }
+    if (!contains(letters, "dD")) {
+      builder.parseDefaulting(ChronoField.DAY_OF_MONTH, 1);
+    }
+    if (!contains(letters, "HkKh")) {
+      builder.parseDefaulting(ChronoField.HOUR_OF_DAY, 0);
+    } else if (contains(letters, "Kh") && !contains(letters, "a")) {
+      builder.parseDefaulting(ChronoField.AMPM_OF_DAY, 0);
+    }
+    return builder.toFormatter(Locale.getDefault(Locale.Category.FORMAT)).withResolverStyle(ResolverStyle.LENIENT);
+  }
+
+  private static void append(DateTimeFormatterBuilder builder, char letter, int count, boolean adjacent) {
+    switch (letter) {
+      case 'G':
+        builder.appendText(ChronoField.ERA, TextStyle.SHORT);
+        break;
+      case 'y':
+        if (count <= 2) {
+          // Two digit years are within 80 years before and 20 years after now, other years are taken as is.
+          builder.appendValueReduced(ChronoField.YEAR_OF_ERA, 2, adjacent ? 2 : 10, LocalDate.now().minusYears(80));
+        } else {
+          appendNumber(builder, ChronoField.YEAR_OF_ERA, count, adjacent);
+        }
+        break;
+      case 'M':
+      case 'L':
+        if (count <= 2) {
+          appendNumber(builder, ChronoField.MONTH_OF_YEAR, count, adjacent);
+        } else {
+          builder.appendText(ChronoField.MONTH_OF_YEAR, count == 3 ? TextStyle.SHORT : TextStyle.FULL);
+        }
+        break;
+      case 'D':
+        appendNumber(builder, ChronoField.DAY_OF_YEAR, count, adjacent);
+        break;
+      case 'd':
+        appendNumber(builder, ChronoField.DAY_OF_MONTH, count, adjacent);
+        break;
+      case 'E':
+        builder.appendText(ChronoField.DAY_OF_WEEK, count <= 3 ? TextStyle.SHORT : TextStyle.FULL);
+        break;
+      case 'u':
+        appendNumber(builder, ChronoField.DAY_OF_WEEK, count, adjacent);
+        break;
+      case 'a':
+        builder.appendText(ChronoField.AMPM_OF_DAY, TextStyle.SHORT);
+        break;
+      case 'H':
+        appendNumber(builder, ChronoField.HOUR_OF_DAY, count, adjacent);
+        break;
+      case 'k':
+        appendNumber(builder, ChronoField.CLOCK_HOUR_OF_DAY, count, adjacent);
+        break;
+      case 'K':
+        appendNumber(builder, ChronoField.HOUR_OF_AMPM, count, adjacent);
+        break;
+      case 'h':
+        appendNumber(builder, ChronoField.CLOCK_HOUR_OF_AMPM, count, adjacent);
+        break;
+      case 'm':
+        appendNumber(builder, ChronoField.MINUTE_OF_HOUR, count, adjacent);
+        break;
+      case 's':
+        appendNumber(builder, ChronoField.SECOND_OF_MINUTE, count, adjacent);
+        break;
+      case 'S':
+        // Milliseconds, not a fraction of second.
+        appendNumber(builder, ChronoField.MILLI_OF_SECOND, count, adjacent);
+        break;
+      case 'Z':
+        builder.appendOffset("+HHMM", "Z");
+        break;
+      case 'X':
+        builder.appendOffset(count == 1 ? "+HHmm" : count == 2 ? "+HHMM" : "+HH:MM", "Z");
+        break;
+      default:
+        throw new IllegalArgumentException(String.format("Unsupported pattern character '%s'", letter));
+    }
+  }
+
+  private static void appendNumber(DateTimeFormatterBuilder builder, ChronoField field, int count, boolean adjacent) {
+    if (adjacent) {
+      builder.appendValue(field, count);
+    } else {
+      builder.appendValue(field, 1, 10, SignStyle.NORMAL);
+    }
+  }
+
+  private static boolean contains(CharSequence letters, String any) {
+    for (int i = 0; i < any.length(); ++i) {
+      if (letters.toString().indexOf(any.charAt(i)) != -1) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+}
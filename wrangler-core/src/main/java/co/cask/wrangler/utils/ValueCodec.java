@@ -0,0 +1,313 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import co.cask.wrangler.api.Row;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Writes the values of columns to and reads them from binary streams, for the directives that spill rows or
+ * their state to disk.
+ *
+ * <p>Strings, numbers, booleans, byte arrays, dates and times of {@code java.time} and JSON elements are written
+ * with a tag of one byte followed by their value, other serializable values with Java serialization. Values read
+ * back are equal to the values written. Values that are not serializable can't be read back, writing them fails
+ * rather than changing their type.</p>
+ */
+public final class ValueCodec {
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte FLOAT = 5;
+  private static final byte SHORT = 6;
+  private static final byte BYTE = 7;
+  private static final byte BOOLEAN = 8;
+  private static final byte DECIMAL = 9;
+  private static final byte BYTES = 10;
+  private static final byte SERIALIZED = 11;
+  private static final byte ZONED_DATE_TIME = 12;
+  private static final byte OFFSET_DATE_TIME = 13;
+  private static final byte LOCAL_DATE_TIME = 14;
+  private static final byte LOCAL_DATE = 15;
+  private static final byte LOCAL_TIME = 16;
+  private static final byte INSTANT = 17;
+  private static final byte JSON = 18;
+
+  private static final ObjectSerDe<Object> SERDE = new ObjectSerDe<>();
+  private static final JsonParser PARSER = new JsonParser();
+
+  private ValueCodec() {
+    // Avoid creation of this object.
+  }
+
+  /**
+   * Writes a value.
+   *
+   * @param out to which the value is written.
+   * @param value to be written, can be null.
+   * @throws IOException thrown when the value is not of a type that can be read back.
+   */
+  public static void write(DataOutput out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeString(out, (String) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(DECIMAL);
+      writeString(out, value.toString());
+    } else if (value instanceof byte[]) {
+      out.writeByte(BYTES);
+      writeBytes(out, (byte[]) value);
+    } else if (value instanceof ZonedDateTime) {
+      ZonedDateTime date = (ZonedDateTime) value;
+      out.writeByte(ZONED_DATE_TIME);
+      writeDateTime(out, date.toLocalDateTime());
+      out.writeInt(date.getOffset().getTotalSeconds());
+      writeString(out, date.getZone().getId());
+    } else if (value instanceof OffsetDateTime) {
+      out.writeByte(OFFSET_DATE_TIME);
+      writeDateTime(out, ((OffsetDateTime) value).toLocalDateTime());
+      out.writeInt(((OffsetDateTime) value).getOffset().getTotalSeconds());
+    } else if (value instanceof LocalDateTime) {
+      out.writeByte(LOCAL_DATE_TIME);
+      writeDateTime(out, (LocalDateTime) value);
+    } else if (value instanceof LocalDate) {
+      out.writeByte(LOCAL_DATE);
+      out.writeLong(((LocalDate) value).toEpochDay());
+    } else if (value instanceof LocalTime) {
+      out.writeByte(LOCAL_TIME);
+      out.writeLong(((LocalTime) value).toNanoOfDay());
+    } else if (value instanceof Instant) {
+      out.writeByte(INSTANT);
+      out.writeLong(((Instant) value).getEpochSecond());
+      out.writeInt(((Instant) value).getNano());
+    } else if (value instanceof JsonElement) {
+      out.writeByte(JSON);
+      writeString(out, value.toString());
+    } else if (value instanceof Serializable) {
+      out.writeByte(SERIALIZED);
+      writeBytes(out, SERDE.toByteArray(value));
+    } else {
+      throw new IOException(String.format("Values of type '%s' can't be written, they are not serializable.",
+                                          value.getClass().getName()));
+    }
+  }
+
+  /**
+   * Reads a value written by {@link #write(DataOutput, Object)}.
+   *
+   * @param in from which the value is read.
+   * @return the value read, can be null.
+   */
+  public static Object read(DataInput in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case STRING:
+        return readString(in);
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case SHORT:
+        return in.readShort();
+      case BYTE:
+        return in.readByte();
+      case BOOLEAN:
+        return in.readBoolean();
+      case DECIMAL:
+        return new BigDecimal(readString(in));
+      case BYTES:
+        return readBytes(in);
+      case SERIALIZED:
+        try {
+          return SERDE.toObject(readBytes(in));
+        } catch (ClassNotFoundException e) {
+          throw new IOException(e);
+        }
+      case ZONED_DATE_TIME:
+        try {
+          LocalDateTime dateTime = readDateTime(in);
+          ZoneOffset offset = ZoneOffset.ofTotalSeconds(in.readInt());
+          return ZonedDateTime.ofStrict(dateTime, offset, ZoneId.of(readString(in)));
+        } catch (DateTimeException e) {
+          throw new IOException(e);
+        }
+      case OFFSET_DATE_TIME:
+        return OffsetDateTime.of(readDateTime(in), ZoneOffset.ofTotalSeconds(in.readInt()));
+      case LOCAL_DATE_TIME:
+        return readDateTime(in);
+      case LOCAL_DATE:
+        return LocalDate.ofEpochDay(in.readLong());
+      case LOCAL_TIME:
+        return LocalTime.ofNanoOfDay(in.readLong());
+      case INSTANT:
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+      case JSON:
+        try {
+          return PARSER.parse(readString(in));
+        } catch (JsonParseException e) {
+          throw new IOException(e);
+        }
+      default:
+        throw new IOException(String.format("Invalid tag %d for a value.", tag));
+    }
+  }
+
+  /**
+   * Writes a row, the number of its columns followed by the name and the value of each column.
+   *
+   * @param out to which the row is written.
+   * @param row to be written.
+   */
+  public static void writeRow(DataOutput out, Row row) throws IOException {
+    out.writeInt(row.length());
+    for (int i = 0; i < row.length(); ++i) {
+      writeString(out, row.getColumn(i));
+      write(out, row.getValue(i));
+    }
+  }
+
+  /**
+   * Reads a row written by {@link #writeRow(DataOutput, Row)}.
+   *
+   * @param in from which the row is read.
+   * @return the row read.
+   */
+  public static Row readRow(DataInput in) throws IOException {
+    int length = in.readInt();
+    Row row = new Row();
+    for (int i = 0; i < length; ++i) {
+      row.add(readString(in), read(in));
+    }
+    return row;
+  }
+
+  /**
+   * Estimates the number of bytes a row takes on the heap, not counting the names of its columns that are
+   * usually shared with other rows.
+   *
+   * @param row to be estimated.
+   * @return the estimated size of the row in bytes.
+   */
+  public static long estimate(Row row) {
+    long size = 64 + 16L * row.length();
+    for (int i = 0; i < row.length(); ++i) {
+      size += estimate(row.getValue(i));
+    }
+    return size;
+  }
+
+  /**
+   * Estimates the number of bytes a value takes on the heap, to keep the state of a directive within a budget.
+   *
+   * @param value of a column, can be null.
+   * @return the estimated size of the value in bytes.
+   */
+  public static long estimate(Object value) {
+    if (value == null) {
+      return 0;
+    } else if (value instanceof String) {
+      return 40 + 2L * ((String) value).length();
+    } else if (value instanceof byte[]) {
+      return 16 + ((byte[]) value).length;
+    }
+    return 24;
+  }
+
+  private static void writeDateTime(DataOutput out, LocalDateTime value) throws IOException {
+    out.writeLong(value.toLocalDate().toEpochDay());
+    out.writeLong(value.toLocalTime().toNanoOfDay());
+  }
+
+  private static LocalDateTime readDateTime(DataInput in) throws IOException {
+    return LocalDateTime.of(LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()));
+  }
+
+  // DataOutput#writeUTF is limited to 64k bytes.
+  private static void writeString(DataOutput out, String value) throws IOException {
+    out.writeInt(value.length());
+    for (int i = 0; i < value.length(); ++i) {
+      out.writeChar(value.charAt(i));
+    }
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    char[] chars = new char[in.readInt()];
+    for (int i = 0; i < chars.length; ++i) {
+      chars[i] = in.readChar();
+    }
+    return new String(chars);
+  }
+
+  private static void writeBytes(DataOutput out, byte[] value) throws IOException {
+    out.writeInt(value.length);
+    out.write(value);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.aggregates;
+
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Pair;
+import co.cask.wrangler.api.RecipeException;
+import co.cask.wrangler.api.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests {@link Aggregate} and {@link GroupTable}.
+ */
+public class AggregateTest {
+
+  @Test
+  public void testAggregates() throws Exception {
+    String[] recipe = new String[] {
+      "aggregate :country 'n = count(), prices = count(:price), total = sum(:price), low = min(:price), " +
+        "high = max(:price), mean = avg(:price), cities = distinct-count(:city)'"
+    };
+    List<Row> rows = Arrays.asList(
+      new Row("country", "US").add("city", "SF").add("price", 10),
+      new Row("country", "FR").add("city", "Paris").add("price", "2.5"),
+      new Row("country", "US").add("city", "NY").add("price", 30L),
+      new Row("country", "US").add("city", "SF").add("price", null),
+      new Row("country", "FR").add("city", "Lyon").add("price", 4),
+      new Row("country", null).add("city", "?").add("price", "")
+    );
+
+    List<Row> results = TestingRig.execute(recipe, rows);
+
+    Assert.assertEquals(3, results.size());
+    Row us = results.get(0);
+    Assert.assertEquals("US", us.getValue("country"));
+    Assert.assertEquals(3L, us.getValue("n"));
+    Assert.assertEquals(2L, us.getValue("prices"));
+    Assert.assertEquals(40L, us.getValue("total"));
+    Assert.assertEquals(10L, us.getValue("low"));
+    Assert.assertEquals(30L, us.getValue("high"));
+    Assert.assertEquals(20.0, us.getValue("mean"));
+    Assert.assertEquals(2L, us.getValue("cities"));
+    // Integers are aggregated as doubles as soon as a value is not an integer.
+    Row fr = results.get(1);
+    Assert.assertEquals(6.5, fr.getValue("total"));
+    Assert.assertEquals(2.5, fr.getValue("low"));
+    Assert.assertEquals(4.0, fr.getValue("high"));
+    Row none = results.get(2);
+    Assert.assertNull(none.getValue("country"));
+    Assert.assertEquals(1L, none.getValue("n"));
+    // Empty strings are values, but not numbers.
+    Assert.assertEquals(1L, none.getValue("prices"));
+    Assert.assertNull(none.getValue("total"));
+    Assert.assertNull(none.getValue("mean"));
+    Assert.assertEquals(8, none.length());
+  }
+
+  @Test
+  public void testDirectivesAfterAggregate() throws Exception {
+    String[] recipe = new String[] {
+      "parse-as-csv :body ',' false",
+      "rename :body_1 :key",
+      "rename :body_2 :value",
+      "aggregate :key 'total = sum(:value)'",
+      "filter-row-if-true total < 10",
+      "aggregate :total 'keys = count()'",
+    };
+    List<Row> rows = Arrays.asList(
+      new Row("body", "a,1"), new Row("body", "b,20"), new Row("body", "a,19"), new Row("body", "c,20"),
+      new Row("body", "d,5")
+    );
+
+    List<Row> results = TestingRig.execute(recipe, rows);
+
+    Assert.assertEquals(1, results.size());
+    Assert.assertEquals(20L, results.get(0).getValue("total"));
+    Assert.assertEquals(3L, results.get(0).getValue("keys"));
+  }
+
+  @Test
+  public void testInvalidValues() throws Exception {
+    String[] recipe = new String[] {
+      "aggregate :key,:other 'n = count(), total = sum(:value)'"
+    };
+    List<Row> rows = Arrays.asList(
+      new Row("key", "a").add("value", 1), new Row("key", "a").add("value", "x"), new Row("key", "b").add("value", "y")
+    );
+
+    Pair<List<Row>, List<Row>> results = TestingRig.executeWithErrors(recipe, rows);
+
+    // Rows in error don't count, and don't create groups.
+    Assert.assertEquals(1, results.getFirst().size());
+    Assert.assertEquals(1L, results.getFirst().get(0).getValue("n"));
+    Assert.assertEquals(2, results.getSecond().size());
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testInvalidAggregate() throws Exception {
+    TestingRig.execute(new String[] { "aggregate :key 'total = median(:value)'" }, new ArrayList<>());
+  }
+
+  @Test
+  public void testSumOverflow() throws Exception {
+    String[] recipe = new String[] {
+      "aggregate :key 'total = sum(:value)'"
+    };
+    List<Row> rows = Arrays.asList(
+      new Row("key", "a").add("value", Long.MAX_VALUE), new Row("key", "a").add("value", 1L),
+      new Row("key", "b").add("value", Long.MAX_VALUE), new Row("key", "b").add("value", -1L)
+    );
+
+    List<Row> results = TestingRig.execute(recipe, rows);
+
+    // The sum that overflows a long is returned as a double.
+    Assert.assertEquals((double) Long.MAX_VALUE + 1, results.get(0).getValue("total"));
+    Assert.assertEquals(Long.MAX_VALUE - 1, results.get(1).getValue("total"));
+  }
+
+  @Test
+  public void testByteArrays() throws Exception {
+    String[] recipe = new String[] {
+      "aggregate :key 'n = count(), distinct = distinct-count(:value)'"
+    };
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 4000; ++i) {
+      rows.add(new Row("key", new byte[] { (byte) (i % 3) }).add("value", new byte[] { (byte) (i % 5) }));
+    }
+
+    // Byte arrays with the same content are in the same group, whether or not the groups are spilled.
+    for (String memory : new String[] { "64", "0.0002" }) {
+      ExecutorContext context = new TestingPipelineContext();
+      context.getProperties().put(Aggregate.MEMORY, memory);
+      List<Row> results = TestingRig.execute(recipe, rows, context);
+      Assert.assertEquals(memory, 3, results.size());
+      long total = 0;
+      for (Row row : results) {
+        Assert.assertEquals(memory, 5L, row.getValue("distinct"));
+        total += (Long) row.getValue("n");
+      }
+      Assert.assertEquals(memory, 4000L, total);
+    }
+  }
+
+  @Test
+  public void testSpill() throws Exception {
+    String[] recipe = new String[] {
+      "aggregate :key,:flag 'n = count(), total = sum(:value), low = min(:value), high = max(:value), " +
+        "mean = avg(:value), distinct = distinct-count(:value)'"
+    };
+    Random random = new Random(0);
+    List<Row> rows = new ArrayList<>();
+    Map<List<Object>, List<Integer>> expected = new HashMap<>();
+    for (int i = 0; i < 20000; ++i) {
+      String key = "k" + random.nextInt(2000);
+      boolean flag = random.nextBoolean();
+      int value = random.nextInt(100) - 50;
+      rows.add(new Row("key", key).add("flag", flag).add("value", value));
+      expected.computeIfAbsent(Arrays.asList(key, flag), k -> new ArrayList<>()).add(value);
+    }
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(Aggregate.MEMORY, "0.05");
+
+    List<Row> results = TestingRig.execute(recipe, rows, context);
+
+    Assert.assertEquals(expected.size(), results.size());
+    Set<List<Object>> seen = new HashSet<>();
+    for (Row row : results) {
+      List<Object> key = Arrays.asList(row.getValue("key"), row.getValue("flag"));
+      Assert.assertTrue(seen.add(key));
+      List<Integer> values = expected.get(key);
+      long total = 0;
+      for (int value : values) {
+        total += value;
+      }
+      Assert.assertEquals((long) values.size(), row.getValue("n"));
+      Assert.assertEquals(total, row.getValue("total"));
+      Assert.assertEquals((long) values.stream().mapToInt(v -> v).min().getAsInt(), row.getValue("low"));
+      Assert.assertEquals((long) values.stream().mapToInt(v -> v).max().getAsInt(), row.getValue("high"));
+      Assert.assertEquals((double) total / values.size(), (Double) row.getValue("mean"), 1e-9);
+      Assert.assertEquals((long) new HashSet<>(values).size(), row.getValue("distinct"));
+    }
+  }
+
+  @Test
+  public void testGroupTable() throws Exception {
+    GroupTable table = new GroupTable(1, 1, 0);
+    for (int i = 0; i < 10000; ++i) {
+      int group = table.group("g" + (i % 1000));
+      table.longs()[group]++;
+      table.doubles()[group] += 0.5;
+    }
+    Assert.assertEquals(1000, table.size());
+    for (int group = 0; group < 1000; ++group) {
+      Assert.assertEquals("g" + group, table.key(group));
+      Assert.assertEquals(10, table.longs()[group]);
+      Assert.assertEquals(5.0, table.doubles()[group], 0.0);
+    }
+    table.clear();
+    Assert.assertEquals(0, table.size());
+    Assert.assertEquals(0, table.group("g1"));
+  }
+}
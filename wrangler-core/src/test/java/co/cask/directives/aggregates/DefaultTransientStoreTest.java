@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.aggregates;
+
+import co.cask.wrangler.api.TransientVariableScope;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests {@link DefaultTransientStore}.
+ */
+public class DefaultTransientStoreTest {
+
+  @Test
+  public void testScopes() throws Exception {
+    DefaultTransientStore store = new DefaultTransientStore();
+    store.set(TransientVariableScope.GLOBAL, "a", "global");
+    store.set(TransientVariableScope.LOCAL, "a", "local");
+    store.set(TransientVariableScope.LOCAL, "b", null);
+    store.increment(TransientVariableScope.LOCAL, "c", 2);
+    store.increment(TransientVariableScope.LOCAL, "c", 3);
+
+    // Global variables hide the local ones, a variable set to null is still a variable.
+    Assert.assertEquals("global", store.get("a"));
+    Assert.assertTrue(store.has("b"));
+    Assert.assertNull(store.get("b"));
+    Assert.assertEquals(5L, (long) store.get("c"));
+    Assert.assertEquals(ImmutableSet.of("a", "b", "c"), store.getVariables());
+
+    store.reset(TransientVariableScope.LOCAL);
+    Assert.assertFalse(store.has("b"));
+    Assert.assertNull(store.get("c"));
+    Assert.assertEquals(ImmutableSet.of("a"), store.getVariables());
+    // Counters start again after a reset, and a variable set to a number can be incremented.
+    store.increment(TransientVariableScope.LOCAL, "c", 1);
+    Assert.assertEquals(1L, (long) store.get("c"));
+    store.set(TransientVariableScope.LOCAL, "d", 10L);
+    store.increment(TransientVariableScope.LOCAL, "d", 1);
+    Assert.assertEquals(11L, (long) store.get("d"));
+    store.set(TransientVariableScope.LOCAL, "d", "x");
+    Assert.assertEquals("x", store.get("d"));
+
+    store.reset(TransientVariableScope.GLOBAL);
+    Assert.assertEquals(ImmutableSet.of("c", "d"), store.getVariables());
+  }
+
+  @Test
+  public void testVariablesView() throws Exception {
+    DefaultTransientStore store = new DefaultTransientStore();
+    store.set(TransientVariableScope.GLOBAL, "a", 1);
+    Set<String> variables = store.getVariables();
+    // The view is kept while the variables stay the same.
+    store.set(TransientVariableScope.GLOBAL, "a", 2);
+    store.reset(TransientVariableScope.LOCAL);
+    Assert.assertSame(variables, store.getVariables());
+    store.increment(TransientVariableScope.LOCAL, "b", 1);
+    Assert.assertNotSame(variables, store.getVariables());
+    Assert.assertEquals(ImmutableSet.of("a"), variables);
+    // Including when the same variables are set again after a reset.
+    variables = store.getVariables();
+    store.reset(TransientVariableScope.LOCAL);
+    store.increment(TransientVariableScope.LOCAL, "b", 1);
+    Assert.assertSame(variables, store.getVariables());
+    store.reset(TransientVariableScope.LOCAL);
+    Assert.assertEquals(ImmutableSet.of("a"), store.getVariables());
+  }
+
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    DefaultTransientStore store = new DefaultTransientStore();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; ++thread) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 100000; ++i) {
+            store.increment(TransientVariableScope.GLOBAL, "count", 1);
+            store.increment(TransientVariableScope.GLOBAL, "total", i % 10);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertEquals(400000L, (long) store.get("count"));
+    Assert.assertEquals(1800000L, (long) store.get("total"));
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.aggregates;
+
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Pair;
+import co.cask.wrangler.api.RecipeException;
+import co.cask.wrangler.api.RecipePipeline;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.executor.RecipePipelineExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests {@link Window}.
+ */
+public class WindowTest {
+
+  @Test
+  public void testRunning() throws Exception {
+    String[] recipe = new String[] {
+      "window 'n = row_number(), previous = lag(:price), delta = lag(:price, 2), total = sum(:price), " +
+        "prices = count(:price), mean = avg(:price), low = min(:price), high = max(:price)' :store"
+    };
+    List<Row> rows = Arrays.asList(
+      new Row("store", "a").add("price", 10),
+      new Row("store", "b").add("price", "1.5"),
+      new Row("store", "a").add("price", 30L),
+      new Row("store", "a").add("price", null),
+      new Row("store", "b").add("price", 2.5),
+      new Row("store", "a").add("price", 5)
+    );
+
+    List<Row> results = TestingRig.execute(recipe, rows);
+
+    Assert.assertEquals(6, results.size());
+    Row last = results.get(5);
+    Assert.assertEquals(4L, last.getValue("n"));
+    Assert.assertNull(last.getValue("previous"));
+    Assert.assertEquals(30L, last.getValue("delta"));
+    Assert.assertEquals(45L, last.getValue("total"));
+    Assert.assertEquals(3L, last.getValue("prices"));
+    Assert.assertEquals(15.0, last.getValue("mean"));
+    Assert.assertEquals(5, last.getValue("low"));
+    Assert.assertEquals(30L, last.getValue("high"));
+    Row b = results.get(4);
+    Assert.assertEquals(2L, b.getValue("n"));
+    Assert.assertEquals("1.5", b.getValue("previous"));
+    Assert.assertNull(b.getValue("delta"));
+    Assert.assertEquals(4.0, b.getValue("total"));
+    Assert.assertEquals("1.5", b.getValue("low"));
+  }
+
+  @Test
+  public void testRolling() throws Exception {
+    String[] recipe = new String[] {
+      "window 'total = sum(:value, 3), low = min(:value, 3), high = max(:value, 3), n = count(:value, 3)'"
+    };
+    Random random = new Random(0);
+    List<Row> rows = new ArrayList<>();
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      int value = random.nextInt(100);
+      values.add(value);
+      rows.add(new Row("value", value));
+    }
+
+    List<Row> results = TestingRig.execute(recipe, rows);
+
+    for (int i = 0; i < results.size(); ++i) {
+      List<Integer> window = values.subList(Math.max(0, i - 2), i + 1);
+      long sum = 0;
+      for (int value : window) {
+        sum += value;
+      }
+      Row row = results.get(i);
+      Assert.assertEquals(sum, row.getValue("total"));
+      Assert.assertEquals(Collections.min(window), row.getValue("low"));
+      Assert.assertEquals(Collections.max(window), row.getValue("high"));
+      Assert.assertEquals((long) window.size(), row.getValue("n"));
+    }
+  }
+
+  @Test
+  public void testLead() throws Exception {
+    String[] recipe = new String[] { "window 'next = lead(:event), after = lead(:event, 2)' :user" };
+    RecipePipeline pipeline = TestingRig.execute(recipe);
+    Assert.assertTrue(((RecipePipelineExecutor) pipeline).isAccumulating());
+
+    List<Row> results = pipeline.execute(Arrays.asList(
+      new Row("user", 1).add("event", "a"),
+      new Row("user", 2).add("event", "x"),
+      new Row("user", 1).add("event", "b"),
+      new Row("user", 1).add("event", "c"),
+      new Row("user", 1).add("event", "d")
+    ));
+
+    // Rows are returned once the rows they lead to have come.
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(results.get(0).getValue("event"),
+                                                                     results.get(0).getValue("next"),
+                                                                     results.get(0).getValue("after")));
+    Assert.assertEquals("d", results.get(1).getValue("after"));
+    List<Row> rest = pipeline.flush();
+    Assert.assertEquals(3, rest.size());
+    Assert.assertEquals("d", rest.get(0).getValue("next"));
+    Assert.assertNull(rest.get(0).getValue("after"));
+    Assert.assertNull(rest.get(1).getValue("next"));
+    Assert.assertEquals("x", rest.get(2).getValue("event"));
+    Assert.assertNull(rest.get(2).getValue("next"));
+
+    // Without lead, the rows are returned as they come, and the state carries over to the next rows.
+    pipeline = TestingRig.execute(new String[] { "window 'n = row_number()'" });
+    Assert.assertFalse(((RecipePipelineExecutor) pipeline).isAccumulating());
+    results = pipeline.execute(Arrays.asList(new Row("a", 1)));
+    Assert.assertEquals(1L, results.get(0).getValue("n"));
+    results = pipeline.execute(Arrays.asList(new Row("a", 1)));
+    Assert.assertEquals(2L, results.get(0).getValue("n"));
+  }
+
+  @Test
+  public void testMaxPartitions() throws Exception {
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(Window.PARTITIONS, "2");
+    RecipePipeline pipeline = TestingRig.execute(new String[] { "window 'n = row_number()' :user" }, context);
+
+    List<Row> results = pipeline.execute(Arrays.asList(
+      new Row("user", 1), new Row("user", 2), new Row("user", 1), new Row("user", 3), new Row("user", 1),
+      new Row("user", 2)
+    ));
+
+    // User 2 is used least recently when user 3 comes, it starts again when it comes back.
+    List<Object> numbers = new ArrayList<>();
+    for (Row row : results) {
+      numbers.add(row.getValue("n"));
+    }
+    Assert.assertEquals(Arrays.<Object>asList(1L, 1L, 2L, 1L, 3L, 1L), numbers);
+
+    // The rows held by a partition that is dropped are returned.
+    pipeline = TestingRig.execute(new String[] { "window 'next = lead(:event)' :user" }, context);
+    results = pipeline.execute(Arrays.asList(
+      new Row("user", 1).add("event", "a"), new Row("user", 2).add("event", "b"),
+      new Row("user", 3).add("event", "c")
+    ));
+    Assert.assertEquals(1, results.size());
+    Assert.assertEquals("a", results.get(0).getValue("event"));
+    Assert.assertNull(results.get(0).getValue("next"));
+    Assert.assertEquals(2, pipeline.flush().size());
+  }
+
+  @Test
+  public void testInvalidValues() throws Exception {
+    String[] recipe = new String[] { "window 'n = row_number(), total = sum(:value)'" };
+    List<Row> rows = Arrays.asList(new Row("value", 1), new Row("value", "x"), new Row("value", 2));
+
+    Pair<List<Row>, List<Row>> results = TestingRig.executeWithErrors(recipe, rows);
+
+    // Rows in error leave no trace in the state.
+    Assert.assertEquals(2, results.getFirst().size());
+    Assert.assertEquals(2L, results.getFirst().get(1).getValue("n"));
+    Assert.assertEquals(3L, results.getFirst().get(1).getValue("total"));
+    Assert.assertEquals(1, results.getSecond().size());
+  }
+
+  @Test
+  public void testSumOverflow() throws Exception {
+    String[] recipe = new String[] { "window 'total = sum(:value), rolling = sum(:value, 2)'" };
+    List<Row> rows = Arrays.asList(new Row("value", Long.MAX_VALUE), new Row("value", 1L), new Row("value", -2L),
+                                   new Row("value", Long.MIN_VALUE), new Row("value", -1L));
+
+    List<Row> results = TestingRig.execute(recipe, rows);
+
+    // The sum that overflows a long is returned as a double, and as a long again once it fits.
+    Assert.assertEquals(Long.MAX_VALUE, results.get(0).getValue("total"));
+    Assert.assertEquals((double) Long.MAX_VALUE + 1, results.get(1).getValue("total"));
+    Assert.assertEquals((double) Long.MAX_VALUE + 1, results.get(1).getValue("rolling"));
+    Assert.assertEquals(Long.MAX_VALUE - 1, results.get(2).getValue("total"));
+    Assert.assertEquals(-1L, results.get(2).getValue("rolling"));
+    Assert.assertEquals(-2L, results.get(3).getValue("total"));
+    Assert.assertEquals((double) Long.MIN_VALUE - 2, results.get(3).getValue("rolling"));
+    Assert.assertEquals(-3L, results.get(4).getValue("total"));
+    Assert.assertEquals((double) Long.MIN_VALUE - 1, results.get(4).getValue("rolling"));
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testInvalidFunction() throws Exception {
+    TestingRig.execute(new String[] { "window 'x = median(:value)'" }, new ArrayList<>());
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testMissingColumn() throws Exception {
+    TestingRig.execute(new String[] { "window 'x = lag()'" }, new ArrayList<>());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.lookup;
+
+import co.cask.wrangler.executor.ICDCatalog;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link CompactCatalog} and {@link CatalogRegistry}.
+ */
+public class CompactCatalogTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLookup() throws Exception {
+    Random random = new Random(0);
+    Map<String, String> entries = new HashMap<>();
+    for (int i = 0; i < 50000; ++i) {
+      entries.put(Long.toString(random.nextLong(), 36), "value " + i);
+    }
+    entries.put("", "empty");
+    entries.put("Zürich", "Schweiz – CH");
+    entries.put("none", null);
+    File file = temporaryFolder.newFile();
+    CompactCatalog.write(entries, file);
+
+    CompactCatalog catalog = CompactCatalog.open(file);
+
+    Assert.assertEquals(entries.size(), catalog.size());
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      Assert.assertEquals(entry.getValue(), catalog.get(entry.getKey()));
+    }
+    for (int i = 0; i < 1000; ++i) {
+      Assert.assertNull(catalog.get("missing " + i));
+    }
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    File file = temporaryFolder.newFile();
+    CompactCatalog.write(Collections.<String, String>emptyMap(), file);
+    CompactCatalog catalog = CompactCatalog.open(file);
+    Assert.assertEquals(0, catalog.size());
+    Assert.assertNull(catalog.get("a"));
+  }
+
+  @Test
+  public void testRegistry() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    CatalogRegistry.Source source = () -> {
+      reads.incrementAndGet();
+      return Collections.singletonMap("a", "b");
+    };
+
+    CompactCatalog catalog = CatalogRegistry.get("compact-catalog-test", source);
+
+    // The catalog is read once and shared.
+    Assert.assertEquals("b", catalog.get("a"));
+    Assert.assertSame(catalog, CatalogRegistry.get("compact-catalog-test", source));
+    Assert.assertEquals(1, reads.get());
+    Assert.assertNull(CatalogRegistry.get("compact-catalog-missing", () -> null));
+  }
+
+  @Test
+  public void testICDCatalog() throws Exception {
+    ICDCatalog catalog = new ICDCatalog("icd-9");
+    Assert.assertTrue(catalog.configure());
+    Assert.assertEquals("Cholera due to vibrio cholerae", catalog.lookup("0010").getDescription());
+    Assert.assertNull(catalog.lookup("ABC"));
+    Assert.assertFalse(new ICDCatalog("icd-0").configure());
+  }
+}
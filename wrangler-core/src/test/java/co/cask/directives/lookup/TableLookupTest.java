@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.lookup;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Result;
+import co.cask.cdap.etl.api.Lookup;
+import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.RecipeException;
+import co.cask.wrangler.api.RecipePipeline;
+import co.cask.wrangler.api.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link TableLookup}.
+ */
+public class TableLookupTest {
+
+  @Test
+  public void testLookup() throws Exception {
+    LookupContext context = new LookupContext();
+    RecipePipeline pipeline = TestingRig.execute(new String[] {
+      "split-to-rows :user ','",
+      "table-lookup :user users"
+    }, context);
+
+    List<Row> results = pipeline.execute(Arrays.asList(new Row("user", "bob,joe,bob,ann")));
+
+    Assert.assertEquals(4, results.size());
+    Assert.assertEquals("Palo Alto", results.get(0).getValue("user_city"));
+    Assert.assertEquals("CA", results.get(0).getValue("user_state"));
+    Assert.assertEquals("Los Angeles", results.get(1).getValue("user_city"));
+    Assert.assertEquals("Palo Alto", results.get(2).getValue("user_city"));
+    // Keys that are not in the table add no columns.
+    Assert.assertEquals(1, results.get(3).length());
+    // The keys of the records split from a record are looked up together, once each.
+    Assert.assertEquals(Arrays.asList(3), context.lookup.batches);
+    Assert.assertEquals(0, context.lookup.keys);
+    Assert.assertEquals(1L, (long) context.counts.get("table-lookup.cache.hits"));
+    Assert.assertEquals(3L, (long) context.counts.get("table-lookup.cache.misses"));
+
+    // Keys found or missing before are not looked up again.
+    results = pipeline.execute(Arrays.asList(new Row("user", "ann"), new Row("user", "joe"), new Row("user", "amy")));
+    Assert.assertEquals("Seattle", results.get(2).getValue("user_city"));
+    Assert.assertEquals(1, context.lookup.keys);
+    Assert.assertEquals(Arrays.asList(3), context.lookup.batches);
+    Assert.assertEquals(3L, (long) context.counts.get("table-lookup.cache.hits"));
+    Assert.assertEquals(4L, (long) context.counts.get("table-lookup.cache.misses"));
+    Assert.assertEquals(42L, (long) context.gauges.get("table-lookup.cache.hit.ratio"));
+    Assert.assertTrue(context.gauges.containsKey("table-lookup.lookup.time"));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    LookupContext context = new LookupContext();
+    context.getProperties().put(TableLookup.CACHE_SIZE, "1");
+    RecipePipeline pipeline = TestingRig.execute(new String[] { "table-lookup :user users" }, context);
+
+    pipeline.execute(Arrays.asList(new Row("user", "bob"), new Row("user", "joe"), new Row("user", "joe")));
+    List<Row> results = pipeline.execute(Arrays.asList(new Row("user", "bob")));
+
+    // Only the key used last is kept.
+    Assert.assertEquals("Palo Alto", results.get(0).getValue("user_city"));
+    Assert.assertEquals(3, context.lookup.keys);
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    LookupContext context = new LookupContext();
+    context.getProperties().put(TableLookup.CACHE_EXPIRY, "0.2");
+    RecipePipeline pipeline = TestingRig.execute(new String[] { "table-lookup :user users" }, context);
+
+    pipeline.execute(Arrays.asList(new Row("user", "bob")));
+    pipeline.execute(Arrays.asList(new Row("user", "bob")));
+    Assert.assertEquals(1, context.lookup.keys);
+
+    // The key is looked up again once its values expired.
+    TimeUnit.MILLISECONDS.sleep(300);
+    List<Row> results = pipeline.execute(Arrays.asList(new Row("user", "bob")));
+    Assert.assertEquals("Palo Alto", results.get(0).getValue("user_city"));
+    Assert.assertEquals(2, context.lookup.keys);
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testInvalidType() throws Exception {
+    RecipePipeline pipeline = TestingRig.execute(new String[] { "table-lookup :user users" }, new LookupContext());
+    pipeline.execute(Arrays.asList(new Row("user", 1)));
+  }
+
+  /**
+   * Table lookup over a map, which counts the keys looked up.
+   */
+  private static final class CountingTableLookup extends co.cask.cdap.etl.api.lookup.TableLookup {
+    private final Map<String, Map<String, String>> rows = new HashMap<>();
+    private final List<Integer> batches = new ArrayList<>();
+    private int keys;
+
+    CountingTableLookup() {
+      super(null);
+      rows.put("bob", row("Palo Alto", "CA"));
+      rows.put("joe", row("Los Angeles", "CA"));
+      rows.put("amy", row("Seattle", "WA"));
+    }
+
+    private static Map<String, String> row(String city, String state) {
+      Map<String, String> row = new HashMap<>();
+      row.put("city", city);
+      row.put("state", state);
+      return row;
+    }
+
+    @Override
+    public co.cask.cdap.api.dataset.table.Row lookup(String key) {
+      keys++;
+      Map<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      Map<String, String> row = rows.get(key);
+      if (row != null) {
+        for (Map.Entry<String, String> entry : row.entrySet()) {
+          columns.put(Bytes.toBytes(entry.getKey()), Bytes.toBytes(entry.getValue()));
+        }
+      }
+      return new Result(Bytes.toBytes(key), columns);
+    }
+
+    @Override
+    public Map<String, co.cask.cdap.api.dataset.table.Row> lookup(Set<String> keys) {
+      batches.add(keys.size());
+      Map<String, co.cask.cdap.api.dataset.table.Row> results = new HashMap<>();
+      for (String key : keys) {
+        results.put(key, lookup(key));
+        this.keys--;
+      }
+      return results;
+    }
+  }
+
+  /**
+   * Context that provides the table lookup and keeps the metrics.
+   */
+  private static final class LookupContext extends TestingPipelineContext {
+    private final CountingTableLookup lookup = new CountingTableLookup();
+    private final Map<String, Long> counts = new HashMap<>();
+    private final Map<String, Long> gauges = new HashMap<>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Lookup<T> provide(String s, Map<String, String> map) {
+      return (Lookup<T>) lookup;
+    }
+
+    @Override
+    public StageMetrics getMetrics() {
+      return new StageMetrics() {
+        @Override
+        public void count(String s, int i) {
+          counts.merge(s, (long) i, Long::sum);
+        }
+
+        @Override
+        public void gauge(String s, long l) {
+          gauges.put(s, l);
+        }
+
+        @Override
+        public void pipelineCount(String s, int i) {
+        }
+
+        @Override
+        public void pipelineGauge(String s, long l) {
+        }
+      };
+    }
+  }
+}
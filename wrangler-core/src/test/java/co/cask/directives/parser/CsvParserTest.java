@@ -16,8 +16,14 @@
 
 package co.cask.directives.parser;
 
+import co.cask.wrangler.TestingPipelineContext;
 import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.ErrorRecord;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Pair;
+import co.cask.wrangler.api.RecipePipeline;
 import co.cask.wrangler.api.Row;
+import co.cask.wrangler.executor.RecipePipelineExecutor;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -52,4 +58,95 @@ public class CsvParserTest {
     Assert.assertTrue(rows.size() == 2);
     Assert.assertEquals("07/29/2013", rows.get(0).getValue("date"));
   }
+
+  @Test
+  public void testMultilineRecordAcrossRows() throws Exception {
+    String[] directives = new String[] {
+      "parse-as-csv body , false true",
+    };
+
+    List<Row> rows = Arrays.asList(
+      new Row("body", "1,\"first line"),
+      new Row("body", "second line"),
+      new Row("body", "third line\",A"),
+      new Row("body", "2,\"single line\",B")
+    );
+
+    rows = TestingRig.execute(directives, rows);
+    Assert.assertEquals(2, rows.size());
+    Assert.assertEquals("first line\nsecond line\nthird line", rows.get(0).getValue("body_2"));
+    Assert.assertEquals("A", rows.get(0).getValue("body_3"));
+    Assert.assertEquals("single line", rows.get(1).getValue("body_2"));
+  }
+
+  @Test
+  public void testMultilineRecordAfterSplitToRows() throws Exception {
+    String[] directives = new String[] {
+      "split-to-rows body \\n",
+      "parse-as-csv body , true true",
+      "drop body"
+    };
+
+    List<Row> rows = Arrays.asList(
+      new Row("body", "id,comment,code\n1,\"has \"\"quotes\"\"\nand a newline\",A\n2,plain,B")
+    );
+
+    rows = TestingRig.execute(directives, rows);
+    Assert.assertEquals(2, rows.size());
+    Assert.assertEquals("has \"quotes\"\nand a newline", rows.get(0).getValue("comment"));
+    Assert.assertEquals("A", rows.get(0).getValue("code"));
+    Assert.assertEquals("2", rows.get(1).getValue("id"));
+  }
+
+  @Test
+  public void testUnterminatedMultilineRecord() throws Exception {
+    String[] directives = new String[] {
+      "parse-as-csv body , false true",
+    };
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(CsvParser.MAX_RECORD, "30");
+
+    List<Row> rows = Arrays.asList(
+      new Row("body", "1,\"first line"),
+      new Row("body", "second line is much too long"),
+      new Row("body", "2,plain,B"),
+      new Row("body", "3,\"not closed"),
+      new Row("body", "at the end")
+    );
+
+    Pair<List<Row>, List<Row>> results = TestingRig.executeWithErrors(directives, rows, context);
+
+    // A record past the limit is an error and parsing starts again with the next row, a record still open
+    // at the end of the input is an error with all its lines.
+    Assert.assertEquals(1, results.getFirst().size());
+    Assert.assertEquals("plain", results.getFirst().get(0).getValue("body_2"));
+    Assert.assertEquals(2, results.getSecond().size());
+    Object error = results.getSecond().get(1);
+    Assert.assertEquals("3,\"not closed\nat the end", ((ErrorRecord) error).getRow().getValue("body"));
+  }
+
+  @Test
+  public void testMultilineIsAccumulating() throws Exception {
+    // Held back records are only reported by the flush at the end of the input, which the transform never has.
+    RecipePipeline pipeline = TestingRig.execute(new String[] { "parse-as-csv body , false true" });
+    Assert.assertTrue(((RecipePipelineExecutor) pipeline).isAccumulating());
+    pipeline = TestingRig.execute(new String[] { "parse-as-csv body , false" });
+    Assert.assertFalse(((RecipePipelineExecutor) pipeline).isAccumulating());
+  }
+
+  @Test
+  public void testWithoutMultilineUnterminatedQuoteIsError() throws Exception {
+    String[] directives = new String[] {
+      "parse-as-csv body , false",
+    };
+
+    List<Row> rows = Arrays.asList(
+      new Row("body", "1,\"first line"),
+      new Row("body", "second line\",A")
+    );
+
+    Pair<List<Row>, List<Row>> results = TestingRig.executeWithErrors(directives, rows);
+    Assert.assertEquals(1, results.getFirst().size());
+    Assert.assertEquals(1, results.getSecond().size());
+  }
 }
@@ -0,0 +1,107 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.directives.parser;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests {@link CsvTokenizer}
+ */
+public class CsvTokenizerTest {
+
+  @Test
+  public void testSameAsCommonsCsv() throws Exception {
+    String[] lines = new String[] {
+      "a,b,c",
+      "a,,c,",
+      ",",
+      "a\nb,c\r\nd\re",
+      "a\n\n\nb",
+      "a,\n\nb",
+      "\n\na,b",
+      "  a  , b ",
+      "\"a,b\",c",
+      "\"a \"\"quoted\"\" word\",b",
+      "\"\"\"\",\"\"",
+      "\"a\"  ,b",
+      "\"multi\nline\",b",
+      " \"a\",b",
+      "a\"b\",c",
+      "\"a\",\"b\"\n\"c\"",
+    };
+
+    for (String line : lines) {
+      Assert.assertEquals(line, commons(line, ','), tokenize(line, ','));
+    }
+    Assert.assertEquals(commons("a|\"b|c\"|d", '|'), tokenize("a|\"b|c\"|d", '|'));
+    Assert.assertEquals(commons("a\tb\t\tc", '\t'), tokenize("a\tb\t\tc", '\t'));
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnterminatedQuote() throws Exception {
+    tokenize("\"a,b", ',');
+  }
+
+  @Test(expected = IOException.class)
+  public void testCharacterAfterClosingQuote() throws Exception {
+    tokenize("\"a\"b,c", ',');
+  }
+
+  @Test
+  public void testEndsWithinQuotes() throws Exception {
+    CsvTokenizer tokenizer = new CsvTokenizer(',');
+    Assert.assertFalse(tokenizer.endsWithinQuotes("a,b,c", false));
+    Assert.assertFalse(tokenizer.endsWithinQuotes("a,\"b\",c", false));
+    Assert.assertFalse(tokenizer.endsWithinQuotes("a,b\"c", false));
+    Assert.assertTrue(tokenizer.endsWithinQuotes("a,\"b", false));
+    Assert.assertTrue(tokenizer.endsWithinQuotes("a,\"b\"\"", false));
+    Assert.assertTrue(tokenizer.endsWithinQuotes("continued", true));
+    Assert.assertFalse(tokenizer.endsWithinQuotes("end\",c", true));
+    Assert.assertTrue(tokenizer.endsWithinQuotes("end\",\"c", true));
+  }
+
+  private static List<List<String>> tokenize(String line, char delimiter) throws IOException {
+    CsvTokenizer tokenizer = new CsvTokenizer(delimiter);
+    List<List<String>> records = new ArrayList<>();
+    List<String> fields = new ArrayList<>();
+    tokenizer.reset(line);
+    while (tokenizer.next(fields)) {
+      records.add(new ArrayList<>(fields));
+    }
+    return records;
+  }
+
+  private static List<List<String>> commons(String line, char delimiter) throws IOException {
+    List<List<String>> records = new ArrayList<>();
+    for (CSVRecord record : CSVParser.parse(line, CSVFormat.DEFAULT.withDelimiter(delimiter)).getRecords()) {
+      List<String> fields = new ArrayList<>();
+      for (String field : record) {
+        fields.add(field);
+      }
+      records.add(fields);
+    }
+    return records;
+  }
+}
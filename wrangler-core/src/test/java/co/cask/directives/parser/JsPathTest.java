@@ -17,7 +17,9 @@
 package co.cask.directives.parser;
 
 import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.Executor;
 import co.cask.wrangler.api.Row;
+import co.cask.wrangler.executor.RecipePipelineExecutor;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -82,4 +84,41 @@ public class JsPathTest {
 
     Assert.assertTrue(rows.size() == 1);
   }
+
+  @Test
+  public void testFusedPathsOnSameColumn() throws Exception {
+    String[] directives = new String[] {
+      "json-path body fname $.name.fname",
+      "json-path body lname $.name.lname",
+      "json-path body first $.numbers[0]",
+      "json-path body body $.name",
+      "json-path body fname $.fname",
+    };
+
+    List<Executor> executors = RecipePipelineExecutor.fuse(TestingRig.parse(directives).parse());
+    Assert.assertEquals(2, executors.size());
+
+    List<Row> rows = Arrays.asList(
+      new Row("body", "{ \"name\" : { \"fname\" : \"Joltie\", \"lname\" : \"Root\" }, \"numbers\" : [ 1, 2 ] }")
+    );
+
+    rows = TestingRig.execute(directives, rows);
+
+    Assert.assertEquals(1, rows.size());
+    Assert.assertEquals("Joltie", rows.get(0).getValue("fname"));
+    Assert.assertEquals("Root", rows.get(0).getValue("lname"));
+    Assert.assertEquals(1, ((Number) rows.get(0).getValue("first")).intValue());
+  }
+
+  @Test
+  public void testPathsOnDifferentColumnsAreNotFused() throws Exception {
+    String[] directives = new String[] {
+      "json-path body fname $.name.fname",
+      "json-path other fname $.name.fname",
+      "json-path body lname $.name.lname",
+    };
+
+    List<Executor> executors = RecipePipelineExecutor.fuse(TestingRig.parse(directives).parse());
+    Assert.assertEquals(3, executors.size());
+  }
 }
@@ -26,6 +26,7 @@ import org.junit.Test;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -52,6 +53,26 @@ public class ParseAvroFileTest {
     Assert.assertEquals(1495194308245L, results.get(1688).getValue("timestamp"));
   }
 
+  @Test
+  public void testParallelBlockDecoding() throws Exception {
+    InputStream stream = ParseAvroFileTest.class.getClassLoader().getResourceAsStream("cdap-log.avro");
+    byte[] data = IOUtils.toByteArray(stream);
+
+    List<Row> expected = TestingRig.execute(new String[] { "parse-as-avro-file body" },
+                                            Collections.singletonList(new Row("body", data)));
+    List<Row> results = TestingRig.execute(new String[] { "parse-as-avro-file body 4" },
+                                           Collections.singletonList(new Row("body", data)));
+    Assert.assertEquals(expected.size(), results.size());
+    for (int i = 0; i < expected.size(); ++i) {
+      Row row = results.get(i);
+      Assert.assertEquals(expected.get(i).length(), row.length());
+      for (int j = 0; j < row.length(); ++j) {
+        Assert.assertEquals(expected.get(i).getColumn(j), row.getColumn(j));
+        Assert.assertEquals(expected.get(i).getValue(j), row.getValue(j));
+      }
+    }
+  }
+
   @Test(expected = RecipeException.class)
   public void testIncorrectType() throws Exception {
     String[] directives = new String[] {
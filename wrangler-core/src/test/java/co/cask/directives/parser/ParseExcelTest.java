@@ -67,5 +67,45 @@ public class ParseExcelTest {
       Assert.assertEquals(1, pipeline.getSecond().size());
     }
   }
-}
 
+  @Test
+  public void testFirstRowAsHeader() throws Exception {
+    try (InputStream stream = ParseAvroFileTest.class.getClassLoader().getResourceAsStream("titanic.xlsx")) {
+      byte[] data = IOUtils.toByteArray(stream);
+
+      String[] directives = new String[]{
+        "parse-as-excel :body 'titanic' true",
+      };
+
+      List<Row> rows = new ArrayList<>();
+      rows.add(new Row("body", data));
+
+      List<Row> results = TestingRig.execute(directives, rows);
+      Assert.assertEquals(891, results.size());
+      Assert.assertEquals("fwd", results.get(0).getColumn(0));
+      Assert.assertEquals("bkd", results.get(0).getColumn(1));
+      Assert.assertEquals(890, results.get(0).getValue("bkd"));
+      Assert.assertEquals(0, results.get(890).getValue("bkd"));
+      Assert.assertEquals(1.0, results.get(0).getValue("PassengerId"));
+    }
+  }
+
+  @Test
+  public void testAllSheets() throws Exception {
+    try (InputStream stream = ParseAvroFileTest.class.getClassLoader().getResourceAsStream("titanic.xlsx")) {
+      byte[] data = IOUtils.toByteArray(stream);
+
+      String[] directives = new String[]{
+        "parse-as-excel :body '*'",
+      };
+
+      List<Row> rows = new ArrayList<>();
+      rows.add(new Row("body", data));
+
+      List<Row> results = TestingRig.execute(directives, rows);
+      Assert.assertEquals(892, results.size());
+      Assert.assertEquals("titanic", results.get(0).getValue("sheet"));
+      Assert.assertEquals(891, results.get(0).getValue("bkd"));
+    }
+  }
+}
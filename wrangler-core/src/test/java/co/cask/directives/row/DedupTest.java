@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.row;
+
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.RecipeException;
+import co.cask.wrangler.api.RecipePipeline;
+import co.cask.wrangler.api.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests {@link Dedup}, {@link KeyHashSet} and {@link ScalableBloomFilter}.
+ */
+public class DedupTest {
+
+  @Test
+  public void testExact() throws Exception {
+    List<Row> rows = Arrays.asList(
+      new Row("id", 1).add("country", "US").add("city", "SF"),
+      new Row("id", 2).add("country", "US").add("city", "SF"),
+      new Row("id", 3).add("country", "US").add("city", "NY"),
+      new Row("id", 4).add("country", "US").add("city", null),
+      new Row("id", 5).add("country", "US"),
+      new Row("id", 6).add("country", "FR").add("city", "Paris"),
+      new Row("id", 7).add("country", "FR").add("city", "Paris")
+    );
+
+    List<Row> results = TestingRig.execute(new String[] { "dedup :country,:city" }, rows);
+
+    // The first row of each key is kept, a missing column is a null value.
+    Assert.assertEquals(4, results.size());
+    Assert.assertEquals(1, results.get(0).getValue("id"));
+    Assert.assertEquals(3, results.get(1).getValue("id"));
+    Assert.assertEquals(4, results.get(2).getValue("id"));
+    Assert.assertEquals(6, results.get(3).getValue("id"));
+
+    // Values of different types are different keys.
+    results = TestingRig.execute(new String[] { "dedup :id exact" },
+                                 Arrays.asList(new Row("id", 1), new Row("id", "1"), new Row("id", 1L),
+                                               new Row("id", 1)));
+    Assert.assertEquals(3, results.size());
+  }
+
+  @Test
+  public void testApproximate() throws Exception {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 200000; ++i) {
+      rows.add(new Row("key", "k" + i));
+    }
+    for (int i = 0; i < 1000; ++i) {
+      rows.add(new Row("key", "k" + i));
+    }
+
+    List<Row> results = TestingRig.execute(new String[] { "dedup :key approximate 0.01" }, rows);
+
+    // Duplicates are always dropped, unique rows rarely.
+    Assert.assertTrue(results.size() <= 200000);
+    Assert.assertTrue(results.size() > 200000 * 0.99);
+  }
+
+  @Test
+  public void testSets() throws Exception {
+    Random random = new Random(0);
+    KeyHashSet set = new KeyHashSet(Long.MAX_VALUE);
+    ScalableBloomFilter filter = new ScalableBloomFilter(0.001, Long.MAX_VALUE);
+    List<long[]> hashes = new ArrayList<>();
+    for (int i = 0; i < 300000; ++i) {
+      hashes.add(new long[] { random.nextLong(), random.nextLong() });
+    }
+    hashes.add(new long[] { 0, 0 });
+    int missed = 0;
+    for (long[] hash : hashes) {
+      Assert.assertTrue(set.add(hash[0], hash[1]));
+      missed += filter.add(hash[0], hash[1]) ? 0 : 1;
+    }
+    for (long[] hash : hashes) {
+      Assert.assertFalse(set.add(hash[0], hash[1]));
+      Assert.assertFalse(filter.add(hash[0], hash[1]));
+    }
+    Assert.assertEquals(hashes.size(), set.size());
+    Assert.assertTrue(missed < hashes.size() * 0.001);
+    // The filter grew from its first stage, and takes much less memory than the set.
+    Assert.assertTrue(filter.bytes() < set.bytes() / 4);
+  }
+
+  @Test
+  public void testMemoryBudget() throws Exception {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 10000; ++i) {
+      rows.add(new Row("key", i));
+    }
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(Dedup.MEMORY, "0.1");
+    try {
+      TestingRig.execute(new String[] { "dedup :key" }, rows, context);
+      Assert.fail();
+    } catch (RecipeException e) {
+      Assert.assertTrue(e.getMessage().contains(Dedup.MEMORY));
+    }
+  }
+
+  @Test
+  public void testProcessScope() throws Exception {
+    String[] recipe = new String[] { "dedup :session,:event" };
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(Dedup.SCOPE, "process");
+    List<Row> batch = Arrays.asList(new Row("session", 1).add("event", "a"),
+                                    new Row("session", 1).add("event", "b"));
+
+    // A pipeline created for the next batch drops the rows of the previous batches.
+    Assert.assertEquals(2, TestingRig.execute(recipe, batch, context).size());
+    Assert.assertEquals(0, TestingRig.execute(recipe, batch, context).size());
+    Assert.assertEquals(1, TestingRig.execute(recipe, Arrays.asList(new Row("session", 2).add("event", "a")),
+                                              context).size());
+    // Without it, a new pipeline starts afresh, an existing one keeps what it has seen.
+    RecipePipeline pipeline = TestingRig.execute(recipe);
+    Assert.assertEquals(2, pipeline.execute(batch).size());
+    Assert.assertEquals(0, pipeline.execute(batch).size());
+    Assert.assertEquals(2, TestingRig.execute(recipe, batch).size());
+  }
+
+  @Test
+  public void testProcessScopeDirectives() throws Exception {
+    // Each directive of the recipe has hashes of its own, the second one sees the rows kept by the first.
+    String[] recipe = new String[] { "dedup :id", "dedup :id" };
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(Dedup.SCOPE, "process");
+    List<Row> batch = Arrays.asList(new Row("id", 1), new Row("id", 2), new Row("id", 1));
+
+    Assert.assertEquals(2, TestingRig.execute(recipe, batch, context).size());
+    Assert.assertEquals(0, TestingRig.execute(recipe, batch, context).size());
+    Assert.assertEquals(1, TestingRig.execute(recipe, Arrays.asList(new Row("id", 3)), context).size());
+  }
+
+  @Test
+  public void testProcessScopeRelease() throws Exception {
+    String[] recipe = new String[] { "dedup :event,:session" };
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(Dedup.SCOPE, "process");
+    context.getProperties().put(Dedup.RETENTION, "0");
+    List<Row> batch = Arrays.asList(new Row("session", 1).add("event", "a"));
+
+    RecipePipeline first = TestingRig.execute(recipe, context);
+    RecipePipeline second = TestingRig.execute(recipe, context);
+    Assert.assertEquals(1, first.execute(batch).size());
+    Assert.assertEquals(0, second.execute(batch).size());
+    // Another pipeline has keys of its own.
+    ExecutorContext other = new TestingPipelineContext() {
+      @Override
+      public String getPipelineName() {
+        return "other";
+      }
+    };
+    other.getProperties().putAll(context.getProperties());
+    Assert.assertEquals(1, TestingRig.execute(recipe, batch, other).size());
+    // The keys are released once no directive uses them anymore.
+    first.destroy();
+    Assert.assertEquals(0, second.execute(batch).size());
+    second.destroy();
+    Assert.assertEquals(1, TestingRig.execute(recipe, batch, context).size());
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testInvalidMode() throws Exception {
+    TestingRig.execute(new String[] { "dedup :key fuzzy" }, new ArrayList<>());
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testInvalidRate() throws Exception {
+    TestingRig.execute(new String[] { "dedup :key approximate 1.5" }, new ArrayList<>());
+  }
+}
@@ -16,8 +16,13 @@
 
 package co.cask.directives.row;
 
+import co.cask.wrangler.TestingPipelineContext;
 import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.RecipeException;
 import co.cask.wrangler.api.Row;
+import co.cask.wrangler.utils.Regex;
+import com.google.common.base.Strings;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -158,4 +163,28 @@ public class RowRegexFilterTest {
     rows = TestingRig.execute(directives, rows);
     Assert.assertTrue(rows.size() == 2);
   }
+
+  @Test(timeout = 10000)
+  public void testLinearEngine() throws Exception {
+    String[] directives = new String[] {
+      "filter-by-regex if-not-matched :body '(a+)+'",
+    };
+
+    List<Row> rows = Arrays.asList(
+      new Row("body", Strings.repeat("a", 10000)),
+      new Row("body", Strings.repeat("a", 10000) + "!")
+    );
+
+    // Matching the second row would backtrack for longer than anyone can wait with java.util.regex.
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(Regex.ENGINE, "linear");
+    rows = TestingRig.execute(directives, rows, context);
+    Assert.assertEquals(1, rows.size());
+    Assert.assertEquals(10000, ((String) rows.get(0).getValue(0)).length());
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testInvalidRegex() throws Exception {
+    TestingRig.execute(new String[] { "filter-by-regex if-matched :body '(a'" }, new ArrayList<Row>());
+  }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.directives.row;
+
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.RecipeException;
+import co.cask.wrangler.api.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests {@link SortBy}.
+ */
+public class SortByTest {
+
+  @Test
+  public void testSort() throws Exception {
+    List<Row> rows = Arrays.asList(
+      new Row("id", 1).add("country", "US").add("price", 10),
+      new Row("id", 2).add("country", "FR").add("price", 2.5),
+      new Row("id", 3).add("country", null).add("price", 1),
+      new Row("id", 4).add("country", "US").add("price", 3L),
+      new Row("id", 5).add("country", "FR").add("price", new BigDecimal("2.25")),
+      new Row("id", 6).add("country", "US").add("price", 10)
+    );
+
+    List<Row> results = TestingRig.execute(new String[] { "sort-by :country,:price" }, rows);
+
+    // Numbers of different types are compared by value, nulls come last and the sort is stable.
+    Assert.assertEquals(Arrays.asList(5, 2, 4, 1, 6, 3), ids(results));
+
+    results = TestingRig.execute(new String[] { "sort-by :country,:price desc" }, rows);
+    Assert.assertEquals(Arrays.asList(1, 6, 4, 2, 5, 3), ids(results));
+  }
+
+  @Test
+  public void testSortNotFiniteDoubles() throws Exception {
+    List<Row> rows = Arrays.asList(
+      new Row("id", 1).add("price", Double.NaN),
+      new Row("id", 2).add("price", new BigDecimal("2.25")),
+      new Row("id", 3).add("price", Double.NEGATIVE_INFINITY),
+      new Row("id", 4).add("price", Float.POSITIVE_INFINITY),
+      new Row("id", 5).add("price", new BigDecimal("-1"))
+    );
+
+    // Doubles that are not finite are compared to decimals as doubles, NaN after the others.
+    List<Row> results = TestingRig.execute(new String[] { "sort-by :price" }, rows);
+    Assert.assertEquals(Arrays.asList(3, 5, 2, 4, 1), ids(results));
+  }
+
+  @Test
+  public void testTopK() throws Exception {
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; ++i) {
+      rows.add(new Row("id", i).add("value", i % 100));
+    }
+
+    List<Row> results = TestingRig.execute(new String[] { "sort-by :value desc 3" }, rows);
+    Assert.assertEquals(Arrays.asList(99, 199, 299), ids(results));
+
+    results = TestingRig.execute(new String[] { "sort-by :value 2" }, rows);
+    Assert.assertEquals(Arrays.asList(0, 100), ids(results));
+
+    results = TestingRig.execute(new String[] { "sort-by :value asc 5000" }, rows.subList(0, 3));
+    Assert.assertEquals(Arrays.asList(0, 1, 2), ids(results));
+  }
+
+  @Test
+  public void testSpill() throws Exception {
+    Random random = new Random(0);
+    List<Row> rows = new ArrayList<>();
+    for (int i = 0; i < 20000; ++i) {
+      rows.add(new Row("id", i).add("key", "k" + random.nextInt(500)).add("value", random.nextInt(10)));
+    }
+    List<Row> expected = new ArrayList<>(rows);
+    expected.sort(Comparator.comparing((Row row) -> (String) row.getValue("key"))
+                    .thenComparing(row -> (Integer) row.getValue("value")));
+    ExecutorContext context = new TestingPipelineContext();
+    // Enough to spill more runs than are merged at once.
+    context.getProperties().put(SortBy.MEMORY, "0.05");
+
+    List<Row> results = TestingRig.execute(new String[] { "sort-by :key,:value", "drop key" }, rows, context);
+
+    Assert.assertEquals(ids(expected), ids(results));
+    Assert.assertEquals(Arrays.asList("id", "value"), Arrays.asList(results.get(0).getColumn(0),
+                                                                    results.get(0).getColumn(1)));
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testInvalidOrder() throws Exception {
+    TestingRig.execute(new String[] { "sort-by :key up" }, new ArrayList<>());
+  }
+
+  @Test(expected = RecipeException.class)
+  public void testInvalidLimit() throws Exception {
+    TestingRig.execute(new String[] { "sort-by :key desc 0" }, new ArrayList<>());
+  }
+
+  private static List<Integer> ids(List<Row> rows) {
+    List<Integer> ids = new ArrayList<>();
+    for (Row row : rows) {
+      ids.add((Integer) row.getValue("id"));
+    }
+    return ids;
+  }
+}
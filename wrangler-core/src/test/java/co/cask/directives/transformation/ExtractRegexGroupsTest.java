@@ -16,8 +16,11 @@
 
 package co.cask.directives.transformation;
 
+import co.cask.wrangler.TestingPipelineContext;
 import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.ExecutorContext;
 import co.cask.wrangler.api.Row;
+import co.cask.wrangler.utils.Regex;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -298,6 +301,15 @@ public class ExtractRegexGroupsTest {
   }
 
   private void testRegex(String regex, RegexInputOutput[] regexInputOutputs) throws Exception {
+    // Same results with both engines.
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(Regex.ENGINE, "linear");
+    testRegex(regex, regexInputOutputs, null);
+    testRegex(regex, regexInputOutputs, context);
+  }
+
+  private void testRegex(String regex, RegexInputOutput[] regexInputOutputs,
+                         ExecutorContext context) throws Exception {
     final String column = "column";
 
     String[] directives = new String[] {
@@ -309,7 +321,7 @@ public class ExtractRegexGroupsTest {
       rows.add(new Row(column, regexInputOutput.input));
     }
 
-    rows = TestingRig.execute(directives, rows);
+    rows = TestingRig.execute(directives, rows, context);
 
     Assert.assertEquals(regexInputOutputs.length, rows.size());
     for (int i = 0; i < regexInputOutputs.length; i++) {
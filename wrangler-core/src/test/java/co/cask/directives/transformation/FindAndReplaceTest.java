@@ -51,4 +51,23 @@ public class FindAndReplaceTest {
                         rows.get(0).getValue("body"));
   }
 
+  @Test
+  public void testMultipleColumns() throws Exception {
+    String[] directives = new String[] {
+      "find-and-replace first,second s/o(n)e/[$1]/2g",
+      "find-and-replace third s/(?<n>one)/${n}1/",
+    };
+
+    List<Row> rows = Arrays.asList(
+      new Row("first", "one two one one").add("second", "one").add("third", "one one")
+    );
+
+    rows = TestingRig.execute(directives, rows);
+
+    Assert.assertEquals(1, rows.size());
+    Assert.assertEquals("one two [n] [n]", rows.get(0).getValue("first"));
+    Assert.assertEquals("one", rows.get(0).getValue("second"));
+    // Named groups are handled by unix4j.
+    Assert.assertEquals("one1 one", rows.get(0).getValue("third"));
+  }
 }
@@ -16,9 +16,12 @@
 
 package co.cask.directives.transformation;
 
+import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.directives.parser.ParseDate;
+import co.cask.wrangler.TestingPipelineContext;
 import co.cask.wrangler.TestingRig;
 import co.cask.wrangler.api.Row;
+import co.cask.wrangler.dq.DateTimePattern;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -27,8 +30,11 @@ import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -187,6 +193,81 @@ public class ParseDateTest {
     // TODO CDAP-14243 - add more tests once the issue with parser is fixed
   }
 
+  @Test
+  public void testDateParserLearnsFormat() throws Exception {
+    String[] directives = new String[] {
+      "parse-as-date date US/Eastern",
+    };
+    ParseDate directive = (ParseDate) TestingRig.parse(directives).parse().get(0);
+
+    List<Row> rows = new ArrayList<>();
+    for (int i = 1; i <= 28; ++i) {
+      rows.add(new Row("date", String.format("2016-12-%02d 06:45:11", i)));
+    }
+    rows.add(new Row("date", "september 7th 2016"));
+    MetricsContext context = new MetricsContext();
+    directive.execute(rows, context);
+
+    ZoneId zone = ZoneId.of("US/Eastern");
+    for (int i = 1; i <= 28; ++i) {
+      Assert.assertEquals(ZonedDateTime.of(2016, 12, i, 6, 45, 11, 0, zone), rows.get(i - 1).getValue("date_1"));
+    }
+    Assert.assertEquals(LocalDate.of(2016, 9, 7),
+                        ((ZonedDateTime) rows.get(28).getValue("date_1")).toLocalDate());
+
+    Assert.assertEquals(27L, (long) context.counts.get("parse-as-date.learnt"));
+    Assert.assertEquals(2L, (long) context.counts.get("parse-as-date.natty"));
+    String metric = "parse-as-date.format." + DateTimePattern.dateFormatIndex("yyyy-MM-dd HH:mm:ss");
+    Assert.assertEquals(27L, (long) context.counts.get(metric));
+  }
+
+  @Test
+  public void testDateParserAmbiguousFormats() throws Exception {
+    String[] directives = new String[] {
+      "parse-as-date date",
+    };
+    ParseDate directive = (ParseDate) TestingRig.parse(directives).parse().get(0);
+
+    // Both MM/dd/yyyy and dd/MM/yyyy match the first value, natty reads it as month first.
+    List<Row> rows = Arrays.asList(
+      new Row("date", "01/02/2016"),
+      new Row("date", "03/04/2016"),
+      new Row("date", "12/25/2016")
+    );
+    MetricsContext context = new MetricsContext();
+    directive.execute(rows, context);
+
+    Assert.assertEquals(LocalDate.of(2016, 1, 2), ((ZonedDateTime) rows.get(0).getValue("date_1")).toLocalDate());
+    Assert.assertEquals(LocalDate.of(2016, 3, 4), ((ZonedDateTime) rows.get(1).getValue("date_1")).toLocalDate());
+    Assert.assertEquals(LocalDate.of(2016, 12, 25), ((ZonedDateTime) rows.get(2).getValue("date_1")).toLocalDate());
+
+    Assert.assertEquals(2L, (long) context.counts.get("parse-as-date.learnt"));
+    Assert.assertEquals(1L, (long) context.counts.get("parse-as-date.natty"));
+    // Only the month first format is left, the day first one disagreed with natty.
+    String metric = "parse-as-date.format." + DateTimePattern.dateFormatIndex("MM/dd/yyyy");
+    Assert.assertEquals(2L, (long) context.counts.get(metric));
+    Assert.assertNull(context.counts.get("parse-as-date.format." + DateTimePattern.dateFormatIndex("dd/MM/yyyy")));
+  }
+
+  @Test
+  public void testDateParserLearnsDateOnlyFormats() throws Exception {
+    String[] directives = new String[] {
+      "parse-as-date date US/Eastern",
+    };
+
+    List<Row> rows = new ArrayList<>();
+    for (int i = 1; i <= 28; ++i) {
+      rows.add(new Row("date", String.format("2019-03-%02d", i)));
+    }
+    rows = TestingRig.execute(directives, rows);
+
+    // The values natty parses while the format is learnt are at the start of the day, as the ones that follow.
+    ZoneId zone = ZoneId.of("US/Eastern");
+    for (int i = 1; i <= 28; ++i) {
+      Assert.assertEquals(LocalDate.of(2019, 3, i).atStartOfDay(zone), rows.get(i - 1).getValue("date_1"));
+    }
+  }
+
   @Test
   public void testFormatDate() throws Exception {
     String[] directives = new String[] {
@@ -262,4 +343,33 @@ public class ParseDateTest {
     Assert.assertEquals("Sat, Dec 10, '16", rows.get(0).getValue("date12"));
     Assert.assertEquals("2016.12.10 AD at 14:45:11 UTC", rows.get(0).getValue("date15"));
   }
+
+  /**
+   * Context that keeps the counts of the metrics.
+   */
+  private static final class MetricsContext extends TestingPipelineContext {
+    private final Map<String, Long> counts = new HashMap<>();
+
+    @Override
+    public StageMetrics getMetrics() {
+      return new StageMetrics() {
+        @Override
+        public void count(String s, int i) {
+          counts.merge(s, (long) i, Long::sum);
+        }
+
+        @Override
+        public void gauge(String s, long l) {
+        }
+
+        @Override
+        public void pipelineCount(String s, int i) {
+        }
+
+        @Override
+        public void pipelineGauge(String s, long l) {
+        }
+      };
+    }
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.directives.xml;
+
+import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.Pair;
+import co.cask.wrangler.api.Row;
+import com.google.gson.JsonArray;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests {@link XPathElement} and {@link XPathArrayElement}
+ */
+public class XPathElementTest {
+  private static final String DOCUMENT = "<ClinicalDocument>" +
+    "<recordTarget><patientRole>" +
+    "<addr use=\"HP\"><city>Palo Alto</city><state>CA</state></addr>" +
+    "<telecom use=\"HP\" value=\"tel:(555)555-2003\"/>" +
+    "<telecom use=\"WP\" value=\"tel:(555)555-1003\"/>" +
+    "<patient><name><given>Henry</given><given>H</given><family>Levin</family></name></patient>" +
+    "</patientRole></recordTarget>" +
+    "</ClinicalDocument>";
+
+  @Test
+  public void testXPath() throws Exception {
+    String[] recipe = new String[] {
+      "xpath :body :city '/ClinicalDocument/recordTarget/patientRole/addr/city';",
+      "xpath :body :use '/ClinicalDocument/recordTarget/patientRole/addr/@use';",
+      "xpath :body :phone \"/ClinicalDocument/recordTarget/patientRole/telecom[@use='WP']/@value\";",
+      "xpath :body :given '/ClinicalDocument/recordTarget/patientRole/patient/name/given';",
+      "xpath :body :missing '/ClinicalDocument/author';",
+      "xpath-array :body :names '/ClinicalDocument/recordTarget/patientRole/patient/name/given';",
+    };
+
+    List<Row> rows = Arrays.asList(new Row("body", DOCUMENT), new Row("body", "<ClinicalDocument/>"));
+    rows = TestingRig.execute(recipe, rows);
+
+    Assert.assertEquals(2, rows.size());
+    Row row = rows.get(0);
+    Assert.assertEquals("Palo Alto", row.getValue("city"));
+    Assert.assertEquals("HP", row.getValue("use"));
+    Assert.assertEquals("tel:(555)555-1003", row.getValue("phone"));
+    Assert.assertEquals("Henry", row.getValue("given"));
+    Assert.assertNull(row.getValue("missing"));
+    JsonArray names = (JsonArray) row.getValue("names");
+    Assert.assertEquals(2, names.size());
+    Assert.assertEquals("H", names.get(1).getAsString());
+
+    row = rows.get(1);
+    Assert.assertNull(row.getValue("city"));
+    Assert.assertEquals(0, ((JsonArray) row.getValue("names")).size());
+  }
+
+  @Test
+  public void testInvalidDocumentIsErrorRow() throws Exception {
+    String[] recipe = new String[] {
+      "xpath :body :city '/a/city';",
+    };
+
+    List<Row> rows = Arrays.asList(new Row("body", "<a><city>X</city></a>"), new Row("body", "<a><city>"));
+    Pair<List<Row>, List<Row>> results = TestingRig.executeWithErrors(recipe, rows);
+    Assert.assertEquals(1, results.getFirst().size());
+    Assert.assertEquals("X", results.getFirst().get(0).getValue("city"));
+    Assert.assertEquals(1, results.getSecond().size());
+  }
+
+  @Test(expected = Exception.class)
+  public void testInvalidXPath() throws Exception {
+    String[] recipe = new String[] {
+      "xpath :body :city '/a/[';",
+    };
+    TestingRig.execute(recipe, Arrays.asList(new Row("body", "<a/>")));
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ *  Copyright © 2019 Cask Data, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License. You may obtain a copy of
+ *  the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package co.cask.directives.xml;
+
+import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.Row;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.json.XML;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests {@link XmlToJson} and {@link XmlJsonConverter}
+ */
+public class XmlToJsonTest {
+  private static final String CATALOG = "<?xml version=\"1.0\"?>\n" +
+    "<!-- Catalog of books -->\n" +
+    "<catalog id=\"7\" open=\"true\">\n" +
+    "  <book id=\"bk101\">\n" +
+    "    <author>Gambardella, Matthew</author>\n" +
+    "    <title lang=\"en\">XML Developer's Guide</title>\n" +
+    "    <price>44.95</price>\n" +
+    "    <stock>10</stock>\n" +
+    "    <discontinued>FALSE</discontinued>\n" +
+    "    <notes/>\n" +
+    "  </book>\n" +
+    "  <book id=\"bk102\">\n" +
+    "    <author>Ralls, Kim</author>\n" +
+    "    <title>Midnight &amp; Rain</title>\n" +
+    "    <price>-5.95e2</price>\n" +
+    "    <stock>null</stock>\n" +
+    "    <code>007</code>\n" +
+    "    <description>A former <b>architect</b> battles corporate zombies</description>\n" +
+    "  </book>\n" +
+    "  <ns:extra xmlns:ns=\"urn:extra\" ns:kind=\"x\">text</ns:extra>\n" +
+    "</catalog>";
+
+  @Test
+  public void testSameAsOrgJson() throws Exception {
+    String[] documents = new String[] {
+      CATALOG,
+      "<a/>",
+      "<a>1</a>",
+      "<a><b>1</b><b>2</b><b>3</b></a>",
+      "<a x=\"1\">  </a>",
+      "<a>  hello   world  </a>",
+      "<a>true<b/>false</a>",
+      // Numbers as org.json writes them.
+      "<a b2='2.0' c='1.50' d='1e3'>3.0</a>",
+      "<a><b>-0</b><b>0012</b><b>123456789012345678901234</b><b>-3.0</b><b>.5</b><b>NaN</b></a>",
+      // Not well formed documents, which org.json reads anyway.
+      "<a>&nbsp;x</a>",
+      "<a>x</a>trailing",
+      "<a>1</a><b>2</b>",
+      "text",
+      "",
+    };
+
+    JsonParser parser = new JsonParser();
+    for (String document : documents) {
+      JsonElement expected = parser.parse(XML.toJSONObject(document).toString());
+      assertSame(document, expected, XmlJsonConverter.toJson(document));
+    }
+  }
+
+  @Test
+  public void testNumbersAsOrgJson() throws Exception {
+    List<Row> rows = TestingRig.execute(new String[] { "parse-xml-to-json body" },
+                                        Arrays.asList(new Row("body", "<a b='2.0'>3.0</a>")));
+    Assert.assertEquals(2L, rows.get(0).getValue("body_a_b"));
+    Assert.assertEquals(3L, rows.get(0).getValue("body_a_content"));
+  }
+
+  @Test
+  public void testCDataIsNotConverted() throws Exception {
+    JsonObject object = XmlJsonConverter.toJson("<a><b><![CDATA[123]]></b><c>123</c></a>");
+    JsonObject a = object.getAsJsonObject("a");
+    Assert.assertTrue(a.getAsJsonPrimitive("b").isString());
+    Assert.assertTrue(a.getAsJsonPrimitive("c").isNumber());
+  }
+
+  @Test
+  public void testParseXmlToJson() throws Exception {
+    String[] recipe = new String[] {
+      "parse-xml-to-json body 2",
+    };
+
+    List<Row> rows = Arrays.asList(new Row("body", CATALOG));
+    rows = TestingRig.execute(recipe, rows);
+
+    Assert.assertEquals(1, rows.size());
+    Row row = rows.get(0);
+    Assert.assertEquals(-1, row.find("body"));
+    Assert.assertEquals(7L, row.getValue("body_catalog_id"));
+    Assert.assertEquals(true, row.getValue("body_catalog_open"));
+    Assert.assertEquals(2, ((com.google.gson.JsonArray) row.getValue("body_catalog_book")).size());
+    Assert.assertEquals("text", ((JsonObject) row.getValue("body_catalog_ns:extra")).get("content").getAsString());
+  }
+
+  @Test
+  public void testInvalidXml() throws Exception {
+    String[] recipe = new String[] {
+      "parse-xml-to-json body",
+    };
+
+    List<Row> rows = Arrays.asList(new Row("body", "<a><b></a>"));
+    try {
+      TestingRig.execute(recipe, rows);
+      Assert.fail();
+    } catch (Exception e) {
+      // expected
+    }
+  }
+
+  /**
+   * Checks that the elements are the same, with numbers written the same way.
+   */
+  private static void assertSame(String message, JsonElement expected, JsonElement actual) {
+    if (expected.isJsonObject() && actual.isJsonObject()) {
+      Set<Map.Entry<String, JsonElement>> entries = expected.getAsJsonObject().entrySet();
+      Assert.assertEquals(message, entries.size(), actual.getAsJsonObject().entrySet().size());
+      for (Map.Entry<String, JsonElement> entry : entries) {
+        Assert.assertTrue(message, actual.getAsJsonObject().has(entry.getKey()));
+        assertSame(message, entry.getValue(), actual.getAsJsonObject().get(entry.getKey()));
+      }
+    } else if (expected.isJsonArray() && actual.isJsonArray()) {
+      Assert.assertEquals(message, expected.getAsJsonArray().size(), actual.getAsJsonArray().size());
+      for (int i = 0; i < expected.getAsJsonArray().size(); ++i) {
+        assertSame(message, expected.getAsJsonArray().get(i), actual.getAsJsonArray().get(i));
+      }
+    } else {
+      Assert.assertEquals(message, expected.toString(), actual.toString());
+    }
+  }
+}
@@ -16,9 +16,15 @@
 
 package co.cask.functions;
 
+import com.github.filosganga.geogson.gson.GeometryAdapterFactory;
+import com.github.filosganga.geogson.model.FeatureCollection;
+import com.google.gson.GsonBuilder;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * Tests {@link GeoFences}
@@ -61,4 +67,65 @@ public class GeoFenceTest {
 
     GeoFences.inFence(43.46089378008257, -462.49145507812494, geoJsonFence);
   }
+
+  @Test
+  public void testHolesAndMultiPolygons() {
+    // A square with a square hole, and a multi-polygon of two squares, one of them with a hole.
+    String geoJsonFence = "{\"type\":\"FeatureCollection\",\"features\":[" +
+      feature("Polygon", "[" + square(0, 0, 10) + "," + square(4, 4, 2) + "]") + "," +
+      feature("MultiPolygon", "[[" + square(20, 0, 5) + "],[" + square(30, 0, 5) + "," + square(31, 1, 1) + "]]") +
+      "]}";
+
+    Assert.assertTrue(GeoFences.inFence(1, 1, geoJsonFence));
+    Assert.assertFalse(GeoFences.inFence(5, 5, geoJsonFence));
+    Assert.assertTrue(GeoFences.inFence(7, 7, geoJsonFence));
+    Assert.assertTrue(GeoFences.inFence(2, 22, geoJsonFence));
+    Assert.assertTrue(GeoFences.inFence(4, 34, geoJsonFence));
+    Assert.assertFalse(GeoFences.inFence(1.5, 31.5, geoJsonFence));
+    Assert.assertFalse(GeoFences.inFence(2, 27, geoJsonFence));
+    Assert.assertFalse(GeoFences.inFence(-1, 5, geoJsonFence));
+  }
+
+  @Test
+  public void testIndexSameAsScan() {
+    Random random = new Random(0);
+    List<double[]> squares = new ArrayList<>();
+    StringBuilder geoJsonFence = new StringBuilder("{\"type\":\"FeatureCollection\",\"features\":[");
+    for (int i = 0; i < 1000; ++i) {
+      double[] square = { random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 5 };
+      squares.add(square);
+      geoJsonFence.append(i == 0 ? "" : ",").append(feature("Polygon", "[" + square(square[0], square[1],
+                                                                                   square[2]) + "]"));
+    }
+    String fences = geoJsonFence.append("]}").toString();
+    GeoFenceIndex index = GeoFenceIndex.of(new GsonBuilder().registerTypeAdapterFactory(new GeometryAdapterFactory())
+                                             .create().fromJson(fences, FeatureCollection.class));
+    Assert.assertEquals(1000, index.size());
+    for (int i = 0; i < 10000; ++i) {
+      double lon = random.nextDouble() * 110 - 5;
+      double lat = random.nextDouble() * 110 - 5;
+      boolean inside = false;
+      for (double[] square : squares) {
+        inside |= lon > square[0] && lon < square[0] + square[2] && lat > square[1] && lat < square[1] + square[2];
+      }
+      Assert.assertEquals(inside, index.contains(lon, lat));
+      Assert.assertEquals(inside, GeoFences.inFence(lat, lon, fences));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWithPoint() {
+    GeoFences.inFence(0, 0, "{\"type\":\"FeatureCollection\",\"features\":[" +
+      feature("Point", "[1.0,2.0]") + "]}");
+  }
+
+  private static String feature(String type, String coordinates) {
+    return "{\"type\":\"Feature\",\"properties\":{},\"geometry\":{\"type\":\"" + type + "\",\"coordinates\":" +
+      coordinates + "}}";
+  }
+
+  private static String square(double lon, double lat, double size) {
+    return String.format("[[%s,%s],[%s,%s],[%s,%s],[%s,%s],[%s,%s]]", lon, lat, lon + size, lat, lon + size,
+                         lat + size, lon, lat + size, lon, lat);
+  }
 }
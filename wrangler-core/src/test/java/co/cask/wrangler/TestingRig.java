@@ -40,6 +40,7 @@ import co.cask.wrangler.registry.CompositeDirectiveRegistry;
 import co.cask.wrangler.registry.SystemDirectiveRegistry;
 import org.junit.Assert;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -75,7 +76,9 @@ public final class TestingRig {
     parser.initialize(null);
     RecipePipeline pipeline = new RecipePipelineExecutor();
     pipeline.initialize(parser, context);
-    return pipeline.execute(rows);
+    List<Row> results = pipeline.execute(rows);
+    results.addAll(pipeline.flush());
+    return results;
   }
 
   /**
@@ -102,11 +105,18 @@ public final class TestingRig {
     RecipePipeline pipeline = new RecipePipelineExecutor();
     pipeline.initialize(parser, context);
     List<Row> results = pipeline.execute(rows);
-    List<Row> errors = pipeline.errors();
+    List<Row> errors = new ArrayList<Row>(pipeline.errors());
+    results.addAll(pipeline.flush());
+    errors.addAll(pipeline.errors());
     return new Pair<>(results, errors);
   }
 
   public static RecipePipeline execute(String[] recipe)
+    throws RecipeException, DirectiveParseException, DirectiveLoadException, DirectiveNotFoundException {
+    return execute(recipe, new TestingPipelineContext());
+  }
+
+  public static RecipePipeline execute(String[] recipe, ExecutorContext context)
     throws RecipeException, DirectiveParseException, DirectiveLoadException, DirectiveNotFoundException {
     CompositeDirectiveRegistry registry = new CompositeDirectiveRegistry(
       new SystemDirectiveRegistry()
@@ -116,7 +126,7 @@ public final class TestingRig {
     RecipeParser parser = new GrammarBasedParser(Contexts.SYSTEM, migrate, registry);
     parser.initialize(new NoOpDirectiveContext());
     RecipePipeline pipeline = new RecipePipelineExecutor();
-    pipeline.initialize(parser, new TestingPipelineContext());
+    pipeline.initialize(parser, context);
     return pipeline;
   }
 
@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.clients;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.cdap.http.AbstractHttpHandler;
+import io.cdap.http.HttpResponder;
+import io.cdap.http.NettyHttpService;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * Tests {@link SchemaCache} against an in-process stand-in for the schema registry service.
+ */
+public class SchemaCacheTest {
+  private static final Gson GSON = new Gson();
+  private NettyHttpService httpService;
+  private String baseURL;
+  private SchemaHandler handler;
+
+  @Before
+  public void startService() throws Exception {
+    handler = new SchemaHandler();
+    httpService = NettyHttpService.builder("SchemaService")
+      .setHttpHandlers(Collections.singletonList(handler))
+      .build();
+    httpService.start();
+    baseURL = "http://localhost:" + httpService.getBindAddress().getPort();
+  }
+
+  @After
+  public void stopService() throws Exception {
+    httpService.stop();
+  }
+
+  /**
+   * Serves schema 'foo', the latest version changes every time it's fetched.
+   */
+  public static class SchemaHandler extends AbstractHttpHandler {
+    private final AtomicInteger versionFetches = new AtomicInteger();
+    private final AtomicInteger latestFetches = new AtomicInteger();
+    private volatile boolean unavailable;
+
+    @GET
+    @Path("contexts/{context}/schemas/foo/versions/{version}")
+    public void get(HttpRequest request, HttpResponder responder, @PathParam("context") String context,
+                    @PathParam("version") long version) throws Exception {
+      versionFetches.incrementAndGet();
+      // Slow enough for concurrent callers to ask while the schema is being fetched.
+      TimeUnit.MILLISECONDS.sleep(200);
+      respond(responder, "foo-" + version);
+    }
+
+    @GET
+    @Path("contexts/{context}/schemas/foo")
+    public void latest(HttpRequest request, HttpResponder responder, @PathParam("context") String context) {
+      if (unavailable) {
+        latestFetches.incrementAndGet();
+        responder.sendString(HttpResponseStatus.SERVICE_UNAVAILABLE, "Unavailable");
+        return;
+      }
+      respond(responder, "foo-latest-" + latestFetches.incrementAndGet());
+    }
+
+    @GET
+    @Path("contexts/{context}/schemas/bar")
+    public void missing(HttpRequest request, HttpResponder responder, @PathParam("context") String context) {
+      JsonObject response = new JsonObject();
+      response.addProperty("status", HttpURLConnection.HTTP_OK);
+      response.addProperty("message", "Success");
+      response.addProperty("count", 0);
+      response.add("values", new JsonArray());
+      responder.sendJson(HttpResponseStatus.OK, GSON.toJson(response));
+    }
+
+    private static void respond(HttpResponder responder, String specification) {
+      JsonObject object = new JsonObject();
+      object.addProperty("id", "foo");
+      object.addProperty("name", "Foo Name");
+      object.addProperty("specification", Bytes.toHexString(specification.getBytes(StandardCharsets.UTF_8)));
+      JsonArray array = new JsonArray();
+      array.add(object);
+      JsonObject response = new JsonObject();
+      response.addProperty("status", HttpURLConnection.HTTP_OK);
+      response.addProperty("message", "Success");
+      response.addProperty("count", array.size());
+      response.add("values", array);
+      responder.sendJson(HttpResponseStatus.OK, GSON.toJson(response));
+    }
+  }
+
+  @Test
+  public void testConcurrentCallersShareOneFetch() throws Exception {
+    SchemaCache<String> cache = new SchemaCache<>(Bytes::toString);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; ++i) {
+        futures.add(executor.submit(() -> cache.get(baseURL, "c0", "foo", 1)));
+      }
+      String first = futures.get(0).get();
+      Assert.assertEquals("foo-1", first);
+      for (Future<String> future : futures) {
+        Assert.assertSame(first, future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(1, handler.versionFetches.get());
+
+    // Other versions and namespaces are separate entries.
+    Assert.assertEquals("foo-2", cache.get(baseURL, "c0", "foo", 2));
+    Assert.assertEquals("foo-1", cache.get(baseURL, "c1", "foo", 1));
+    Assert.assertEquals(3, handler.versionFetches.get());
+  }
+
+  @Test
+  public void testLatestIsRefreshed() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    // Refreshes are run by the caller, so that their result is seen right away.
+    SchemaCache<String> cache = new SchemaCache<>(Bytes::toString, 1, TimeUnit.MINUTES, ticker,
+                                                  MoreExecutors.directExecutor());
+
+    Assert.assertEquals("foo-latest-1", cache.get(baseURL, "c0", "foo", -1));
+    ticker.advance(30, TimeUnit.SECONDS);
+    Assert.assertEquals("foo-latest-1", cache.get(baseURL, "c0", "foo", -1));
+    Assert.assertEquals(1, handler.latestFetches.get());
+
+    ticker.advance(31, TimeUnit.SECONDS);
+    Assert.assertEquals("foo-latest-2", cache.get(baseURL, "c0", "foo", -1));
+    Assert.assertEquals(2, handler.latestFetches.get());
+  }
+
+  @Test
+  public void testFailedRefreshKeepsPrevious() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    SchemaCache<String> cache = new SchemaCache<>(Bytes::toString, 1, TimeUnit.MINUTES, ticker,
+                                                  MoreExecutors.directExecutor());
+    Assert.assertEquals("foo-latest-1", cache.get(baseURL, "c0", "foo", -1));
+
+    handler.unavailable = true;
+    ticker.advance(61, TimeUnit.SECONDS);
+    Assert.assertEquals("foo-latest-1", cache.get(baseURL, "c0", "foo", -1));
+    int fetches = handler.latestFetches.get();
+    Assert.assertTrue(fetches > 1);
+    // The service is not asked again until the next refresh interval.
+    Assert.assertEquals("foo-latest-1", cache.get(baseURL, "c0", "foo", -1));
+    Assert.assertEquals(fetches, handler.latestFetches.get());
+
+    handler.unavailable = false;
+    ticker.advance(61, TimeUnit.SECONDS);
+    Assert.assertEquals("foo-latest-" + (fetches + 1), cache.get(baseURL, "c0", "foo", -1));
+  }
+
+  @Test
+  public void testMissingSchema() throws Exception {
+    SchemaCache<String> cache = new SchemaCache<>(Bytes::toString);
+    try {
+      cache.get(baseURL, "c0", "bar", -1);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      // Expected
+    }
+  }
+
+  /**
+   * A {@link Ticker} that's moved forward by the test.
+   */
+  private static final class FakeTicker extends Ticker {
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(long time, TimeUnit unit) {
+      nanos.addAndGet(unit.toNanos(time));
+    }
+  }
+}
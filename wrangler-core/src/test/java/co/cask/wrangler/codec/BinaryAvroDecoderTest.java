@@ -28,6 +28,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -81,4 +83,44 @@ public class BinaryAvroDecoderTest {
     Assert.assertEquals("Root", rows.get(0).getValue("name"));
     Assert.assertEquals("Ben", rows.get(1).getValue("name"));
   }
+
+  @Test
+  public void testRecordReuse() throws Exception {
+    Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"Event\", \"fields\": [\n" +
+      "  {\"name\": \"id\", \"type\": \"long\"},\n" +
+      "  {\"name\": \"tags\", \"type\": {\"type\": \"array\", \"items\": \"string\"}},\n" +
+      "  {\"name\": \"payload\", \"type\": \"bytes\"},\n" +
+      "  {\"name\": \"source\", \"type\": {\"type\": \"record\", \"name\": \"Source\", \"fields\": [\n" +
+      "    {\"name\": \"host\", \"type\": \"string\"}]}}\n" +
+      "]}");
+
+    DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    for (int i = 0; i < 3; ++i) {
+      GenericRecord source = new GenericData.Record(schema.getField("source").schema());
+      source.put("host", "host" + i);
+      GenericRecord event = new GenericData.Record(schema);
+      event.put("id", (long) i);
+      event.put("tags", Arrays.asList("a" + i, "b\"" + i));
+      event.put("payload", ByteBuffer.wrap(new byte[] { (byte) i }));
+      event.put("source", source);
+      datumWriter.write(event, encoder);
+    }
+    encoder.flush();
+
+    BinaryAvroDecoder decoder = new BinaryAvroDecoder(schema);
+    List<Row> rows = decoder.decode(out.toByteArray());
+    // Decode again with the same decoder, values from the first call must not change.
+    decoder.decode(out.toByteArray());
+
+    Assert.assertEquals(3, rows.size());
+    for (int i = 0; i < 3; ++i) {
+      Row row = rows.get(i);
+      Assert.assertEquals((long) i, row.getValue("id"));
+      Assert.assertEquals("[\"a" + i + "\",\"b\\\"" + i + "\"]", row.getValue("tags"));
+      Assert.assertEquals(ByteBuffer.wrap(new byte[] { (byte) i }), row.getValue("payload"));
+      Assert.assertEquals("host" + i, ((GenericRecord) row.getValue("source")).get("host").toString());
+    }
+  }
 }
@@ -18,11 +18,17 @@ package co.cask.wrangler.codec;
 
 import co.cask.wrangler.api.Row;
 import com.example.tutorial.AddressBookProtos;
+import com.google.common.primitives.Bytes;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -66,4 +72,137 @@ public class ProtobufDecoderUsingDescriptorTest {
       }
     }
   }
+
+  @Test
+  public void testMultipleNestedMessages() throws Exception {
+    AddressBookProtos.AddressBook.Builder book = AddressBookProtos.AddressBook.newBuilder();
+    for (int i = 0; i < 3; ++i) {
+      AddressBookProtos.Person.Builder person = AddressBookProtos.Person.newBuilder()
+        .setId(i + 1)
+        .setName("Person " + i);
+      for (int j = 0; j <= i; ++j) {
+        person.addPhones(AddressBookProtos.Person.PhoneNumber.newBuilder()
+                           .setNumber("555-000" + j)
+                           .setType(AddressBookProtos.Person.PhoneType.WORK));
+      }
+      book.addPeople(person);
+    }
+
+    Decoder<Row> decoder = new ProtobufDecoderUsingDescriptor(AddressBookProtos.AddressBook.getDescriptor());
+    Row row = decoder.decode(book.build().toByteArray()).get(0);
+
+    // Columns of nested messages are added in the order of the messages, as many times as they occur.
+    Assert.assertEquals(Arrays.asList("people_name", "people_id", "people_phones_number", "people_phones_type",
+                                      "people_name", "people_id", "people_phones_number", "people_phones_type",
+                                      "people_phones_number", "people_phones_type", "people_name", "people_id",
+                                      "people_phones_number", "people_phones_type", "people_phones_number",
+                                      "people_phones_type", "people_phones_number", "people_phones_type"),
+                        columns(row));
+    Assert.assertEquals("Person 0", row.getValue(0));
+    Assert.assertEquals(1, row.getValue(1));
+    Assert.assertEquals("WORK", row.getValue(3));
+    Assert.assertEquals("555-0001", row.getValue(8));
+  }
+
+  @Test
+  public void testPrimitivesAndPackedFields() throws Exception {
+    DescriptorProtos.FileDescriptorProto file = DescriptorProtos.FileDescriptorProto.newBuilder()
+      .setName("sample.proto")
+      .setSyntax("proto2")
+      .addMessageType(DescriptorProtos.DescriptorProto.newBuilder()
+                        .setName("Point")
+                        .addField(field("x", 1, DescriptorProtos.FieldDescriptorProto.Type.TYPE_SINT32, false))
+                        .addField(field("y", 2, DescriptorProtos.FieldDescriptorProto.Type.TYPE_DOUBLE, false)))
+      .addMessageType(DescriptorProtos.DescriptorProto.newBuilder()
+                        .setName("Sample")
+                        .addField(field("id", 1, DescriptorProtos.FieldDescriptorProto.Type.TYPE_INT64, false)
+                                    .setLabel(DescriptorProtos.FieldDescriptorProto.Label.LABEL_REQUIRED))
+                        .addField(field("values", 2, DescriptorProtos.FieldDescriptorProto.Type.TYPE_INT32, true)
+                                    .setOptions(DescriptorProtos.FieldOptions.newBuilder().setPacked(true)))
+                        .addField(field("origin", 3, DescriptorProtos.FieldDescriptorProto.Type.TYPE_MESSAGE, false)
+                                    .setTypeName("Point"))
+                        .addField(field("flag", 4, DescriptorProtos.FieldDescriptorProto.Type.TYPE_BOOL, false))
+                        .addField(field("ratio", 500, DescriptorProtos.FieldDescriptorProto.Type.TYPE_FLOAT, false)))
+      .build();
+    Descriptors.FileDescriptor fileDescriptor =
+      Descriptors.FileDescriptor.buildFrom(file, new Descriptors.FileDescriptor[0]);
+    Descriptors.Descriptor sample = fileDescriptor.findMessageTypeByName("Sample");
+    Descriptors.Descriptor point = fileDescriptor.findMessageTypeByName("Point");
+
+    DynamicMessage message = DynamicMessage.newBuilder(sample)
+      .setField(sample.findFieldByName("id"), 42L)
+      .addRepeatedField(sample.findFieldByName("values"), 3)
+      .addRepeatedField(sample.findFieldByName("values"), -1)
+      .addRepeatedField(sample.findFieldByName("values"), 300)
+      .setField(sample.findFieldByName("origin"), DynamicMessage.newBuilder(point)
+        .setField(point.findFieldByName("x"), -7)
+        .setField(point.findFieldByName("y"), 2.5)
+        .build())
+      .setField(sample.findFieldByName("flag"), true)
+      .setField(sample.findFieldByName("ratio"), 0.5f)
+      .build();
+
+    Decoder<Row> decoder = new ProtobufDecoderUsingDescriptor(sample);
+    Row row = decoder.decode(message.toByteArray()).get(0);
+    Assert.assertEquals(Arrays.asList("id", "values", "origin_x", "origin_y", "flag", "ratio"), columns(row));
+    Assert.assertEquals(42L, row.getValue("id"));
+    Assert.assertEquals(Arrays.asList(3, -1, 300), row.getValue("values"));
+    Assert.assertEquals(-7, row.getValue("origin_x"));
+    Assert.assertEquals(2.5, row.getValue("origin_y"));
+    Assert.assertEquals(true, row.getValue("flag"));
+    Assert.assertEquals(0.5f, row.getValue("ratio"));
+
+    // Occurrences of a singular nested message are merged, repeated values are concatenated.
+    DynamicMessage update = DynamicMessage.newBuilder(sample)
+      .setField(sample.findFieldByName("id"), 43L)
+      .addRepeatedField(sample.findFieldByName("values"), 4)
+      .setField(sample.findFieldByName("origin"), DynamicMessage.newBuilder(point)
+        .setField(point.findFieldByName("x"), 5)
+        .build())
+      .build();
+    row = decoder.decode(Bytes.concat(message.toByteArray(), update.toByteArray())).get(0);
+    Assert.assertEquals(Arrays.asList("id", "values", "origin_x", "origin_y", "flag", "ratio"), columns(row));
+    Assert.assertEquals(43L, row.getValue("id"));
+    Assert.assertEquals(Arrays.asList(3, -1, 300, 4), row.getValue("values"));
+    Assert.assertEquals(5, row.getValue("origin_x"));
+    Assert.assertEquals(2.5, row.getValue("origin_y"));
+
+    // Packed values are truncated.
+    try {
+      decoder.decode(new byte[] { 0x08, 0x2A, 0x12, 0x02, (byte) 0xFF, (byte) 0xFF });
+      Assert.fail();
+    } catch (DecoderException e) {
+      // Expected
+    }
+
+    // Required field is missing.
+    DynamicMessage partial = DynamicMessage.newBuilder(sample)
+      .setField(sample.findFieldByName("flag"), false)
+      .buildPartial();
+    try {
+      decoder.decode(partial.toByteArray());
+      Assert.fail();
+    } catch (DecoderException e) {
+      // Expected
+    }
+  }
+
+  private static DescriptorProtos.FieldDescriptorProto.Builder field(String name, int number,
+                                                                     DescriptorProtos.FieldDescriptorProto.Type type,
+                                                                     boolean repeated) {
+    return DescriptorProtos.FieldDescriptorProto.newBuilder()
+      .setName(name)
+      .setNumber(number)
+      .setType(type)
+      .setLabel(repeated ? DescriptorProtos.FieldDescriptorProto.Label.LABEL_REPEATED
+                  : DescriptorProtos.FieldDescriptorProto.Label.LABEL_OPTIONAL);
+  }
+
+  private static List<String> columns(Row row) {
+    List<String> columns = new ArrayList<>();
+    for (int i = 0; i < row.length(); ++i) {
+      columns.add(row.getColumn(i));
+    }
+    return columns;
+  }
 }
@@ -16,15 +16,29 @@
 
 package co.cask.wrangler.executor;
 
+import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.wrangler.TestingPipelineContext;
 import co.cask.wrangler.TestingRig;
+import co.cask.wrangler.api.Arguments;
+import co.cask.wrangler.api.DirectiveContext;
+import co.cask.wrangler.api.DirectiveExecutionException;
+import co.cask.wrangler.api.ErrorRecord;
+import co.cask.wrangler.api.ErrorRowException;
+import co.cask.wrangler.api.Executor;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.RecipeException;
+import co.cask.wrangler.api.RecipeParser;
 import co.cask.wrangler.api.RecipePipeline;
 import co.cask.wrangler.api.Row;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests {@link RecipePipelineExecutor}.
@@ -96,4 +110,188 @@ public class RecipePipelineExecutorTest {
     Assert.assertEquals(1481666448L, record.<Long>get("timestamp").longValue());
     Assert.assertEquals(186.66f, record.get("weight"), 0.0001f);
   }
+
+  @Test(timeout = 10000)
+  public void testDirectiveTimeout() throws Exception {
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(RecipePipelineExecutor.DIRECTIVE_TIMEOUT, "200");
+    RecipePipeline pipeline = new RecipePipelineExecutor();
+    pipeline.initialize(parser(new Sleep(), new Fail()), context);
+
+    List<Row> rows = Arrays.asList(new Row("sleep", 0L), new Row("sleep", 60000L), new Row("sleep", 0L),
+                                   new Row("sleep", -1L));
+    List<Row> results = pipeline.execute(rows);
+    List<ErrorRecord> errors = pipeline.errors();
+    Assert.assertEquals(2, results.size());
+    Assert.assertEquals(2, errors.size());
+    Assert.assertEquals(60000L, (long) errors.get(0).getRow().getValue("sleep"));
+    Assert.assertEquals(DirectiveWatchdog.TIMEOUT, errors.get(0).getCode());
+    Assert.assertEquals("Directive 'sleep' took longer than the time budget of 200 ms on the row.",
+                        errors.get(0).getMessage());
+    // Other errors are reported as usual.
+    Assert.assertEquals(-1L, (long) errors.get(1).getRow().getValue("sleep"));
+    Assert.assertEquals("negative", errors.get(1).getMessage());
+    pipeline.destroy();
+  }
+
+  @Test(timeout = 10000)
+  public void testDirectiveTimeoutCancelsRow() throws Exception {
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(RecipePipelineExecutor.DIRECTIVE_TIMEOUT, "200");
+    RecipePipeline pipeline = new RecipePipelineExecutor();
+    Record record = new Record();
+    pipeline.initialize(parser(new Spin(), record), context);
+
+    // The spin ignores the interruption but completes within the second budget, the next directive isn't
+    // executed on the row that timed out and the next row waits for the spin to complete.
+    List<Row> rows = Arrays.asList(new Row("sleep", 300L), new Row("sleep", 0L));
+    List<Row> results = pipeline.execute(rows);
+    Assert.assertEquals(1, results.size());
+    Assert.assertEquals(1, pipeline.errors().size());
+    Assert.assertEquals(Arrays.asList(0L), record.seen);
+    pipeline.destroy();
+  }
+
+  @Test(timeout = 10000)
+  public void testDirectiveTimeoutFailsWhenNotStopped() throws Exception {
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(RecipePipelineExecutor.DIRECTIVE_TIMEOUT, "100");
+    RecipePipeline pipeline = new RecipePipelineExecutor();
+    pipeline.initialize(parser(new Spin()), context);
+    try {
+      pipeline.execute(Arrays.asList(new Row("sleep", 2000L), new Row("sleep", 0L)));
+      Assert.fail();
+    } catch (RecipeException e) {
+      Assert.assertTrue(e.getMessage().contains("'spin'"));
+    } finally {
+      pipeline.destroy();
+    }
+  }
+
+  @Test
+  public void testInvalidDirectiveTimeout() throws Exception {
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(RecipePipelineExecutor.DIRECTIVE_TIMEOUT, "1s");
+    try {
+      new RecipePipelineExecutor().initialize(parser(new Sleep()), context);
+      Assert.fail();
+    } catch (RecipeException e) {
+      // expected
+    }
+  }
+
+  private static RecipeParser parser(Executor... directives) {
+    return new RecipeParser() {
+      @Override
+      public List<Executor> parse() {
+        return Arrays.asList(directives);
+      }
+
+      @Override
+      public void initialize(DirectiveContext context) {
+        // no-op
+      }
+    };
+  }
+
+  /**
+   * Sleeps for the number of milliseconds in the 'sleep' column.
+   */
+  @Name("sleep")
+  private static final class Sleep implements Executor<List<Row>, List<Row>> {
+    @Override
+    public void initialize(Arguments args) {
+      // no-op
+    }
+
+    @Override
+    public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
+      try {
+        Thread.sleep(Math.max((Long) rows.get(0).getValue("sleep"), 0));
+      } catch (InterruptedException e) {
+        throw new DirectiveExecutionException("Interrupted");
+      }
+      return rows;
+    }
+
+    @Override
+    public void destroy() {
+      // no-op
+    }
+  }
+
+  /**
+   * Spins for the number of milliseconds in the 'sleep' column, ignoring interruptions.
+   */
+  @Name("spin")
+  private static final class Spin implements Executor<List<Row>, List<Row>> {
+    @Override
+    public void initialize(Arguments args) {
+      // no-op
+    }
+
+    @Override
+    public List<Row> execute(List<Row> rows, ExecutorContext context) {
+      long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos((Long) rows.get(0).getValue("sleep"));
+      while (System.nanoTime() < end) {
+        Thread.interrupted();
+      }
+      return rows;
+    }
+
+    @Override
+    public void destroy() {
+      // no-op
+    }
+  }
+
+  /**
+   * Records the 'sleep' column of the rows it's executed on.
+   */
+  @Name("record")
+  private static final class Record implements Executor<List<Row>, List<Row>> {
+    private final List<Long> seen = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void initialize(Arguments args) {
+      // no-op
+    }
+
+    @Override
+    public List<Row> execute(List<Row> rows, ExecutorContext context) {
+      for (Row row : rows) {
+        seen.add((Long) row.getValue("sleep"));
+      }
+      return rows;
+    }
+
+    @Override
+    public void destroy() {
+      // no-op
+    }
+  }
+
+  /**
+   * Sends the rows with a negative 'sleep' column to the error collector.
+   */
+  @Name("fail")
+  private static final class Fail implements Executor<List<Row>, List<Row>> {
+    @Override
+    public void initialize(Arguments args) {
+      // no-op
+    }
+
+    @Override
+    public List<Row> execute(List<Row> rows, ExecutorContext context) throws ErrorRowException {
+      if ((Long) rows.get(0).getValue("sleep") < 0) {
+        throw new ErrorRowException("negative", 1);
+      }
+      return rows;
+    }
+
+    @Override
+    public void destroy() {
+      // no-op
+    }
+  }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.expression;
+
+import co.cask.functions.Pure;
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Row;
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests {@link CompiledExpression}.
+ */
+public class CompiledExpressionTest {
+  private static final String[] EXPRESSIONS = {
+    "a", "a + b", "a - b * 2", "a / b", "a % 3", "-a", "-1.5 + a", "a + ' units'", "s + a", "a == b",
+    "a != 5", "a < b", "a <= 5", "a > 2.5", "a >= b", "s == 'x'", "s != null", "a == null", "!(a > 5)",
+    "a > 2 && b < 10", "a > 2 || s == 'x'", "a > 100 ? 'big' : 'small'", "s ?: 'none'", "(a + b) * (a - b)",
+    "math:max(a, b)", "math:abs(d)", "math:max(a, 2.5)", "string:isBlank(s)", "string:length(s) > 1",
+    "dq:isnull(a)", "dq:strlen(s) + 1", "dq:inrange(d, 0, 5)", "a == 1 ? math:max(a, b) : -b", "true && false",
+    "null", "'text'", "10 / 4", "10.0 / 4", "d * 2", "s && true", "!s", "u + 1", "math:max(s, a)",
+  };
+
+  @Test
+  public void testSameAsJexl() throws Exception {
+    Object[][] values = {
+      { 1, 2, 1.5, "x" }, { 7, -3, -2.25, "abc" }, { 0, 0, 0.0, "" }, { null, 4, null, null },
+      { 10L, 3L, 1e10, "2019-01-31" }, { 3, null, 4.0, "true" }, { "5", "6", "7", "y" },
+    };
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(EL.ENGINE, "compiled");
+    for (String expression : EXPRESSIONS) {
+      EL el = new EL(new EL.DefaultFunctions());
+      el.compile(expression);
+      RowContext ctx = new RowContext(el.variables());
+      for (Object[] value : values) {
+        Row row = new Row("a", value[0]).add("b", value[1]).add("d", value[2]).add("s", value[3]);
+        ELContext map = new ELContext(context);
+        for (String variable : el.variables()) {
+          map.set(variable, row.getValue(variable));
+        }
+        String message = String.format("'%s' on %s", expression, row.getFields());
+        Object expected;
+        try {
+          expected = el.execute(map).getObject();
+        } catch (ELException e) {
+          try {
+            el.execute(ctx.set(row, context));
+            Assert.fail(message);
+          } catch (ELException f) {
+            Assert.assertEquals(message, e.getMessage(), f.getMessage());
+          }
+          continue;
+        }
+        Assert.assertEquals(message, expected, el.execute(ctx.set(row, context)).getObject());
+      }
+    }
+  }
+
+  @Test
+  public void testSupportedExpressions() throws Exception {
+    for (String expression : EXPRESSIONS) {
+      EL el = new EL(new EL.DefaultFunctions());
+      el.compile(expression);
+      Assert.assertTrue(expression, el.isCompilable());
+    }
+    // Assignments, properties, methods, collections and regex operators are left to JEXL.
+    String[] unsupported = {
+      "x = 1; x", "a.b", "s.length()", "[1, 2]", "s =~ 'a.*'", "a ++", "size(s)", "unknown:f(a)", "math:nope(a)",
+      "a += 1", "a & 1", "a ? b : c; d",
+    };
+    for (String expression : unsupported) {
+      EL el = new EL(new EL.DefaultFunctions());
+      try {
+        el.compile(expression);
+      } catch (ELException e) {
+        continue;
+      }
+      Assert.assertFalse(expression, el.isCompilable());
+    }
+  }
+
+  @Test
+  public void testEngineFromContext() throws Exception {
+    ExecutorContext context = new TestingPipelineContext();
+    Assert.assertFalse(EL.isCompiled(null));
+    Assert.assertFalse(EL.isCompiled(context));
+    RowContext ctx = new RowContext(new EL(new EL.DefaultFunctions()).variables());
+    Assert.assertFalse(ctx.set(new Row("a", 1), context).isCompiled());
+    context.getProperties().put(EL.ENGINE, "compiled");
+    Assert.assertTrue(EL.isCompiled(context));
+    Assert.assertFalse(ctx.set(new Row("a", 1), new TestingPipelineContext()).isCompiled());
+    ExecutorContext compiled = new TestingPipelineContext();
+    compiled.getProperties().put(EL.ENGINE, "compiled");
+    Assert.assertTrue(ctx.set(new Row("a", 1), compiled).isCompiled());
+  }
+
+  @Test
+  public void testUndefinedVariable() throws Exception {
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(EL.ENGINE, "compiled");
+    EL el = new EL(new EL.DefaultFunctions());
+    el.compile("a + undefined");
+    Assert.assertTrue(el.isCompilable());
+    // The variable isn't a column, JEXL reports it.
+    RowContext ctx = new RowContext(Collections.singleton("a"));
+    try {
+      el.execute(ctx.set(new Row("a", 1), context));
+      Assert.fail();
+    } catch (ELException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("undefined"));
+    }
+  }
+
+  @Test
+  public void testConstantFolding() throws Exception {
+    JexlArithmetic arithmetic = new JexlArithmetic(false);
+    Map<String, Object> functions = new EL.DefaultFunctions().functions();
+    String[] constants = {
+      "1 + 2 * 3", "-(4 / 2)", "!true", "'a' + 'b' == 'ab'", "math:max(2, 3) > 1", "toDouble('2.5') * 2",
+      "true ? 'x' : y", "null ?: 'none'", "dq:strlen('abc')", "dq:isIP('10.0.0.1')",
+    };
+    for (String expression : constants) {
+      CompiledExpression compiled = CompiledExpression.compile(expression, arithmetic, functions);
+      Assert.assertTrue(expression, compiled.isConstant());
+    }
+    // Variables, impure functions and constant sub-expressions that fail are evaluated on each row.
+    for (String expression : new String[] { "a + 1", "math:random()", "1 / 0", "toDouble('x')", "false ? 1 : y" }) {
+      CompiledExpression compiled = CompiledExpression.compile(expression, arithmetic, functions);
+      Assert.assertTrue(expression, compiled == null || !compiled.isConstant());
+    }
+
+    ExecutorContext context = new TestingPipelineContext();
+    context.getProperties().put(EL.ENGINE, "compiled");
+    EL el = new EL(new EL.DefaultFunctions());
+    el.compile("toDouble('1.5') * 2 + a");
+    RowContext ctx = new RowContext(el.variables());
+    Assert.assertEquals(4.0, el.execute(ctx.set(new Row("a", 1), context)).getObject());
+    try {
+      el.compile("a + 1 / 0");
+      el.execute(ctx.set(new Row("a", 1), context));
+      Assert.fail();
+    } catch (ELException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMemoisation() throws Exception {
+    Map<String, Object> functions = new HashMap<>();
+    functions.put("counted", Counted.class);
+    CompiledExpression expression =
+      CompiledExpression.compile("counted:square(a)", new JexlArithmetic(false), functions);
+    RowContext ctx = new RowContext(Collections.singleton("a"));
+    CompiledExpression.Memos memos = expression.memos();
+    Counted.calls = 0;
+    for (int i = 0; i < 10000; ++i) {
+      Assert.assertEquals((long) (i % 10) * (i % 10),
+                          expression.evaluate(ctx.set(new Row("a", i % 10L), null), memos));
+    }
+    Assert.assertEquals(10, Counted.calls);
+
+    // The results are remembered by the owner of the memos only.
+    Counted.calls = 0;
+    CompiledExpression.Memos other = expression.memos();
+    Assert.assertEquals(1L, expression.evaluate(ctx.set(new Row("a", 1L), null), other));
+    Assert.assertEquals(1L, expression.evaluate(ctx.set(new Row("a", 1L), null), null));
+    Assert.assertEquals(2, Counted.calls);
+
+    // Arguments that are all distinct stop being remembered.
+    Counted.calls = 0;
+    for (long i = 0; i < 10000; ++i) {
+      Assert.assertEquals((i + 10) * (i + 10), expression.evaluate(ctx.set(new Row("a", i + 10), null), memos));
+    }
+    Assert.assertEquals(10000, Counted.calls);
+  }
+
+  /**
+   * Pure function counting its calls.
+   */
+  public static final class Counted {
+    private static int calls;
+
+    @Pure
+    public static long square(Long value) {
+      calls++;
+      return value * value;
+    }
+  }
+}
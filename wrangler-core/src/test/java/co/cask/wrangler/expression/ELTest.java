@@ -16,6 +16,9 @@
 
 package co.cask.wrangler.expression;
 
+import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.api.Row;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -64,4 +67,78 @@ public class ELTest {
     ELResult execute = el.execute(ctx);
     Assert.assertEquals(true, execute.getBoolean());
   }
+
+  @Test
+  public void testSharedCompilation() throws Exception {
+    EL first = new EL(new EL.DefaultFunctions());
+    EL second = new EL(new EL.DefaultFunctions());
+    String expression = "a * 2 + 0 * " + System.nanoTime();
+    long misses = EL.stats().missCount();
+    long hits = EL.stats().hitCount();
+    first.compile(expression);
+    second.compile(expression);
+    Assert.assertEquals(misses + 1, EL.stats().missCount());
+    Assert.assertEquals(hits + 1, EL.stats().hitCount());
+    Assert.assertTrue(EL.stats().totalLoadTime() > 0);
+    Assert.assertSame(first.variables(), second.variables());
+    Assert.assertEquals(1, first.variables().size());
+
+    // Each instance keeps the expression it compiled last.
+    second.compile("a + 1");
+    Assert.assertEquals(new Integer(3), second.execute(new ELContext().add("a", 2)).getInteger());
+    Assert.assertEquals(new Integer(4), first.execute(new ELContext().add("a", 2)).getInteger());
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    String expression = "a * 3 + 0 * " + System.nanoTime();
+    MetricsContext context = new MetricsContext();
+    Row row = new Row("a", 2);
+    for (int i = 0; i < 2; ++i) {
+      EL el = new EL(new EL.DefaultFunctions());
+      el.compile(expression);
+      RowContext ctx = new RowContext(el.variables());
+      Assert.assertEquals(new Integer(6), el.execute(ctx.set(row, null)).getInteger());
+      // Reported once, on the first row evaluated with a pipeline context.
+      el.execute(ctx.set(row, context));
+      el.execute(ctx.set(row, context));
+    }
+    Assert.assertEquals(1L, (long) context.counts.get("expression.cache.hits"));
+    Assert.assertEquals(1L, (long) context.counts.get("expression.cache.misses"));
+    Assert.assertTrue(context.gauges.containsKey("expression.cache.hit.ratio"));
+    Assert.assertTrue(context.gauges.get("expression.compile.time") > 0);
+  }
+
+  @Test(expected = ELException.class)
+  public void testCompileError() throws Exception {
+    new EL(new EL.DefaultFunctions()).compile("a +* b");
+  }
+
+  private static final class MetricsContext extends TestingPipelineContext {
+    private final Map<String, Long> counts = new HashMap<>();
+    private final Map<String, Long> gauges = new HashMap<>();
+
+    @Override
+    public StageMetrics getMetrics() {
+      return new StageMetrics() {
+        @Override
+        public void count(String s, int i) {
+          counts.merge(s, (long) i, Long::sum);
+        }
+
+        @Override
+        public void gauge(String s, long l) {
+          gauges.put(s, l);
+        }
+
+        @Override
+        public void pipelineCount(String s, int i) {
+        }
+
+        @Override
+        public void pipelineGauge(String s, long l) {
+        }
+      };
+    }
+  }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.expression;
+
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.api.ExecutorContext;
+import co.cask.wrangler.api.Row;
+import co.cask.wrangler.api.TransientVariableScope;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link RowContext}.
+ */
+public class RowContextTest {
+
+  @Test
+  public void testResolution() throws Exception {
+    EL el = new EL(new EL.DefaultFunctions());
+    el.compile("a + b");
+    RowContext ctx = new RowContext(el.variables());
+    ExecutorContext context = new TestingPipelineContext();
+
+    Row row = new Row("a", 1).add("b", 2);
+    Assert.assertEquals(3, (int) el.execute(ctx.set(row, context)).getInteger());
+    // The columns are found when the layout of the row changes.
+    Row other = new Row("x", 0).add("B", 10).add("a", 5);
+    Assert.assertEquals(15, (int) el.execute(ctx.set(other, context)).getInteger());
+
+    // Missing columns are null, transient variables hide the columns.
+    Assert.assertTrue(ctx.set(new Row("a", 1), context).has("b"));
+    Assert.assertNull(ctx.get("b"));
+    context.getTransientStore().set(TransientVariableScope.LOCAL, "a", 100);
+    Assert.assertEquals(102, (int) el.execute(ctx.set(row, context)).getInteger());
+    context.getTransientStore().set(TransientVariableScope.LOCAL, "a", null);
+    Assert.assertTrue(ctx.has("a"));
+    Assert.assertNull(ctx.get("a"));
+
+    Assert.assertSame(row, ctx.get("this"));
+    Assert.assertSame(context.getProperties(), ctx.get("runtime"));
+    Assert.assertEquals(context.getEnvironment().name(), ctx.get("environment"));
+    Assert.assertFalse(ctx.has("c"));
+    Assert.assertFalse(ctx.set(row, null).has("runtime"));
+    Assert.assertNull(ctx.get("runtime"));
+  }
+
+  @Test
+  public void testAssignedVariables() throws Exception {
+    EL el = new EL(new EL.DefaultFunctions());
+    el.compile("a = a + 1; c = a * 2; c");
+    RowContext ctx = new RowContext(el.variables());
+    Row row = new Row("a", 1);
+    Assert.assertEquals(4, (int) el.execute(ctx.set(row, null)).getInteger());
+    Assert.assertEquals(1, row.getValue("a"));
+    // Assignments don't carry over to the next row.
+    Assert.assertEquals(6, (int) el.execute(ctx.set(new Row("a", 2), null)).getInteger());
+  }
+
+  @Test
+  public void testNumbersAsStrings() throws Exception {
+    EL el = new EL(new EL.DefaultFunctions());
+    el.compile("a");
+    Row row = new Row("a", 10);
+    Assert.assertEquals(10, new RowContext(el.variables()).set(row, null).get("a"));
+    Assert.assertEquals("10", new RowContext(el.variables(), true).set(row, null).get("a"));
+  }
+}
@@ -111,7 +111,7 @@ public class CompositeDirectiveRegistryTest {
       iterator.next();
       count++;
     }
-    Assert.assertEquals(76, count);
+    Assert.assertEquals(82, count);
 
     registry.reload("");
 
@@ -121,7 +121,7 @@ public class CompositeDirectiveRegistryTest {
       iterator.next();
       count++;
     }
-    Assert.assertEquals(76, count);
+    Assert.assertEquals(82, count);
 
   }
 }
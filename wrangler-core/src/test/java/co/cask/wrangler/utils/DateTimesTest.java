@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests {@link DateTimes} and {@link SimpleDateParser}.
+ */
+public class DateTimesTest {
+
+  @Test
+  public void testSameAsSimpleDateFormat() throws Exception {
+    String[][] cases = new String[][] {
+      { "MM/dd/yyyy", "12/10/2016" },
+      { "MM/dd/yyyy", "2/1/1990" },
+      { "MM/dd/yyyy", "13/40/2016" },
+      { "MM/dd/yyyy HH:mm", "03/03/1998 2:02" },
+      { "dd/MM/yy", "10/12/16" },
+      { "dd/MM/yy", "10/12/2016" },
+      { "yyyyMMdd", "20161210" },
+      { "yyyyMMddHHmmss", "20161210064511" },
+      { "yyyy-MM-dd", "2016-12-10" },
+      { "yyyy-MM-dd", "2016-02-30" },
+      { "yyyy-MM-dd HH:mm:ss", "2016-12-10 06:45:11" },
+      { "yyyy-MM-dd HH:mm:ss.SSS", "2016-12-10 06:45:11.111" },
+      { "yyyy-MM-dd HH:mm:ss.SSS", "2016-12-10 06:45:11.5" },
+      { "yyyy-MM-dd'T'HH:mm:ss", "2017-02-02T21:06:44Z" },
+      { "yyyy-MM-dd'T'HH:mm:ss", "2017-02-02T21:06:44+01:00" },
+      { "MM-dd-yyyy 'at' HH:mm:ss z", "12-10-2016 at 06:45:11 PST" },
+      { "yyyy,MM.dd'T'HH:mm:ss.SSSZ", "2016,12.10T06:45:11.111-0800" },
+      { "yyyy-MM-dd'T'HH:mm:ssXXX", "2016-12-10T06:45:11+05:30" },
+      { "yyyy-MM-dd'T'HH:mm:ssX", "2016-12-10T06:45:11Z" },
+      { "EEE, d MMM yyyy HH:mm:ss", "Sat, 10 Dec 2016 06:45:11" },
+      { "EEE, MMM d, ''yy", "Sat, Dec 10, '16" },
+      { "EEEE, MMMM d, yyyy", "Saturday, December 10, 2016" },
+      { "dd-MMM-yyyy", "10-dec-2016" },
+      { "h:mm a", "06:45 PM" },
+      { "K:mm a, z", "06:45 PM, PST" },
+      { "yyyy.MM.dd G 'at' HH:mm:ss z", "2016.12.10 AD at 06:45:11 PST" },
+      { "D yyyy", "345 2016" },
+      { "HH:mm:ss", "25:61:00" },
+      { "yyyy-ww", "2016-50" },
+      { "yyyy-MM-dd", " 2019-01-02" },
+      { "yyyy-MM-dd HH:mm", "2019-01-02  10:00" },
+      { "yyyy-MM-dd HH:mm", "2019-01-02 \t10: 05" },
+      { "yyyy-MM-dd HH:mm Z", "2019-01-02 10:00 GMT+05:00" },
+      { "yyyy-MM-dd HH:mm z", "2019-01-02 10:00 GMT+05:00" },
+      { "yyyy-MM-dd HH:mm zzzz", "2019-01-15 10:00 Pacific Daylight Time" },
+      { "yyyy-MM-dd HH:mm zzzz", "2019-07-15 10:00 Pacific Standard Time" },
+      { "yyyy-MM-dd HH:mm z", "2019-07-15 10:00 PST" },
+    };
+
+    for (String[] c : cases) {
+      SimpleDateFormat format = new SimpleDateFormat(c[0]);
+      format.setTimeZone(TimeZone.getTimeZone("UTC"));
+      ZonedDateTime expected = format.parse(c[1]).toInstant().atZone(DateTimes.UTC);
+      Assert.assertEquals(c[0] + " " + c[1], expected, DateTimes.simpleDateParser(c[0], DateTimes.UTC).parse(c[1]));
+    }
+  }
+
+  @Test
+  public void testSimpleDateParserErrors() throws Exception {
+    String[][] cases = new String[][] {
+      { "MM/dd/yyyy", "2016-12-10" },
+      { "yyyy-MM-dd", "" },
+      { "yyyy-MM-dd HH:mm:ss", "2016-12-10T06:45:11" },
+      // Unlike SimpleDateFormat, a day of week that doesn't match the date is an error.
+      { "EEE, d MMM yyyy", "Sun, 10 Dec 2016" },
+    };
+    for (String[] c : cases) {
+      try {
+        DateTimes.simpleDateParser(c[0], DateTimes.UTC).parse(c[1]);
+        Assert.fail(c[0] + " " + c[1]);
+      } catch (DateTimeParseException e) {
+        // expected
+      }
+    }
+
+    for (String pattern : new String[] { "yyyy-MM-dd q", "yyyy 'unterminated" }) {
+      try {
+        DateTimes.simpleDateParser(pattern, DateTimes.UTC);
+        Assert.fail(pattern);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testParseIso() throws Exception {
+    ZonedDateTime date = ZonedDateTime.of(2016, 12, 10, 6, 45, 11, 0, DateTimes.UTC);
+    Assert.assertEquals(date.truncatedTo(ChronoUnit.DAYS), DateTimes.parseIso("2016-12-10", DateTimes.UTC));
+    Assert.assertEquals(date.withSecond(0), DateTimes.parseIso("2016-12-10T06:45", DateTimes.UTC));
+    Assert.assertEquals(date, DateTimes.parseIso("2016-12-10 06:45:11", DateTimes.UTC));
+    Assert.assertEquals(date, DateTimes.parseIso("2016-12-10T06:45:11Z", DateTimes.UTC));
+    Assert.assertEquals(date, DateTimes.parseIso("2016-12-10T07:45:11+01", DateTimes.UTC));
+    Assert.assertEquals(date, DateTimes.parseIso("2016-12-10T01:15:11-0530", DateTimes.UTC));
+    Assert.assertEquals(date, DateTimes.parseIso("2016-12-10T12:15:11+05:30", DateTimes.UTC));
+    Assert.assertEquals(date.withNano(111000000), DateTimes.parseIso("2016-12-10T06:45:11.111", DateTimes.UTC));
+    Assert.assertEquals(date.withNano(123456789), DateTimes.parseIso("2016-12-10T06:45:11,123456789Z",
+                                                                     DateTimes.UTC));
+    Assert.assertEquals(date.withZoneSameLocal(ZoneOffset.ofHours(2)),
+                        DateTimes.parseIso("2016-12-10T06:45:11", ZoneOffset.ofHours(2)));
+
+    for (String value : new String[] { "", "2016-12", "2016/12/10", "2016-13-10", "2016-02-30", "2016-12-10T",
+      "2016-12-10T06", "2016-12-10T06:45:", "2016-12-10T06:45:11.", "2016-12-10T25:00", "2016-12-10T06:45:11+1",
+      "2016-12-10T06:45:11+19:00", "2016-12-10T06:45:11 PST", "12/10/2016" }) {
+      Assert.assertNull(value, DateTimes.parseIso(value, DateTimes.UTC));
+    }
+  }
+
+  @Test
+  public void testEpoch() throws Exception {
+    ZonedDateTime date = ZonedDateTime.of(2018, 9, 7, 14, 57, 51, 894000000, DateTimes.UTC);
+    Assert.assertEquals(date, DateTimes.parseEpoch("1536332271894", TimeUnit.MILLISECONDS, DateTimes.UTC));
+    Assert.assertEquals(date.withNano(0), DateTimes.parseEpoch("+1536332271", TimeUnit.SECONDS, DateTimes.UTC));
+    Assert.assertEquals(date.plusNanos(123000), DateTimes.parseEpoch("1536332271894123", TimeUnit.MICROSECONDS,
+                                                                     DateTimes.UTC));
+    Assert.assertEquals(ZonedDateTime.of(1969, 12, 31, 23, 59, 58, 500000000, DateTimes.UTC),
+                        DateTimes.parseEpoch("-1500", TimeUnit.MILLISECONDS, DateTimes.UTC));
+    Assert.assertEquals(Math.floorDiv(Long.MIN_VALUE, 1000),
+                        DateTimes.parseEpoch(Long.toString(Long.MIN_VALUE), TimeUnit.MILLISECONDS, DateTimes.UTC)
+                          .toEpochSecond());
+
+    for (String value : new String[] { "", "-", "12a", "1.5", "9223372036854775808" }) {
+      try {
+        DateTimes.parseEpoch(value, TimeUnit.MILLISECONDS, DateTimes.UTC);
+        Assert.fail(value);
+      } catch (NumberFormatException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testFormatterCache() throws Exception {
+    Assert.assertSame(DateTimes.formatter("yyyy-MM-dd", null), DateTimes.formatter("yyyy-MM-dd", null));
+    Assert.assertNotSame(DateTimes.formatter("yyyy-MM-dd", null), DateTimes.formatter("yyyy-MM-dd", DateTimes.UTC));
+    Assert.assertSame(DateTimes.simpleDateParser("yyyy-MM-dd", DateTimes.UTC),
+                      DateTimes.simpleDateParser("yyyy-MM-dd", DateTimes.UTC));
+    Assert.assertEquals("2016-12-10", DateTimes.formatter("yyyy-MM-dd", null).format(LocalDate.of(2016, 12, 10)));
+  }
+}
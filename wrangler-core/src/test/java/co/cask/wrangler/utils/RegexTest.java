@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import co.cask.wrangler.TestingPipelineContext;
+import co.cask.wrangler.api.ExecutorContext;
+import com.google.common.base.Strings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Tests {@link Regex} and {@link LinearRegex}.
+ */
+public class RegexTest {
+  private static final String[] REGEXES = {
+    "a", "abc", "a*", "a+b", "a?b", "a{2}", "a{1,3}", "a{2,}", "a*?b", "a+?", "(a|b)*c", "(a|ab)(c|bcd)(d*)",
+    "(a*)+b", "(a|b)*?b", "x*", "", "^abc", "abc$", "^$", "^", "$", ".*", ".+", "a.c", "(?s)a.c",
+    "[abc]+", "[^abc]+", "[a-z0-9_]+", "[a-]+", "[-a]", "[\\]a]+", "[\\d\\s]+", "[^\\w]", "\\d+", "\\D+", "\\w+",
+    "\\W", "\\s+", "\\S+", "\\bfoo\\b", "\\Bo", "\\Aab", "ab\\z", "ab\\Z", "(?i)abc", "a(?i)bc", "a(?i:b)c",
+    "(?i)[a-c]+", "(?i)[^a]", "(?m)^b", "(?m)a$", "(?:ab)+", "(?<year>\\d{4})-(?<month>\\d{2})", "\\.", "\\|",
+    "\\t", "\\x41", "\\x{41}", "\\u0041", "\\Qa.b\\E", "\\Qa.b", "(a)|(b)", "((a)|b)+", "(a?)(a?)b", "|a",
+    "a|", "(|a)+", "\\s*,\\s*", "[,;|]", "(\\d+)\\.(\\d+)?", "([^=&]+)=([^&]*)", "[\\u00e9]", ".\\u00e9.",
+    "(?:(a)|b)+", "\\p{Alpha}", "(a)\\1", "(?=a)a", "a++", "[a&&b]", "[[a]b]",
+    "(\\w*)*-", "(\\b[a-c]*|[\\w-]{0,}a){2}c?[^a]*", "([^a]*?){0,} +",
+  };
+
+  private static final String[] INPUTS = {
+    "", "a", "b", "abc", "ABC", "aabbcc", "xxabcxx", "abcabc", "aaa", "aaaa", "ab", "abbb", "c", "bc", "aac",
+    "abcd", "abbcd", "foo bar", "afoo", "foo", "a\nb", "a\r\nb", "ab\n", "ab\r\n", "b\na", "a.b", "a|b", "a\tb",
+    "x, y ,z", "1;2,3|4", "12.5 and 3.", "k1=v1&k2=&k3=v3", "déf", "2019-01-31", "😀a",
+    "a b", "ABc", "aAbB", "555-1234",
+  };
+
+  @Test
+  public void testSameAsJava() throws Exception {
+    for (String regex : REGEXES) {
+      Pattern pattern = Pattern.compile(regex);
+      Regex linear = Regex.compile(regex, Regex.Engine.LINEAR);
+      Regex java = Regex.compile(regex, Regex.Engine.JAVA);
+      for (String input : INPUTS) {
+        String message = String.format("'%s' on '%s'", regex, input);
+        Assert.assertEquals(message, pattern.matcher(input).matches(), linear.matches(input));
+        Assert.assertEquals(message, pattern.matcher(input).matches(), java.matches(input));
+        Assert.assertEquals(message, find(pattern, input), find(linear, input));
+        Assert.assertEquals(message, find(pattern, input), find(java, input));
+        for (int limit : new int[] { 0, -1, 2 }) {
+          Assert.assertEquals(message, Arrays.asList(input.split(regex, limit)),
+                              Arrays.asList(linear.split(input, limit)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRandomInputs() throws Exception {
+    String[] regexes = { "(a|ab)*b", "(a*b|b*a)+", "[ab]*a[ab]{2}", "(a+|b+)*c?", "((ab)+|ba)*", "a{2,3}b?" };
+    Random random = new Random(0);
+    for (String regex : regexes) {
+      Pattern pattern = Pattern.compile(regex);
+      Regex linear = Regex.compile(regex, Regex.Engine.LINEAR);
+      Assert.assertTrue(regex, linear.isLinear());
+      for (int i = 0; i < 500; ++i) {
+        char[] chars = new char[random.nextInt(12)];
+        for (int j = 0; j < chars.length; ++j) {
+          chars[j] = "abc".charAt(random.nextInt(3));
+        }
+        String input = new String(chars);
+        String message = String.format("'%s' on '%s'", regex, input);
+        Assert.assertEquals(message, pattern.matcher(input).matches(), linear.matches(input));
+        Assert.assertEquals(message, find(pattern, input), find(linear, input));
+      }
+    }
+  }
+
+  @Test
+  public void testFallback() throws Exception {
+    Assert.assertTrue(Regex.compile("a|b", Regex.Engine.LINEAR).isLinear());
+    Assert.assertFalse(Regex.compile("a|b", Regex.Engine.JAVA).isLinear());
+    // Back-references, lookarounds, possessive quantifiers, nested classes and empty repeats need java.util.regex.
+    for (String regex : new String[] { "(a)\\1", "(?=a)a", "a++", "[a&&b]", "[[a]b]", "\\p{Alpha}", "(?x)a",
+                                       "(\\w*)*-", "(a|b?){2}" }) {
+      Regex compiled = Regex.compile(regex, Regex.Engine.LINEAR);
+      Assert.assertEquals(regex, Regex.Engine.LINEAR, compiled.engine());
+      Assert.assertFalse(regex, compiled.isLinear());
+    }
+    // Plain text, with or without escaped characters, is searched for as is.
+    for (String regex : new String[] { ",", "\\|", "\\t", "abc", "\\.\\.", "\\$" }) {
+      Assert.assertTrue(regex, Regex.compile(regex).isLinear());
+    }
+    Assert.assertSame(Regex.compile("a|b"), Regex.compile("a|b"));
+    try {
+      Regex.compile("(a", Regex.Engine.LINEAR);
+      Assert.fail();
+    } catch (PatternSyntaxException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEngineFromContext() throws Exception {
+    ExecutorContext context = new TestingPipelineContext();
+    Regex regex = Regex.compile("a|b");
+    Assert.assertSame(regex, regex.forContext(context));
+    Assert.assertSame(regex, regex.forContext(null));
+    context.getProperties().put(Regex.ENGINE, "linear");
+    Regex linear = regex.forContext(context);
+    Assert.assertEquals(Regex.Engine.LINEAR, linear.engine());
+    Assert.assertTrue(linear.isLinear());
+    Assert.assertSame(linear, linear.forContext(context));
+  }
+
+  @Test(timeout = 10000)
+  public void testLinearTime() throws Exception {
+    // Each of these takes longer than the age of the universe with a backtracking engine.
+    String input = Strings.repeat("a", 100000) + "!";
+    Assert.assertFalse(Regex.compile("(a+)+$", Regex.Engine.LINEAR).matches(input));
+    Assert.assertFalse(Regex.compile("(a|aa)+b", Regex.Engine.LINEAR).matcher(input).find());
+    Assert.assertFalse(Regex.compile("(.*a){20}b", Regex.Engine.LINEAR).matcher(input).find());
+    Assert.assertEquals(1, Regex.compile("(a|aa)*c", Regex.Engine.LINEAR).split(input, 0).length);
+  }
+
+  private static List<String> find(Pattern pattern, String input) {
+    List<String> matches = new ArrayList<>();
+    Matcher matcher = pattern.matcher(input);
+    while (matcher.find()) {
+      StringBuilder match = new StringBuilder().append(matcher.start()).append(':').append(matcher.end());
+      for (int i = 1; i <= matcher.groupCount(); ++i) {
+        match.append(':').append(matcher.group(i));
+      }
+      matches.add(match.toString());
+    }
+    return matches;
+  }
+
+  private static List<String> find(Regex regex, String input) {
+    List<String> matches = new ArrayList<>();
+    Regex.Match matcher = regex.matcher(input);
+    while (matcher.find()) {
+      StringBuilder match = new StringBuilder().append(matcher.start()).append(':').append(matcher.end());
+      for (int i = 1; i <= regex.groupCount(); ++i) {
+        match.append(':').append(matcher.group(i));
+      }
+      matches.add(match.toString());
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.unix4j.Unix4j;
+import org.unix4j.builder.Unix4jCommandBuilder;
+
+/**
+ * Tests {@link SedExpression}
+ */
+public class SedExpressionTest {
+
+  @Test
+  public void testSameAsUnix4j() throws Exception {
+    String[] scripts = new String[] {
+      "s/one/ONE/", "s/one/ONE/g", "s/one/ONE/2", "s/one/ONE/2g", "s/one/ONE/3", "s/ONE/x/I", "s/ONE/x/Ig",
+      "s/one/ONE/gp", "s/one/[$0]/g", "s/o(n)e/$1$1/g", "s/(o)(n)(e)/$3$2$1/", "s/o(n)e/$10/g", "s/o/\\$/g",
+      "s/o/\\\\/g", "s|one|1|g", "s/\\/usr\\/local/\\/opt/g", "s/e\\b/E/g", "s/ +/ /g", "s/^/>/", "s/$/</",
+      "s/x*/-/g", "s///g", "  s/one/1/g  ", "s/\"//g", "s/o.e/?/g", "s/t(w)?o/2/g", "s/two\\|three/23/g",
+      "s,one,1,", "s/a\\/b/c/g", "s/one/\n/g",
+    };
+    String[] values = new String[] {
+      "one two three one two one", "", "ONE One one", "/usr/local/bin", "a/b a/b", "no match",
+      "line one\nline two one", "  spaced   out  ", "\"quoted\"", "xxaxx"
+    };
+    for (String script : scripts) {
+      SedExpression expression = SedExpression.compile(script);
+      for (String value : values) {
+        Assert.assertEquals(script + " on " + value, unix4j(value, script), expression.replace(value));
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidScripts() throws Exception {
+    String[] scripts = new String[] {
+      "s/one/ONE", "s/one/ONE/x", "s/one/ONE/0", "s/one/ONE/g x", "s\\one\\ONE\\", "s/(one/ONE/",
+      "s/one/$1/", "s/one/ONE$/", "s/one/ONE\\/", "s/o(n)e/${n}/", "y/abc/xyz/",
+    };
+    for (String script : scripts) {
+      try {
+        SedExpression.compile(script);
+        Assert.fail(script);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testLiteralAndRegexAgree() throws Exception {
+    // A literal regex is searched for with indexOf, the same regex quoted goes through the regex engine.
+    String value = "aaa-b-aaaa-aa";
+    for (String flags : new String[] { "", "g", "2", "2g", "5" }) {
+      Assert.assertEquals(flags, SedExpression.compile("s/aa/[$0]/" + flags).replace(value),
+                          SedExpression.compile("s/a{2}/[$0]/" + flags).replace(value));
+    }
+  }
+
+  private static String unix4j(String value, String script) {
+    Unix4jCommandBuilder builder = Unix4j.echo(value).sed(script);
+    if (builder.toExitValue() == 0) {
+      return builder.toStringResult();
+    }
+    return value;
+  }
+}
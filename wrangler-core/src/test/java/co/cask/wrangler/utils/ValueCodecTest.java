@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.wrangler.utils;
+
+import co.cask.wrangler.api.Row;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Tests {@link ValueCodec}.
+ */
+public class ValueCodecTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    // The second time of the day the clocks go back, with the offset of the summer time.
+    ZonedDateTime overlap = ZonedDateTime.of(2019, 11, 3, 1, 30, 0, 0, ZoneId.of("America/New_York"))
+      .withLaterOffsetAtOverlap();
+    List<Object> values = Arrays.asList(
+      null, "text", 1, 2L, 3.5, 4.5f, (short) 5, (byte) 6, true, new BigDecimal("7.25"), Double.NaN,
+      ZonedDateTime.of(2019, 3, 5, 10, 15, 30, 123456789, ZoneId.of("US/Eastern")), overlap,
+      ZonedDateTime.of(2019, 3, 5, 10, 15, 30, 0, ZoneOffset.UTC),
+      OffsetDateTime.of(2019, 3, 5, 10, 15, 30, 0, ZoneOffset.ofHours(2)),
+      LocalDateTime.of(2019, 3, 5, 10, 15), LocalDate.of(1969, 12, 31), LocalTime.of(23, 59, 59, 999),
+      Instant.ofEpochSecond(-1, 5), new JsonParser().parse("{\"a\":[1,2.5,\"b\",null],\"c\":{}}"),
+      JsonNull.INSTANCE, new Date(0)
+    );
+
+    Row row = new Row();
+    for (int i = 0; i < values.size(); ++i) {
+      row.add("c" + i, values.get(i));
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ValueCodec.writeRow(new DataOutputStream(bytes), row);
+    Row read = ValueCodec.readRow(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    Assert.assertEquals(values.size(), read.length());
+    for (int i = 0; i < values.size(); ++i) {
+      Assert.assertEquals(String.valueOf(values.get(i)), values.get(i), read.getValue(i));
+      Assert.assertEquals("c" + i, read.getColumn(i));
+    }
+    Assert.assertArrayEquals(new byte[] { 1, 2 }, (byte[]) readValue(new byte[] { 1, 2 }));
+  }
+
+  @Test(expected = IOException.class)
+  public void testNotSerializable() throws Exception {
+    readValue(new Object());
+  }
+
+  private static Object readValue(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ValueCodec.write(new DataOutputStream(bytes), value);
+    return ValueCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+}
@@ -1117,6 +1117,8 @@ public class DirectivesHandler extends AbstractWranglerHandler {
         executor.initialize(recipe, context);
         try {
           rows = executor.execute(sample.apply(rows));
+          // Directives such as aggregations return their rows at the end of the sample.
+          rows.addAll(executor.flush());
         } catch (RecipeException e) {
           throw new BadRequestException(e.getMessage(), e);
         }
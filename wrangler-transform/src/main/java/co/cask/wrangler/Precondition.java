@@ -17,57 +17,44 @@
 package co.cask.wrangler;
 
 import co.cask.wrangler.api.Row;
-import org.apache.commons.jexl3.scripting.JexlScriptEngine;
-
-import javax.script.Bindings;
-import javax.script.CompiledScript;
-import javax.script.ScriptException;
-import javax.script.SimpleBindings;
+import co.cask.wrangler.expression.EL;
+import co.cask.wrangler.expression.ELContext;
+import co.cask.wrangler.expression.ELException;
 
 /**
  * A precondition expression that filters data into the directives.
+ *
+ * <p>The expression is compiled by the engine shared with the directives.</p>
  */
 public class Precondition {
   private final String condition;
-  private final CompiledScript script;
+  private final EL el = new EL(new EL.DefaultFunctions());
 
   public Precondition(String condition) throws PreconditionException {
     this.condition = condition;
-    JexlScriptEngine engine = new JexlScriptEngine();
     try {
-      script = engine.compile(condition);
-    } catch (ScriptException e) {
-      if (e.getCause() != null) {
-        throw new PreconditionException(e.getCause().getMessage());
-      } else {
-        throw new PreconditionException(e.getMessage());
-      }
+      el.compile(condition);
+    } catch (ELException e) {
+      throw new PreconditionException(e.getMessage());
     }
   }
 
   public boolean apply(Row row) throws PreconditionException {
-    Bindings ctx = new SimpleBindings();
+    ELContext ctx = new ELContext();
     for (int i = 0; i < row.length(); ++i) {
-      ctx.put(row.getColumn(i), row.getValue(i));
+      ctx.set(row.getColumn(i), row.getValue(i));
     }
 
     try {
-      Object result = script.eval(ctx);
+      Object result = el.execute(ctx, false).getObject();
       if (!(result instanceof Boolean)) {
         throw new PreconditionException(
           String.format("Precondition '%s' does not result in true or false.", condition)
         );
       }
       return (Boolean) result;
-    } catch (ScriptException e) {
-      // Generally JexlException wraps the original exception, so it's good idea
-      // to check if there is a inner exception, if there is wrap it in 'DirectiveExecutionException'
-      // else just print the error message.
-      if (e.getCause() != null) {
-        throw new PreconditionException(e.getCause().getMessage());
-      } else {
-        throw new PreconditionException(e.getMessage());
-      }
+    } catch (ELException e) {
+      throw new PreconditionException(e.getMessage());
     }
   }
 }
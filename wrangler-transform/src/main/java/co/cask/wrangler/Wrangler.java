@@ -359,8 +359,15 @@ public class Wrangler extends Transform<StructuredRecord, StructuredRecord> {
 
     try {
       // Create the pipeline executor with context being set.
-      pipeline = new RecipePipelineExecutor();
-      pipeline.initialize(recipe, ctx);
+      RecipePipelineExecutor executor = new RecipePipelineExecutor();
+      executor.initialize(recipe, ctx);
+      // Records are transformed one at a time, there is no end of input at which held back rows could be emitted.
+      if (executor.isAccumulating()) {
+        throw new IllegalArgumentException("Directives that hold rows back until the end of the input, such as "
+                                             + "'aggregate' or 'parse-as-csv' in multiline mode, are not supported "
+                                             + "by the transform.");
+      }
+      pipeline = executor;
     } catch (Exception e) {
       throw new Exception(
         String.format("Stage:%s - %s", getContext().getStageName(), e.getMessage())
@@ -83,6 +83,14 @@ class WranglerPipelineContext implements ExecutorContext {
     return name;
   }
 
+  /**
+   * @return Name of the pipeline.
+   */
+  @Override
+  public String getPipelineName() {
+    return context.getPipelineName();
+  }
+
   /**
    * @return Properties associated with run and pipeline.
    */